@@ -0,0 +1,254 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.xmlbeans.impl.common;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.xmlbeans.SchemaTypeLoader;
+import org.apache.xmlbeans.SystemProperties;
+
+/**
+ * A size-bounded SystemCache for servers running many class loaders.
+ * <p/>
+ * Type loaders are shared by all threads and keyed weakly by class loader.
+ * At most "xmlbean.systemcache.typeloaders" of them are kept (64 by
+ * default); beyond that the least recently used one is evicted.  They are
+ * held through soft references, so that neither the cache nor the type
+ * loaders of an undeployed application pin its class loader.
+ * <p/>
+ * Sax loaders are pooled: {@link #getSaxLoader} hands a pooled loader to
+ * the caller, which owns it until it is given back with
+ * {@link #setSaxLoader}.  Up to "xmlbean.systemcache.saxloaders" loaders
+ * (twice the number of processors by default) are kept, strongly reachable.
+ * <p/>
+ * To use it, set the "xmlbean.systemcacheimpl" system property to this
+ * class name.  Created that way, the cache registers itself with the
+ * platform MBean server under {@link #OBJECT_NAME}.
+ */
+public class BoundedSystemCache extends SystemCache implements BoundedSystemCacheMBean
+{
+    public static final String OBJECT_NAME = "org.apache.xmlbeans:type=SystemCache";
+
+    private final int _maxTypeLoaders;
+    private final int _maxSaxLoaders;
+
+    // Guarded by itself
+    private final WeakHashMap _typeLoaders = new WeakHashMap();
+    private final AtomicLong _clock = new AtomicLong();
+    private final AtomicLong _typeLoaderHits = new AtomicLong();
+    private final AtomicLong _typeLoaderMisses = new AtomicLong();
+    private final AtomicLong _typeLoaderEvictions = new AtomicLong();
+
+    private final ConcurrentLinkedQueue _saxLoaders = new ConcurrentLinkedQueue();
+    private final AtomicInteger _saxLoaderCount = new AtomicInteger();
+    private final AtomicLong _saxLoaderHits = new AtomicLong();
+    private final AtomicLong _saxLoaderMisses = new AtomicLong();
+    private final AtomicLong _saxLoaderDiscards = new AtomicLong();
+
+    private static final class Entry
+    {
+        Entry(SchemaTypeLoader stl, long now)
+        {
+            _ref = new SoftReference(stl);
+            _lastUsed = now;
+        }
+
+        final SoftReference _ref;
+        volatile long _lastUsed;
+    }
+
+    public BoundedSystemCache()
+    {
+        this(intProperty("xmlbean.systemcache.typeloaders", 64),
+             intProperty("xmlbean.systemcache.saxloaders",
+                 2 * Runtime.getRuntime().availableProcessors()));
+
+        registerMBean();
+    }
+
+    public BoundedSystemCache(int maxTypeLoaders, int maxSaxLoaders)
+    {
+        if (maxTypeLoaders < 1 || maxSaxLoaders < 0)
+            throw new IllegalArgumentException("Cache sizes must be positive");
+
+        _maxTypeLoaders = maxTypeLoaders;
+        _maxSaxLoaders = maxSaxLoaders;
+    }
+
+    /**
+     * Registers this cache with the platform MBean server, replacing any
+     * cache registered before.  Failures are ignored: JMX may be missing
+     * or not permitted, and the cache works without it.
+     */
+    public void registerMBean()
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+
+            server.registerMBean(this, name);
+        }
+        catch (Exception e)
+        {
+            // no management then
+        }
+    }
+
+    public SchemaTypeLoader getFromTypeLoaderCache(ClassLoader cl)
+    {
+        synchronized (_typeLoaders)
+        {
+            Entry e = (Entry) _typeLoaders.get(cl);
+
+            if (e != null)
+            {
+                SchemaTypeLoader stl = (SchemaTypeLoader) e._ref.get();
+
+                if (stl != null)
+                {
+                    e._lastUsed = _clock.incrementAndGet();
+                    _typeLoaderHits.incrementAndGet();
+                    return stl;
+                }
+
+                // cleared by the garbage collector
+                _typeLoaders.remove(cl);
+                _typeLoaderEvictions.incrementAndGet();
+            }
+        }
+
+        _typeLoaderMisses.incrementAndGet();
+        return null;
+    }
+
+    public void addToTypeLoaderCache(SchemaTypeLoader stl, ClassLoader cl)
+    {
+        synchronized (_typeLoaders)
+        {
+            _typeLoaders.put(cl, new Entry(stl, _clock.incrementAndGet()));
+
+            while (_typeLoaders.size() > _maxTypeLoaders)
+                evictLeastRecentlyUsed();
+        }
+    }
+
+    private void evictLeastRecentlyUsed()
+    {
+        Object eldestKey = null;
+        Entry eldest = null;
+
+        for (Iterator i = _typeLoaders.entrySet().iterator(); i.hasNext(); )
+        {
+            Map.Entry me = (Map.Entry) i.next();
+            Entry e = (Entry) me.getValue();
+
+            if (eldest == null || e._lastUsed < eldest._lastUsed)
+            {
+                eldestKey = me.getKey();
+                eldest = e;
+            }
+        }
+
+        if (eldest != null)
+        {
+            _typeLoaders.remove(eldestKey);
+            _typeLoaderEvictions.incrementAndGet();
+        }
+    }
+
+    public Object getSaxLoader()
+    {
+        Object saxLoader = _saxLoaders.poll();
+
+        if (saxLoader == null)
+        {
+            _saxLoaderMisses.incrementAndGet();
+            return null;
+        }
+
+        _saxLoaderCount.decrementAndGet();
+        _saxLoaderHits.incrementAndGet();
+        return saxLoader;
+    }
+
+    public void setSaxLoader(Object saxLoader)
+    {
+        if (saxLoader == null)
+            return;
+
+        if (_saxLoaderCount.incrementAndGet() <= _maxSaxLoaders)
+            _saxLoaders.offer(saxLoader);
+        else
+        {
+            _saxLoaderCount.decrementAndGet();
+            _saxLoaderDiscards.incrementAndGet();
+        }
+    }
+
+    public void clear()
+    {
+        synchronized (_typeLoaders)
+        {
+            _typeLoaders.clear();
+        }
+
+        while (_saxLoaders.poll() != null)
+            _saxLoaderCount.decrementAndGet();
+    }
+
+    public int getTypeLoaderCount() { synchronized (_typeLoaders) { return _typeLoaders.size(); } }
+    public int getMaxTypeLoaders() { return _maxTypeLoaders; }
+    public long getTypeLoaderHits() { return _typeLoaderHits.get(); }
+    public long getTypeLoaderMisses() { return _typeLoaderMisses.get(); }
+    public long getTypeLoaderEvictions() { return _typeLoaderEvictions.get(); }
+
+    public int getSaxLoaderCount() { return _saxLoaderCount.get(); }
+    public int getMaxSaxLoaders() { return _maxSaxLoaders; }
+    public long getSaxLoaderHits() { return _saxLoaderHits.get(); }
+    public long getSaxLoaderMisses() { return _saxLoaderMisses.get(); }
+    public long getSaxLoaderDiscards() { return _saxLoaderDiscards.get(); }
+
+    private static int intProperty(String key, int defaultValue)
+    {
+        String value = SystemProperties.getProperty(key);
+
+        if (value == null)
+            return defaultValue;
+
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Value for system property \"" +
+                key + "\" is not a number: " + value);
+        }
+    }
+}
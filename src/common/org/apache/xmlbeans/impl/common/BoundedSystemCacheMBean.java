@@ -0,0 +1,40 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.xmlbeans.impl.common;
+
+/**
+ * Management interface of {@link BoundedSystemCache}, registered under
+ * the name {@link BoundedSystemCache#OBJECT_NAME}.
+ */
+public interface BoundedSystemCacheMBean
+{
+    int getTypeLoaderCount();
+    int getMaxTypeLoaders();
+    long getTypeLoaderHits();
+    long getTypeLoaderMisses();
+    long getTypeLoaderEvictions();
+
+    int getSaxLoaderCount();
+    int getMaxSaxLoaders();
+    long getSaxLoaderHits();
+    long getSaxLoaderMisses();
+    long getSaxLoaderDiscards();
+
+    /**
+     * Drops all cached type loaders and pooled sax loaders.  The counters
+     * are left untouched.
+     */
+    void clear();
+}
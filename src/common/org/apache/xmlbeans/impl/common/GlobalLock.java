@@ -17,8 +17,11 @@ package org.apache.xmlbeans.impl.common;
 
 /**
  * Whenever multiple locks must be acquired within the implementation of
- * XML Beans, this GlobalLock is acquired first, and then released when all
- * the acutally-needed locks have been acquired.  This prevents deadlocks.
+ * XML Beans, they are acquired in the order given by {@link #compare}, so
+ * that two threads locking the same pair of monitors cannot deadlock.  Only
+ * when two monitors cannot be told apart by that order is this GlobalLock
+ * acquired first, and then released when all the acutally-needed locks
+ * have been acquired.
  */ 
 public class GlobalLock
 {
@@ -27,4 +30,18 @@ public class GlobalLock
     public static void acquire() throws InterruptedException { GLOBAL_MUTEX.acquire(); }
     public static void tryToAcquire() { GLOBAL_MUTEX.tryToAcquire(); }
     public static void release() { GLOBAL_MUTEX.release(); }
+
+    /**
+     * Returns a negative number if the monitor <code>a</code> must be
+     * acquired before <code>b</code>, a positive number if it must be
+     * acquired after, and zero if the two monitors have no order, in which
+     * case the global lock has to be held while both are acquired.
+     */
+    public static int compare(Object a, Object b)
+    {
+        int ha = System.identityHashCode(a);
+        int hb = System.identityHashCode(b);
+
+        return ha < hb ? -1 : (ha == hb ? 0 : 1);
+    }
 }
@@ -247,7 +247,7 @@ public class IdentityConstraint {
 
     public class SelectorState extends ConstraintState {
         SchemaIdentityConstraint _constraint;
-        Set _values = new LinkedHashSet();
+        KeyTable _values = new KeyTable();
         XPath.ExecutionContext _context;
 
         SelectorState(SchemaIdentityConstraint constraint, Event e, SchemaType st) {
@@ -261,9 +261,22 @@ public class IdentityConstraint {
 
         void addFields(XmlObjectList fields, Event e) 
         {
+            // Fields with a missing value equal no others, so they can neither
+            // be a duplicate nor refer to a key
+            Object key = fields.key();
+
+            if (key == null)
+                return;
+
+            int i = _values.add(key);
+
             if (_constraint.getConstraintCategory() == SchemaIdentityConstraint.CC_KEYREF)
-                _values.add(fields);
-            else if (_values.contains(fields))
+            {
+                // Keep the fields as written for the error, should they refer to nothing
+                if (i >= 0 && !key.equals(fields.toString()))
+                    _values.setValue(i, fields.toString());
+            }
+            else if (i < 0)
             {
                 if (_constraint.getConstraintCategory() == SchemaIdentityConstraint.CC_UNIQUE)
                     emitError(e, XmlErrorCodes.IDENTITY_CONSTRAINT_VALID$DUPLICATE_UNIQUE,
@@ -272,8 +285,6 @@ public class IdentityConstraint {
                     emitError(e, XmlErrorCodes.IDENTITY_CONSTRAINT_VALID$DUPLICATE_KEY,
                         new Object[] { fields, QNameHelper.pretty(_constraint.getName()) });
             }
-            else
-                _values.add(fields);
         }
 
         void element(Event e, SchemaType st) 
@@ -309,46 +320,51 @@ public class IdentityConstraint {
     }
 
     public class KeyrefState extends SelectorState {
-        Map _keyValues = new HashMap();
-        private Object CHILD_ADDED = new Object();
-        private Object CHILD_REMOVED = new Object();
-        private Object SELF_ADDED = new Object();
+        KeyTable _keyValues = new KeyTable();
+        private static final byte CHILD_ADDED = 1;
+        private static final byte CHILD_REMOVED = 2;
+        private static final byte SELF_ADDED = 3;
 
         KeyrefState(SchemaIdentityConstraint constraint, Event e, SchemaType st) {
             super(constraint, e, st);
         }
 
-        void addKeyValues(final Set values, boolean child)
+        void addKeyValues(final KeyTable values, boolean child)
         {
             /** If the key values are added by children, then if two or
              more children add the same value, the value dissapears from the map
              but if is added by the element in question directly then it will
              be present in the map regardless of what children contained */
-            for (Iterator it = values.iterator(); it.hasNext();)
+            for (int i = 0; i < values.size(); i++)
             {
-                Object key = it.next();
-                Object value = _keyValues.get(key);
-                if (value == null)
-                    _keyValues.put(key, child ? CHILD_ADDED : SELF_ADDED);
-                else if (value == CHILD_ADDED)
+                int j = _keyValues.add(values.key(i));
+                if (j >= 0)
+                {
+                    _keyValues.setMark(j, child ? CHILD_ADDED : SELF_ADDED);
+                    continue;
+                }
+
+                j = -1 - j;
+                byte value = _keyValues.mark(j);
+                if (value == CHILD_ADDED)
                 {
                     if (child)
-                        _keyValues.put(key, CHILD_REMOVED);
+                        _keyValues.setMark(j, CHILD_REMOVED);
                     else
-                        _keyValues.put(key, SELF_ADDED);
+                        _keyValues.setMark(j, SELF_ADDED);
                 }
                 else if (value == CHILD_REMOVED)
                 {
                     if (!child)
-                        _keyValues.put(key, SELF_ADDED);
+                        _keyValues.setMark(j, SELF_ADDED);
                 }
             }
         }
 
         private boolean hasKeyValue(Object key)
         {
-            Object value = _keyValues.get(key);
-            return value != null && value != CHILD_REMOVED;
+            int i = _keyValues.find(key);
+            return i >= 0 && _keyValues.mark(i) != CHILD_REMOVED;
         }
 
         void remove(Event e) {
@@ -366,12 +382,13 @@ public class IdentityConstraint {
 
 
             // validate all values have been seen
-            for (Iterator it = _values.iterator() ; it.hasNext() ; )
+            for (int i = 0 ; i < _values.size() ; i++)
             {
-
-                XmlObjectList fields = (XmlObjectList)it.next();
-                if (fields.unfilled() < 0 && ! hasKeyValue(fields))
+                Object key = _values.key(i);
+                if (! hasKeyValue(key))
                 {
+                    Object fields = _values.value(i) != null ? _values.value(i) : key;
+
                     // KHK: cvc-identity-constraint.4.3 ?
                 	emitError(e, XmlErrorCodes.IDENTITY_CONSTRAINT_VALID$KEYREF_KEY_NOT_FOUND,
                 	    new Object[] {fields, QNameHelper.pretty(_constraint.getName())});
@@ -528,7 +545,7 @@ public class IdentityConstraint {
 
     public class IdState extends ConstraintState
     {
-        Set _values = new LinkedHashSet();
+        KeyTable _values = new KeyTable();
 
         IdState() { }
 
@@ -567,10 +584,8 @@ public class IdentityConstraint {
 
                 xmlValue.set(o, 0);
 
-                if (_values.contains(xmlValue))
+                if (_values.add(xmlValue.key()) < 0)
                     emitError(e, XmlErrorCodes.ID_VALID$DUPLICATE, new Object[] { value });
-                else
-                    _values.add(xmlValue);
             }
         }
 
@@ -616,7 +631,7 @@ public class IdentityConstraint {
                     XmlObjectList xmlValue = new XmlObjectList(1);
                     XmlIDREF idref = (XmlIDREF)l.get(i);
                     xmlValue.set(idref, 0);
-                    _values.add(xmlValue);
+                    _values.add(xmlValue.key());
                 }
             }
             else if (XmlIDREF.type.isAssignableFrom(st))
@@ -628,7 +643,7 @@ public class IdentityConstraint {
                 if (idref == null) return;
 
                 xmlValue.set(idref, 0);
-                _values.add(xmlValue);
+                _values.add(xmlValue.key());
             }
         }
 
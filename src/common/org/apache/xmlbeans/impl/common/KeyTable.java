@@ -0,0 +1,185 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.common;
+
+/**
+ * A set of identity constraint keys, as made by {@link XmlObjectList#key},
+ * for IdentityConstraint.
+ * <p/>
+ * Keys are kept in the order they were added, in one array, along with an
+ * open addressed index of their positions by hash, so a table costs a few
+ * words per key rather than a hash map entry.  Each key can carry a small
+ * mark and a value.
+ */
+final class KeyTable
+{
+    private Object[] _keys = new Object[8];
+    private int[] _hashes = new int[8];
+    private byte[] _marks;
+    private Object[] _values;
+    private int _size;
+
+    // Positions of the keys plus one, by hash; zero for a free slot
+    private int[] _index = new int[16];
+
+    int size()
+    {
+        return _size;
+    }
+
+    Object key(int i)
+    {
+        return _keys[i];
+    }
+
+    /**
+     * Returns the position of the given key, or -1 if it is not in the
+     * table.
+     */
+    int find(Object key)
+    {
+        int hash = hash(key);
+        int mask = _index.length - 1;
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask)
+        {
+            int i = _index[slot] - 1;
+
+            if (i < 0)
+                return -1;
+
+            if (_hashes[i] == hash && _keys[i].equals(key))
+                return i;
+        }
+    }
+
+    boolean contains(Object key)
+    {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Adds the given key, if it is not in the table.  Returns its position,
+     * or -1 - the position of the key already in the table.
+     */
+    int add(Object key)
+    {
+        int hash = hash(key);
+        int mask = _index.length - 1;
+        int slot;
+
+        for (slot = hash & mask; _index[slot] != 0; slot = (slot + 1) & mask)
+        {
+            int i = _index[slot] - 1;
+
+            if (_hashes[i] == hash && _keys[i].equals(key))
+                return -1 - i;
+        }
+
+        if (_size == _keys.length)
+            grow();
+
+        _keys[_size] = key;
+        _hashes[_size] = hash;
+        _index[slot] = ++_size;
+
+        // Keep the index at most half full
+
+        if (_size * 2 > _index.length)
+            rehash();
+
+        return _size - 1;
+    }
+
+    byte mark(int i)
+    {
+        return _marks == null ? 0 : _marks[i];
+    }
+
+    void setMark(int i, byte mark)
+    {
+        if (_marks == null)
+            _marks = new byte[_keys.length];
+
+        _marks[i] = mark;
+    }
+
+    Object value(int i)
+    {
+        return _values == null ? null : _values[i];
+    }
+
+    void setValue(int i, Object value)
+    {
+        if (_values == null)
+            _values = new Object[_keys.length];
+
+        _values[i] = value;
+    }
+
+    private void grow()
+    {
+        int capacity = _keys.length * 2;
+
+        Object[] keys = new Object[capacity];
+        System.arraycopy(_keys, 0, keys, 0, _size);
+        _keys = keys;
+
+        int[] hashes = new int[capacity];
+        System.arraycopy(_hashes, 0, hashes, 0, _size);
+        _hashes = hashes;
+
+        if (_marks != null)
+        {
+            byte[] marks = new byte[capacity];
+            System.arraycopy(_marks, 0, marks, 0, _size);
+            _marks = marks;
+        }
+
+        if (_values != null)
+        {
+            Object[] values = new Object[capacity];
+            System.arraycopy(_values, 0, values, 0, _size);
+            _values = values;
+        }
+    }
+
+    private void rehash()
+    {
+        int[] index = new int[_index.length * 2];
+        int mask = index.length - 1;
+
+        for (int i = 0; i < _size; i++)
+        {
+            int slot = _hashes[i] & mask;
+
+            while (index[slot] != 0)
+                slot = (slot + 1) & mask;
+
+            index[slot] = i + 1;
+        }
+
+        _index = index;
+    }
+
+    private static int hash(Object key)
+    {
+        int h = key.hashCode();
+
+        // Spread the high bits, which the mask would otherwise ignore
+        return h ^ (h >>> 16);
+    }
+}
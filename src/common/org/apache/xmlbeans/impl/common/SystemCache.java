@@ -95,15 +95,26 @@ public class SystemCache
 
     private ThreadLocal tl_saxLoaders = new ThreadLocal();
 
+    /**
+     * Hands a cached sax loader over to the caller, or returns null.  The
+     * caller owns the loader until it gives it back with
+     * {@link #setSaxLoader}, so a loader is never used by two parses at
+     * once, even when a parse starts another one on the same thread.
+     * <p/>
+     * This implementation keeps one loader per thread.
+     */
     public Object getSaxLoader()
     {
         SoftReference s = (SoftReference) tl_saxLoaders.get();
         if (s == null)
             return null;
-        else
-            return s.get();
+        tl_saxLoaders.remove();
+        return s.get();
     }
 
+    /**
+     * Gives back a sax loader after a parse, for the next one to reuse.
+     */
     public void setSaxLoader(Object saxLoader)
     {
         tl_saxLoaders.set(new SoftReference(saxLoader));
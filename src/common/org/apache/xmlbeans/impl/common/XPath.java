@@ -1105,6 +1105,7 @@ public class XPath
     {
         _selector = selector;
         _sawDeepDot = sawDeepDot;
+        _descendantNames = descendantNames( selector );
     }
 
     public boolean sawDeepDot ( )
@@ -1112,8 +1113,45 @@ public class XPath
         return _sawDeepDot;
     }
 
+    /**
+     * If this path is a single chain of element names, only the first of
+     * which is reached with //, as in <code>.//a</code> or
+     * <code>$this//a/b</code>, returns those names; otherwise returns null.
+     * Such a path selects exactly the elements with the last name whose
+     * ancestors carry the names before it, so it can be answered from an
+     * index of elements by name rather than by walking the tree.
+     */
+    public QName[] getDescendantElementNames ( )
+    {
+        return _descendantNames == null ? null : (QName[]) _descendantNames.clone();
+    }
+
+    private static QName[] descendantNames ( Selector selector )
+    {
+        if (selector._paths.length != 1)
+            return null;
+
+        Step first = selector._paths[ 0 ];
+
+        if (first._name == null || !first._deep)
+            return null;
+
+        ArrayList names = new ArrayList();
+
+        for ( Step s = first ; s._name != null ; s = s._next )
+        {
+            if (s._attr || s.isWild() || (s._deep && s != first))
+                return null;
+
+            names.add( s._name );
+        }
+
+        return (QName[]) names.toArray( new QName[ names.size() ] );
+    }
+
     public static final String _NS_BOUNDARY = "$xmlbeans!ns_boundary";
     public static final String _DEFAULT_ELT_NS = "$xmlbeans!default_uri";
     private final Selector _selector;
     private final boolean  _sawDeepDot;
+    private final QName[]  _descendantNames;
 }
\ No newline at end of file
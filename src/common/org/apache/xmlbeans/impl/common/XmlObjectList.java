@@ -15,6 +15,11 @@
 
 package org.apache.xmlbeans.impl.common;
 
+import java.math.BigDecimal;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.SchemaType;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.SimpleValue;
 
@@ -102,6 +107,81 @@ public class XmlObjectList
         return h;
     }
     
+    /**
+     * Returns a key for the values of this list, for the tables of keys
+     * kept during validation.  The key of a list equals the key of any other
+     * list of equal values.  It is a string when every value has a
+     * canonical form, and this list itself otherwise.  Returns null if a
+     * value is missing, as such a list equals no other list.
+     */
+    public Object key()
+    {
+        if (_objects.length == 1)
+        {
+            if (_objects[0] == null)
+                return null;
+
+            String s = canonical((SimpleValue)_objects[0]);
+            return s == null ? (Object)this : s;
+        }
+
+        StringBuffer sb = new StringBuffer();
+
+        for (int i = 0 ; i < _objects.length ; i++)
+        {
+            if (_objects[i] == null)
+                return null;
+
+            String s = canonical((SimpleValue)_objects[i]);
+
+            if (s == null)
+                return this;
+
+            // U+FFFE and U+FFFF are not XML characters, so they cannot be
+            // part of a value
+
+            sb.append(s).append('\uFFFF');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the canonical form of a value, or null if it has none here.
+     * Values of different primitive types are never equal, so all but
+     * strings are tagged with their type.
+     */
+    private static String canonical(SimpleValue v)
+    {
+        SchemaType t = v.instanceType();
+
+        if (t == null || t.getSimpleVariety() != SchemaType.ATOMIC || t.getPrimitiveType() == null)
+            return null;
+
+        switch (t.getPrimitiveType().getBuiltinTypeCode())
+        {
+            case SchemaType.BTC_STRING:
+                return v.getStringValue();
+
+            case SchemaType.BTC_ANY_URI:
+                return "\uFFFEu" + v.getStringValue();
+
+            case SchemaType.BTC_BOOLEAN:
+                return v.getBooleanValue() ? "\uFFFEt" : "\uFFFEf";
+
+            case SchemaType.BTC_DECIMAL:
+                BigDecimal d = v.getBigDecimalValue();
+                return "\uFFFEd" + (d.signum() == 0 ? "0" : d.stripTrailingZeros().toPlainString());
+
+            case SchemaType.BTC_QNAME:
+                QName q = v.getQNameValue();
+                return "\uFFFEq" + q.getLocalPart() + '\uFFFE' + q.getNamespaceURI();
+
+            default:
+                return null;
+        }
+    }
+
     private static String prettytrim(String s)
     {
         int end;
@@ -0,0 +1,310 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.store;
+
+import java.util.HashMap;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.QNameSet;
+
+/**
+ * An index of the child elements of one container by name, so that the
+ * n-th child element with a given name is found in constant time.  It is
+ * used by the indexed accessors of generated classes (find_element_user,
+ * insert_element_user, remove_element and friends), which would otherwise
+ * walk the children from the first one on every call, making a loop over a
+ * large repeating element quadratic.
+ * <p/>
+ * The index is built on the first indexed access which has to walk past
+ * more than a few children, and is kept on the container.  It is patched
+ * when a single child is appended or removed, and dropped on any other
+ * change to the children of the container or to the name of one of them;
+ * changes anywhere else in the document leave it alone.
+ * <p/>
+ * Indexes are built and patched with the locale entered, except in frozen
+ * documents, where readers do not take the lock.  Nothing patches the index
+ * of a frozen document, and the index is published through a volatile
+ * field, so readers racing to build one each see a complete index.
+ */
+final class ChildIndex
+{
+    /**
+     * Number of children walked before an index is built.
+     */
+    static final int WALK_LIMIT = 32;
+
+    private static final class Entries
+    {
+        Entries(int capacity)
+        {
+            _nodes = new Xobj[Math.max(capacity, 4)];
+        }
+
+        void add(Xobj x)
+        {
+            if (_count == _nodes.length)
+            {
+                Xobj[] nodes = new Xobj[_count * 2];
+                System.arraycopy(_nodes, 0, nodes, 0, _count);
+                _nodes = nodes;
+            }
+
+            _nodes[_count++] = x;
+        }
+
+        void remove(Xobj x)
+        {
+            // Children are most often removed from the end
+
+            for (int i = _count - 1; i >= 0; i--)
+            {
+                if (_nodes[i] == x)
+                {
+                    System.arraycopy(_nodes, i + 1, _nodes, i, _count - i - 1);
+                    _nodes[--_count] = null;
+                    return;
+                }
+            }
+
+            assert false: "Child not indexed";
+        }
+
+        Xobj[] _nodes;
+        int _count;
+    }
+
+    private static final class SetEntries
+    {
+        SetEntries(QNameSet set, Entries entries)
+        {
+            _set = set;
+            _entries = entries;
+        }
+
+        final QNameSet _set;
+        final Entries _entries;
+    }
+
+    private final HashMap _byName = new HashMap();
+    private final Entries _elements;
+
+    // The entries of the last QNameSet asked for; sets are generated by
+    // the compiler, so they are compared by identity
+
+    private volatile SetEntries _setEntries;
+
+    private ChildIndex(Xobj parent, int count)
+    {
+        _elements = new Entries(count);
+
+        for (Xobj x = parent._firstChild; x != null; x = x._nextSibling)
+        {
+            if (x.isElem())
+                add(x);
+        }
+    }
+
+    private void add(Xobj x)
+    {
+        _elements.add(x);
+
+        Entries entries = (Entries) _byName.get(x._name);
+
+        if (entries == null)
+            _byName.put(x._name, entries = new Entries(4));
+
+        entries.add(x);
+    }
+
+    private Entries entries(QName name, QNameSet set)
+    {
+        if (set == null)
+            return (Entries) _byName.get(name);
+
+        SetEntries setEntries = _setEntries;
+
+        if (setEntries == null || setEntries._set != set)
+        {
+            Entries entries = new Entries(_elements._count);
+
+            for (int i = 0; i < _elements._count; i++)
+            {
+                if (set.contains(_elements._nodes[i]._name))
+                    entries.add(_elements._nodes[i]);
+            }
+
+            _setEntries = setEntries = new SetEntries(set, entries);
+        }
+
+        return setEntries._entries;
+    }
+
+    /**
+     * Called when a child is appended to the container of this index.
+     */
+    void appended(Xobj x)
+    {
+        if (x.isElem())
+        {
+            add(x);
+            _setEntries = null;
+        }
+    }
+
+    /**
+     * Called when a child is about to be removed from the container of
+     * this index.
+     */
+    void removed(Xobj x)
+    {
+        if (x.isElem())
+        {
+            _elements.remove(x);
+            ((Entries) _byName.get(x._name)).remove(x);
+            _setEntries = null;
+        }
+    }
+
+    static boolean matches(Xobj x, QName name, QNameSet set)
+    {
+        return x.isElem() && (set == null ? x._name.equals(name) : set.contains(x._name));
+    }
+
+    /**
+     * Returns the index of the given container, building it if the
+     * container has more than WALK_LIMIT children.  Returns null for a
+     * container with few children, which are quicker to walk.
+     */
+    private static ChildIndex forContainer(Xobj parent)
+    {
+        ChildIndex index = parent._childIndex;
+
+        if (index != null)
+            return index;
+
+        int count = 0;
+
+        for (Xobj x = parent._firstChild; x != null; x = x._nextSibling)
+        {
+            if (++count > WALK_LIMIT)
+            {
+                index = new ChildIndex(parent, count);
+                parent._childIndex = index;
+                return index;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the n-th child element of the given container with the given
+     * name, or with a name in the given set, or null if there are not that
+     * many.
+     */
+    static Xobj nth(Xobj parent, QName name, QNameSet set, int n)
+    {
+        assert n >= 0;
+        assert (name == null) != (set == null);
+
+        ChildIndex index = parent._childIndex;
+
+        if (index == null)
+        {
+            int steps = 0;
+            int i = n;
+
+            for (Xobj x = parent._firstChild; x != null; x = x._nextSibling)
+            {
+                if (matches(x, name, set) && --i < 0)
+                    return x;
+
+                if (++steps == WALK_LIMIT)
+                {
+                    index = forContainer(parent);
+                    break;
+                }
+            }
+
+            if (index == null)
+                return null;
+        }
+
+        Entries entries = index.entries(name, set);
+
+        return entries == null || n >= entries._count ? null : entries._nodes[n];
+    }
+
+    /**
+     * Returns the number of child elements of the given container with the
+     * given name, or with a name in the given set.
+     */
+    static int count(Xobj parent, QName name, QNameSet set)
+    {
+        assert (name == null) != (set == null);
+
+        ChildIndex index = forContainer(parent);
+
+        if (index == null)
+        {
+            int n = 0;
+
+            for (Xobj x = parent._firstChild; x != null; x = x._nextSibling)
+            {
+                if (matches(x, name, set))
+                    n++;
+            }
+
+            return n;
+        }
+
+        Entries entries = index.entries(name, set);
+
+        return entries == null ? 0 : entries._count;
+    }
+
+    /**
+     * Adds the users of the child elements of the given container with the
+     * given name, or with a name in the given set, to the list.
+     */
+    static void fill(Xobj parent, QName name, QNameSet set, List fillMeUp)
+    {
+        assert (name == null) != (set == null);
+
+        ChildIndex index = forContainer(parent);
+
+        if (index == null)
+        {
+            for (Xobj x = parent._firstChild; x != null; x = x._nextSibling)
+            {
+                if (matches(x, name, set))
+                    fillMeUp.add(x.getUser());
+            }
+
+            return;
+        }
+
+        Entries entries = index.entries(name, set);
+
+        if (entries == null)
+            return;
+
+        for (int i = 0; i < entries._count; i++)
+            fillMeUp.add(entries._nodes[i].getUser());
+    }
+}
@@ -1672,6 +1672,8 @@ final class Cur
         if (cch <= 0)
             return;
 
+        _locale.checkNotFrozen();
+
         _locale.notifyChange();
 
         // The only situation where I need to ensure occupancy is when I'm at the end of a node.
@@ -1718,6 +1720,14 @@ final class Cur
         if (cchMove < 0)
             cchMove = cchRight();
 
+        if (cchMove > 0)
+        {
+            _locale.checkNotFrozen();
+
+            if (to != null)
+                to._locale.checkNotFrozen();
+        }
+
         // If we're instructed to move 0 characters, then return the null triple.
 
         if (cchMove == 0)
@@ -1830,6 +1840,10 @@ final class Cur
 
         // TODO - should assert that is an attr is being moved, it is ok there
 
+        _locale.checkNotFrozen();
+
+        if (to != null)
+            to._locale.checkNotFrozen();
 
         // Record the node to move and skip this cur past it.  This moves this cur to be after
         // the move to move/remove -- it's final resting place.  The only piece of information
@@ -1882,6 +1896,11 @@ final class Cur
         assert to == null || !x.contains( to );
         assert to == null || !to.isRoot();
 
+        x._locale.checkNotFrozen();
+
+        if (to != null)
+            to._locale.checkNotFrozen();
+
         if (to != null)
         {
             // Before I go much further, I want to make sure that if "to" is in the container of
@@ -1905,6 +1924,17 @@ final class Cur
             }
         }
 
+        // Take the elements being moved out of the live DOM element lists.  They are added back
+        // once the node is in its new place.
+
+        Locale fromLocale = x._locale;
+        long fromVersion = fromLocale._versionSansText;
+
+        Locale toLocale = to == null ? null : to._locale;
+        long toVersion = to == null ? 0 : toLocale._versionSansText;
+
+        DomImpl.elementsRemoving( x );
+
         // Notify the locale(s) about the change I am about to make.
 
         x._locale.notifyChange();
@@ -2003,6 +2033,8 @@ final class Cur
 
             to.moveTo( x );
         }
+
+        DomImpl.elementsMoved( x, fromLocale, fromVersion, toLocale, toVersion );
     }
 
     void moveNodeContents ( Cur to, boolean moveAttrs )
@@ -2022,6 +2054,11 @@ final class Cur
 
         assert to == null || !to.isRoot();
 
+        x._locale.checkNotFrozen();
+
+        if (to != null)
+            to._locale.checkNotFrozen();
+
         // Collect a bit of information about the contents to move first.  Note that the collection
         // of this info must not cause a vacant value to become occupied.
 
@@ -2497,6 +2534,8 @@ final class Cur
         if (user != null && user.get_schema_type() == type)
             return;
 
+        _locale.checkNotFrozen();
+
         if (isRoot())
         {
             _xobj.setStableType( type );
@@ -2575,6 +2614,8 @@ final class Cur
         if (user != null && user.get_schema_type() == type && name.equals(getName()))
             return;
 
+        _locale.checkNotFrozen();
+
         if (isRoot())
         {
             // If this is the root node, we can't set its name, so the whole
@@ -30,6 +30,7 @@ import org.apache.xmlbeans.SchemaType;
 import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.XmlPath;
 import org.apache.xmlbeans.XmlDocumentProperties;
 
 import org.apache.xmlbeans.impl.common.XMLChar;
@@ -543,6 +544,9 @@ public final class Cursor implements XmlCursor, ChangeListener {
     public String _xmlText(XmlOptions options) {
         assert isValid();
 
+        if (Saver.ParallelSaver.isSelected(options))
+            return Saver.ParallelSaver.saveToString(_cur, options);
+
         return new TextSaver(_cur, options, null).saveToString();
     }
 
@@ -576,6 +580,18 @@ public final class Cursor implements XmlCursor, ChangeListener {
         if (os == null)
             throw new IllegalArgumentException("Null OutputStream specified");
 
+        if (options != null && options.hasOption( XmlOptions.SAVE_OPTIMIZE_FOR_SPEED ))
+        {
+            Saver.ByteSaver.save(_cur, os, options); //ignore all other options but the encoding
+            return;
+        }
+
+        if (Saver.ParallelSaver.isSelected(options))
+        {
+            Saver.ParallelSaver.save(_cur, os, options);
+            return;
+        }
+
         InputStream is = _newInputStream(options);
 
         try {
@@ -604,6 +620,12 @@ public final class Cursor implements XmlCursor, ChangeListener {
             return;
         }
 
+        if (Saver.ParallelSaver.isSelected(options))
+        {
+            Saver.ParallelSaver.save(_cur, w, options, null);
+            return;
+        }
+
         Reader r = _newReader(options);
 
         try {
@@ -904,6 +926,16 @@ public final class Cursor implements XmlCursor, ChangeListener {
         _cur._locale.registerForChange(this);
     }
 
+    public void _selectCompiledPath(XmlPath path) {
+        _clearSelections();
+
+        assert _pathEngine == null;
+
+        _pathEngine = ((Path) path.getCompiledPath()).execute(_cur, path.getOptions());
+
+        _cur._locale.registerForChange(this);
+    }
+
     public boolean _hasNextSelection() {
         int curr = _currentSelection;
         push();
@@ -1875,16 +1907,28 @@ public final class Cursor implements XmlCursor, ChangeListener {
             }
         }
 
+        Locale first = locale;
+        Locale second = otherLocale;
+
+        if (GlobalLock.compare(first, second) > 0) {
+            first = otherLocale;
+            second = locale;
+        }
+
         boolean acquired = false;
 
         try {
-            GlobalLock.acquire();
-            acquired = true;
+            if (GlobalLock.compare(first, second) == 0) {
+                GlobalLock.acquire();
+                acquired = true;
+            }
 
-            synchronized (locale) {
-                synchronized (otherLocale) {
-                    GlobalLock.release();
-                    acquired = false;
+            synchronized (first) {
+                synchronized (second) {
+                    if (acquired) {
+                        GlobalLock.release();
+                        acquired = false;
+                    }
 
                     return twoLocaleOp(other, op, arg);
                 }
@@ -2638,6 +2682,24 @@ public final class Cursor implements XmlCursor, ChangeListener {
         }
     }
 
+    public void selectCompiledPath(XmlPath path) {
+        if (preCheck()) {
+            _cur._locale.enter();
+            try {
+                _selectCompiledPath(path);
+            } finally {
+                _cur._locale.exit();
+            }
+        } else synchronized (_cur._locale) {
+            _cur._locale.enter();
+            try {
+                _selectCompiledPath(path);
+            } finally {
+                _cur._locale.exit();
+            }
+        }
+    }
+
     public boolean hasNextSelection() {
         if (preCheck()) {
             _cur._locale.enter();
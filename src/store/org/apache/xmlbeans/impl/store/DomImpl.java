@@ -57,6 +57,8 @@ import javax.xml.stream.XMLStreamReader;
 
 import java.io.PrintStream;
 
+import java.lang.ref.SoftReference;
+
 import java.util.ArrayList;
 import java.util.Iterator;
 
@@ -452,15 +454,39 @@ final class DomImpl
         Cur.moveNode( (Xobj) n, null );
     }
 
-    private abstract static class ElementsNodeList implements NodeList
-    {
+    /**
+     * The base of the lists returned by getElementsByTagName and
+     * getElementsByTagNameNS.  A list finds its elements with a walk of the
+     * tree on first use, and is kept in step with the tree from then on for
+     * as long as its locale has it registered: Cur.moveNode patches the
+     * registered lists when an element is inserted or removed, so changes
+     * interleaved with calls to item() do not walk the tree again.  Any
+     * other change which can affect the elements, like a rename, a load or
+     * a move of the contents of a node, makes a list walk the tree again on
+     * its next use.  Changes to text leave the lists alone.
+     * <p/>
+     * The place of an inserted or removed element in a list is found by a
+     * search starting from the last place patched or read with item(), as
+     * handlers mostly work on one part of a document at a time.
+     * <p/>
+     * A locale keeps up to MAX_LIVE_LISTS lists registered, and hands out a
+     * registered list again when asked for the same elements.  Lists are
+     * built and patched with the locale entered.
+     */
+    abstract static class ElementsNodeList implements NodeList
+    {
+        /**
+         * Number of lists a locale keeps up to date.
+         */
+        static final int MAX_LIVE_LISTS = 8;
+
         ElementsNodeList ( Dom root )
         {
             assert root.nodeType() == DOCUMENT || root.nodeType() == ELEMENT;
 
             _root = root;
             _locale = _root.locale();
-            _version = 0;
+            _version = -1;
         }
 
         public int getLength ( )
@@ -474,22 +500,39 @@ final class DomImpl
         {
             ensureElements();
 
-            return i < 0 || i >= _elements.size() ? (Node) null : (Node) _elements.get( i );
+            if (i < 0 || i >= _elements.size())
+                return null;
+
+            _hint = i;
+
+            return (Node) _elements.get( i );
         }
         
         private void ensureElements ( )
         {
-            if (_version == _locale.version())
+            Locale l = _root.locale();
+
+            if (_locale == l && _version == l._versionSansText)
                 return;
 
-            _version = _locale.version();
+            if (l.noSync())         { l.enter(); try { buildElements( l ); } finally { l.exit(); } }
+            else synchronized ( l ) { l.enter(); try { buildElements( l ); } finally { l.exit(); } }
+        }
 
+        private void buildElements ( Locale l )
+        {
             _elements = new ArrayList();
 
-            Locale l = _locale;
+            addElements( _root );
+
+            Cur c = _root.tempCur();
+            _rootXobj = c._xobj;
+            c.release();
+
+            _locale = l;
+            _version = l._versionSansText;
 
-            if (l.noSync())         { l.enter(); try { addElements( _root ); } finally { l.exit(); } }
-            else synchronized ( l ) { l.enter(); try { addElements( _root ); } finally { l.exit(); } }
+            register( l, this );
         }
 
         private void addElements ( Dom node )
@@ -508,10 +551,337 @@ final class DomImpl
 
         protected abstract boolean match ( Dom element );
 
+        /**
+         * Returns true if the given list is for the same root and names.
+         */
+        protected boolean sameElements ( ElementsNodeList list )
+        {
+            return list.getClass() == getClass() && list._root == _root;
+        }
+
+        private boolean isCurrent ( Locale l )
+        {
+            return _locale == l && _version == l._versionSansText && _rootXobj._locale == l;
+        }
+
+        /**
+         * Returns true if x is inside the subtree of the root of this list.
+         */
+        private boolean isUnderRoot ( Xobj x )
+        {
+            for ( Xobj y = x._parent ; y != null ; y = y._parent )
+                if (y == _rootXobj)
+                    return true;
+
+            return false;
+        }
+
+        /**
+         * Returns the position of the first element of this list which is
+         * not before x in document order.
+         */
+        private int lowerBound ( Xobj x )
+        {
+            int size = _elements.size();
+
+            // Elements are most often added or removed at either end
+
+            if (size == 0 || compareOrder( (Xobj) _elements.get( size - 1 ), x ) < 0)
+                return size;
+
+            if (compareOrder( (Xobj) _elements.get( 0 ), x ) >= 0)
+                return 0;
+
+            // Element lo is before x and element hi is not.  Changes are mostly made near the
+            // last one, or near the last item read, so first close in from there.  Comparing
+            // elements near x is cheaper than comparing ones far from it.
+
+            int lo = 0;
+            int hi = size - 1;
+
+            if (_hint > lo && _hint < hi)
+            {
+                if (compareOrder( (Xobj) _elements.get( _hint ), x ) < 0)
+                {
+                    lo = _hint;
+
+                    for ( int step = 1 ; lo + step < hi ; step *= 2 )
+                    {
+                        if (compareOrder( (Xobj) _elements.get( lo + step ), x ) >= 0)
+                        {
+                            hi = lo + step;
+                            break;
+                        }
+
+                        lo += step;
+                    }
+                }
+                else
+                {
+                    hi = _hint;
+
+                    for ( int step = 1 ; hi - step > lo ; step *= 2 )
+                    {
+                        if (compareOrder( (Xobj) _elements.get( hi - step ), x ) < 0)
+                        {
+                            lo = hi - step;
+                            break;
+                        }
+
+                        hi -= step;
+                    }
+                }
+            }
+
+            while ( hi - lo > 1 )
+            {
+                int mid = (lo + hi) >>> 1;
+
+                if (compareOrder( (Xobj) _elements.get( mid ), x ) < 0)
+                    lo = mid;
+                else
+                    hi = mid;
+            }
+
+            return hi;
+        }
+
+        private void removed ( Xobj x )
+        {
+            int first = _hint = lowerBound( x );
+            int last = first;
+
+            while ( last < _elements.size() && isAncestorOrSelf( x, (Xobj) _elements.get( last ) ) )
+                last++;
+
+            if (last > first)
+                _elements.subList( first, last ).clear();
+        }
+
+        private void inserted ( Xobj x )
+        {
+            ArrayList matches = null;
+
+            for ( Xobj y = x ; y != null ; y = y.walk( x, true ) )
+            {
+                if (y.isElem() && match( (Dom) y ))
+                {
+                    if (matches == null)
+                        matches = new ArrayList();
+
+                    matches.add( y );
+                }
+            }
+
+            if (matches != null)
+                _elements.addAll( _hint = lowerBound( x ), matches );
+        }
+
         private Dom       _root;
+        private Xobj      _rootXobj;
         private Locale    _locale;
         private long      _version;
         private ArrayList _elements;
+        private int       _hint;
+    }
+
+    private static boolean isAncestorOrSelf ( Xobj a, Xobj x )
+    {
+        for ( ; x != null ; x = x._parent )
+            if (x == a)
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Compares the positions of two nodes of the same tree in document
+     * order, a node coming before the nodes inside it.
+     */
+    private static int compareOrder ( Xobj a, Xobj b )
+    {
+        if (a == b)
+            return 0;
+
+        int da = 0;
+
+        for ( Xobj x = a._parent ; x != null ; x = x._parent )
+        {
+            if (x == b)
+                return 1;
+
+            da++;
+        }
+
+        int db = 0;
+
+        for ( Xobj x = b._parent ; x != null ; x = x._parent )
+        {
+            if (x == a)
+                return -1;
+
+            db++;
+        }
+
+        while ( da > db ) { da--; a = a._parent; }
+        while ( db > da ) { db--; b = b._parent; }
+
+        while ( a._parent != b._parent )
+        {
+            a = a._parent;
+            b = b._parent;
+        }
+
+        // Look for b on both sides of a at once, so the cost is the distance between them or
+        // to the nearer end of the children, whichever is less
+
+        for ( Xobj next = a._nextSibling, prev = a._prevSibling ; ; )
+        {
+            if (next == null || prev == b)
+                return 1;
+
+            if (prev == null || next == b)
+                return -1;
+
+            next = next._nextSibling;
+            prev = prev._prevSibling;
+        }
+    }
+
+    /**
+     * Returns the registered list selecting the same elements as the given
+     * one, or the given one if none is registered.
+     */
+    private static NodeList liveElementsNodeList ( ElementsNodeList list )
+    {
+        ArrayList lists = list._locale._elementsNodeLists;
+
+        if (lists != null)
+        {
+            for ( int i = lists.size() - 1 ; i >= 0 ; i-- )
+            {
+                ElementsNodeList live = (ElementsNodeList) ((SoftReference) lists.get( i )).get();
+
+                if (live != null && live.sameElements( list ))
+                    return live;
+            }
+        }
+
+        return list;
+    }
+
+    private static void register ( Locale l, ElementsNodeList list )
+    {
+        ArrayList lists = l._elementsNodeLists;
+
+        if (lists == null)
+            l._elementsNodeLists = lists = new ArrayList();
+
+        for ( int i = lists.size() - 1 ; i >= 0 ; i-- )
+        {
+            Object live = ((SoftReference) lists.get( i )).get();
+
+            if (live == list)
+                return;
+
+            if (live == null)
+                lists.remove( i );
+        }
+
+        if (lists.size() >= ElementsNodeList.MAX_LIVE_LISTS)
+            lists.remove( 0 );
+
+        lists.add( new SoftReference( list ) );
+    }
+
+    /**
+     * Called by Cur.moveNode before the node x is moved or removed, to take
+     * the elements in it out of the up to date lists of its locale.
+     */
+    static void elementsRemoving ( Xobj x )
+    {
+        Locale l = x._locale;
+        ArrayList lists = l._elementsNodeLists;
+
+        if (lists == null || !x.isElem())
+            return;
+
+        for ( int i = 0 ; i < lists.size() ; i++ )
+        {
+            ElementsNodeList list = (ElementsNodeList) ((SoftReference) lists.get( i )).get();
+
+            if (list != null && list.isCurrent( l ) && list.isUnderRoot( x ))
+            {
+                try
+                {
+                    list.removed( x );
+                }
+                catch ( RuntimeException e )
+                {
+                    drop( lists, i--, list );
+                }
+            }
+        }
+    }
+
+    /**
+     * Called by Cur.moveNode once the node x has been moved, or removed if
+     * to is null, with the versions the locales had before the move.  Adds
+     * the elements in x to the lists of the destination, and marks the
+     * lists which were up to date before the move as up to date again.
+     * The lists which were not are dropped.
+     */
+    static void elementsMoved ( Xobj x, Locale from, long fromVersion, Locale to, long toVersion )
+    {
+        if (from != to)
+            elementsMoved( from, fromVersion, null );
+
+        if (to != null)
+            elementsMoved( to, toVersion, x.isElem() ? x : null );
+    }
+
+    private static void elementsMoved ( Locale l, long version, Xobj inserted )
+    {
+        ArrayList lists = l._elementsNodeLists;
+
+        if (lists == null)
+            return;
+
+        for ( int i = lists.size() - 1 ; i >= 0 ; i-- )
+        {
+            ElementsNodeList list = (ElementsNodeList) ((SoftReference) lists.get( i )).get();
+
+            if (list == null || list._locale != l || list._version != version || list._rootXobj._locale != l)
+            {
+                lists.remove( i );
+                continue;
+            }
+
+            if (inserted != null && list.isUnderRoot( inserted ))
+            {
+                try
+                {
+                    list.inserted( inserted );
+                }
+                catch ( RuntimeException e )
+                {
+                    drop( lists, i, list );
+                    continue;
+                }
+            }
+
+            list._version = l._versionSansText;
+        }
+    }
+
+    /**
+     * Drops a list which could not be patched, so the mutation which
+     * changed it goes on, and the list walks the tree again when next read.
+     */
+    private static void drop ( ArrayList lists, int i, ElementsNodeList list )
+    {
+        lists.remove( i );
+        list._version = -1;
     }
 
     private static class ElementsByTagNameNodeList extends ElementsNodeList
@@ -528,6 +898,11 @@ final class DomImpl
             return _name.equals( "*" ) ? true : _node_getNodeName( element ).equals( _name );
         }
 
+        protected boolean sameElements ( ElementsNodeList list )
+        {
+            return super.sameElements( list ) && ((ElementsByTagNameNodeList) list)._name.equals( _name );
+        }
+
         private String _name;
     }
     
@@ -543,11 +918,24 @@ final class DomImpl
 
         protected boolean match ( Dom element )
         {
-            if (!(_uri.equals( "*" ) ? true : _node_getNamespaceURI( element ).equals( _uri )))
-                return false;
+            if (!_uri.equals( "*" ))
+            {
+                String uri = _node_getNamespaceURI( element );
+
+                if (!_uri.equals( uri == null ? "" : uri ))
+                    return false;
+            }
+
+            // DOM Level 1 elements have no local name, and only match "*"
+            return _local.equals( "*" ) ? true : _local.equals( _node_getLocalName( element ) );
+        }
 
-            return _local.equals( "*" ) ? true : _node_getLocalName( element ).equals( _local );
-           }
+        protected boolean sameElements ( ElementsNodeList list )
+        {
+            return super.sameElements( list ) &&
+                ((ElementsByTagNameNSNodeList) list)._uri.equals( _uri ) &&
+                ((ElementsByTagNameNSNodeList) list)._local.equals( _local );
+        }
 
         private String _uri;
         private String _local;
@@ -972,7 +1360,7 @@ final class DomImpl
     
     public static NodeList document_getElementsByTagName ( Dom d, String name )
     {
-        return new ElementsByTagNameNodeList( d, name );
+        return liveElementsNodeList( new ElementsByTagNameNodeList( d, name ) );
     }
 
     //////////////////////////////////////////////////////////////////////////////////////
@@ -989,7 +1377,7 @@ final class DomImpl
     
     public static NodeList document_getElementsByTagNameNS ( Dom d, String uri, String local )
     {
-        return new ElementsByTagNameNSNodeList( d, uri, local );
+        return liveElementsNodeList( new ElementsByTagNameNSNodeList( d, uri, local ) );
     }
 
     //////////////////////////////////////////////////////////////////////////////////////
@@ -2835,7 +3223,7 @@ final class DomImpl
     }
     public static NodeList element_getElementsByTagName ( Dom e, String name )
     {
-        return new ElementsByTagNameNodeList( e, name );
+        return liveElementsNodeList( new ElementsByTagNameNodeList( e, name ) );
     }
 
     //////////////////////////////////////////////////////////////////////////////////////
@@ -2852,7 +3240,7 @@ final class DomImpl
     
     public static NodeList element_getElementsByTagNameNS ( Dom e, String uri, String local )
     {
-        return new ElementsByTagNameNSNodeList( e, uri, local );
+        return liveElementsNodeList( new ElementsByTagNameNSNodeList( e, uri, local ) );
     }
     
     //////////////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,186 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.store;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.QNameSet;
+import org.apache.xmlbeans.SimpleValue;
+
+/**
+ * The bulk accessors of Xobj: the users, or the int, long or double values,
+ * of all the child elements of a container with a given name.
+ * <p/>
+ * The values of elements nobody has asked for the user of are read straight
+ * from the store when their text is a plain number, so no user is created
+ * for them.  An element is read from its text only when the text is all it
+ * has: no attributes (xsi:nil, xsi:type), no children and no empty content
+ * (where a default value applies).  Everything else, including any text
+ * which is not a plain number such as INF or a value out of range, is left
+ * to the user, so the values and the exceptions are the same as those of
+ * the typed getters.  Text is not read when the locale validates on set.
+ */
+final class ElementValues
+{
+    private ElementValues()
+    {
+    }
+
+    static void fillUsers(Xobj parent, QName name, QNameSet set, Object[] fillMeUp)
+    {
+        int i = 0;
+
+        for (Xobj x = parent._firstChild; x != null; x = x._nextSibling)
+        {
+            if (ChildIndex.matches(x, name, set))
+                fillMeUp[i++] = x.getUser();
+        }
+
+        assert i == fillMeUp.length;
+    }
+
+    static int[] ints(Xobj parent, QName name, QNameSet set)
+    {
+        int[] result = new int[ChildIndex.count(parent, name, set)];
+        int i = 0;
+
+        for (Xobj x = parent._firstChild; x != null; x = x._nextSibling)
+        {
+            if (!ChildIndex.matches(x, name, set))
+                continue;
+
+            // At most 18 characters always fit a long; out of range ints
+            // are left to the user to report
+
+            String text = plainNumber(x, false);
+            long v = text != null && text.length() <= 18 ? Long.parseLong(text) : 0;
+
+            if (text != null && text.length() <= 18 && v == (int) v)
+                result[i++] = (int) v;
+            else
+                result[i++] = ((SimpleValue) x.getUser()).getIntValue();
+        }
+
+        return result;
+    }
+
+    static long[] longs(Xobj parent, QName name, QNameSet set)
+    {
+        long[] result = new long[ChildIndex.count(parent, name, set)];
+        int i = 0;
+
+        for (Xobj x = parent._firstChild; x != null; x = x._nextSibling)
+        {
+            if (!ChildIndex.matches(x, name, set))
+                continue;
+
+            String text = plainNumber(x, false);
+
+            if (text != null && text.length() <= 18)
+                result[i++] = Long.parseLong(text);
+            else
+                result[i++] = ((SimpleValue) x.getUser()).getLongValue();
+        }
+
+        return result;
+    }
+
+    static double[] doubles(Xobj parent, QName name, QNameSet set)
+    {
+        double[] result = new double[ChildIndex.count(parent, name, set)];
+        int i = 0;
+
+        for (Xobj x = parent._firstChild; x != null; x = x._nextSibling)
+        {
+            if (!ChildIndex.matches(x, name, set))
+                continue;
+
+            String text = plainNumber(x, true);
+
+            if (text != null)
+                result[i++] = Double.parseDouble(text);
+            else
+                result[i++] = ((SimpleValue) x.getUser()).getDoubleValue();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the whitespace collapsed text of the given element if its
+     * value can be read from it, and it is a plain number: an optional
+     * sign, digits and, if fractions are allowed, a fraction and an
+     * exponent.  A leading plus sign is dropped.  Returns null otherwise.
+     */
+    private static String plainNumber(Xobj x, boolean fraction)
+    {
+        if (x._user != null || x._firstChild != null || x._cchValue == 0 ||
+            x._locale._validateOnSet)
+        {
+            return null;
+        }
+
+        String text = x.getValueAsString(Locale.WS_COLLAPSE);
+        int n = text.length();
+        int i = 0;
+
+        if (i < n && (text.charAt(i) == '+' || text.charAt(i) == '-'))
+            i++;
+
+        int digits = skipDigits(text, i);
+
+        if (digits == i)
+            return null;
+
+        i = digits;
+
+        if (fraction)
+        {
+            if (i < n && text.charAt(i) == '.')
+            {
+                i = skipDigits(text, i + 1);
+            }
+
+            if (i < n && (text.charAt(i) == 'e' || text.charAt(i) == 'E'))
+            {
+                i++;
+
+                if (i < n && (text.charAt(i) == '+' || text.charAt(i) == '-'))
+                    i++;
+
+                digits = skipDigits(text, i);
+
+                if (digits == i)
+                    return null;
+
+                i = digits;
+            }
+        }
+
+        if (i != n)
+            return null;
+
+        return text.charAt(0) == '+' ? text.substring(1) : text;
+    }
+
+    private static int skipDigits(String text, int i)
+    {
+        while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9')
+            i++;
+
+        return i;
+    }
+}
@@ -28,8 +28,10 @@ import org.xml.sax.XMLReader;
 import org.xml.sax.SAXException;
 import org.xml.sax.DTDHandler;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.Reference;
@@ -62,6 +64,7 @@ import org.apache.xmlbeans.impl.common.QNameHelper;
 import org.apache.xmlbeans.impl.common.XmlLocale;
 import org.apache.xmlbeans.impl.common.ResolverUtil;
 import org.apache.xmlbeans.impl.common.SystemCache;
+import org.apache.xmlbeans.SystemProperties;
 
 import org.apache.xmlbeans.impl.store.Saaj.SaajCallback;
 
@@ -88,7 +91,6 @@ import org.apache.xmlbeans.SchemaType;
 import org.apache.xmlbeans.SchemaTypeLoader;
 import org.apache.xmlbeans.XmlTokenSource;
 import org.apache.xmlbeans.QNameSet;
-import org.apache.xmlbeans.QNameCache;
 import org.apache.xmlbeans.XmlError;
 import org.apache.xmlbeans.XmlRuntimeException;
 import org.apache.xmlbeans.XmlDocumentProperties;
@@ -158,7 +160,7 @@ public final class Locale
         // Lazy create this (loading up a locale should use the thread locale one)
         // same goes for the qname factory .. use thread local for hte most part when loading
         
-        _qnameFactory = new DefaultQNameFactory(); //new LocalDocumentQNameFactory();
+        _qnameFactory = QNameTable.forTypeLoader(stl);
 
         _locations = new Locations(this);
 
@@ -272,6 +274,7 @@ public final class Locale
         if (optionType != null)
         {
             c.setType(optionType);
+            freezeIfReadOnly(c, options);
             return;
         }
 
@@ -360,6 +363,14 @@ public final class Locale
             else if (type.isAttributeType())
                 verifyAttributeType(c, type.getAttributeTypeAttributeName());
         }
+
+        freezeIfReadOnly(c, options);
+    }
+
+    private static void freezeIfReadOnly(Cur c, XmlOptions options)
+    {
+        if (options.hasOption(XmlOptions.LOAD_READ_ONLY))
+            c._locale.freeze(c._xobj);
     }
 
     private static boolean namespacesSame(QName n1, QName n2)
@@ -705,8 +716,7 @@ public final class Locale
 
         try
         {
-            Cur c = getSaxLoader(options).load(this, new InputSource(r),
-                options);
+            Cur c = loadInputSource(new InputSource(r), options);
 
             autoTypeDocument(c, type, options);
 
@@ -897,13 +907,17 @@ public final class Locale
         for (int a = 0; a < n; a++)
         {
             String prefix = xsr.getNamespacePrefix(a);
+            String uri = xsr.getNamespaceURI(a);
+
+            // xmlns='' comes back as a null URI
+
+            if (uri == null)
+                uri = "";
 
             if (prefix == null || prefix.length() == 0)
-                context.attr("xmlns", _xmlnsUri, null,
-                    xsr.getNamespaceURI(a));
+                context.attr("xmlns", _xmlnsUri, null, uri);
             else
-                context.attr(prefix, _xmlnsUri, "xmlns",
-                    xsr.getNamespaceURI(a));
+                context.attr(prefix, _xmlnsUri, "xmlns", uri);
         }
 
     }
@@ -1083,17 +1097,42 @@ public final class Locale
         return c;
     }
 
-    private Cur loadXMLStreamReader(XMLStreamReader xsr, XmlOptions options)
+    Cur loadXMLStreamReader(XMLStreamReader xsr, XmlOptions options)
         throws XMLStreamException
     {
         options = XmlOptions.maskNull(options);
 
+        LoadContext context = new Cur.CurLoadContext(this, options);
+
+        try
+        {
+            return loadXMLStreamReader(xsr, context, options);
+        }
+        catch (XMLStreamException e)
+        {
+            context.abort();
+
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            context.abort();
+
+            throw e;
+        }
+    }
+
+    private Cur loadXMLStreamReader(XMLStreamReader xsr, LoadContext context,
+        XmlOptions options)
+        throws XMLStreamException
+    {
         boolean lineNums = options.hasOption(XmlOptions.LOAD_LINE_NUMBERS);
+        boolean cdataBookmarks =
+            options.hasOption(XmlOptions.LOAD_SAVE_CDATA_BOOKMARKS);
 
         String encoding = null, version = null;
         boolean standAlone = false;
 
-        LoadContext context = new Cur.CurLoadContext(this, options);
         int depth = 0;
 
         events:
@@ -1128,7 +1167,8 @@ public final class Locale
             case XMLStreamReader.START_ELEMENT:
                 {
                     depth++;
-                    context.startElement(xsr.getName());
+                    context.startElement(makeQName(xsr.getNamespaceURI(),
+                        xsr.getLocalName(), xsr.getPrefix()));
 
                     if (lineNums)
                         lineNumber(xsr, context);
@@ -1156,6 +1196,9 @@ public final class Locale
                     context.text(xsr.getTextCharacters(), xsr.getTextStart(),
                         xsr.getTextLength());
 
+                    if (cdataBookmarks && eventType == XMLStreamReader.CDATA)
+                        context.bookmarkLastNonAttr(CDataBookmark.CDATA_BOOKMARK);
+
                     if (lineNums)
                         lineNumber(xsr, context);
 
@@ -1202,8 +1245,20 @@ public final class Locale
                     break;
                 }
 
-            case XMLStreamReader.SPACE:
             case XMLStreamReader.DTD:
+                {
+                    String[] doctype = StaxLoader.doctype(xsr.getText());
+
+                    if (doctype != null)
+                    {
+                        context.startDTD(doctype[0], doctype[1], doctype[2]);
+                        context.endDTD();
+                    }
+
+                    break;
+                }
+
+            case XMLStreamReader.SPACE:
                 break;
 
             default :
@@ -1269,8 +1324,7 @@ public final class Locale
         XmlOptions options)
         throws XmlException, IOException
     {
-        Cur c = getSaxLoader(options).load(this, new InputSource(is),
-            options);
+        Cur c = loadInputSource(new InputSource(is), options);
 
         autoTypeDocument(c, type, options);
 
@@ -1322,8 +1376,7 @@ public final class Locale
         XmlOptions options)
         throws XmlException, IOException
     {
-        Cur c = getSaxLoader(options).load(this, new InputSource(reader),
-            options);
+        Cur c = loadInputSource(new InputSource(reader), options);
 
         autoTypeDocument(c, type, options);
 
@@ -1610,14 +1663,7 @@ public final class Locale
         if (qname == null)
             qname = "";
 
-        int i = qname.indexOf(':');
-
-        return i < 0
-            ?
-            _qnameFactory.getQName(uri, qname)
-            :
-            _qnameFactory.getQName(uri, qname.substring(i + 1),
-                qname.substring(0, i));
+        return _qnameFactory.getQualifiedQName(uri, qname);
     }
 
     static private class DocProps
@@ -1704,6 +1750,74 @@ public final class Locale
         _locations.notifyChange();
     }
 
+    /**
+     * Freezes this locale once the document at the given root has been
+     * loaded.  All the text of the document is packed into a single char
+     * array, and every user of the document is created and told to cache
+     * its value.  Once frozen, reading text no longer caches it as strings
+     * in the nodes, so that reading the document never has to write to it.
+     */
+    void freeze(Xobj root)
+    {
+        assert root.isRoot();
+
+        packText(root);
+
+        _readOnly = true;
+
+        for (Xobj x = root; x != null; x = x.walk(root, true))
+        {
+            if (x.isUserNode())
+                x.getUser().freeze_value();
+        }
+    }
+
+    /**
+     * Copies the text of the tree at the given root into one char array
+     * sized to fit, dropping the unused tails of the load buffers and the
+     * strings cached while loading.
+     */
+    private static void packText(Xobj root)
+    {
+        long cchTotal = 0;
+
+        for (Xobj x = root; x != null; x = x.walk(root, true))
+            cchTotal += x._cchValue + x._cchAfter;
+
+        if (cchTotal == 0 || cchTotal > Integer.MAX_VALUE)
+            return;
+
+        char[] text = new char[(int) cchTotal];
+        int off = 0;
+
+        for (Xobj x = root; x != null; x = x.walk(root, true))
+        {
+            if (x._cchValue > 0)
+            {
+                CharUtil.getChars(text, off, x._srcValue, x._offValue, x._cchValue);
+                x._srcValue = text;
+                x._offValue = off;
+                off += x._cchValue;
+            }
+
+            if (x._cchAfter > 0)
+            {
+                CharUtil.getChars(text, off, x._srcAfter, x._offAfter, x._cchAfter);
+                x._srcAfter = text;
+                x._offAfter = off;
+                off += x._cchAfter;
+            }
+        }
+
+        assert off == text.length;
+    }
+
+    void checkNotFrozen()
+    {
+        if (_readOnly)
+            throw new IllegalStateException("Cannot modify a frozen document");
+    }
+
     //
     // Cursor helpers
     //
@@ -1911,6 +2025,174 @@ public final class Locale
         return scrubBuffer;
     }
 
+    /**
+     * The characters of a value handed to a type store user by fetch_chars:
+     * a range of the text of the store when it is already canonical for the
+     * whitespace rule, otherwise a range of a buffer holding the text with
+     * the rule applied.
+     */
+    static final class CharRange implements CharSequence
+    {
+        void init(int wsr)
+        {
+            _wsr = wsr;
+        }
+
+        CharRange set(Object src, int off, int cch)
+        {
+            if (src instanceof char[] && isCanonical((char[]) src, off, cch))
+            {
+                _chars = (char[]) src;
+                _off = off;
+                _cch = cch;
+
+                return this;
+            }
+
+            char[] chars;
+
+            if (cch <= _buf.length)
+                chars = _buf;
+            else if (cch <= 16384)
+                chars = _buf = new char[16384];
+            else
+                chars = new char[cch];
+
+            CharUtil.getChars(chars, 0, src, off, cch);
+
+            _chars = chars;
+            _off = 0;
+            _cch = canonicalize(chars, cch);
+
+            return this;
+        }
+
+        private boolean isCanonical(char[] chars, int off, int cch)
+        {
+            if (_wsr == WS_PRESERVE || cch == 0)
+                return true;
+
+            if (_wsr == WS_COLLAPSE && (chars[off] == ' ' || chars[off + cch - 1] == ' '))
+                return false;
+
+            for (int i = off; i < off + cch; i++)
+            {
+                char ch = chars[i];
+
+                if (ch == '\n' || ch == '\r' || ch == '\t')
+                    return false;
+
+                if (ch == ' ' && _wsr == WS_COLLAPSE && chars[i + 1] == ' ')
+                    return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Applies the whitespace rule to the first cch chars, in place,
+         * returning the length of the result.
+         */
+        private int canonicalize(char[] chars, int cch)
+        {
+            if (_wsr == WS_PRESERVE)
+                return cch;
+
+            if (_wsr == WS_REPLACE)
+            {
+                for (int i = 0; i < cch; i++)
+                {
+                    char ch = chars[i];
+
+                    if (ch == '\n' || ch == '\r' || ch == '\t')
+                        chars[i] = ' ';
+                }
+
+                return cch;
+            }
+
+            int n = 0;
+            boolean space = false;
+
+            for (int i = 0; i < cch; i++)
+            {
+                char ch = chars[i];
+
+                if (ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t')
+                    space = n > 0;
+                else
+                {
+                    if (space)
+                    {
+                        chars[n++] = ' ';
+                        space = false;
+                    }
+
+                    chars[n++] = ch;
+                }
+            }
+
+            return n;
+        }
+
+        public int length()
+        {
+            return _cch;
+        }
+
+        public char charAt(int index)
+        {
+            if (index < 0 || index >= _cch)
+                throw new IndexOutOfBoundsException();
+
+            return _chars[_off + index];
+        }
+
+        public CharSequence subSequence(int start, int end)
+        {
+            if (start < 0 || end > _cch || start > end)
+                throw new IndexOutOfBoundsException();
+
+            return new String(_chars, _off + start, end - start);
+        }
+
+        public String toString()
+        {
+            return new String(_chars, _off, _cch);
+        }
+
+        private int _wsr;
+
+        private char[] _chars;
+        private int _off;
+        private int _cch;
+
+        private char[] _buf = new char[1024];
+    }
+
+    private static ThreadLocal tl_charRange =
+        new ThreadLocal()
+        {
+            protected Object initialValue()
+            {
+                return new SoftReference(new CharRange());
+            }
+        };
+
+    static CharRange getCharRange(int wsr)
+    {
+        SoftReference softRef = (SoftReference) tl_charRange.get();
+        CharRange charRange = (CharRange) (softRef).get();
+        if (charRange == null)
+        {
+            charRange = new CharRange();
+            tl_charRange.set(new SoftReference(charRange));
+        }
+
+        charRange.init(wsr);
+        return charRange;
+    }
+
     static boolean pushToContainer(Cur c)
     {
         c.push();
@@ -2043,28 +2325,6 @@ public final class Locale
         return x;
     }
 
-    int count(Xobj parent, QName name, QNameSet set)
-    {
-        int n = 0;
-
-        for (Xobj x = findNthChildElem(parent, name, set, 0);
-             x != null; x = x._nextSibling)
-        {
-            if (x.isElem())
-            {
-                if (set == null)
-                {
-                    if (x._name.equals(name))
-                        n++;
-                }
-                else if (set.contains(x._name))
-                    n++;
-            }
-        }
-
-        return n;
-    }
-
     static boolean toChild(Cur c, QName name, int n)
     {
         if (n >= 0 && pushToContainer(c))
@@ -3030,6 +3290,27 @@ public final class Locale
         }
     }
 
+    /**
+     * Loads a document from a stream or a reader with the loader selected
+     * by the options: a StAX one if asked for, the SAX one otherwise.
+     */
+    private Cur loadInputSource(InputSource is, XmlOptions options)
+        throws XmlException, IOException
+    {
+        if (StaxLoader.isSelected(options))
+            return StaxLoader.load(this, is, options);
+
+        return getSaxLoader(options).load(this, is, options);
+    }
+
+    /**
+     * Returns a loader for the given options.  Unless the options supply
+     * their own XMLReader, loaders are reused: a loader is taken from the
+     * SystemCache and given back after a successful load, so a thread
+     * parsing many small documents configures a parser only once.  Set the
+     * "xmlbean.saxloader.reuse" system property to false to create a new
+     * loader for every load.
+     */
     private static SaxLoader getSaxLoader(XmlOptions options) throws XmlException
     {
         options = XmlOptions.maskNull(options);
@@ -3050,31 +3331,116 @@ public final class Locale
         XMLReader xr = (XMLReader) options.get(
             XmlOptions.LOAD_USE_XMLREADER);
 
-        if (xr == null) {
+        if (xr != null)
+        {
+            SaxLoader sl = new XmlReaderSaxLoader(xr, null);
+
+            // I've noticed that most XMLReaders don't like a null EntityResolver...
+
+            if (er != null)
+                xr.setEntityResolver(er);
+
+            return sl;
+        }
+
+        XmlOptionsBean optionsBean = new XmlOptionsBean(options);
+        String config = XmlReaderSaxLoader.configuration(optionsBean);
+
+        XmlReaderSaxLoader sl = null;
+
+        if (_reuseSaxLoaders)
+        {
+            Object cached = SystemCache.get().getSaxLoader();
+
+            // A loader configured for other options is dropped
+
+            if (cached instanceof XmlReaderSaxLoader &&
+                config.equals(((XmlReaderSaxLoader) cached)._config))
+            {
+                sl = (XmlReaderSaxLoader) cached;
+                _saxLoadersReused.incrementAndGet();
+            }
+        }
+
+        if (sl == null)
+        {
             try {
-                xr = SAXHelper.newXMLReader(new XmlOptionsBean(options));
+                xr = SAXHelper.newXMLReader(optionsBean);
             } catch(Exception e) {
                 throw new XmlException("Problem creating XMLReader", e);
-            } 
+            }
+
+            sl = new XmlReaderSaxLoader(xr, _reuseSaxLoaders ? config : null);
+            _saxLoadersCreated.incrementAndGet();
         }
 
-        SaxLoader sl = new XmlReaderSaxLoader(xr);
+        sl.setEntityResolver(er == null ? SAXHelper.IGNORING_ENTITY_RESOLVER : er);
 
-        // I've noticed that most XMLReaders don't like a null EntityResolver...
+        return sl;
+    }
 
-        if (er != null)
-            xr.setEntityResolver(er);
+    /**
+     * The number of sax loaders, each with its own XMLReader, created to
+     * load documents.
+     */
+    public static long getSaxLoadersCreated()
+    {
+        return _saxLoadersCreated.get();
+    }
 
-        return sl;
+    /**
+     * The number of loads which reused a sax loader instead of creating
+     * one.
+     */
+    public static long getSaxLoadersReused()
+    {
+        return _saxLoadersReused.get();
     }
 
+    private static final boolean _reuseSaxLoaders =
+        !"false".equals(SystemProperties.getProperty("xmlbean.saxloader.reuse"));
+
+    private static final AtomicLong _saxLoadersCreated = new AtomicLong();
+    private static final AtomicLong _saxLoadersReused = new AtomicLong();
+
     private static class XmlReaderSaxLoader
         extends SaxLoader
     {
-        XmlReaderSaxLoader(XMLReader xr)
+        /**
+         * @param config the reader configuration, as returned by
+         * {@link #configuration}, if the loader is to be given back to the
+         * SystemCache after each load; null otherwise
+         */
+        XmlReaderSaxLoader(XMLReader xr, String config)
         {
             super(xr, null);
+
+            _config = config;
         }
+
+        /**
+         * Describes the options that go into creating an XMLReader; a
+         * reader is only reused for loads with the same description.
+         */
+        static String configuration(XmlOptionsBean options)
+        {
+            return options.isLoadDTDGrammar() + "," +
+                options.isLoadExternalDTD() + "," +
+                options.getEntityExpansionLimit();
+        }
+
+        void postLoad(Cur c)
+        {
+            super.postLoad(c);
+
+            // Only a loader which loaded successfully is reused; after a
+            // failure the state of the reader is unknown.
+
+            if (_config != null)
+                SystemCache.get().setSaxLoader(this);
+        }
+
+        private final String _config;
     }
 
     private static abstract class SaxHandler
@@ -3108,6 +3474,13 @@ public final class Locale
                 _startLocator != null &&
                 options.hasOption(XmlOptions.LOAD_SAVE_CDATA_BOOKMARKS);
 
+            // A reused loader must not see the state of its last load
+
+            _insideCDATA = false;
+            _entityBytes = 0;
+            _insideEntity = 0;
+            _entityBytesLimit = DEFAULT_ENTITY_BYTES_LIMIT;
+
             if (options.hasOption(XmlOptions.LOAD_ENTITY_BYTES_LIMIT))
                 _entityBytesLimit = ((Integer)(options.get(XmlOptions.LOAD_ENTITY_BYTES_LIMIT))).intValue();
         }
@@ -3356,7 +3729,8 @@ public final class Locale
         private boolean _wantCdataBookmarks;
         private Locator _startLocator;
         private boolean _insideCDATA = false;
-        private int _entityBytesLimit = 10240;
+        private static final int DEFAULT_ENTITY_BYTES_LIMIT = 10240;
+        private int _entityBytesLimit = DEFAULT_ENTITY_BYTES_LIMIT;
         private int _entityBytes = 0;
         private int _insideEntity = 0;
     }
@@ -3479,7 +3853,7 @@ public final class Locale
     private Dom load(InputSource is, XmlOptions options)
         throws XmlException, IOException
     {
-        return getSaxLoader(options).load(this, is, options).getDom();
+        return loadInputSource(is, options).getDom();
     }
 
     public Dom load(Reader r)
@@ -3637,78 +4011,6 @@ public final class Locale
             parentName);
     }
 
-
-    private static final class DefaultQNameFactory
-        implements QNameFactory
-    {
-        private QNameCache _cache = XmlBeans.getQNameCache();
-
-        public QName getQName(String uri, String local)
-        {
-            return _cache.getName(uri, local, "");
-        }
-
-        public QName getQName(String uri, String local, String prefix)
-        {
-            return _cache.getName(uri, local, prefix);
-        }
-
-        public QName getQName(char[] uriSrc, int uriPos, int uriCch,
-            char[] localSrc, int localPos, int localCch)
-        {
-            return
-                _cache.getName(new String(uriSrc, uriPos, uriCch),
-                    new String(localSrc, localPos, localCch),
-                    "");
-        }
-
-        public QName getQName(char[] uriSrc, int uriPos, int uriCch,
-            char[] localSrc, int localPos, int localCch,
-            char[] prefixSrc, int prefixPos, int prefixCch)
-        {
-            return
-                _cache.getName(new String(uriSrc, uriPos, uriCch),
-                    new String(localSrc, localPos, localCch),
-                    new String(prefixSrc, prefixPos, prefixCch));
-        }
-    }
-
-
-    private static final class LocalDocumentQNameFactory
-        implements QNameFactory
-    {
-        private QNameCache _cache = new QNameCache( 32 );
-
-        public QName getQName(String uri, String local)
-        {
-            return _cache.getName(uri, local, "");
-        }
-
-        public QName getQName(String uri, String local, String prefix)
-        {
-            return _cache.getName(uri, local, prefix);
-        }
-
-        public QName getQName(char[] uriSrc, int uriPos, int uriCch,
-            char[] localSrc, int localPos, int localCch)
-        {
-            return
-                _cache.getName(new String(uriSrc, uriPos, uriCch),
-                    new String(localSrc, localPos, localCch),
-                    "");
-        }
-
-        public QName getQName(char[] uriSrc, int uriPos, int uriCch,
-            char[] localSrc, int localPos, int localCch,
-            char[] prefixSrc, int prefixPos, int prefixCch)
-        {
-            return
-                _cache.getName(new String(uriSrc, uriPos, uriCch),
-                    new String(localSrc, localPos, localCch),
-                    new String(prefixSrc, prefixPos, prefixCch));
-        }
-    }
-
     //
     //
     //
@@ -3744,10 +4046,16 @@ public final class Locale
 
     Dom _ownerDoc;
 
-    QNameFactory _qnameFactory;
+    QNameTable _qnameFactory;
 
     boolean _validateOnSet;
 
+    boolean _readOnly;
+
+    NameIndex _nameIndex;
+
+    ArrayList _elementsNodeLists;
+
     int _posTemp;
 
     nthCache _nthCache_A = new nthCache();
@@ -0,0 +1,180 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import javax.xml.namespace.QName;
+
+/**
+ * An index of the elements of a document by name, used to answer paths
+ * like <code>$this//a/b</code> without walking the tree.
+ * <p/>
+ * For every element name, the index keeps the elements with that name in
+ * document order.  Every element is also numbered in document order, and
+ * the number of the first element following its subtree is kept with it,
+ * so the elements with a given name inside a given element are found with
+ * two binary searches.
+ * <p/>
+ * A locale keeps the index of one document at a time, and the index is
+ * only good for the version of the locale it was built at: it is built
+ * again on the first use after a change.  The index is only used with the
+ * locale synchronized, like the rest of the store.
+ */
+final class NameIndex
+{
+    private final Xobj _root;
+    private final long _version;
+
+    private final HashMap _names = new HashMap();
+    private final IdentityHashMap _spans = new IdentityHashMap();
+
+    static final class Names
+    {
+        void add(Xobj x, int number)
+        {
+            if (_count == _nodes.length)
+            {
+                Xobj[] nodes = new Xobj[_count * 2];
+                System.arraycopy(_nodes, 0, nodes, 0, _count);
+                _nodes = nodes;
+
+                int[] numbers = new int[_count * 2];
+                System.arraycopy(_numbers, 0, numbers, 0, _count);
+                _numbers = numbers;
+            }
+
+            _nodes[_count] = x;
+            _numbers[_count] = number;
+            _count++;
+        }
+
+        /**
+         * Returns the position of the first element numbered at least n.
+         */
+        int lowerBound(int n)
+        {
+            int lo = 0;
+            int hi = _count;
+
+            while (lo < hi)
+            {
+                int mid = (lo + hi) >>> 1;
+
+                if (_numbers[mid] < n)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+
+            return lo;
+        }
+
+        Xobj get(int i)
+        {
+            return _nodes[i];
+        }
+
+        int count()
+        {
+            return _count;
+        }
+
+        private Xobj[] _nodes = new Xobj[4];
+        private int[] _numbers = new int[4];
+        private int _count;
+    }
+
+    /**
+     * Returns the index of the document containing the given container,
+     * building it if the locale does not hold an up to date one.  Returns
+     * null if the container is not part of a document.
+     */
+    static NameIndex forContainer(Xobj container)
+    {
+        Xobj root = container;
+
+        while (root._parent != null)
+            root = root._parent;
+
+        if (!root.isRoot())
+            return null;
+
+        Locale l = root._locale;
+        NameIndex index = l._nameIndex;
+
+        if (index == null || index._root != root || index._version != l._versionSansText)
+            l._nameIndex = index = new NameIndex(root, l._versionSansText);
+
+        return index;
+    }
+
+    private NameIndex(Xobj root, long version)
+    {
+        _root = root;
+        _version = version;
+
+        ArrayList open = new ArrayList();
+        int number = 0;
+
+        for (Xobj x = root; x != null; x = x.walk(root, true))
+        {
+            if (!x.isElem())
+                continue;
+
+            // close the elements whose subtree ends before this one
+
+            while (!open.isEmpty() && open.get(open.size() - 1) != x._parent)
+                ((int[]) _spans.get(open.remove(open.size() - 1)))[1] = number;
+
+            _spans.put(x, new int[] { number, -1 });
+            open.add(x);
+
+            Names names = (Names) _names.get(x._name);
+
+            if (names == null)
+                _names.put(x._name, names = new Names());
+
+            names.add(x, number);
+
+            number++;
+        }
+
+        while (!open.isEmpty())
+            ((int[]) _spans.get(open.remove(open.size() - 1)))[1] = number;
+    }
+
+    /**
+     * Returns the elements with the given name, or null if there are none.
+     */
+    Names names(QName name)
+    {
+        return (Names) _names.get(name);
+    }
+
+    /**
+     * Returns the number of the given element and the number of the first
+     * element following its subtree.
+     */
+    int[] span(Xobj x)
+    {
+        assert x.isElem() && _spans.containsKey(x);
+
+        return (int[]) _spans.get(x);
+    }
+}
@@ -0,0 +1,433 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.store;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlObjectWriter;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.impl.common.EncodingMap;
+
+/**
+ * The XmlObjectWriter returned by XmlBeans.newObjectWriter().
+ * <p/>
+ * The writer writes the tags of the elements it starts and ends itself, and
+ * keeps the namespaces they declare in a map from prefix to URI.  Each
+ * appended object is saved with that map as XmlOptions.SAVE_IMPLICIT_NAMESPACES,
+ * so the Saver starts with those mappings on its stack: names in those
+ * namespaces use the prefixes in scope, and only namespaces not yet in
+ * scope are declared in the saved object.
+ */
+public final class ObjectWriter implements XmlObjectWriter
+{
+    private final Writer _w;
+    private String _xmlDecl;
+
+    // The options each object is saved with; the user's, plus those set
+    // here.  The scope map in them is replaced, never changed, when the
+    // scope changes.
+
+    private final XmlOptions _saveOptions;
+
+    private final boolean _prettyPrint;
+    private final int _prettyIndent;
+    private final int _prettyOffset;
+
+    private Map _scope;
+
+    // For each open element: its tag name and the scope outside it
+
+    private final ArrayList _openNames = new ArrayList();
+    private final ArrayList _outerScopes = new ArrayList();
+
+    private boolean _written;
+    private boolean _documentElementWritten;
+    private boolean _closed;
+
+    private ObjectWriter ( Writer w, String xmlDecl, XmlOptions options )
+    {
+        _w = w;
+        _xmlDecl = xmlDecl;
+
+        _saveOptions = new XmlOptions( XmlOptions.maskNull( options ) );
+        _saveOptions.put( XmlOptions.SAVE_NO_XML_DECL );
+        _saveOptions.put( XmlOptions.SAVE_OUTER );
+        _saveOptions.remove( XmlOptions.SAVE_INNER );
+        _saveOptions.remove( XmlOptions.SAVE_SYNTHETIC_DOCUMENT_ELEMENT );
+
+        // The fast saver does not know the namespaces in scope
+        _saveOptions.remove( XmlOptions.SAVE_OPTIMIZE_FOR_SPEED );
+
+        // Namespaces implicit in the options are in scope throughout
+
+        Map implicit = (Map) _saveOptions.get( XmlOptions.SAVE_IMPLICIT_NAMESPACES );
+
+        _scope = implicit == null ? Collections.EMPTY_MAP : new HashMap( implicit );
+        _saveOptions.put( XmlOptions.SAVE_IMPLICIT_NAMESPACES, _scope );
+
+        _prettyPrint = _saveOptions.hasOption( XmlOptions.SAVE_PRETTY_PRINT );
+
+        _prettyIndent = _saveOptions.hasOption( XmlOptions.SAVE_PRETTY_PRINT_INDENT )
+            ? ((Integer) _saveOptions.get( XmlOptions.SAVE_PRETTY_PRINT_INDENT )).intValue()
+            : 2;
+
+        _prettyOffset = _saveOptions.hasOption( XmlOptions.SAVE_PRETTY_PRINT_OFFSET )
+            ? ((Integer) _saveOptions.get( XmlOptions.SAVE_PRETTY_PRINT_OFFSET )).intValue()
+            : 0;
+    }
+
+    public static XmlObjectWriter newObjectWriter ( Writer w, XmlOptions options )
+    {
+        if (w == null)
+            throw new IllegalArgumentException( "Null Writer specified" );
+
+        return new ObjectWriter( w, null, options );
+    }
+
+    public static XmlObjectWriter newObjectWriter ( OutputStream os, XmlOptions options )
+    {
+        if (os == null)
+            throw new IllegalArgumentException( "Null OutputStream specified" );
+
+        options = XmlOptions.maskNull( options );
+
+        String encoding = (String) options.get( XmlOptions.CHARACTER_ENCODING );
+
+        if (encoding == null)
+            encoding = "UTF8";
+
+        String ianaEncoding = EncodingMap.getJava2IANAMapping( encoding );
+
+        if (ianaEncoding != null)
+            encoding = ianaEncoding;
+
+        String javaEncoding = EncodingMap.getIANA2JavaMapping( encoding );
+
+        if (javaEncoding == null)
+            throw new IllegalStateException( "Unknown encoding: " + encoding );
+
+        Writer w;
+
+        try
+        {
+            w = new OutputStreamWriter( os, javaEncoding );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new RuntimeException( e );
+        }
+
+        String xmlDecl = options.hasOption( XmlOptions.SAVE_NO_XML_DECL )
+            ? null
+            : "<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>";
+
+        return new ObjectWriter( w, xmlDecl, options );
+    }
+
+    public void startElement ( QName name ) throws IOException
+    {
+        startElement( name, null );
+    }
+
+    public void startElement ( QName name, Map namespaces ) throws IOException
+    {
+        if (name == null)
+            throw new IllegalArgumentException( "Null name specified" );
+
+        startItem( true );
+
+        Map scope = _scope;
+        Map declared = new HashMap();
+
+        if (namespaces != null)
+        {
+            for ( Iterator i = namespaces.entrySet().iterator() ; i.hasNext() ; )
+            {
+                Map.Entry e = (Map.Entry) i.next();
+                declare( declared, (String) e.getKey(), (String) e.getValue() );
+            }
+        }
+
+        // Find or declare a prefix for the name
+
+        String uri = name.getNamespaceURI();
+        String prefix = name.getPrefix();
+
+        if (!uri.equals( lookup( declared, prefix ) ))
+        {
+            String inScope = uri.length() == 0 ? null : prefixFor( declared, uri );
+
+            if (inScope != null)
+                prefix = inScope;
+            else if (uri.length() == 0)
+            {
+                if (declared.containsKey( "" ))
+                    throw new IllegalArgumentException( "No prefix for " + name + " with a default namespace declared" );
+
+                declare( declared, prefix = "", "" );
+            }
+            else
+            {
+                // Do not undo one of the declarations asked for
+
+                if (declared.containsKey( prefix ))
+                    prefix = newPrefix( declared );
+
+                declare( declared, prefix, uri );
+            }
+        }
+
+        if (!declared.isEmpty())
+        {
+            _scope = new HashMap( scope );
+            _scope.putAll( declared );
+            _saveOptions.put( XmlOptions.SAVE_IMPLICIT_NAMESPACES, _scope );
+        }
+
+        String tag = prefix.length() == 0 ? name.getLocalPart() : prefix + ":" + name.getLocalPart();
+
+        _w.write( '<' );
+        _w.write( tag );
+
+        for ( Iterator i = declared.entrySet().iterator() ; i.hasNext() ; )
+        {
+            Map.Entry e = (Map.Entry) i.next();
+            String p = (String) e.getKey();
+
+            _w.write( p.length() == 0 ? " xmlns=\"" : " xmlns:" + p + "=\"" );
+            writeAttrValue( (String) e.getValue() );
+            _w.write( '"' );
+        }
+
+        _w.write( '>' );
+
+        _openNames.add( tag );
+        _outerScopes.add( scope );
+    }
+
+    private void declare ( Map declared, String prefix, String uri )
+    {
+        if (prefix.length() > 0 && uri.length() == 0)
+            throw new IllegalArgumentException( "Cannot map prefix " + prefix + " to no namespace" );
+
+        if (!uri.equals( inScope( prefix ) ))
+            declared.put( prefix, uri );
+    }
+
+    private String inScope ( String prefix )
+    {
+        String uri = (String) _scope.get( prefix );
+
+        return uri == null && prefix.length() == 0 ? "" : uri;
+    }
+
+    private String lookup ( Map declared, String prefix )
+    {
+        return declared.containsKey( prefix ) ? (String) declared.get( prefix ) : inScope( prefix );
+    }
+
+    private String newPrefix ( Map declared )
+    {
+        for ( int i = 1 ; ; i++ )
+        {
+            String prefix = "ns" + i;
+
+            if (!declared.containsKey( prefix ) && !_scope.containsKey( prefix ))
+                return prefix;
+        }
+    }
+
+    /**
+     * Returns a prefix mapped to the given URI by the declarations being
+     * made or the scope, which is not hidden by a declaration, or null.
+     */
+    private String prefixFor ( Map declared, String uri )
+    {
+        for ( Iterator i = declared.entrySet().iterator() ; i.hasNext() ; )
+        {
+            Map.Entry e = (Map.Entry) i.next();
+
+            if (uri.equals( e.getValue() ))
+                return (String) e.getKey();
+        }
+
+        for ( Iterator i = _scope.entrySet().iterator() ; i.hasNext() ; )
+        {
+            Map.Entry e = (Map.Entry) i.next();
+
+            if (uri.equals( e.getValue() ) && !declared.containsKey( e.getKey() ))
+                return (String) e.getKey();
+        }
+
+        return null;
+    }
+
+    public void append ( XmlObject o ) throws IOException
+    {
+        append( null, o );
+    }
+
+    public void append ( QName name, XmlObject o ) throws IOException
+    {
+        if (o == null)
+            throw new IllegalArgumentException( "Null XmlObject specified" );
+
+        // A pretty printed object indents its first line itself
+
+        startItem( false );
+
+        if (_prettyPrint)
+        {
+            _saveOptions.put(
+                XmlOptions.SAVE_PRETTY_PRINT_OFFSET,
+                new Integer( _prettyOffset + _openNames.size() * _prettyIndent ) );
+        }
+
+        if (name != null)
+            _saveOptions.put( XmlOptions.SAVE_SYNTHETIC_DOCUMENT_ELEMENT, name );
+
+        XmlCursor c = o.newCursor();
+
+        try
+        {
+            c.save( _w, _saveOptions );
+        }
+        finally
+        {
+            c.dispose();
+            _saveOptions.remove( XmlOptions.SAVE_SYNTHETIC_DOCUMENT_ELEMENT );
+        }
+    }
+
+    public void endElement ( ) throws IOException
+    {
+        checkClosed();
+
+        if (_openNames.isEmpty())
+            throw new IllegalStateException( "No element to end" );
+
+        int depth = _openNames.size() - 1;
+
+        newLine( depth );
+
+        _w.write( "</" );
+        _w.write( (String) _openNames.remove( depth ) );
+        _w.write( '>' );
+
+        _scope = (Map) _outerScopes.remove( depth );
+        _saveOptions.put( XmlOptions.SAVE_IMPLICIT_NAMESPACES, _scope );
+    }
+
+    public void flush ( ) throws IOException
+    {
+        checkClosed();
+
+        _w.flush();
+    }
+
+    public void close ( ) throws IOException
+    {
+        if (_closed)
+            return;
+
+        while ( !_openNames.isEmpty() )
+            endElement();
+
+        _closed = true;
+
+        _w.close();
+    }
+
+    /**
+     * Called before an element is started or an object appended: checks
+     * there is to be only one document element, and writes what comes
+     * before the item, indenting it if asked to.
+     */
+    private void startItem ( boolean indent ) throws IOException
+    {
+        checkClosed();
+
+        if (_openNames.isEmpty())
+        {
+            if (_documentElementWritten)
+                throw new IllegalStateException( "The document element has already been written" );
+
+            _documentElementWritten = true;
+        }
+
+        if (_xmlDecl != null)
+        {
+            _w.write( _xmlDecl );
+            _w.write( Saver._newLine );
+            _xmlDecl = null;
+        }
+
+        newLine( indent ? _openNames.size() : -1 );
+        _written = true;
+    }
+
+    /**
+     * Starts a new line when pretty printing, and indents it to the given
+     * depth, if not negative.
+     */
+    private void newLine ( int depth ) throws IOException
+    {
+        if (!_prettyPrint)
+            return;
+
+        if (_written)
+            _w.write( Saver._newLine );
+
+        for ( int i = depth < 0 ? 0 : _prettyOffset + depth * _prettyIndent ; i > 0 ; i-- )
+            _w.write( ' ' );
+    }
+
+    private void writeAttrValue ( String value ) throws IOException
+    {
+        for ( int i = 0 ; i < value.length() ; i++ )
+        {
+            char ch = value.charAt( i );
+
+            if (ch == '<')
+                _w.write( "&lt;" );
+            else if (ch == '&')
+                _w.write( "&amp;" );
+            else if (ch == '"')
+                _w.write( "&quot;" );
+            else
+                _w.write( ch );
+        }
+    }
+
+    private void checkClosed ( )
+    {
+        if (_closed)
+            throw new IllegalStateException( "Writer closed" );
+    }
+}
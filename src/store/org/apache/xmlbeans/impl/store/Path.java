@@ -20,9 +20,7 @@ import java.util.*;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.ref.WeakReference;
 import java.math.BigDecimal;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.xmlbeans.impl.common.XPath;
 import org.apache.xmlbeans.impl.common.XPath.XPathCompileException;
@@ -31,6 +29,8 @@ import org.apache.xmlbeans.impl.common.XPath.ExecutionContext;
 import org.apache.xmlbeans.*;
 import org.w3c.dom.Node;
 
+import javax.xml.namespace.QName;
+
 
 // TODO - This class handled query *and* path ... rename it?
 
@@ -49,10 +49,7 @@ public abstract class Path
     private static final int USE_XQRL2002 = 0x08;
     private static final int USE_XDK      = 0x10;
 
-    private static Map _xbeanPathCache = new WeakHashMap();
-    private static Map _xdkPathCache = new WeakHashMap();
-    private static Map _xqrlPathCache = new WeakHashMap();
-    private static Map _xqrl2002PathCache = new WeakHashMap();
+    private static final PathCache _pathCache = new PathCache();
 
     private static Method _xdkCompilePath;
     private static Method _xqrlCompilePath;
@@ -63,7 +60,6 @@ public abstract class Path
     private static boolean _xqrl2002Available = true;
 
     private static String _delIntfName;
-    private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
     static
     {
@@ -140,60 +136,28 @@ public abstract class Path
     static Path getCompiledPath(String pathExpr, int force,
         String currentVar, String delIntfName)
     {
-        Path path = null;
-        WeakReference pathWeakRef = null;
-        Map namespaces = (force & USE_DELEGATE) != 0 ? new HashMap() : null;
-        lock.readLock().lock();
-        try {
-        if ((force & USE_XBEAN) != 0)
-            pathWeakRef = (WeakReference)_xbeanPathCache.get(pathExpr);
-        if (pathWeakRef == null && (force & USE_XQRL) != 0)
-            pathWeakRef = (WeakReference)_xqrlPathCache.get(pathExpr);
-        if (pathWeakRef == null && (force & USE_XDK) != 0)
-            pathWeakRef = (WeakReference)_xdkPathCache.get(pathExpr);
-        if (pathWeakRef == null && (force & USE_XQRL2002) != 0)
-            pathWeakRef = (WeakReference)_xqrl2002PathCache.get(pathExpr);
-
-        if (pathWeakRef!=null)
-            path = (Path)pathWeakRef.get();
+        String cacheIntfName = (force & USE_DELEGATE) != 0 ? delIntfName : null;
+
+        Path path = _pathCache.get(pathExpr, force, currentVar, cacheIntfName);
         if (path != null)
             return path;
-        } finally {
-            lock.readLock().unlock();
-        }
-        lock.writeLock().lock();
-        try {
-        if ((force & USE_XBEAN) != 0) {
-            pathWeakRef = (WeakReference)_xbeanPathCache.get(pathExpr);
-            if (pathWeakRef != null)
-                path = (Path)pathWeakRef.get();
-            if (path==null)
-            path = getCompiledPathXbean(pathExpr, currentVar, namespaces);
-        }
-        if (path == null && (force & USE_XQRL) != 0) {
-            pathWeakRef = (WeakReference)_xqrlPathCache.get(pathExpr);
-            if (pathWeakRef != null)
-                path = (Path)pathWeakRef.get();
-            if (path==null)
-            path = getCompiledPathXqrl(pathExpr, currentVar);
-        }
-        if (path == null && (force & USE_XDK) != 0) {
-            pathWeakRef = (WeakReference)_xdkPathCache.get(pathExpr);
-            if (pathWeakRef != null)
-                path = (Path)pathWeakRef.get();
-            if (path==null)
-            path = getCompiledPathXdk(pathExpr, currentVar);
-        }
-        if (path == null && (force & USE_DELEGATE) != 0) {
+
+        // Compiling is done outside of any lock; if two threads compile the
+        // same path at once, both get the one cached first.
+
+        Map namespaces = (force & USE_DELEGATE) != 0 ? new HashMap() : null;
+
+        if ((force & USE_XBEAN) != 0)
+            path = XbeanPath.create(pathExpr, currentVar, namespaces);
+        if (path == null && (force & USE_XQRL) != 0)
+            path = createXqrlCompiledPath(pathExpr, currentVar);
+        if (path == null && (force & USE_XDK) != 0)
+            path = createXdkCompiledPath(pathExpr, currentVar);
+        if (path == null && (force & USE_DELEGATE) != 0)
             path = getCompiledPathDelegate(pathExpr, currentVar, namespaces, delIntfName);
-        }
-        if (path == null && (force & USE_XQRL2002) != 0) {
-            pathWeakRef = (WeakReference)_xqrl2002PathCache.get(pathExpr);
-            if (pathWeakRef != null)
-                path = (Path)pathWeakRef.get();
-            if (path==null)
-            path = getCompiledPathXqrl2002(pathExpr, currentVar);
-        }
+        if (path == null && (force & USE_XQRL2002) != 0)
+            path = createXqrl2002CompiledPath(pathExpr, currentVar);
+
         if (path == null)
         {
             StringBuffer errMessage = new StringBuffer();
@@ -210,47 +174,8 @@ public abstract class Path
 
             throw new RuntimeException(errMessage.toString() + " FAILED on " + pathExpr);
         }
-        } finally {
-            lock.writeLock().unlock();
-        }
-        return path;
-    }
-
-    static private Path getCompiledPathXdk(String pathExpr, String currentVar)
-    {
-        Path path = createXdkCompiledPath(pathExpr, currentVar);
-        if (path != null)
-            _xdkPathCache.put(path._pathKey, new WeakReference(path));
 
-        return path;
-    }
-
-    static private Path getCompiledPathXqrl(String pathExpr, String currentVar)
-    {
-        Path path = createXqrlCompiledPath(pathExpr, currentVar);
-        if (path != null)
-            _xqrlPathCache.put(path._pathKey, new WeakReference(path));
-
-        return path;
-    }
-
-    static private Path getCompiledPathXqrl2002(String pathExpr, String currentVar)
-    {
-        Path path = createXqrl2002CompiledPath(pathExpr, currentVar);
-        if (path != null)
-            _xqrl2002PathCache.put(path._pathKey, new WeakReference(path));
-
-        return path;
-    }
-
-    static private Path getCompiledPathXbean(String pathExpr,
-        String currentVar, Map namespaces)
-    {
-        Path path = XbeanPath.create(pathExpr, currentVar, namespaces);
-        if (path != null)
-            _xbeanPathCache.put(path._pathKey, new WeakReference(path));
-
-        return path;
+        return _pathCache.put(pathExpr, force, currentVar, cacheIntfName, path);
     }
 
     static private Path getCompiledPathDelegate(String pathExpr, String currentVar, Map namespaces, String delIntfName)
@@ -287,6 +212,21 @@ public abstract class Path
         return getCompiledPath(pathExpr, options)._pathKey;
     }
 
+    public static XmlPath compileXmlPath(String pathExpr, XmlOptions options)
+    {
+        options = options == null ? null : new XmlOptions(options);
+
+        return new XmlPath(pathExpr, options, getCompiledPath(pathExpr, options));
+    }
+
+    /**
+     * Returns the cache of compiled paths, for its statistics.
+     */
+    public static PathCache getPathCache()
+    {
+        return _pathCache;
+    }
+
     //
     // Xbean store specific implementation of compiled path
     //
@@ -311,6 +251,7 @@ public abstract class Path
 
             _currentVar = currentVar;
             _compiledPath = xpath;
+            _descendantNames = xpath.getDescendantElementNames();
         }
 
         PathEngine execute(Cur c, XmlOptions options)
@@ -330,11 +271,25 @@ public abstract class Path
                 int force = USE_DELEGATE | USE_XQRL | USE_XDK;
                 return getCompiledPath(_pathKey, force, _currentVar, delIntfName).execute(c, options);
             }
+
+            // Paths like $this//a/b can be answered from the index of the
+            // elements by name, which read-only documents always use.
+
+            if (_descendantNames != null &&
+                (c._locale._readOnly || options.hasOption(XmlOptions.XPATH_USE_NAME_INDEX)))
+            {
+                NameIndex index = NameIndex.forContainer(c._xobj);
+
+                if (index != null)
+                    return new IndexPathEngine(index, _descendantNames, c);
+            }
+
             return new XbeanPathEngine(_compiledPath, c);
         }
 
         private final String _currentVar;
         private final XPath _compiledPath;
+        private final QName[] _descendantNames;
         public Map namespaces;
     }
 
@@ -574,6 +529,99 @@ public abstract class Path
         private Cur _cur;
     }
 
+    private static final class IndexPathEngine
+        implements PathEngine
+    {
+        IndexPathEngine(NameIndex index, QName[] names, Cur c)
+        {
+            assert c.isContainer();
+
+            _version = c._locale.version();
+            _names = names;
+            _candidates = index.names(names[names.length - 1]);
+
+            if (_candidates == null)
+                return;
+
+            if (c._xobj.isRoot())
+            {
+                _next = 0;
+                _end = _candidates.count();
+                _after = -1;
+            }
+            else
+            {
+                int[] span = index.span(c._xobj);
+
+                _next = _candidates.lowerBound(span[0] + 1);
+                _end = _candidates.lowerBound(span[1]);
+                _after = span[0];
+            }
+
+            _index = index;
+            _cur = c.weakCur(this);
+        }
+
+        /**
+         * Whether the given element, which has the last name of the path
+         * and lies inside the context, has ancestors with the other names
+         * of the path, the farthest of them still inside the context.
+         */
+        private boolean matches(Xobj x)
+        {
+            if (_names.length == 1)
+                return true;
+
+            for (int i = _names.length - 2; i >= 0; i--)
+            {
+                x = x._parent;
+
+                if (!x.isElem() || !x._name.equals(_names[i]))
+                    return false;
+            }
+
+            return _index.span(x)[0] > _after;
+        }
+
+        public boolean next(Cur c)
+        {
+            if (_cur != null && _version != _cur._locale.version())
+                throw new ConcurrentModificationException("Document changed during select");
+
+            while (_cur != null && _next < _end)
+            {
+                Xobj x = _candidates.get(_next++);
+
+                if (matches(x))
+                {
+                    _cur.moveTo(x);
+                    c.addToSelection(_cur);
+                    return true;
+                }
+            }
+
+            release();
+            return false;
+        }
+
+        public void release()
+        {
+            if (_cur != null) {
+                _cur.release();
+                _cur = null;
+            }
+        }
+
+        private final long _version;
+        private final QName[] _names;
+        private final NameIndex.Names _candidates;
+        private NameIndex _index;
+        private int _next;
+        private int _end;
+        private int _after;
+        private Cur _cur;
+    }
+
     private static final class DelegatePathImpl
         extends Path
     {
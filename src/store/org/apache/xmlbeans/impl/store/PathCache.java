@@ -0,0 +1,227 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.store;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.xmlbeans.SystemProperties;
+
+/**
+ * The cache of compiled paths shared by all threads.
+ * <p/>
+ * Compiled paths are immutable, so a path compiled once is executed by any
+ * number of cursors at the same time.  They are held strongly, up to
+ * "xmlbean.xpath.cachesize" of them (512 by default); beyond that the least
+ * recently used one is evicted.  A size of 0 turns caching off.
+ * <p/>
+ * A path is cached under its expression together with everything else that
+ * decides how it compiles: the engines allowed to compile it, the current
+ * node variable and, for the delegated engine, the delegate class.  The
+ * namespace bindings of a path come from its own prolog, so they are part
+ * of the expression.
+ * <p/>
+ * The statistics getters are public so they can be reported; everything
+ * else is for Path only.
+ */
+public final class PathCache
+{
+    private final int _maxSize;
+
+    private final ConcurrentHashMap _paths = new ConcurrentHashMap();
+    private final AtomicLong _clock = new AtomicLong();
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _evictions = new AtomicLong();
+
+    private static final class Key
+    {
+        Key(String pathExpr, int engines, String currentVar, String delIntfName)
+        {
+            _pathExpr = pathExpr;
+            _engines = engines;
+            _currentVar = currentVar;
+            _delIntfName = delIntfName;
+
+            int hash = pathExpr.hashCode() * 31 + engines;
+            hash = hash * 31 + (currentVar == null ? 0 : currentVar.hashCode());
+            _hash = hash * 31 + (delIntfName == null ? 0 : delIntfName.hashCode());
+        }
+
+        public int hashCode()
+        {
+            return _hash;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (o == this)
+                return true;
+
+            if (!(o instanceof Key))
+                return false;
+
+            Key k = (Key) o;
+
+            return _hash == k._hash && _engines == k._engines &&
+                _pathExpr.equals(k._pathExpr) &&
+                (_currentVar == null ? k._currentVar == null : _currentVar.equals(k._currentVar)) &&
+                (_delIntfName == null ? k._delIntfName == null : _delIntfName.equals(k._delIntfName));
+        }
+
+        private final String _pathExpr;
+        private final int _engines;
+        private final String _currentVar;
+        private final String _delIntfName;
+        private final int _hash;
+    }
+
+    private static final class Entry
+    {
+        Entry(Path path, long now)
+        {
+            _path = path;
+            _lastUsed = now;
+        }
+
+        final Path _path;
+        volatile long _lastUsed;
+    }
+
+    PathCache()
+    {
+        this(intProperty("xmlbean.xpath.cachesize", 512));
+    }
+
+    PathCache(int maxSize)
+    {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("Cache size must not be negative");
+
+        _maxSize = maxSize;
+    }
+
+    /**
+     * Returns the path cached for the given expression and compile
+     * settings, or null if it has to be compiled.
+     */
+    Path get(String pathExpr, int engines, String currentVar, String delIntfName)
+    {
+        Entry e = (Entry) _paths.get(new Key(pathExpr, engines, currentVar, delIntfName));
+
+        if (e == null)
+        {
+            _misses.incrementAndGet();
+            return null;
+        }
+
+        e._lastUsed = _clock.incrementAndGet();
+        _hits.incrementAndGet();
+        return e._path;
+    }
+
+    /**
+     * Caches a newly compiled path.  When two threads compile the same path
+     * at once, the first one cached wins and is returned to both.
+     */
+    Path put(String pathExpr, int engines, String currentVar, String delIntfName, Path path)
+    {
+        if (_maxSize == 0)
+            return path;
+
+        Entry e = new Entry(path, _clock.incrementAndGet());
+        Entry previous = (Entry) _paths.putIfAbsent(new Key(pathExpr, engines, currentVar, delIntfName), e);
+
+        if (previous != null)
+            return previous._path;
+
+        while (_paths.size() > _maxSize)
+            evictLeastRecentlyUsed();
+
+        return path;
+    }
+
+    private void evictLeastRecentlyUsed()
+    {
+        Object eldestKey = null;
+        Entry eldest = null;
+
+        for (Iterator i = _paths.entrySet().iterator(); i.hasNext(); )
+        {
+            Map.Entry me = (Map.Entry) i.next();
+            Entry e = (Entry) me.getValue();
+
+            if (eldest == null || e._lastUsed < eldest._lastUsed)
+            {
+                eldestKey = me.getKey();
+                eldest = e;
+            }
+        }
+
+        if (eldest != null && _paths.remove(eldestKey, eldest))
+            _evictions.incrementAndGet();
+    }
+
+    /** Drops all cached paths; the statistics are kept. */
+    public void clear()
+    {
+        _paths.clear();
+    }
+
+    public int getMaxSize() { return _maxSize; }
+
+    /** Number of compiled paths cached. */
+    public int size() { return _paths.size(); }
+
+    public long getHits() { return _hits.get(); }
+    public long getMisses() { return _misses.get(); }
+    public long getEvictions() { return _evictions.get(); }
+
+    /** Fraction of lookups that found a compiled path, 0 if there were none. */
+    public double getHitRate()
+    {
+        long hits = getHits();
+        long total = hits + getMisses();
+
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public String toString()
+    {
+        return "paths: size=" + size() + " max=" + getMaxSize() +
+            " hits=" + getHits() + " misses=" + getMisses() +
+            " evictions=" + getEvictions();
+    }
+
+    private static int intProperty(String key, int defaultValue)
+    {
+        String value = SystemProperties.getProperty(key);
+
+        if (value == null)
+            return defaultValue;
+
+        try
+        {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        }
+        catch (NumberFormatException e)
+        {
+            return defaultValue;
+        }
+    }
+}
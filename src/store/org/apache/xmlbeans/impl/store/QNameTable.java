@@ -0,0 +1,316 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.store;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.SchemaTypeLoader;
+
+/**
+ * The symbol table the loaders use to turn element and attribute names into
+ * QNames.  There is one table per schema type loader, shared by all the
+ * documents created with that loader, so the same name in any of them is the
+ * same QName instance and names compare by identity before falling back to
+ * the string comparison of QName.equals.  Namespace URIs are interned as
+ * well, so the names of one namespace share a single URI string.
+ * <p/>
+ * Names are looked up by the characters of their parts, given either as
+ * ranges of a char array or of a string, so nothing is allocated for a name
+ * which is already in the table; in particular a qualified name is split at
+ * its colon without taking substrings.  The hash of a range is the hash of
+ * the equivalent string.
+ * <p/>
+ * Lookups do not lock: the buckets are chains of immutable entries, and a
+ * lookup which misses, possibly because it raced with an insert, retries
+ * under the lock before adding the name.  The table stops growing at
+ * MAX_NAMES names; names beyond those are made as new instances.
+ */
+final class QNameTable implements QNameFactory
+{
+    /**
+     * Number of names after which the table stops growing.
+     */
+    static final int MAX_NAMES = 1 << 16;
+
+    private static final Map _tables = new WeakHashMap();
+    private static final QNameTable _noLoaderTable = new QNameTable();
+
+    private static final class Entry
+    {
+        Entry(Object value, int hash, Entry next)
+        {
+            _value = value;
+            _hash = hash;
+            _next = next;
+        }
+
+        final Object _value;
+        final int _hash;
+        final Entry _next;
+    }
+
+    private volatile Entry[] _names = new Entry[256];
+    private volatile Entry[] _uris = new Entry[16];
+    private int _nameCount;
+    private int _uriCount;
+
+    /**
+     * Returns the table shared by the documents of the given type loader.
+     */
+    static QNameTable forTypeLoader(SchemaTypeLoader stl)
+    {
+        if (stl == null)
+            return _noLoaderTable;
+
+        synchronized (_tables)
+        {
+            QNameTable table = (QNameTable) _tables.get(stl);
+
+            if (table == null)
+                _tables.put(stl, table = new QNameTable());
+
+            return table;
+        }
+    }
+
+    public QName getQName(String uri, String local)
+    {
+        return getQName(uri, local, "");
+    }
+
+    public QName getQName(String uri, String local, String prefix)
+    {
+        if (uri == null)
+            uri = "";
+
+        if (prefix == null)
+            prefix = "";
+
+        if (local == null)
+            return new QName(uri, local, prefix); // throws
+
+        return name(uri, null, 0, uri.length(),
+            local, null, 0, local.length(),
+            prefix, null, 0, prefix.length());
+    }
+
+    public QName getQName(char[] uriSrc, int uriPos, int uriCch,
+        char[] localSrc, int localPos, int localCch)
+    {
+        return name(null, uriSrc, uriPos, uriCch,
+            null, localSrc, localPos, localCch,
+            "", null, 0, 0);
+    }
+
+    public QName getQName(char[] uriSrc, int uriPos, int uriCch,
+        char[] localSrc, int localPos, int localCch,
+        char[] prefixSrc, int prefixPos, int prefixCch)
+    {
+        return name(null, uriSrc, uriPos, uriCch,
+            null, localSrc, localPos, localCch,
+            null, prefixSrc, prefixPos, prefixCch);
+    }
+
+    /**
+     * Returns the name with the given URI and qualified name, a local name
+     * optionally preceded by a prefix and a colon.
+     */
+    QName getQualifiedQName(String uri, String qname)
+    {
+        if (uri == null)
+            uri = "";
+
+        int colon = qname.indexOf(':');
+
+        if (colon < 0)
+            return name(uri, null, 0, uri.length(), qname, null, 0, qname.length(), "", null, 0, 0);
+
+        return name(uri, null, 0, uri.length(),
+            qname, null, colon + 1, qname.length() - colon - 1,
+            qname, null, 0, colon);
+    }
+
+    //
+    // Each part of a name is given either as a range of a string or, when
+    // the string is null, as a range of a char array
+    //
+
+    private QName name(
+        String uriStr, char[] uriSrc, int uriPos, int uriCch,
+        String localStr, char[] localSrc, int localPos, int localCch,
+        String prefixStr, char[] prefixSrc, int prefixPos, int prefixCch)
+    {
+        int hash =
+            (hash(uriStr, uriSrc, uriPos, uriCch) * 31 +
+                hash(localStr, localSrc, localPos, localCch)) * 31 +
+                hash(prefixStr, prefixSrc, prefixPos, prefixCch);
+
+        QName name = find(_names, hash,
+            uriStr, uriSrc, uriPos, uriCch,
+            localStr, localSrc, localPos, localCch,
+            prefixStr, prefixSrc, prefixPos, prefixCch);
+
+        if (name != null)
+            return name;
+
+        synchronized (this)
+        {
+            name = find(_names, hash,
+                uriStr, uriSrc, uriPos, uriCch,
+                localStr, localSrc, localPos, localCch,
+                prefixStr, prefixSrc, prefixPos, prefixCch);
+
+            if (name != null)
+                return name;
+
+            name = new QName(
+                uri(uriStr, uriSrc, uriPos, uriCch),
+                string(localStr, localSrc, localPos, localCch),
+                string(prefixStr, prefixSrc, prefixPos, prefixCch));
+
+            if (_nameCount < MAX_NAMES)
+                _names = add(_names, ++_nameCount, name, hash);
+
+            return name;
+        }
+    }
+
+    private static QName find(Entry[] table, int hash,
+        String uriStr, char[] uriSrc, int uriPos, int uriCch,
+        String localStr, char[] localSrc, int localPos, int localCch,
+        String prefixStr, char[] prefixSrc, int prefixPos, int prefixCch)
+    {
+        for (Entry e = table[hash & (table.length - 1)]; e != null; e = e._next)
+        {
+            if (e._hash != hash)
+                continue;
+
+            QName name = (QName) e._value;
+
+            if (matches(name.getLocalPart(), localStr, localSrc, localPos, localCch) &&
+                matches(name.getNamespaceURI(), uriStr, uriSrc, uriPos, uriCch) &&
+                matches(name.getPrefix(), prefixStr, prefixSrc, prefixPos, prefixCch))
+            {
+                return name;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the interned namespace URI with the given characters.  Called
+     * with the table locked.
+     */
+    private String uri(String str, char[] src, int pos, int cch)
+    {
+        if (cch == 0)
+            return "";
+
+        Entry[] table = _uris;
+        int hash = hash(str, src, pos, cch);
+
+        for (Entry e = table[hash & (table.length - 1)]; e != null; e = e._next)
+        {
+            if (e._hash == hash && matches((String) e._value, str, src, pos, cch))
+                return (String) e._value;
+        }
+
+        String uri = string(str, src, pos, cch);
+
+        if (_uriCount < MAX_NAMES)
+            _uris = add(table, ++_uriCount, uri, hash);
+
+        return uri;
+    }
+
+    /**
+     * Adds a value to the given table, returning the table to publish,
+     * which is a larger copy once the table is three quarters full.
+     */
+    private static Entry[] add(Entry[] table, int count, Object value, int hash)
+    {
+        if (count > table.length - (table.length >> 2))
+        {
+            Entry[] larger = new Entry[table.length * 2];
+
+            for (int i = 0; i < table.length; i++)
+            {
+                for (Entry e = table[i]; e != null; e = e._next)
+                {
+                    int j = e._hash & (larger.length - 1);
+                    larger[j] = new Entry(e._value, e._hash, larger[j]);
+                }
+            }
+
+            table = larger;
+        }
+
+        int i = hash & (table.length - 1);
+        table[i] = new Entry(value, hash, table[i]);
+
+        return table;
+    }
+
+    private static int hash(String str, char[] src, int pos, int cch)
+    {
+        int h = 0;
+
+        if (str != null)
+        {
+            if (pos == 0 && cch == str.length())
+                return str.hashCode();
+
+            for (int i = 0; i < cch; i++)
+                h = 31 * h + str.charAt(pos + i);
+        }
+        else
+        {
+            for (int i = 0; i < cch; i++)
+                h = 31 * h + src[pos + i];
+        }
+
+        return h;
+    }
+
+    private static boolean matches(String s, String str, char[] src, int pos, int cch)
+    {
+        if (s.length() != cch)
+            return false;
+
+        if (str != null)
+            return s == str || s.regionMatches(0, str, pos, cch);
+
+        for (int i = 0; i < cch; i++)
+        {
+            if (s.charAt(i) != src[pos + i])
+                return false;
+        }
+
+        return true;
+    }
+
+    private static String string(String str, char[] src, int pos, int cch)
+    {
+        if (str != null)
+            return pos == 0 && cch == str.length() ? str : str.substring(pos, pos + cch);
+
+        return new String(src, pos, cch);
+    }
+}
@@ -17,14 +17,17 @@ package org.apache.xmlbeans.impl.store;
 
 import javax.xml.namespace.QName;
 
+import org.apache.xmlbeans.CDataBookmark;
 import org.apache.xmlbeans.SystemProperties;
 import org.apache.xmlbeans.XmlDocumentProperties;
 import org.apache.xmlbeans.XmlOptions;
 import org.apache.xmlbeans.XmlOptionCharEscapeMap;
+import org.apache.xmlbeans.XmlRuntimeException;
 import org.apache.xmlbeans.xml.stream.*;
 
 import org.apache.xmlbeans.impl.common.*;
 
+import java.io.StringWriter;
 import java.io.Writer;
 import java.io.Reader;
 import java.io.IOException;
@@ -32,6 +35,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.lang.ref.SoftReference;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
 
 import org.xml.sax.ContentHandler;
 import org.xml.sax.ext.LexicalHandler;
@@ -46,6 +53,14 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.LinkedHashMap;
 import java.util.ConcurrentModificationException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 abstract class Saver
 {
@@ -138,6 +153,33 @@ abstract class Saver
         _ancestorNamespaces = _cur.getAncestorNamespaces();
     }
 
+    /**
+     * Creates a saver for the subtree of an element in the document another
+     * saver is saving, to be saved where that saver has got to: in the
+     * namespace scope of the parent of the element, with the same options.
+     * The scope is copied, so the subtree may be saved on another thread.
+     */
+    Saver ( SaveCur c, Saver scope, XmlOptions options )
+    {
+        _cur = c;
+
+        _locale = scope._locale;
+        _version = scope._version;
+
+        _namespaceStack = new ArrayList( scope._namespaceStack );
+        _uriMap = new HashMap( scope._uriMap );
+        _prefixMap = new HashMap( scope._prefixMap );
+        _initialDefaultUri = scope._initialDefaultUri;
+
+        _attrNames = new ArrayList();
+        _attrValues = new ArrayList ();
+
+        _replaceChar = scope._replaceChar;
+        _useDefaultNamespace = scope._useDefaultNamespace;
+        _saveNamespacesFirst = scope._saveNamespacesFirst;
+        _suggestedPrefixes = scope._suggestedPrefixes;
+    }
+
     private static SaveCur createSaveCur ( Cur c, XmlOptions options )
     {
         QName synthName = (QName) options.get( XmlOptions.SAVE_SYNTHETIC_DOCUMENT_ELEMENT );
@@ -249,6 +291,14 @@ abstract class Saver
             cur = new FragSaveCur( start, end, fragName );
         }
 
+        start.release();
+        end.release();
+
+        return wrapSaveCur( cur, options );
+    }
+
+    private static SaveCur wrapSaveCur ( SaveCur cur, XmlOptions options )
+    {
         String filterPI = (String) options.get( XmlOptions.SAVE_FILTER_PROCINST );
 
         if (filterPI != null)
@@ -257,9 +307,6 @@ abstract class Saver
         if (options.hasOption( XmlOptions.SAVE_PRETTY_PRINT ))
             cur = new PrettySaveCur( cur, options );
 
-        start.release();
-        end.release();
-
         return cur;
     }
 
@@ -292,11 +339,72 @@ abstract class Saver
         );
     }
         
+    /**
+     * Returns the IANA name of the encoding to save a document in: the one
+     * given with XmlOptions.CHARACTER_ENCODING, or else the one the document
+     * was loaded with, or else UTF-8.
+     */
+    static String getSaveEncoding ( Cur c, XmlOptions options )
+    {
+        options = XmlOptions.maskNull( options );
+
+        String encoding = null;
+
+        XmlDocumentProperties props = Locale.getDocProps( c, false );
+
+        if (props != null && props.getEncoding() != null)
+            encoding = EncodingMap.getIANA2JavaMapping( props.getEncoding() );
+
+        if (options.hasOption( XmlOptions.CHARACTER_ENCODING ))
+            encoding = (String) options.get( XmlOptions.CHARACTER_ENCODING );
+
+        if (encoding != null)
+        {
+            String ianaEncoding = EncodingMap.getJava2IANAMapping( encoding );
+
+            if (ianaEncoding != null)
+                encoding = ianaEncoding;
+        }
+
+        if (encoding == null)
+            encoding = EncodingMap.getJava2IANAMapping( "UTF8" );
+
+        return encoding;
+    }
+
     protected boolean saveNamespacesFirst ( )
     {
         return _saveNamespacesFirst;
     }
 
+    /**
+     * Called before saving each element.  Returns true if the subtree of
+     * the element is saved by someone else, in which case it is skipped.
+     */
+    protected boolean splitElement ( SaveCur c )
+    {
+        return false;
+    }
+
+    /**
+     * Starts saving again from the given cursor, once everything the saver
+     * was created for is saved.
+     */
+    final void restart ( SaveCur c )
+    {
+        assert _cur == null && _depth == 0;
+
+        _cur = c;
+    }
+
+    /**
+     * The number of elements the saver is in.
+     */
+    protected final int depth ( )
+    {
+        return _depth;
+    }
+
     protected void enterLocale()
     {
         _locale.enter();
@@ -320,7 +428,15 @@ abstract class Saver
         switch ( _cur.kind() )
         {
             case   ROOT     : { processRoot();                        break; }
-            case   ELEM     : { processElement();                     break; }
+            case   ELEM     :
+            {
+                if (splitElement( _cur ))
+                    _cur.toEnd();
+                else
+                    processElement();
+
+                break;
+            }
             case - ELEM     : { processFinish ();                     break; }
             case   TEXT     : { emitText      ( _cur );               break; }
 
@@ -348,6 +464,7 @@ abstract class Saver
     {
         emitFinish( _cur );
         popMappings();
+        _depth--;
     }
 
     private final void processRoot ( )
@@ -494,6 +611,8 @@ abstract class Saver
             popMappings();
             _cur.toEnd();
         }
+        else
+            _depth++;
     }
 
     //
@@ -931,9 +1050,39 @@ abstract class Saver
         {
             super( c, options );
 
+            init( options );
+
             boolean noSaveDecl =
                 options != null && options.hasOption( XmlOptions.SAVE_NO_XML_DECL );
 
+            if (encoding != null && !noSaveDecl)
+            {
+                XmlDocumentProperties props = Locale.getDocProps( c, false );
+
+                String version = props == null ? null : props.getVersion();
+
+                if (version == null)
+                    version = "1.0";
+
+                emit( "<?xml version=\"" );
+                emit( version );
+                emit( "\" encoding=\"" + encoding + "\"?>" + _newLine );
+            }
+        }
+
+        /**
+         * Creates a saver for the subtree of an element in the document
+         * another text saver is saving.
+         */
+        TextSaver ( SaveCur c, TextSaver scope, XmlOptions options )
+        {
+            super( c, scope, options );
+
+            init( options );
+        }
+
+        private void init ( XmlOptions options )
+        {
             if (options != null && options.hasOption(XmlOptions.SAVE_CDATA_LENGTH_THRESHOLD))
                 _cdataLengthThreshold = ((Integer)options.get(XmlOptions.SAVE_CDATA_LENGTH_THRESHOLD)).intValue();
 
@@ -955,20 +1104,11 @@ abstract class Saver
                 (_out==_in && _free == _buf.length) ||                  // no data, all buffer free
                 (_out==_in && _free == 0)                               // buffer full
                 : "_buf.length:" + _buf.length + " _in:" + _in + " _out:" + _out + " _free:" + _free;
+        }
 
-            if (encoding != null && !noSaveDecl)
-            {
-                XmlDocumentProperties props = Locale.getDocProps( c, false );
-
-                String version = props == null ? null : props.getVersion();
-
-                if (version == null)
-                    version = "1.0";
-
-                emit( "<?xml version=\"" );
-                emit( version );
-                emit( "\" encoding=\"" + encoding + "\"?>" + _newLine );
-            }
+        protected boolean splitElement ( SaveCur c )
+        {
+            return _parallelSaver != null && _parallelSaver.split( this, c );
         }
 
         protected boolean emitElement ( SaveCur c, ArrayList attrNames, ArrayList attrValues )
@@ -1856,6 +1996,53 @@ abstract class Saver
             return charsAvailable;
         }
 
+        /**
+         * Returns the characters saved so far, without saving any more.
+         */
+        String take ( )
+        {
+            int available = getAvailable();
+
+            if (available == 0)
+                return "";
+
+            assert _out == 0;
+
+            String s = new String( _buf, 0, available );
+
+            _free += available;
+            _in = 0;
+
+            return s;
+        }
+
+        /**
+         * Appends the characters saved so far to the given buffer, less any
+         * leading spaces if asked, without saving any more.
+         */
+        void take ( StringBuffer sb, boolean skipSpaces )
+        {
+            int available = getAvailable();
+
+            if (available == 0)
+                return;
+
+            assert _out == 0;
+
+            int start = 0;
+
+            if (skipSpaces)
+            {
+                while ( start < available && _buf[ start ] == ' ' )
+                    start++;
+            }
+
+            sb.append( _buf, start, available - start );
+
+            _free += available;
+            _in = 0;
+        }
+
         public String saveToString ( )
         {
             // We're gonna build a string.  Instead of using StringBuffer, may
@@ -1882,6 +2069,8 @@ abstract class Saver
         private boolean _useCDataBookmarks = false;
         private boolean _isPrettyPrint = false;
 
+        ParallelSaver _parallelSaver;
+
         private int _lastEmitIn;
         private int _lastEmitCch;
 
@@ -1897,98 +2086,540 @@ abstract class Saver
          */
     }
 
-    static final class OptimizedForSpeedSaver
-        extends Saver
+    /**
+     * Saves a document as text with the subtrees of the elements at the
+     * depth given with XmlOptions.setSaveParallel() saved on other threads.
+     * <p/>
+     * The thread saving the document keeps the locale entered throughout.
+     * It saves everything outside the subtrees itself.  Consecutive
+     * subtrees, and the text in between, are batched until a batch holds
+     * enough nodes to be worth a task.  The subtrees of a batch with the
+     * same parent are saved by one TextSaver over an XobjSaveCur, with a
+     * copy of the namespace scope reached at the first of them, so they
+     * come out exactly as they would have from a single saver.  The results
+     * of the batches are written out in order, and no more than a few
+     * batches are kept in flight, so the whole document is never held in
+     * memory.  Nothing in the document may change while the batches run, so
+     * the saving thread waits for all of them before returning, even when
+     * it fails.
+     */
+    static final class ParallelSaver
     {
-        Writer _w;
-        private char[] _buf = new char[1024];
+        // The number of nodes a batch is submitted at
 
+        private static final int BATCH_NODES = 2048;
 
-        static private class SaverIOException
-            extends RuntimeException
+        // The number of characters the saving thread drains at
+
+        private static final int TEXT_CHARS = 16384;
+
+        private ParallelSaver ( Writer writer, XmlOptions options )
         {
-            SaverIOException(IOException e)
+            _writer = writer;
+
+            _depth = ((Integer) options.get( XmlOptions.SAVE_PARALLEL_DEPTH )).intValue();
+
+            if (_depth < 1)
+                throw new IllegalArgumentException( "Parallel save depth must be at least 1: " + _depth );
+
+            ExecutorService executor =
+                (ExecutorService) options.get( XmlOptions.SAVE_PARALLEL_EXECUTOR );
+
+            _executor = executor == null ? getDefaultExecutor() : executor;
+
+            // Subtrees are pretty printed as though they started on the
+            // line of their element, and the indentation of that line is
+            // stripped from them
+
+            if (options.hasOption( XmlOptions.SAVE_PRETTY_PRINT ))
             {
-                super(e);
+                int indent = 2;
+                int offset = 0;
+
+                if (options.hasOption( XmlOptions.SAVE_PRETTY_PRINT_INDENT ))
+                    indent = ((Integer) options.get( XmlOptions.SAVE_PRETTY_PRINT_INDENT )).intValue();
+
+                if (options.hasOption( XmlOptions.SAVE_PRETTY_PRINT_OFFSET ))
+                    offset = ((Integer) options.get( XmlOptions.SAVE_PRETTY_PRINT_OFFSET )).intValue();
+
+                options = new XmlOptions( options );
+                options.put( XmlOptions.SAVE_PRETTY_PRINT_OFFSET,
+                    new Integer( offset + Math.max( indent, 0 ) * _depth ) );
             }
-        }
 
+            _subtreeOptions = options;
 
-        OptimizedForSpeedSaver(Cur cur, Writer writer)
+            _batch = new Batch();
+            _pending = new LinkedList();
+        }
+
+        /**
+         * Returns true if the given options ask for a parallel save.
+         */
+        static boolean isSelected ( XmlOptions options )
         {
-            super(cur, XmlOptions.maskNull(null));
-            _w = writer;
+            return options != null && options.hasOption( XmlOptions.SAVE_PARALLEL_DEPTH );
         }
 
-        static void save(Cur cur, Writer writer)
-            throws IOException
+        static String saveToString ( Cur c, XmlOptions options )
         {
+            StringWriter w = new StringWriter();
+
             try
             {
-                Saver saver = new OptimizedForSpeedSaver(cur, writer);
-                while(saver.process())
-                {}
+                save( c, w, options, null );
             }
-            catch (SaverIOException e)
+            catch ( IOException e )
             {
-                throw (IOException)e.getCause();
+                throw new RuntimeException( e );
             }
+
+            return w.toString();
         }
 
-        private void emit(String s)
+        static void save ( Cur c, OutputStream os, XmlOptions options )
+            throws IOException
+        {
+            String encoding = getSaveEncoding( c, options );
+
+            String javaEncoding = EncodingMap.getIANA2JavaMapping( encoding );
+
+            if (javaEncoding == null)
+                throw new IllegalStateException( "Unknown encoding: " + encoding );
+
+            Writer w = new OutputStreamWriter( os, javaEncoding );
+
+            save( c, w, options, encoding );
+
+            w.flush();
+        }
+
+        static void save ( Cur c, Writer w, XmlOptions options, String encoding )
+            throws IOException
         {
+            assert c._locale.entered();
+
+            ParallelSaver parallelSaver = new ParallelSaver( w, options );
+
+            TextSaver saver = new TextSaver( c, options, encoding );
+
+            saver._parallelSaver = parallelSaver;
+
+            boolean done = false;
+
             try
             {
-                _w.write(s);
+                while ( saver.process() )
+                {
+                    if (saver.getAvailable() >= TEXT_CHARS)
+                        parallelSaver.text( saver );
+                }
+
+                parallelSaver.text( saver );
+                parallelSaver.submit();
+                parallelSaver.write( 0 );
+
+                done = true;
             }
-            catch (IOException e)
+            catch ( OptimizedForSpeedSaver.SaverIOException e )
             {
-                throw new SaverIOException(e);
+                throw (IOException) e.getCause();
+            }
+            finally
+            {
+                if (!done)
+                    parallelSaver.abandon();
             }
         }
 
-        private void emit(char c)
+        boolean split ( TextSaver saver, SaveCur c )
         {
-            try
+            if (saver.depth() != _depth)
+                return false;
+
+            Xobj x = c.getXobj();
+
+            if (x == null)
+                return false;
+
+            text( saver );
+
+            int nodes = occupy( x );
+
+            // The namespace scope is the same for all the children of an
+            // element
+
+            if (_subtreeSaver == null || x._parent != _subtreeParent)
             {
-                _buf[0] = c;
-                _w.write(_buf, 0, 1);
+                _subtreeSaver = new SubtreeSaver( saver, _subtreeOptions );
+                _subtreeParent = x._parent;
+                _batch.add( _subtreeSaver, 0 );
             }
-            catch (IOException e)
+
+            _batch.add( x, nodes );
+
+            if (_batch._nodes >= BATCH_NODES)
             {
-                throw new SaverIOException(e);
+                submit();
+
+                try
+                {
+                    write( _window );
+                }
+                catch ( IOException e )
+                {
+                    throw new OptimizedForSpeedSaver.SaverIOException( e );
+                }
             }
+
+            return true;
         }
 
-        private void emit(char c1, char c2)
+        // Subtrees are walked without a Cur, which would otherwise fill in
+        // the text of vacant nodes from their users as it went
+
+        private static int occupy ( Xobj top )
         {
-            try
+            int nodes = 0;
+
+            for ( Xobj x = top ; x != null ; x = x.walk( top, true ) )
             {
-                _buf[0] = c1;
-                _buf[1] = c2;
-                _w.write(_buf, 0 , 2);
+                if (x.isVacant())
+                    x.ensureOccupancy();
+
+                nodes++;
             }
-            catch (IOException e)
+
+            return nodes;
+        }
+
+        private void text ( TextSaver saver )
+        {
+            String s = saver.take();
+
+            if (s.length() > 0)
+                _batch.add( s, 0 );
+        }
+
+        private void submit ( )
+        {
+            if (_batch._parts.isEmpty())
+                return;
+
+            if (_batch._nodes == 0)
+                _pending.add( _batch.call() );
+            else
+                _pending.add( _executor.submit( _batch ) );
+
+            _batch = new Batch();
+            _subtreeSaver = null;
+        }
+
+        // Writes out the results of the batches in order until no more than
+        // the given number are pending
+
+        private void write ( int max )
+            throws IOException
+        {
+            while ( _pending.size() > max )
             {
-                throw new SaverIOException(e);
+                Object o = _pending.removeFirst();
+
+                _writer.write( o instanceof Future ? getResult( (Future) o ) : (String) o );
             }
         }
 
-        private void emit(char[] buf, int start, int len)
+        private static String getResult ( Future f )
         {
             try
             {
-                _w.write(buf, start, len);
+                return (String) f.get();
             }
-            catch (IOException e)
+            catch ( InterruptedException e )
             {
-                throw new SaverIOException(e);
+                Thread.currentThread().interrupt();
+
+                throw new XmlRuntimeException( e );
+            }
+            catch ( ExecutionException e )
+            {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+
+                if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+
+                throw new XmlRuntimeException( e.getCause() );
             }
         }
 
-        protected boolean emitElement ( SaveCur c, ArrayList attrNames, ArrayList attrValues )
+        // Waits for the batches still running, so none of them reads the
+        // document once the locale is exited
+
+        private void abandon ( )
         {
-            assert c.isElem();
+            boolean interrupted = false;
+
+            while ( !_pending.isEmpty() )
+            {
+                Object o = _pending.removeFirst();
+
+                if (!(o instanceof Future))
+                    continue;
+
+                for ( ; ; )
+                {
+                    try
+                    {
+                        ((Future) o).get();
+                        break;
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        interrupted = true;
+                    }
+                    catch ( ExecutionException e )
+                    {
+                        break;
+                    }
+                    catch ( CancellationException e )
+                    {
+                        break;
+                    }
+                }
+            }
+
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+
+        private static synchronized ExecutorService getDefaultExecutor ( )
+        {
+            if (_defaultExecutor == null)
+            {
+                _defaultExecutor =
+                    Executors.newFixedThreadPool(
+                        Runtime.getRuntime().availableProcessors(),
+                        new ThreadFactory()
+                        {
+                            public Thread newThread ( Runnable r )
+                            {
+                                Thread t = new Thread( r, "XmlBeans parallel save" );
+                                t.setDaemon( true );
+                                return t;
+                            }
+                        } );
+            }
+
+            return _defaultExecutor;
+        }
+
+        /**
+         * Saves subtrees one after the other in the namespace scope of the
+         * saver it was created from.
+         */
+        private static final class SubtreeSaver
+        {
+            SubtreeSaver ( TextSaver scope, XmlOptions options )
+            {
+                _options = options;
+                _xobjCur = new XobjSaveCur();
+                _saver = new TextSaver( wrapSaveCur( _xobjCur, options ), scope, options );
+            }
+
+            void save ( Xobj x, StringBuffer sb )
+            {
+                _xobjCur.reset( x );
+
+                // The cursors wrapping the XobjSaveCur are released at the
+                // end of each subtree
+
+                if (_saved)
+                    _saver.restart( wrapSaveCur( _xobjCur, _options ) );
+
+                _saved = true;
+
+                while ( _saver.process() )
+                    ;
+
+                // A subtree starts with its element, so any spaces are the
+                // indentation of its pretty printed first line
+
+                _saver.take( sb, true );
+            }
+
+            private final XmlOptions  _options;
+            private final XobjSaveCur _xobjCur;
+            private final TextSaver   _saver;
+            private boolean           _saved;
+        }
+
+        /**
+         * The text saved by the saving thread, and the subtrees in between,
+         * each saved by the SubtreeSaver last added before it.
+         */
+        private static final class Batch implements Callable
+        {
+            void add ( Object part, int nodes )
+            {
+                _parts.add( part );
+                _nodes += nodes;
+            }
+
+            public Object call ( )
+            {
+                StringBuffer sb = new StringBuffer();
+                SubtreeSaver subtreeSaver = null;
+
+                for ( int i = 0 ; i < _parts.size() ; i++ )
+                {
+                    Object part = _parts.get( i );
+
+                    if (part instanceof String)
+                        sb.append( (String) part );
+                    else if (part instanceof SubtreeSaver)
+                        subtreeSaver = (SubtreeSaver) part;
+                    else
+                        subtreeSaver.save( (Xobj) part, sb );
+                }
+
+                return sb.toString();
+            }
+
+            final ArrayList _parts = new ArrayList();
+            int _nodes;
+        }
+
+        private static ExecutorService _defaultExecutor;
+
+        private final int _window = Math.max( 2, 2 * Runtime.getRuntime().availableProcessors() );
+
+        private final Writer          _writer;
+        private final int             _depth;
+        private final ExecutorService _executor;
+        private final XmlOptions      _subtreeOptions;
+
+        private Batch        _batch;
+        private SubtreeSaver _subtreeSaver;
+        private Xobj         _subtreeParent;
+        private LinkedList   _pending;
+    }
+
+    static final class OptimizedForSpeedSaver
+        extends Saver
+    {
+        Writer _w;
+        private char[] _buf = new char[1024];
+
+        // The encoding of the stream the writer writes to, if any.  Text and
+        // attribute value characters it cannot encode are written as
+        // character references.
+        private CharsetEncoder _encoder;
+
+
+        static private class SaverIOException
+            extends RuntimeException
+        {
+            SaverIOException(IOException e)
+            {
+                super(e);
+            }
+        }
+
+
+        OptimizedForSpeedSaver(Cur cur, Writer writer)
+        {
+            super(cur, XmlOptions.maskNull(null));
+            _w = writer;
+        }
+
+        static void save(Cur cur, Writer writer)
+            throws IOException
+        {
+            save(cur, writer, null);
+        }
+
+        /**
+         * Saves to a writer which encodes to the given IANA encoding, if it
+         * is not null.  The document starts with an XML declaration naming
+         * it.
+         */
+        static void save(Cur cur, Writer writer, String encoding)
+            throws IOException
+        {
+            try
+            {
+                OptimizedForSpeedSaver saver = new OptimizedForSpeedSaver(cur, writer);
+
+                if (encoding != null)
+                {
+                    saver._encoder = Charset.forName(EncodingMap.getIANA2JavaMapping(encoding)).newEncoder();
+                    saver.emit("<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>" + saver._newLine);
+                }
+
+                while(saver.process())
+                {}
+            }
+            catch (SaverIOException e)
+            {
+                throw (IOException)e.getCause();
+            }
+        }
+
+        private void emit(String s)
+        {
+            try
+            {
+                _w.write(s);
+            }
+            catch (IOException e)
+            {
+                throw new SaverIOException(e);
+            }
+        }
+
+        private void emit(char c)
+        {
+            try
+            {
+                _buf[0] = c;
+                _w.write(_buf, 0, 1);
+            }
+            catch (IOException e)
+            {
+                throw new SaverIOException(e);
+            }
+        }
+
+        private void emit(char c1, char c2)
+        {
+            try
+            {
+                _buf[0] = c1;
+                _buf[1] = c2;
+                _w.write(_buf, 0 , 2);
+            }
+            catch (IOException e)
+            {
+                throw new SaverIOException(e);
+            }
+        }
+
+        private void emit(char[] buf, int start, int len)
+        {
+            try
+            {
+                _w.write(buf, start, len);
+            }
+            catch (IOException e)
+            {
+                throw new SaverIOException(e);
+            }
+        }
+
+        protected boolean emitElement ( SaveCur c, ArrayList attrNames, ArrayList attrValues )
+        {
+            assert c.isElem();
 
             emit( '<' );
             emitName( c.getName(), false );
@@ -2186,11 +2817,49 @@ abstract class Saver
                     emit( "&amp;" );
                 else if (ch == '"')
                     emit( "&quot;" );
+                else if (ch >= 0x80 && _encoder != null && !canEncode(attVal, i, len))
+                    i += emitCharRef(attVal, i);
                 else
                     emit(ch);
             }
         }
 
+        /**
+         * Returns true if the encoder can encode the character at i, or the
+         * surrogate pair starting there.  Unpaired surrogates are left to
+         * the writer.
+         */
+        private boolean canEncode(CharSequence chars, int i, int len)
+        {
+            char ch = chars.charAt(i);
+
+            if (!Character.isHighSurrogate(ch) && !Character.isLowSurrogate(ch))
+                return _encoder.canEncode(ch);
+
+            if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(chars.charAt(i + 1)))
+                return _encoder.canEncode(chars.subSequence(i, i + 2));
+
+            return true;
+        }
+
+        /**
+         * Writes the character at i as a character reference, and returns
+         * the number of chars after the first one it took.
+         */
+        private int emitCharRef(CharSequence chars, int i)
+        {
+            char ch = chars.charAt(i);
+
+            if (Character.isHighSurrogate(ch))
+            {
+                emit("&#" + Character.toCodePoint(ch, chars.charAt(i + 1)) + ";");
+                return 1;
+            }
+
+            emit("&#" + (int) ch + ";");
+            return 0;
+        }
+
         private void emitLiteral ( String literal )
         {
             // TODO: systemId production http://www.w3.org/TR/REC-xml/#NT-SystemLiteral
@@ -2245,113 +2914,704 @@ abstract class Saver
             }
         }
 
-        protected void emitCommentText ( SaveCur c )
+        protected void emitCommentText ( SaveCur c )
+        {
+            assert c.isText();
+
+            Object src = c.getChars();
+            int cch = c._cchSrc;
+            int off = c._offSrc;
+            int index = 0;
+            int indexLimit = 0;
+            while( index<cch )
+            {
+                indexLimit = index + 512 > cch ? cch : 512;
+                CharUtil.getChars( _buf, 0, src, off+index, indexLimit );
+                entitizeAndWriteCommentText(indexLimit-index);
+                index = indexLimit;
+            }
+        }
+
+        private void entitizeAndWriteText(int bufLimit)
+        {
+            CharSequence chars = null;
+            int index = 0;
+            for (int i = 0; i < bufLimit; i++)
+            {
+                char c = _buf[i];
+                switch(c)
+                {
+                case '<':
+                    emit(_buf, index, i-index);
+                    emit("&lt;");
+                    index = i+1;
+                    break;
+                case '&':
+                    emit(_buf, index, i-index);
+                    emit("&amp;");
+                    index = i+1;
+                    break;
+                default:
+                    if (c >= 0x80 && _encoder != null)
+                    {
+                        if (chars == null)
+                            chars = CharBuffer.wrap(_buf, 0, bufLimit);
+
+                        if (!canEncode(chars, i, bufLimit))
+                        {
+                            emit(_buf, index, i-index);
+                            i += emitCharRef(chars, i);
+                            index = i+1;
+                        }
+                    }
+                }
+            }
+            emit(_buf, index, bufLimit-index);
+        }
+
+        private void entitizeAndWriteCommentText ( int bufLimit )
+        {
+            boolean lastWasDash = false;
+
+            for ( int i=0 ; i<bufLimit ; i++ )
+            {
+                char ch = _buf[ i ];
+
+                if (isBadChar( ch ))
+                    _buf[i] = '?';
+                else if (ch == '-')
+                {
+                    if (lastWasDash)
+                    {
+                        // Replace "--" with "- " to make well formed
+                        _buf[i] = ' ';
+                        lastWasDash = false;
+                    }
+                    else
+                    {
+                        lastWasDash = true;
+                    }
+                }
+                else
+                {
+                    lastWasDash = false;
+                }
+
+                if (i == _buf.length)
+                    i = 0;
+            }
+
+            if (_buf[ bufLimit-1 ] == '-')
+                _buf[ bufLimit-1 ] = ' ';
+
+            emit(_buf, 0, bufLimit);
+        }
+
+        private void entitizeAndWritePIText(int bufLimit)
+        {
+            boolean lastWasQuestion = false;
+
+            for ( int i=0 ; i<bufLimit ; i++ )
+            {
+                char ch = _buf[ i ];
+
+                if (isBadChar( ch ))
+                {
+                    _buf[i] = '?';
+                    ch = '?';
+                }
+
+                if (ch == '>')
+                {
+                    // Had to convert to a space here ... imples not well formed XML
+                    if (lastWasQuestion)
+                        _buf[i] = ' ';
+
+                    lastWasQuestion = false;
+                }
+                else
+                {
+                    lastWasQuestion = ch == '?';
+                }
+            }
+            emit(_buf, 0, bufLimit);
+        }
+    }
+
+    /**
+     * The OutputStream counterpart of OptimizedForSpeedSaver: saves with
+     * SAVE_OPTIMIZE_FOR_SPEED, ignoring all other options but the encoding,
+     * and encodes UTF-8, US-ASCII or ISO-8859-1 straight into a byte buffer.
+     * Escaping is done in the same pass as encoding, so characters are not
+     * buffered as chars and passed through a Writer on their way out.  Other
+     * encodings are saved with OptimizedForSpeedSaver through an
+     * OutputStreamWriter.
+     * <p/>
+     * Characters the encoding cannot represent are written as character
+     * references in text and attribute values, and as '?' elsewhere.
+     * Documents in encodings other than UTF-8 and US-ASCII start with an XML
+     * declaration naming the encoding.
+     */
+    static final class ByteSaver extends Saver
+    {
+        // What a character is being written as
+
+        private static final int MARKUP  = 0;
+        private static final int CONTENT = 1;
+        private static final int ATTR_VALUE = 2;
+        private static final int COMMENT_TEXT = 3;
+        private static final int PI_TEXT = 4;
+
+        // Room for the longest thing one character is written as: a
+        // character reference to a supplementary character
+
+        private static final int MAX_CHAR_BYTES = 10;
+
+        private static final int BUFFER_SIZE = 8192;
+
+        // The ASCII characters which are written as themselves anywhere.
+        // ']', '-', '?' and '>' are not, to keep track of the characters
+        // before them.
+
+        private static final boolean[] PLAIN = new boolean[ 0x80 ];
+
+        static
+        {
+            for ( char ch = 0x20 ; ch < 0x80 ; ch++ )
+                PLAIN[ ch ] = true;
+
+            PLAIN[ '<' ] = PLAIN[ '&' ] = PLAIN[ '"' ] = PLAIN[ '>' ] = false;
+            PLAIN[ ']' ] = PLAIN[ '-' ] = PLAIN[ '?' ] = PLAIN[ 0x7F ] = false;
+            PLAIN[ '\t' ] = PLAIN[ '\n' ] = true;
+        }
+
+        private static ThreadLocal tl_bytes = new ThreadLocal();
+
+        private final OutputStream _os;
+        private final int _maxChar;
+
+        private byte[] _bytes;
+        private int _count;
+        private final char[] _chars = new char[ 512 ];
+
+        // The last character written in the current context, and a high
+        // surrogate waiting for its low surrogate
+
+        private char _lastChar;
+        private char _prevChar;
+        private char _highSurrogate;
+
+        private ByteSaver ( Cur cur, OutputStream os, int maxChar )
+        {
+            super( cur, XmlOptions.maskNull( null ) );
+            _os = os;
+            _maxChar = maxChar;
+        }
+
+        /**
+         * Returns the largest code point the given IANA encoding represents
+         * as itself, or 0 if this saver does not handle the encoding.
+         */
+        private static int maxChar ( String encoding )
+        {
+            if (encoding.equalsIgnoreCase( "UTF-8" ))
+                return Character.MAX_CODE_POINT;
+            else if (encoding.equalsIgnoreCase( "US-ASCII" ))
+                return 0x7F;
+            else if (encoding.equalsIgnoreCase( "ISO-8859-1" ))
+                return 0xFF;
+            else
+                return 0;
+        }
+
+        static void save ( Cur cur, OutputStream os, XmlOptions options )
+            throws IOException
+        {
+            String encoding = getSaveEncoding( cur, options );
+            int maxChar = maxChar( encoding );
+
+            if (maxChar == 0)
+            {
+                String javaEncoding = EncodingMap.getIANA2JavaMapping( encoding );
+
+                if (javaEncoding == null)
+                    throw new IllegalStateException( "Unknown encoding: " + encoding );
+
+                Writer w = new OutputStreamWriter( os, javaEncoding );
+                OptimizedForSpeedSaver.save( cur, w, encoding );
+                w.flush();
+                return;
+            }
+
+            ByteSaver saver = new ByteSaver( cur, os, maxChar );
+            saver._bytes = takeBuffer();
+
+            try
+            {
+                if (maxChar == 0xFF)
+                    saver.write( "<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>" + saver._newLine, MARKUP );
+
+                while ( saver.process() )
+                    ;
+
+                saver.flush();
+            }
+            catch ( OptimizedForSpeedSaver.SaverIOException e )
+            {
+                throw (IOException) e.getCause();
+            }
+            finally
+            {
+                tl_bytes.set( new SoftReference( saver._bytes ) );
+            }
+        }
+
+        /**
+         * Takes the buffer of this thread, so a save started while this one
+         * is writing to its stream does not use the same one.
+         */
+        private static byte[] takeBuffer ( )
+        {
+            SoftReference softRef = (SoftReference) tl_bytes.get();
+            byte[] bytes = softRef == null ? null : (byte[]) softRef.get();
+
+            if (bytes == null)
+                return new byte[ BUFFER_SIZE ];
+
+            tl_bytes.set( null );
+            return bytes;
+        }
+
+        private void flush ( )
+        {
+            try
+            {
+                _os.write( _bytes, 0, _count );
+                _count = 0;
+            }
+            catch ( IOException e )
+            {
+                throw new OptimizedForSpeedSaver.SaverIOException( e );
+            }
+        }
+
+        private void startContext ( )
+        {
+            _lastChar = _prevChar = _highSurrogate = 0;
+        }
+
+        private void endContext ( int context )
+        {
+            if (_highSurrogate != 0)
+            {
+                _highSurrogate = 0;
+                writeByte( '?' );
+            }
+            else if (context == COMMENT_TEXT && _lastChar == '-')
+            {
+                // Nothing is flushed after the last character, so the dash
+                // is still in the buffer; a comment cannot end with one
+
+                _bytes[ _count - 1 ] = ' ';
+            }
+        }
+
+        private void write ( String s, int context )
+        {
+            startContext();
+
+            for ( int index = 0, cch = s.length() ; index < cch ; )
+            {
+                int n = Math.min( cch - index, _chars.length );
+
+                s.getChars( index, index + n, _chars, 0 );
+                write( _chars, n, context );
+
+                index += n;
+            }
+
+            endContext( context );
+        }
+
+        private void write ( char[] chars, int n, int context )
+        {
+            for ( int i = 0 ; i < n ; )
+            {
+                // Copy runs of plain characters in a tight loop; anything
+                // else goes through write( char, int )
+
+                if (_highSurrogate == 0)
+                {
+                    byte[] bytes = _bytes;
+                    int count = _count;
+                    int end = Math.min( n, i + bytes.length - MAX_CHAR_BYTES - count );
+                    int start = i;
+
+                    for ( char ch ; i < end && (ch = chars[ i ]) < 0x80 && PLAIN[ ch ] ; i++ )
+                        bytes[ count++ ] = (byte) ch;
+
+                    _count = count;
+
+                    if (i > start)
+                        _lastChar = _prevChar = 0;
+
+                    if (i == n)
+                        break;
+                }
+
+                write( chars[ i++ ], context );
+            }
+        }
+
+        private void write ( char ch, int context )
+        {
+            if (_count > _bytes.length - MAX_CHAR_BYTES)
+                flush();
+
+            if (ch < 0x80 && PLAIN[ ch ] && _highSurrogate == 0)
+            {
+                _bytes[ _count++ ] = (byte) ch;
+                _prevChar = _lastChar;
+                _lastChar = ch;
+                return;
+            }
+
+            if (_highSurrogate != 0)
+            {
+                char high = _highSurrogate;
+                _highSurrogate = 0;
+
+                if (Character.isLowSurrogate( ch ))
+                {
+                    writeCodePoint( Character.toCodePoint( high, ch ), context );
+                    _prevChar = _lastChar;
+                    _lastChar = ch;
+                    return;
+                }
+
+                writeByte( '?' );
+
+                if (_count > _bytes.length - MAX_CHAR_BYTES)
+                    flush();
+            }
+
+            if (Character.isHighSurrogate( ch ))
+            {
+                _highSurrogate = ch;
+                return;
+            }
+
+            switch ( ch )
+            {
+            case '<':
+                writeEscaped( ch, "&lt;", context == CONTENT || context == ATTR_VALUE );
+                break;
+
+            case '&':
+                writeEscaped( ch, "&amp;", context == CONTENT || context == ATTR_VALUE );
+                break;
+
+            case '"':
+                writeEscaped( ch, "&quot;", context == ATTR_VALUE );
+                break;
+
+            case '\r':
+                writeEscaped( ch, "&#13;", context == CONTENT );
+                break;
+
+            case '>':
+                if (context == CONTENT && _lastChar == ']' && _prevChar == ']')
+                    writeEscaped( ch, "&gt;", true );
+                else if (context == PI_TEXT && _lastChar == '?')
+                    ch = writeByte( ' ' );
+                else
+                    writeByte( ch );
+                break;
+
+            case '-':
+                if (context == COMMENT_TEXT && _lastChar == '-')
+                    ch = writeByte( ' ' );
+                else
+                    writeByte( ch );
+                break;
+
+            default:
+                if (Character.isLowSurrogate( ch ) ||
+                        (isBadChar( ch ) && context != MARKUP))
+                {
+                    ch = writeByte( '?' );
+                }
+                else
+                    writeCodePoint( ch, context );
+            }
+
+            _prevChar = _lastChar;
+            _lastChar = ch;
+        }
+
+        private char writeByte ( char ch )
+        {
+            _bytes[ _count++ ] = (byte) ch;
+            return ch;
+        }
+
+        private void writeEscaped ( char ch, String entity, boolean escape )
+        {
+            if (!escape)
+                writeByte( ch );
+            else
+            {
+                for ( int i = 0 ; i < entity.length() ; i++ )
+                    _bytes[ _count++ ] = (byte) entity.charAt( i );
+            }
+        }
+
+        private void writeCodePoint ( int cp, int context )
+        {
+            if (cp > _maxChar)
+            {
+                if (context == CONTENT || context == ATTR_VALUE)
+                {
+                    String ref = "&#" + cp + ";";
+
+                    for ( int i = 0 ; i < ref.length() ; i++ )
+                        _bytes[ _count++ ] = (byte) ref.charAt( i );
+                }
+                else
+                    _bytes[ _count++ ] = (byte) '?';
+            }
+            else if (cp < 0x80 || _maxChar == 0xFF)
+                _bytes[ _count++ ] = (byte) cp;
+            else if (cp < 0x800)
+            {
+                _bytes[ _count++ ] = (byte) (0xC0 | (cp >> 6));
+                _bytes[ _count++ ] = (byte) (0x80 | (cp & 0x3F));
+            }
+            else if (cp < 0x10000)
+            {
+                _bytes[ _count++ ] = (byte) (0xE0 | (cp >> 12));
+                _bytes[ _count++ ] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                _bytes[ _count++ ] = (byte) (0x80 | (cp & 0x3F));
+            }
+            else
+            {
+                _bytes[ _count++ ] = (byte) (0xF0 | (cp >> 18));
+                _bytes[ _count++ ] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                _bytes[ _count++ ] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                _bytes[ _count++ ] = (byte) (0x80 | (cp & 0x3F));
+            }
+        }
+
+        /**
+         * Writes the characters of the text the cursor is at, a chunk at a
+         * time.
+         */
+        private void writeText ( SaveCur c, int context )
+        {
+            assert c.isText();
+
+            Object src = c.getChars();
+            int cch = c._cchSrc;
+            int off = c._offSrc;
+
+            startContext();
+
+            for ( int index = 0 ; index < cch ; )
+            {
+                int n = Math.min( cch - index, _chars.length );
+
+                CharUtil.getChars( _chars, 0, src, off + index, n );
+                write( _chars, n, context );
+
+                index += n;
+            }
+
+            endContext( context );
+        }
+
+        protected boolean emitElement ( SaveCur c, ArrayList attrNames, ArrayList attrValues )
+        {
+            assert c.isElem();
+
+            write( '<', MARKUP );
+            writeName( c.getName(), false );
+
+            for ( int i = 0 ; i < attrNames.size() ; i++ )
+                writeAttr( (QName) attrNames.get( i ), (String) attrValues.get( i ) );
+
+            if (!saveNamespacesFirst())
+                writeNamespaces();
+
+            if (!c.hasChildren() && !c.hasText())
+            {
+                write( "/>", MARKUP );
+                return true;
+            }
+            else
+            {
+                write( '>', MARKUP );
+                return false;
+            }
+        }
+
+        protected void emitFinish ( SaveCur c )
+        {
+            write( "</", MARKUP );
+            writeName( c.getName(), false );
+            write( '>', MARKUP );
+        }
+
+        protected void emitXmlns ( String prefix, String uri )
+        {
+            assert prefix != null;
+            assert uri != null;
+
+            write( "xmlns", MARKUP );
+
+            if (prefix.length() > 0)
+            {
+                write( ':', MARKUP );
+                write( prefix, MARKUP );
+            }
+
+            write( "=\"", MARKUP );
+            write( uri, ATTR_VALUE );
+            write( '"', MARKUP );
+        }
+
+        private void writeNamespaces ( )
+        {
+            for ( iterateMappings() ; hasMapping() ; nextMapping() )
+            {
+                write( ' ', MARKUP );
+                emitXmlns( mappingPrefix(), mappingUri() );
+            }
+        }
+
+        private void writeAttr ( QName attrName, String attrValue )
+        {
+            write( ' ', MARKUP );
+            writeName( attrName, true );
+            write( "=\"", MARKUP );
+            write( attrValue, ATTR_VALUE );
+            write( '"', MARKUP );
+        }
+
+        private void writeName ( QName name, boolean needsPrefix )
+        {
+            assert name != null;
+
+            String uri = name.getNamespaceURI();
+
+            assert uri != null;
+
+            if (uri.length() != 0)
+            {
+                String prefix = name.getPrefix();
+                String mappedUri = getNamespaceForPrefix( prefix );
+
+                if (mappedUri == null || !mappedUri.equals( uri ))
+                    prefix = getUriMapping( uri );
+
+                // Attrs need a prefix; see OptimizedForSpeedSaver.emitName
+
+                if (needsPrefix && prefix.length() == 0)
+                    prefix = getNonDefaultUriMapping( uri );
+
+                if (prefix.length() > 0)
+                {
+                    write( prefix, MARKUP );
+                    write( ':', MARKUP );
+                }
+            }
+
+            assert name.getLocalPart().length() > 0;
+
+            write( name.getLocalPart(), MARKUP );
+        }
+
+        protected void emitText ( SaveCur c )
         {
-            assert c.isText();
-
-            Object src = c.getChars();
-            int cch = c._cchSrc;
-            int off = c._offSrc;
-            int index = 0;
-            int indexLimit = 0;
-            while( index<cch )
-            {
-                indexLimit = index + 512 > cch ? cch : 512;
-                CharUtil.getChars( _buf, 0, src, off+index, indexLimit );
-                entitizeAndWriteCommentText(indexLimit-index);
-                index = indexLimit;
-            }
+            writeText( c, CONTENT );
         }
 
-        private void entitizeAndWriteText(int bufLimit)
+        protected void emitComment ( SaveCur c )
         {
-            int index = 0;
-            for (int i = 0; i < bufLimit; i++)
-            {
-                char c = _buf[i];
-                switch(c)
-                {
-                case '<':
-                    emit(_buf, index, i-index);
-                    emit("&lt;");
-                    index = i+1;
-                    break;
-                case '&':
-                    emit(_buf, index, i-index);
-                    emit("&amp;");
-                    index = i+1;
-                    break;
-                }
-            }
-            emit(_buf, index, bufLimit-index);
+            assert c.isComment();
+
+            write( "<!--", MARKUP );
+
+            c.push();
+            c.next();
+
+            if (c.isText())
+                writeText( c, COMMENT_TEXT );
+
+            c.pop();
+
+            write( "-->", MARKUP );
         }
 
-        private void entitizeAndWriteCommentText ( int bufLimit )
+        protected void emitProcinst ( SaveCur c )
         {
-            boolean lastWasDash = false;
+            assert c.isProcinst();
 
-            for ( int i=0 ; i<bufLimit ; i++ )
-            {
-                char ch = _buf[ i ];
+            write( "<?", MARKUP );
+            write( c.getName().getLocalPart(), MARKUP );
 
-                if (isBadChar( ch ))
-                    _buf[i] = '?';
-                else if (ch == '-')
-                {
-                    if (lastWasDash)
-                    {
-                        // Replace "--" with "- " to make well formed
-                        _buf[i] = ' ';
-                        lastWasDash = false;
-                    }
-                    else
-                    {
-                        lastWasDash = true;
-                    }
-                }
-                else
-                {
-                    lastWasDash = false;
-                }
+            c.push();
+            c.next();
 
-                if (i == _buf.length)
-                    i = 0;
+            if (c.isText())
+            {
+                write( ' ', MARKUP );
+                writeText( c, PI_TEXT );
             }
 
-            if (_buf[ bufLimit-1 ] == '-')
-                _buf[ bufLimit-1 ] = ' ';
+            c.pop();
 
-            emit(_buf, 0, bufLimit);
+            write( "?>", MARKUP );
         }
 
-        private void entitizeAndWritePIText(int bufLimit)
+        protected void emitDocType ( String docTypeName, String publicId, String systemId )
         {
-            boolean lastWasQuestion = false;
+            assert docTypeName != null;
 
-            for ( int i=0 ; i<bufLimit ; i++ )
+            write( "<!DOCTYPE ", MARKUP );
+            write( docTypeName, MARKUP );
+
+            if (publicId == null && systemId != null)
             {
-                char ch = _buf[ i ];
+                write( " SYSTEM ", MARKUP );
+                writeLiteral( systemId );
+            }
+            else if (publicId != null)
+            {
+                write( " PUBLIC ", MARKUP );
+                writeLiteral( publicId );
+                write( ' ', MARKUP );
+                writeLiteral( systemId );
+            }
 
-                if (isBadChar( ch ))
-                {
-                    _buf[i] = '?';
-                    ch = '?';
-                }
+            write( '>', MARKUP );
+            write( _newLine, MARKUP );
+        }
 
-                if (ch == '>')
-                {
-                    // Had to convert to a space here ... imples not well formed XML
-                    if (lastWasQuestion)
-                        _buf[i] = ' ';
+        private void writeLiteral ( String literal )
+        {
+            char quote = literal.indexOf( '"' ) < 0 ? '"' : '\'';
 
-                    lastWasQuestion = false;
-                }
-                else
-                {
-                    lastWasQuestion = ch == '?';
-                }
-            }
-            emit(_buf, 0, bufLimit);
+            write( quote, MARKUP );
+            write( literal, MARKUP );
+            write( quote, MARKUP );
+        }
+
+        protected void emitStartDoc ( SaveCur c )
+        {
+        }
+
+        protected void emitEndDoc ( SaveCur c )
+        {
         }
     }
 
@@ -2417,26 +3677,7 @@ abstract class Saver
 
             _outStreamImpl = new OutputStreamImpl();
 
-            String encoding = null;
-
-            XmlDocumentProperties props = Locale.getDocProps( c, false );
-
-            if (props != null && props.getEncoding() != null)
-                encoding = EncodingMap.getIANA2JavaMapping( props.getEncoding() );
-
-            if (options.hasOption( XmlOptions.CHARACTER_ENCODING ))
-                encoding = (String) options.get( XmlOptions.CHARACTER_ENCODING );
-
-            if (encoding != null)
-            {
-                String ianaEncoding = EncodingMap.getJava2IANAMapping( encoding );
-
-                if (ianaEncoding != null)
-                    encoding = ianaEncoding;
-            }
-
-            if (encoding == null)
-                encoding = EncodingMap.getJava2IANAMapping( "UTF8" );
+            String encoding = getSaveEncoding( c, options );
 
             String javaEncoding = EncodingMap.getIANA2JavaMapping( encoding );
 
@@ -3713,6 +4954,9 @@ abstract class Saver
         abstract List  getAncestorNamespaces ( );
         abstract XmlDocumentProperties getDocProps ( );
 
+        // The Xobj of the element here, if it is one in the store
+        Xobj getXobj ( ) { return null; }
+
         int _offSrc;
         int _cchSrc;
     }
@@ -3770,6 +5014,8 @@ abstract class Saver
 
         XmlDocumentProperties getDocProps ( ) { return Locale.getDocProps(_cur, false); }
 
+        Xobj getXobj ( ) { return _cur.isElem() ? _cur._xobj : null; }
+
         private Cur _cur;
     }
 
@@ -3840,6 +5086,8 @@ abstract class Saver
 
         XmlDocumentProperties getDocProps ( ) { return _cur.getDocProps(); }
 
+        Xobj getXobj ( ) { return _cur.getXobj(); }
+
         private SaveCur _cur;
     }
 
@@ -4153,6 +5401,8 @@ abstract class Saver
 
         XmlDocumentProperties getDocProps ( ) { return Locale.getDocProps(_cur, false); }
 
+        Xobj getXobj ( ) { return _state == CUR && _cur.isElem() ? _cur._xobj : null; }
+
         //
         //
         //
@@ -4178,6 +5428,226 @@ abstract class Saver
         private int   _stateStackSize;
     }
 
+    /**
+     * Walks the subtree of one element as though it were the document
+     * element of a document of its own, reading the Xobjs directly.  Unlike
+     * a Cur, it neither registers with the locale nor changes anything in
+     * the store (not even by caching strings), so subtrees can be walked on
+     * other threads while the thread which entered the locale waits.  The
+     * nodes of the subtree must have been made occupied beforehand.
+     */
+    private static final class XobjSaveCur extends SaveCur
+    {
+        XobjSaveCur ( )
+        {
+            _stackXobjs = new Xobj [ 16 ];
+            _stackPoss = new int [ 16 ];
+        }
+
+        /**
+         * Moves to the root of the subtree of the given element.
+         */
+        void reset ( Xobj top )
+        {
+            assert top.isElem() && top.isOccupied();
+            assert _stackSize == 0;
+
+            _top = top;
+            _xobj = null;
+            _pos = 0;
+        }
+
+        void release ( ) { }
+
+        int kind ( )
+        {
+            if (_xobj == null)
+                return _pos == 0 ? ROOT : -ROOT;
+
+            int kind = _xobj.kind();
+
+            return _pos == 0 ? kind : (_pos == Xobj.END_POS ? - kind : TEXT);
+        }
+
+        QName  getName        ( ) { return _xobj == null ? null : _xobj._name; }
+        String getXmlnsPrefix ( ) { return _xobj.getXmlnsPrefix(); }
+        String getXmlnsUri    ( ) { return getValue( _xobj ); }
+
+        boolean isXmlns       ( ) { return _pos == 0 && _xobj.isXmlns(); }
+
+        boolean hasChildren   ( ) { return _xobj == null || _xobj.hasChildren(); }
+        boolean hasText       ( ) { return _xobj != null && _xobj.hasTextNoEnsureOccupancy(); }
+        boolean isTextCData   ( ) { return _xobj != null && _xobj.hasBookmark( CDataBookmark.class, _pos ); }
+
+        boolean toFirstAttr ( )
+        {
+            Xobj a = _xobj.firstAttr();
+
+            if (a == null)
+                return false;
+
+            moveTo( a, 0 );
+
+            return true;
+        }
+
+        boolean toNextAttr ( )
+        {
+            Xobj a = _xobj.nextAttr();
+
+            if (a == null)
+                return false;
+
+            moveTo( a, 0 );
+
+            return true;
+        }
+
+        String getAttrValue ( ) { assert _xobj.isAttr(); return getValue( _xobj ); }
+
+        private static String getValue ( Xobj x )
+        {
+            return CharUtil.getString( x._srcValue, x._offValue, x._cchValue );
+        }
+
+        void toEnd ( )
+        {
+            assert _pos == 0;
+
+            _pos = Xobj.END_POS;
+        }
+
+        boolean next ( )
+        {
+            Xobj x = _xobj;
+            int  p = _pos;
+
+            if (x == null)
+            {
+                if (p != 0)
+                    return false;
+
+                moveTo( _top, 0 );
+            }
+            else if (p == 0 && x._cchValue > 0)
+                moveTo( x, 1 );
+            else if (p == 0 || (p > 0 && p < x.posAfter()))
+                toContent( x );
+            else if (p == Xobj.END_POS && x == _top)
+                moveTo( null, Xobj.END_POS );
+            else if (p == Xobj.END_POS && x._cchAfter > 0)
+                moveTo( x, x.posAfter() );
+            else if (x._nextSibling != null)
+                moveTo( x._nextSibling, 0 );
+            else
+                moveTo( x._parent, Xobj.END_POS );
+
+            return true;
+        }
+
+        // Moves to what follows the start of the given node and its value
+
+        private void toContent ( Xobj x )
+        {
+            if (!x.isContainer())
+            {
+                moveTo( x, Xobj.END_POS );
+                return;
+            }
+
+            Xobj a = x.lastAttr();
+
+            if (a != null && a._cchAfter > 0)
+            {
+                moveTo( a, a.posAfter() );
+                return;
+            }
+
+            Xobj child = a == null ? x._firstChild : a._nextSibling;
+
+            if (child != null)
+                moveTo( child, 0 );
+            else
+                moveTo( x, Xobj.END_POS );
+        }
+
+        private void moveTo ( Xobj x, int p )
+        {
+            _xobj = x;
+            _pos = p;
+        }
+
+        void push ( )
+        {
+            if (_stackSize == _stackXobjs.length)
+            {
+                Xobj[] xobjs = new Xobj [ _stackSize * 2 ];
+                int[]  poss  = new int [ _stackSize * 2 ];
+
+                System.arraycopy( _stackXobjs, 0, xobjs, 0, _stackSize );
+                System.arraycopy( _stackPoss, 0, poss, 0, _stackSize );
+
+                _stackXobjs = xobjs;
+                _stackPoss = poss;
+            }
+
+            _stackXobjs [ _stackSize ] = _xobj;
+            _stackPoss [ _stackSize++ ] = _pos;
+        }
+
+        void pop ( )
+        {
+            _xobj = _stackXobjs [ --_stackSize ];
+            _pos = _stackPoss [ _stackSize ];
+
+            _stackXobjs [ _stackSize ] = null;
+        }
+
+        Object getChars ( )
+        {
+            Xobj x = _xobj;
+
+            if (x == null || _pos <= 0)
+            {
+                _offSrc = 0;
+                _cchSrc = 0;
+
+                return null;
+            }
+
+            int pa = x.posAfter();
+
+            if (_pos >= pa)
+            {
+                _offSrc = x._offAfter + _pos - pa;
+                _cchSrc = x._cchAfter - (_pos - pa);
+
+                return x._srcAfter;
+            }
+
+            _offSrc = x._offValue + _pos - 1;
+            _cchSrc = x._cchValue - (_pos - 1);
+
+            return x._srcValue;
+        }
+
+        List getAncestorNamespaces ( ) { return null; }
+
+        XmlDocumentProperties getDocProps ( ) { return null; }
+
+        private Xobj _top;
+
+        // A null _xobj is the synthetic root: its start at 0, its end at
+        // END_POS
+
+        private Xobj _xobj;
+        private int  _pos;
+
+        private Xobj[] _stackXobjs;
+        private int[]  _stackPoss;
+        private int    _stackSize;
+    }
+
     private static final class PrettySaveCur extends SaveCur
     {
         PrettySaveCur ( SaveCur c, XmlOptions options )
@@ -4348,6 +5818,8 @@ abstract class Saver
 
         XmlDocumentProperties getDocProps ( ) { return _cur.getDocProps(); }
 
+        Xobj getXobj ( ) { return _txt == null ? _cur.getXobj() : null; }
+
         static void spaces ( StringBuffer sb, int offset, int count )
         {
             while ( count-- > 0 )
@@ -4406,6 +5878,8 @@ abstract class Saver
     private ArrayList _attrNames;
     private ArrayList _attrValues;
 
+    private int       _depth;
+
     private ArrayList _namespaceStack;
     private int       _currentMapping;
     private HashMap   _uriMap;
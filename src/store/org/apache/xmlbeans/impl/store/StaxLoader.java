@@ -0,0 +1,411 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import org.apache.xmlbeans.XmlError;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.XmlOptionsBean;
+import org.apache.xmlbeans.XmlRuntimeException;
+import org.apache.xmlbeans.impl.common.ResolverUtil;
+import org.apache.xmlbeans.impl.common.StaxHelper;
+import org.apache.xmlbeans.impl.common.XBLogFactory;
+import org.apache.xmlbeans.impl.common.XBLogger;
+
+/**
+ * Loads documents from streams, readers and strings with a StAX parser
+ * instead of a SAX one, when XmlOptions.setLoadUseStax() is given.
+ * <p/>
+ * Whichever StAX implementation is found by XMLInputFactory (the JDK's,
+ * Woodstox or Aalto) is used.  Creating and configuring a factory is the
+ * expensive part, and a configured factory is safe to use from many
+ * threads, so factories are pooled, one per configuration.  StAX readers
+ * cannot be reset to read another document through the standard API, so a
+ * new reader is created by the pooled factory for every load.
+ * <p/>
+ * The loader honors the options of the SAX loader as far as StAX allows:
+ * line numbers, the DTD options, the entity expansion and entity bytes
+ * limits (mapped to the JDK and Woodstox properties) and entity resolution.
+ * Entities are not resolved unless an entity resolver or
+ * setLoadUseDefaultResolver() is given.
+ */
+public final class StaxLoader
+{
+    private static final XBLogger logger = XBLogFactory.getLogger(StaxLoader.class);
+
+    private static final String JDK_ENTITY_EXPANSION_LIMIT =
+        "http://www.oracle.com/xml/jaxp/properties/entityExpansionLimit";
+    private static final String JDK_ENTITY_SIZE_LIMIT =
+        "http://www.oracle.com/xml/jaxp/properties/maxGeneralEntitySizeLimit";
+    private static final String JDK_REPORT_CDATA =
+        "http://java.sun.com/xml/stream/properties/report-cdata-event";
+    private static final String WSTX_MAX_ENTITY_COUNT = "com.ctc.wstx.maxEntityCount";
+
+    private static final int DEFAULT_ENTITY_BYTES_LIMIT = 10240;
+
+    private static final ConcurrentHashMap _factories = new ConcurrentHashMap();
+
+    private static final AtomicLong _factoriesCreated = new AtomicLong();
+    private static final AtomicLong _loads = new AtomicLong();
+
+    private StaxLoader()
+    {
+    }
+
+    /**
+     * Returns true if the given options ask for documents to be loaded with
+     * StAX.  An XMLReader given with setLoadUseXMLReader() takes precedence.
+     */
+    static boolean isSelected(XmlOptions options)
+    {
+        return options != null &&
+            options.hasOption(XmlOptions.LOAD_USE_STAX) &&
+            !options.hasOption(XmlOptions.LOAD_USE_XMLREADER);
+    }
+
+    static Cur load(Locale l, InputSource is, XmlOptions options)
+        throws XmlException, IOException
+    {
+        XMLInputFactory factory = getFactory(options);
+        XMLStreamReader xsr;
+
+        try
+        {
+            if (is.getCharacterStream() != null)
+                xsr = factory.createXMLStreamReader(is.getCharacterStream());
+            else
+                xsr = factory.createXMLStreamReader(is.getByteStream());
+        }
+        catch (XMLStreamException e)
+        {
+            throw loadException(e, options);
+        }
+
+        _loads.incrementAndGet();
+
+        try
+        {
+            return l.loadXMLStreamReader(xsr, options);
+        }
+        catch (XMLStreamException e)
+        {
+            throw loadException(e, options);
+        }
+        catch (XmlRuntimeException e)
+        {
+            throw new XmlException(e);
+        }
+        finally
+        {
+            try
+            {
+                xsr.close();
+            }
+            catch (XMLStreamException e)
+            {
+            }
+        }
+    }
+
+    private static XmlException loadException(XMLStreamException e, XmlOptions options)
+    {
+        if (e.getNestedException() instanceof IOException)
+            return new XmlException(e.getNestedException().getMessage(), e.getNestedException());
+
+        Location loc = e.getLocation();
+
+        XmlError err = loc == null
+            ? XmlError.forMessage(e.getMessage())
+            : XmlError.forLocation(e.getMessage(),
+                (String) XmlOptions.safeGet(options, XmlOptions.DOCUMENT_SOURCE_NAME),
+                loc.getLineNumber(), loc.getColumnNumber(), -1);
+
+        return new XmlException(err.toString(), e, err);
+    }
+
+    /**
+     * Returns a configured factory for the given options.  Factories
+     * resolving entities with the built in resolver, or not at all, are
+     * pooled; one resolving entities with a user's EntityResolver is not.
+     */
+    private static XMLInputFactory getFactory(XmlOptions options)
+    {
+        XmlOptionsBean optionsBean = new XmlOptionsBean(options);
+
+        EntityResolver er = null;
+        boolean useDefaultResolver = optionsBean.isLoadUseDefaultResolver();
+
+        if (!useDefaultResolver)
+        {
+            er = optionsBean.getEntityResolver();
+
+            if (er == null)
+                er = ResolverUtil.getGlobalEntityResolver();
+        }
+
+        if (er != null)
+            return newFactory(optionsBean, new EntityResolverAdapter(er));
+
+        String config = configuration(optionsBean);
+        XMLInputFactory factory = (XMLInputFactory) _factories.get(config);
+
+        if (factory == null)
+        {
+            factory = newFactory(optionsBean,
+                useDefaultResolver ? null : new IgnoringResolver());
+
+            XMLInputFactory previous = (XMLInputFactory) _factories.putIfAbsent(config, factory);
+
+            if (previous != null)
+                factory = previous;
+        }
+
+        return factory;
+    }
+
+    private static String configuration(XmlOptionsBean options)
+    {
+        return options.isLoadUseDefaultResolver() + "," +
+            options.isLoadDTDGrammar() + "," + options.isLoadExternalDTD() + "," +
+            options.getEntityExpansionLimit() + "," + entityBytesLimit(options);
+    }
+
+    private static int entityBytesLimit(XmlOptions options)
+    {
+        Integer limit = (Integer) options.get(XmlOptions.LOAD_ENTITY_BYTES_LIMIT);
+
+        return limit == null ? DEFAULT_ENTITY_BYTES_LIMIT : limit.intValue();
+    }
+
+    private static XMLInputFactory newFactory(XmlOptionsBean options, XMLResolver resolver)
+    {
+        XMLInputFactory factory = StaxHelper.newXMLInputFactory(options);
+
+        // Like the SAX loader, always read the internal subset so the
+        // entities declared there are expanded; the DTD options only decide
+        // whether external entities are read.
+
+        trySetProperty(factory, XMLInputFactory.SUPPORT_DTD, Boolean.TRUE);
+        trySetProperty(factory, XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+        trySetProperty(factory, JDK_REPORT_CDATA, Boolean.TRUE);
+        trySetProperty(factory, JDK_ENTITY_EXPANSION_LIMIT,
+            Integer.toString(options.getEntityExpansionLimit()));
+        trySetProperty(factory, JDK_ENTITY_SIZE_LIMIT,
+            Integer.toString(entityBytesLimit(options)));
+        trySetProperty(factory, WSTX_MAX_ENTITY_COUNT,
+            new Long(options.getEntityExpansionLimit()));
+
+        if (resolver != null)
+            factory.setXMLResolver(resolver);
+
+        _factoriesCreated.incrementAndGet();
+
+        return factory;
+    }
+
+    private static void trySetProperty(XMLInputFactory factory, String name, Object value)
+    {
+        if (!factory.isPropertySupported(name))
+            return;
+
+        try
+        {
+            factory.setProperty(name, value);
+        }
+        catch (IllegalArgumentException e)
+        {
+            logger.log(XBLogger.DEBUG, "StAX Property unsupported", name, e);
+        }
+    }
+
+    /**
+     * Returns the name, public id and system id of the document type
+     * declared by the text of a StAX DTD event, or null if it cannot be
+     * parsed.  The ids are null when not given.
+     */
+    static String[] doctype(String text)
+    {
+        if (text == null)
+            return null;
+
+        int i = text.indexOf("<!DOCTYPE");
+
+        if (i < 0)
+            return null;
+
+        String[] result = new String[3];
+        int n = text.length();
+
+        i = skipSpace(text, i + 9);
+
+        int start = i;
+
+        while (i < n && !isSpace(text.charAt(i)) && text.charAt(i) != '[' && text.charAt(i) != '>')
+            i++;
+
+        if (i == start)
+            return null;
+
+        result[0] = text.substring(start, i);
+
+        i = skipSpace(text, i);
+
+        int idCount;
+
+        if (text.startsWith("PUBLIC", i))
+            idCount = 2;
+        else if (text.startsWith("SYSTEM", i))
+            idCount = 1;
+        else
+            return result;
+
+        i += 6;
+
+        for (int id = 3 - idCount; id < 3; id++)
+        {
+            i = skipSpace(text, i);
+
+            if (i >= n || (text.charAt(i) != '"' && text.charAt(i) != '\''))
+                return result;
+
+            int end = text.indexOf(text.charAt(i), i + 1);
+
+            if (end < 0)
+                return result;
+
+            result[id] = text.substring(i + 1, end);
+            i = end + 1;
+        }
+
+        return result;
+    }
+
+    private static int skipSpace(String text, int i)
+    {
+        while (i < text.length() && isSpace(text.charAt(i)))
+            i++;
+
+        return i;
+    }
+
+    private static boolean isSpace(char ch)
+    {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r';
+    }
+
+    /**
+     * Resolves every external entity to empty content, like the default
+     * EntityResolver of the SAX loader.
+     */
+    private static final class IgnoringResolver implements XMLResolver
+    {
+        public Object resolveEntity(String publicId, String systemId,
+            String baseURI, String namespace)
+        {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+    }
+
+    /**
+     * Resolves external entities with a SAX EntityResolver.
+     */
+    private static final class EntityResolverAdapter implements XMLResolver
+    {
+        EntityResolverAdapter(EntityResolver er)
+        {
+            _er = er;
+        }
+
+        public Object resolveEntity(String publicId, String systemId,
+            String baseURI, String namespace)
+            throws XMLStreamException
+        {
+            try
+            {
+                InputSource is = _er.resolveEntity(publicId, systemId);
+
+                if (is == null)
+                    return null;
+
+                if (is.getByteStream() != null)
+                    return is.getByteStream();
+
+                if (is.getCharacterStream() != null)
+                    return new ByteArrayInputStream(readFully(is.getCharacterStream()).getBytes("UTF-8"));
+
+                if (is.getSystemId() != null)
+                    return new URL(is.getSystemId()).openStream();
+
+                return null;
+            }
+            catch (SAXException e)
+            {
+                throw new XMLStreamException(e);
+            }
+            catch (IOException e)
+            {
+                throw new XMLStreamException(e);
+            }
+        }
+
+        private static String readFully(Reader r)
+            throws IOException
+        {
+            StringBuffer sb = new StringBuffer();
+            char[] buf = new char[1024];
+
+            for (int n; (n = r.read(buf)) >= 0; )
+                sb.append(buf, 0, n);
+
+            return sb.toString();
+        }
+
+        private final EntityResolver _er;
+    }
+
+    /**
+     * The number of StAX input factories created to load documents.
+     */
+    public static long getFactoriesCreated()
+    {
+        return _factoriesCreated.get();
+    }
+
+    /**
+     * The number of documents loaded with StAX.
+     */
+    public static long getLoads()
+    {
+        return _loads.get();
+    }
+}
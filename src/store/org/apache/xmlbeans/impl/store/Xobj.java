@@ -575,6 +575,8 @@ abstract class Xobj implements TypeStore
 
         if (!_name.equals( newName ) || !_name.getPrefix().equals( newName.getPrefix() ))
         {
+            _locale.checkNotFrozen();
+
 // TODO - this is not a structural change .... perhaps should not issue a change here?
             _locale.notifyChange();
 
@@ -603,6 +605,9 @@ abstract class Xobj implements TypeStore
                 disconnectFromHere.disconnectNonRootUsers();
             }
 
+            if (isElem() && _parent != null)
+                _parent._childIndex = null;
+
             _locale._versionAll++;
             _locale._versionSansText++;
         }
@@ -754,6 +759,9 @@ abstract class Xobj implements TypeStore
     {
         if (_parent != null)
         {
+            if (_parent._childIndex != null)
+                _parent._childIndex.removed( this );
+
             if (_parent._firstChild == this)
                 _parent._firstChild = _nextSibling;
 
@@ -784,6 +792,9 @@ abstract class Xobj implements TypeStore
 
         ensureParent();
 
+        if (_parent._childIndex != null)
+            _parent._childIndex = null;
+
         s._parent = _parent;
         s._prevSibling = _prevSibling;
         s._nextSibling = this;
@@ -807,6 +818,9 @@ abstract class Xobj implements TypeStore
         assert c._nextSibling == null;
         assert _lastChild == null || _firstChild != null;
 
+        if (_childIndex != null)
+            _childIndex.appended( c );
+
         c._parent = this;
         c._prevSibling = _lastChild;
 
@@ -826,6 +840,9 @@ abstract class Xobj implements TypeStore
         assert first._parent == this;
         assert last._parent == this;
 
+        if (_childIndex != null)
+            _childIndex = null;
+
         if (_firstChild == first)
             _firstChild = last._nextSibling;
 
@@ -855,6 +872,9 @@ abstract class Xobj implements TypeStore
         assert first._prevSibling == null;
         assert last._nextSibling == null;
 
+        if (_parent._childIndex != null)
+            _parent._childIndex = null;
+
         first._prevSibling = _prevSibling;
         last._nextSibling = this;
 
@@ -878,6 +898,9 @@ abstract class Xobj implements TypeStore
         assert last._nextSibling == null;
         assert !first.isRoot();
 
+        if (_childIndex != null)
+            _childIndex = null;
+
         first._prevSibling = _lastChild;
 
         if (_lastChild == null)
@@ -1195,11 +1218,12 @@ abstract class Xobj implements TypeStore
             {
                 String s = CharUtil.getString( src, _locale._offSrc, _locale._cchSrc );
 
-                // Cache string to be able to use it later again
+                // Cache string to be able to use it later again, unless the
+                // document is frozen and its text packed
 
                 int cch = s.length();
 
-                if (cch > 0)
+                if (cch > 0 && !_locale._readOnly)
                 {
                     Xobj lastAttr = lastAttr();
 
@@ -1276,7 +1300,7 @@ abstract class Xobj implements TypeStore
         {
             s = CharUtil.getString( _srcAfter, _offAfter + p - pa, cch );
 
-            if (p == pa && cch == _cchAfter)
+            if (p == pa && cch == _cchAfter && !_locale._readOnly)
             {
                 _srcAfter = s;
                 _offAfter = 0;
@@ -1286,7 +1310,7 @@ abstract class Xobj implements TypeStore
         {
             s = CharUtil.getString( _srcValue, _offValue + p - 1, cch );
 
-            if (p == 1 && cch == _cchValue)
+            if (p == 1 && cch == _cchValue && !_locale._readOnly)
             {
                 _srcValue = s;
                 _offValue = 0;
@@ -1819,6 +1843,27 @@ abstract class Xobj implements TypeStore
         }
     }
 
+    public CharSequence fetch_chars ( int wsr )
+    {
+        _locale.enter();
+
+        try
+        {
+            assert isValid() && isOccupied();
+
+            if (hasChildren())
+                return null;
+
+            Object src = getFirstChars();
+
+            return Locale.getCharRange( wsr ).set( src, _locale._offSrc, _locale._cchSrc );
+        }
+        finally
+        {
+            _locale.exit();
+        }
+    }
+
     public XmlCursor new_cursor ( )
     {
         _locale.enter();
@@ -2065,44 +2110,76 @@ abstract class Xobj implements TypeStore
 
     public int count_elements ( QName name )
     {
-        return _locale.count( this, name, null );
+        return ChildIndex.count( this, name, null );
     }
 
     public int count_elements ( QNameSet names )
     {
-        return _locale.count( this, null, names );
+        return ChildIndex.count( this, null, names );
     }
 
     public TypeStoreUser find_element_user ( QName name, int i )
     {
-        for ( Xobj x = _firstChild ; x != null ; x = x._nextSibling )
-            if (x.isElem() && x._name.equals( name ) && --i < 0)
-                return x.getUser();
+        Xobj x = ChildIndex.nth( this, name, null, i );
 
-        return null;
+        return x == null ? null : x.getUser();
     }
 
     public TypeStoreUser find_element_user ( QNameSet names, int i )
     {
-        for ( Xobj x = _firstChild ; x != null ; x = x._nextSibling )
-            if (x.isElem() && names.contains( x._name ) && --i < 0)
-                return x.getUser();
+        Xobj x = ChildIndex.nth( this, null, names, i );
 
-        return null;
+        return x == null ? null : x.getUser();
     }
 
     public void find_all_element_users ( QName name, List fillMeUp )
     {
-        for ( Xobj x = _firstChild ; x != null ; x = x._nextSibling )
-            if (x.isElem() && x._name.equals( name ))
-                fillMeUp.add( x.getUser() );
+        ChildIndex.fill( this, name, null, fillMeUp );
     }
 
     public void find_all_element_users ( QNameSet names, List fillMeUp )
     {
-        for ( Xobj x = _firstChild ; x != null ; x = x._nextSibling )
-            if (x.isElem() && names.contains( x._name ))
-                fillMeUp.add( x.getUser() );
+        ChildIndex.fill( this, null, names, fillMeUp );
+    }
+
+    public void find_all_element_users ( QName name, Object[] fillMeUp )
+    {
+        ElementValues.fillUsers( this, name, null, fillMeUp );
+    }
+
+    public void find_all_element_users ( QNameSet names, Object[] fillMeUp )
+    {
+        ElementValues.fillUsers( this, null, names, fillMeUp );
+    }
+
+    public int[] find_all_element_ints ( QName name )
+    {
+        return ElementValues.ints( this, name, null );
+    }
+
+    public int[] find_all_element_ints ( QNameSet names )
+    {
+        return ElementValues.ints( this, null, names );
+    }
+
+    public long[] find_all_element_longs ( QName name )
+    {
+        return ElementValues.longs( this, name, null );
+    }
+
+    public long[] find_all_element_longs ( QNameSet names )
+    {
+        return ElementValues.longs( this, null, names );
+    }
+
+    public double[] find_all_element_doubles ( QName name )
+    {
+        return ElementValues.doubles( this, name, null );
+    }
+
+    public double[] find_all_element_doubles ( QNameSet names )
+    {
+        return ElementValues.doubles( this, null, names );
     }
 
     private static TypeStoreUser insertElement ( QName name, Xobj x, int pos )
@@ -2132,11 +2209,11 @@ abstract class Xobj implements TypeStore
         if (!isContainer())
             throw new IllegalStateException();
 
-        Xobj x = _locale.findNthChildElem( this, name, null, i );
+        Xobj x = ChildIndex.nth( this, name, null, i );
 
         if (x == null)
         {
-            if (i > _locale.count( this, name, null ) + 1)
+            if (i > ChildIndex.count( this, name, null ) + 1)
                 throw new IndexOutOfBoundsException();
 
             return add_element_user( name );
@@ -2153,11 +2230,11 @@ abstract class Xobj implements TypeStore
         if (!isContainer())
             throw new IllegalStateException();
 
-        Xobj x = _locale.findNthChildElem( this, null, names, i );
+        Xobj x = ChildIndex.nth( this, null, names, i );
 
         if (x == null)
         {
-            if (i > _locale.count( this, null, names ) + 1)
+            if (i > ChildIndex.count( this, null, names ) + 1)
                 throw new IndexOutOfBoundsException();
 
             return add_element_user( name );
@@ -2227,13 +2304,7 @@ abstract class Xobj implements TypeStore
         if (!isContainer())
             throw new IllegalStateException();
 
-        Xobj x;
-
-        for ( x = _firstChild ; x != null ; x = x._nextSibling )
-            if (x.isElem() && x._name.equals( name ) && --i < 0)
-                break;
-
-        removeElement( x );
+        removeElement( ChildIndex.nth( this, name, null, i ) );
     }
 
     public void remove_element ( QNameSet names, int i )
@@ -2244,13 +2315,7 @@ abstract class Xobj implements TypeStore
         if (!isContainer())
             throw new IllegalStateException();
 
-        Xobj x;
-
-        for ( x = _firstChild ; x != null ; x = x._nextSibling )
-            if (x.isElem() && names.contains( x._name ) && --i < 0)
-                break;
-
-        removeElement( x );
+        removeElement( ChildIndex.nth( this, null, names, i ) );
     }
 
     public TypeStoreUser find_attribute_user ( QName name )
@@ -2386,8 +2451,9 @@ abstract class Xobj implements TypeStore
         if (sType == null)
             sType = type == null ? XmlObject.type : type;
 
+        // copies of a frozen document go to a new locale, so they can be modified
         Locale locale = this.locale();
-        if ( Boolean.TRUE.equals(options.get(XmlOptions.COPY_USE_NEW_SYNC_DOMAIN)) )
+        if ( Boolean.TRUE.equals(options.get(XmlOptions.COPY_USE_NEW_SYNC_DOMAIN)) || locale._readOnly )
             locale = Locale.getLocale(stl, options);
 
         if (sType.isDocumentType() || (sType.isNoType() && (this instanceof Xobj.DocumentXobj)))
@@ -3238,6 +3304,9 @@ abstract class Xobj implements TypeStore
     Xobj _firstChild;
     Xobj _lastChild;
 
+    // The index of the child elements by name, see ChildIndex
+    volatile ChildIndex _childIndex;
+
     Object _srcValue, _srcAfter;
     int    _offValue, _offAfter;
     int    _cchValue, _cchAfter;
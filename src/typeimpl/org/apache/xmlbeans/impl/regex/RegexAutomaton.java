@@ -0,0 +1,482 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A deterministic automaton compiled from the token tree of an XML Schema
+ * regular expression, which matches a whole string in one pass over its
+ * characters without backtracking.
+ * <p>
+ * XML Schema expressions have no back references, anchors or look-around,
+ * so they are regular; the tree is turned into an NFA, whose labels are
+ * sets of code points, and then into a DFA by subset construction.  Code
+ * points are mapped to classes which no label tells apart, so the
+ * transition table has a column per class rather than per code point.
+ * <p>
+ * An automaton is immutable once compiled and matches without locking.
+ * {@link #compile} returns null for trees it does not handle (anything
+ * outside XML Schema mode, or literal surrogates) and for expressions whose
+ * automaton would be too large, such as large counted repeats; those are
+ * left to the backtracking matcher.
+ */
+final class RegexAutomaton {
+
+    /** Result of {@link #match} for text this automaton does not decide. */
+    static final int UNDECIDED = -1;
+
+    private static final int MAX_NFA_STATES = 8192;
+    private static final int MAX_DFA_STATES = 2048;
+    private static final int MAX_TABLE_SIZE = 1 << 18;
+
+    private static final int ASCII = 128;
+
+    private final int[] bounds;             // sorted starts of the code point intervals
+    private final int[] intervalClasses;    // class of each interval
+    private final int[] asciiClasses;       // class of each ASCII code point
+    private final int classes;
+    private final int[] next;               // state * classes + class -> state, or -1
+    private final boolean[] accepting;
+
+    private RegexAutomaton(int[] bounds, int[] intervalClasses, int classes,
+                           int[] next, boolean[] accepting) {
+        this.bounds = bounds;
+        this.intervalClasses = intervalClasses;
+        this.classes = classes;
+        this.next = next;
+        this.accepting = accepting;
+
+        this.asciiClasses = new int[ASCII];
+        for (int ch = 0;  ch < ASCII;  ch ++)
+            this.asciiClasses[ch] = this.lookupClass(ch);
+    }
+
+    /**
+     * Compiles the token tree of an expression parsed in XML Schema mode,
+     * or returns null if it cannot be compiled.
+     */
+    static RegexAutomaton compile(Token tok) {
+        try {
+            Builder b = new Builder();
+            int end = b.add(tok, b.newState());
+            return b.determinize(end);
+        } catch (TooComplex e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns 1 if the whole of the given range of the text matches, 0 if
+     * it does not, or UNDECIDED if the text has a lone surrogate, which the
+     * backtracking matcher pairs with whatever follows it.  The text up to
+     * the first lone surrogate splits into the same code points for both,
+     * so failing before one is final.
+     */
+    int match(String target, int start, int end) {
+        int state = 0;
+        for (int i = start;  i < end;  ) {
+            int ch = target.charAt(i++);
+            if (ch >= 0xd800 && ch <= 0xdfff) {
+                if (ch > 0xdbff || i >= end || !REUtil.isLowSurrogate(target.charAt(i)))
+                    return UNDECIDED;
+                ch = REUtil.composeFromSurrogates(ch, target.charAt(i++));
+            }
+            state = this.next[state * this.classes + this.classOf(ch)];
+            if (state < 0)
+                return 0;
+        }
+        return this.accepting[state] ? 1 : 0;
+    }
+
+    /**
+     * Same as {@link #match(String, int, int)} for a range of a char array.
+     */
+    int match(char[] target, int start, int end) {
+        int state = 0;
+        for (int i = start;  i < end;  ) {
+            int ch = target[i++];
+            if (ch >= 0xd800 && ch <= 0xdfff) {
+                if (ch > 0xdbff || i >= end || !REUtil.isLowSurrogate(target[i]))
+                    return UNDECIDED;
+                ch = REUtil.composeFromSurrogates(ch, target[i++]);
+            }
+            state = this.next[state * this.classes + this.classOf(ch)];
+            if (state < 0)
+                return 0;
+        }
+        return this.accepting[state] ? 1 : 0;
+    }
+
+    private int classOf(int ch) {
+        return ch < ASCII ? this.asciiClasses[ch] : this.lookupClass(ch);
+    }
+
+    private int lookupClass(int ch) {
+        int i = Arrays.binarySearch(this.bounds, ch);
+        return this.intervalClasses[i >= 0 ? i : -i - 2];
+    }
+
+    // ================================================================
+
+    private static final class TooComplex extends RuntimeException {
+        TooComplex() {
+        }
+    }
+
+    /**
+     * Builds the NFA of a token tree, then the DFA.  Each NFA state has
+     * epsilon edges and at most one labelled edge.
+     */
+    private static final class Builder {
+        int states = 0;
+        int[][] epsilons = new int[64][];
+        int[] epsilonCounts = new int[64];
+        int[] labels = new int[64];         // index into labelSets, or -1
+        int[] targets = new int[64];
+        List labelSets = new ArrayList();   // sorted, merged int[] ranges
+
+        int newState() {
+            if (this.states == MAX_NFA_STATES)
+                throw new TooComplex();
+            if (this.states == this.labels.length) {
+                int n = this.states * 2;
+                int[][] e = new int[n][];
+                System.arraycopy(this.epsilons, 0, e, 0, this.states);
+                this.epsilons = e;
+                this.epsilonCounts = grow(this.epsilonCounts, n);
+                this.labels = grow(this.labels, n);
+                this.targets = grow(this.targets, n);
+            }
+            this.labels[this.states] = -1;
+            return this.states ++;
+        }
+
+        private static int[] grow(int[] a, int n) {
+            int[] b = new int[n];
+            System.arraycopy(a, 0, b, 0, a.length);
+            return b;
+        }
+
+        void epsilon(int from, int to) {
+            int[] e = this.epsilons[from];
+            int n = this.epsilonCounts[from];
+            if (e == null)
+                this.epsilons[from] = e = new int[2];
+            else if (n == e.length)
+                this.epsilons[from] = e = grow(e, n * 2);
+            e[n] = to;
+            this.epsilonCounts[from] = n + 1;
+        }
+
+        int labelled(int from, int[] ranges) {
+            if (this.labels[from] >= 0) {
+                int free = this.newState();
+                this.epsilon(from, free);
+                from = free;
+            }
+            int to = this.newState();
+            this.labels[from] = this.labelSets.size();
+            this.targets[from] = to;
+            this.labelSets.add(ranges);
+            return to;
+        }
+
+        /**
+         * Adds the states matching the given token after the given state,
+         * and returns the state reached at the end of it.
+         */
+        int add(Token tok, int from) {
+            switch (tok.type) {
+              case Token.CHAR:
+                {
+                    int ch = tok.getChar();
+                    if (ch >= 0xd800 && ch <= 0xdfff)
+                        throw new TooComplex();
+                    return this.labelled(from, new int[] {ch, ch});
+                }
+
+              case Token.STRING:
+                {
+                    String s = tok.getString();
+                    int state = from;
+                    for (int i = 0;  i < s.length();  ) {
+                        int ch = s.charAt(i++);
+                        if (REUtil.isHighSurrogate(ch) && i < s.length()
+                            && REUtil.isLowSurrogate(s.charAt(i)))
+                            ch = REUtil.composeFromSurrogates(ch, s.charAt(i++));
+                        else if (ch >= 0xd800 && ch <= 0xdfff)
+                            throw new TooComplex();
+                        state = this.labelled(state, new int[] {ch, ch});
+                    }
+                    return state;
+                }
+
+              case Token.DOT:
+                return this.labelled(from, complement(new int[] {
+                    0x0a, 0x0a, 0x0d, 0x0d, 0x2028, 0x2029}));
+
+              case Token.RANGE:
+              case Token.NRANGE:
+                {
+                    int[] ranges = normalize(((RangeToken) tok).ranges);
+                    if (tok.type == Token.NRANGE)
+                        ranges = complement(ranges);
+                    return this.labelled(from, ranges);
+                }
+
+              case Token.CONCAT:
+                {
+                    int state = from;
+                    for (int i = 0;  i < tok.size();  i ++)
+                        state = this.add(tok.getChild(i), state);
+                    return state;
+                }
+
+              case Token.UNION:
+                {
+                    int end = this.newState();
+                    for (int i = 0;  i < tok.size();  i ++) {
+                        int branch = this.newState();
+                        this.epsilon(from, branch);
+                        this.epsilon(this.add(tok.getChild(i), branch), end);
+                    }
+                    return end;
+                }
+
+              case Token.CLOSURE:
+              case Token.NONGREEDYCLOSURE:
+                {
+                    // min -1 is {0,}, max -1 is unbounded
+                    Token child = tok.getChild(0);
+                    int min = Math.max(tok.getMin(), 0);
+                    int max = tok.getMax();
+                    int state = from;
+
+                    for (int i = 0;  i < min;  i ++)
+                        state = this.add(child, state);
+
+                    if (max < 0) {
+                        int loop = this.newState();
+                        this.epsilon(state, loop);
+                        this.epsilon(this.add(child, loop), loop);
+                        return loop;
+                    }
+
+                    for (int i = min;  i < max;  i ++) {
+                        int optional = this.newState();
+                        int end = this.newState();
+                        this.epsilon(state, optional);
+                        this.epsilon(state, end);
+                        this.epsilon(this.add(child, optional), end);
+                        state = end;
+                    }
+                    return state;
+                }
+
+              case Token.PAREN:
+                return this.add(tok.getChild(0), from);
+
+              case Token.EMPTY:
+                return from;
+
+              default:
+                throw new TooComplex();
+            }
+        }
+
+        /**
+         * Returns the ranges sorted and merged.
+         */
+        private static int[] normalize(int[] ranges) {
+            if (ranges == null)
+                return new int[0];
+            int n = ranges.length / 2;
+            long[] pairs = new long[n];
+            for (int i = 0;  i < n;  i ++)
+                pairs[i] = ((long) ranges[2 * i] << 32) | ranges[2 * i + 1];
+            Arrays.sort(pairs);
+
+            int[] result = new int[ranges.length];
+            int wp = 0;
+            for (int i = 0;  i < n;  i ++) {
+                int lo = (int) (pairs[i] >>> 32);
+                int hi = (int) pairs[i];
+                if (wp > 0 && lo <= result[wp - 1] + 1) {
+                    if (hi > result[wp - 1])
+                        result[wp - 1] = hi;
+                } else {
+                    result[wp ++] = lo;
+                    result[wp ++] = hi;
+                }
+            }
+            int[] compact = new int[wp];
+            System.arraycopy(result, 0, compact, 0, wp);
+            return compact;
+        }
+
+        /**
+         * Returns the complement of sorted, merged ranges.
+         */
+        private static int[] complement(int[] ranges) {
+            int[] result = new int[ranges.length + 2];
+            int wp = 0;
+            int lo = 0;
+            for (int i = 0;  i < ranges.length;  i += 2) {
+                if (ranges[i] > lo) {
+                    result[wp ++] = lo;
+                    result[wp ++] = ranges[i] - 1;
+                }
+                lo = ranges[i + 1] + 1;
+            }
+            if (lo <= Token.UTF16_MAX) {
+                result[wp ++] = lo;
+                result[wp ++] = Token.UTF16_MAX;
+            }
+            int[] compact = new int[wp];
+            System.arraycopy(result, 0, compact, 0, wp);
+            return compact;
+        }
+
+        private BitSet closure(BitSet set) {
+            int[] stack = new int[this.states];
+            int sp = 0;
+            for (int s = set.nextSetBit(0);  s >= 0;  s = set.nextSetBit(s + 1))
+                stack[sp ++] = s;
+            while (sp > 0) {
+                int s = stack[-- sp];
+                int[] e = this.epsilons[s];
+                for (int i = 0;  i < this.epsilonCounts[s];  i ++) {
+                    if (!set.get(e[i])) {
+                        set.set(e[i]);
+                        stack[sp ++] = e[i];
+                    }
+                }
+            }
+            return set;
+        }
+
+        RegexAutomaton determinize(int end) {
+            // The starts of the intervals no label splits
+
+            int labelCount = this.labelSets.size();
+            int[] starts = new int[4];
+            int count = 0;
+            starts[count ++] = 0;
+            for (int l = 0;  l < labelCount;  l ++) {
+                int[] ranges = (int[]) this.labelSets.get(l);
+                for (int i = 0;  i < ranges.length;  i += 2) {
+                    if (count + 2 > starts.length)
+                        starts = grow(starts, starts.length * 2);
+                    starts[count ++] = ranges[i];
+                    starts[count ++] = ranges[i + 1] + 1;
+                }
+            }
+            Arrays.sort(starts, 0, count);
+            int n = 0;
+            for (int i = 0;  i < count;  i ++) {
+                if (n == 0 || starts[i] != starts[n - 1])
+                    starts[n ++] = starts[i];
+            }
+            int[] bounds = new int[n];
+            System.arraycopy(starts, 0, bounds, 0, n);
+
+            // Intervals in the same labels fall in the same class
+
+            BitSet[] signatures = new BitSet[n];
+            for (int i = 0;  i < n;  i ++)
+                signatures[i] = new BitSet();
+            for (int l = 0;  l < labelCount;  l ++) {
+                int[] ranges = (int[]) this.labelSets.get(l);
+                for (int i = 0;  i < ranges.length;  i += 2) {
+                    int from = Arrays.binarySearch(bounds, ranges[i]);
+                    int to = Arrays.binarySearch(bounds, ranges[i + 1] + 1);
+                    for (int k = from;  k < to;  k ++)
+                        signatures[k].set(l);
+                }
+            }
+
+            Map classIds = new HashMap();
+            List classLabels = new ArrayList();
+            int[] intervalClasses = new int[n];
+            for (int i = 0;  i < n;  i ++) {
+                Integer id = (Integer) classIds.get(signatures[i]);
+                if (id == null) {
+                    id = new Integer(classLabels.size());
+                    classIds.put(signatures[i], id);
+                    classLabels.add(signatures[i]);
+                }
+                intervalClasses[i] = id.intValue();
+            }
+            int classes = classLabels.size();
+
+            // Subset construction
+
+            List dstates = new ArrayList();
+            Map dstateIds = new HashMap();
+            BitSet start = new BitSet();
+            start.set(0);
+            dstates.add(this.closure(start));
+            dstateIds.put(start, new Integer(0));
+
+            int[] next = new int[Math.min(classes * 16, MAX_TABLE_SIZE)];
+            for (int d = 0;  d < dstates.size();  d ++) {
+                BitSet current = (BitSet) dstates.get(d);
+                for (int c = 0;  c < classes;  c ++) {
+                    BitSet labels = (BitSet) classLabels.get(c);
+                    BitSet target = new BitSet();
+                    for (int s = current.nextSetBit(0);  s >= 0;  s = current.nextSetBit(s + 1)) {
+                        if (this.labels[s] >= 0 && labels.get(this.labels[s]))
+                            target.set(this.targets[s]);
+                    }
+
+                    int id = -1;
+                    if (!target.isEmpty()) {
+                        this.closure(target);
+                        Integer existing = (Integer) dstateIds.get(target);
+                        if (existing == null) {
+                            if (dstates.size() == MAX_DFA_STATES
+                                || (dstates.size() + 1) * classes > MAX_TABLE_SIZE)
+                                throw new TooComplex();
+                            existing = new Integer(dstates.size());
+                            dstates.add(target);
+                            dstateIds.put(target, existing);
+                        }
+                        id = existing.intValue();
+                    }
+
+                    int index = d * classes + c;
+                    if (index >= next.length)
+                        next = grow(next, Math.min(next.length * 2, MAX_TABLE_SIZE));
+                    next[index] = id;
+                }
+            }
+
+            int[] table = new int[dstates.size() * classes];
+            System.arraycopy(next, 0, table, 0, table.length);
+            boolean[] accepting = new boolean[dstates.size()];
+            for (int d = 0;  d < accepting.length;  d ++)
+                accepting[d] = ((BitSet) dstates.get(d)).get(end);
+
+            return new RegexAutomaton(bounds, intervalClasses, classes, table, accepting);
+        }
+    }
+}
@@ -694,6 +694,15 @@ public class RegularExpression implements java.io.Serializable {
      */
     public boolean matches(char[]  target, int start, int end, Match match) {
 
+        if (match == null) {
+            RegexAutomaton automaton = this.automaton();
+            if (automaton != null) {
+                int result = automaton.match(target, start, end);
+                if (result != RegexAutomaton.UNDECIDED)
+                    return result == 1;
+            }
+        }
+
         synchronized (this) {
             if (this.operations == null)
                 this.prepare();
@@ -1403,6 +1412,15 @@ public class RegularExpression implements java.io.Serializable {
      */
     public boolean matches(String  target, int start, int end, Match match) {
 
+        if (match == null) {
+            RegexAutomaton automaton = this.automaton();
+            if (automaton != null) {
+                int result = automaton.match(target, start, end);
+                if (result != RegexAutomaton.UNDECIDED)
+                    return result == 1;
+            }
+        }
+
         synchronized (this) {
             if (this.operations == null)
                 this.prepare();
@@ -2759,6 +2777,13 @@ public class RegularExpression implements java.io.Serializable {
     transient Context context = null;
     transient RangeToken firstChar = null;
 
+    /**
+     * Matches plain XML Schema expressions without backtracking or locking.
+     * @see #automaton()
+     */
+    transient volatile RegexAutomaton automaton = null;
+    transient volatile boolean automatonCompiled = false;
+
     transient String fixedString = null;
     transient int fixedStringOptions;
     transient BMPattern fixedStringTable = null;
@@ -2807,6 +2832,20 @@ public class RegularExpression implements java.io.Serializable {
         }
     }
 
+    /**
+     * Returns the automaton for this expression, compiling it the first
+     * time, or null if the expression is only matched by backtracking.
+     * Threads racing here may each compile one; any of them will do.
+     */
+    private RegexAutomaton automaton() {
+        if (!this.automatonCompiled) {
+            if (this.options == XMLSCHEMA_MODE && !this.hasBackReferences)
+                this.automaton = RegexAutomaton.compile(this.tokentree);
+            this.automatonCompiled = true;
+        }
+        return this.automaton;
+    }
+
     /**
      * Prepares for matching.  This method is called just before starting matching.
      */
@@ -3001,6 +3040,8 @@ public class RegularExpression implements java.io.Serializable {
 
         this.operations = null;
         this.context = null;
+        this.automaton = null;
+        this.automatonCompiled = false;
     }
     /**
      *
@@ -0,0 +1,259 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.schema;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.SchemaParticle;
+
+/**
+ * A deterministic automaton for a content model, shared by the
+ * SchemaTypeVisitorImpls which visit it.
+ * <p/>
+ * A state is the stack of particle positions the visitor holds between
+ * elements, and a transition is the outcome of visiting an element name
+ * from that stack.  Transitions are worked out by a visitor the first time
+ * they are taken, so a content model only costs the states its documents
+ * reach, and after that visiting an element is a table lookup.
+ * <p/>
+ * Occurrence counts are part of the state.  Counts above minOccurs of an
+ * unbounded particle all behave alike, and are kept as one state; other
+ * counters make a state per count.  Once an automaton has as many states
+ * or transitions as it may keep, visitors carry on from the stack of their
+ * current state instead.
+ */
+final class ContentModelAutomaton
+{
+    private static final int MAX_STATES = 2048;
+    private static final int MAX_TRANSITIONS = 16384;
+
+    private final HashMap _states = new HashMap();
+    private final State _start;
+    private int _transitionCount;
+
+    // Works out new transitions, under the lock of the automaton
+    private final SchemaTypeVisitorImpl _visitor = new SchemaTypeVisitorImpl();
+
+    ContentModelAutomaton(SchemaParticle root)
+    {
+        _visitor.reset(root);
+        _start = state(_visitor.snapshot());
+    }
+
+    State start()
+    {
+        return _start;
+    }
+
+    /**
+     * Returns the transition from the given state on the given element
+     * name, or on null for the end of the content.  Returns null if the
+     * transition is new and the automaton is full.
+     */
+    Transition transition(State state, QName name)
+    {
+        Transition[] table = state._table;
+
+        if (table != null)
+        {
+            int mask = table.length - 1;
+
+            for (int i = hash(name) & mask; ; i = (i + 1) & mask)
+            {
+                Transition t = table[i];
+
+                if (t == null)
+                    break;
+
+                if (name == null ? t._name == null : name.equals(t._name))
+                    return t;
+            }
+        }
+
+        return addTransition(state, name);
+    }
+
+    private synchronized Transition addTransition(State state, QName name)
+    {
+        Transition[] table = state._table;
+
+        if (table != null)
+        {
+            for (int i = 0; i < table.length; i++)
+            {
+                Transition t = table[i];
+
+                if (t != null && (name == null ? t._name == null : name.equals(t._name)))
+                    return t;
+            }
+        }
+
+        if (_transitionCount >= MAX_TRANSITIONS)
+            return null;
+
+        _visitor.restore(state._key);
+
+        Transition t;
+
+        if (_visitor.visit(name))
+        {
+            Key key = _visitor.snapshot();
+            State target = (State) _states.get(key);
+
+            if (target == null)
+            {
+                if (_states.size() >= MAX_STATES)
+                    return null;
+
+                target = state(key);
+            }
+
+            t = new Transition(name, target, _visitor.currentParticle());
+        }
+        else
+            t = new Transition(name, null, null);
+
+        // Publish a new table, so lookups need no lock
+
+        int count = state._count + 1;
+        int capacity = table == null ? 4 : table.length;
+
+        while (count * 2 > capacity)
+            capacity *= 2;
+
+        Transition[] newTable = new Transition[capacity];
+        int mask = capacity - 1;
+
+        if (table != null)
+        {
+            for (int i = 0; i < table.length; i++)
+                if (table[i] != null)
+                    insert(newTable, mask, table[i]);
+        }
+
+        insert(newTable, mask, t);
+
+        state._count = count;
+        state._table = newTable;
+        _transitionCount++;
+
+        return t;
+    }
+
+    private static void insert(Transition[] table, int mask, Transition t)
+    {
+        int i = hash(t._name) & mask;
+
+        while (table[i] != null)
+            i = (i + 1) & mask;
+
+        table[i] = t;
+    }
+
+    private State state(Key key)
+    {
+        State state = new State(key);
+        _states.put(key, state);
+        return state;
+    }
+
+    private static int hash(QName name)
+    {
+        if (name == null)
+            return 0;
+
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    static final class State
+    {
+        final Key _key;
+
+        // Open addressed by element name; replaced, never changed, once published
+        volatile Transition[] _table;
+        int _count;
+
+        State(Key key)
+        {
+            _key = key;
+        }
+    }
+
+    static final class Transition
+    {
+        final QName _name;
+
+        // Null if the element is not valid here
+        final State _target;
+        final SchemaParticle _matched;
+
+        Transition(QName name, State target, SchemaParticle matched)
+        {
+            _name = name;
+            _target = target;
+            _matched = matched;
+        }
+    }
+
+    /**
+     * The particles on a visitor stack, with the positions within them.
+     */
+    static final class Key
+    {
+        final SchemaParticle[] _particles;
+        final int[] _positions;
+        private final int _hash;
+
+        Key(SchemaParticle[] particles, int[] positions)
+        {
+            _particles = particles;
+            _positions = positions;
+
+            int h = Arrays.hashCode(positions);
+
+            for (int i = 0; i < particles.length; i++)
+                h = h * 31 + System.identityHashCode(particles[i]);
+
+            _hash = h;
+        }
+
+        public int hashCode()
+        {
+            return _hash;
+        }
+
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key) obj;
+
+            if (_hash != other._hash || _particles.length != other._particles.length)
+                return false;
+
+            for (int i = 0; i < _particles.length; i++)
+                if (_particles[i] != other._particles[i])
+                    return false;
+
+            return Arrays.equals(_positions, other._positions);
+        }
+    }
+}
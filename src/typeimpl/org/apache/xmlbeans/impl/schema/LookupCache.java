@@ -0,0 +1,200 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.schema;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.xmlbeans.SystemProperties;
+
+/**
+ * A concurrent name to component cache used by SchemaTypeLoaderImpl.
+ * <p/>
+ * Lookups that found nothing are remembered too, but only for a while
+ * ("xmlbean.typeloader.notfound.ttl" milliseconds, 5 minutes by default)
+ * and only up to "xmlbean.typeloader.notfound.max" names per cache (4096
+ * by default), so that a stream of unknown names does not make the cache
+ * grow without bounds.
+ * <p/>
+ * The statistics getters are public so they can be reported; everything
+ * else is for the loader only.
+ */
+public final class LookupCache
+{
+    /** Returned by {@link #get} for a name known not to be found. */
+    static final Object NOT_FOUND = new Object();
+
+    private static final long NOT_FOUND_TTL =
+        longProperty("xmlbean.typeloader.notfound.ttl", 5 * 60 * 1000L);
+    private static final int NOT_FOUND_MAX =
+        (int) longProperty("xmlbean.typeloader.notfound.max", 4096);
+
+    private final String _name;
+    private final ConcurrentHashMap _map = new ConcurrentHashMap();
+    private final AtomicInteger _notFoundCount = new AtomicInteger();
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _notFoundHits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _expired = new AtomicLong();
+
+    private static final class NotFound
+    {
+        NotFound(long expires) { _expires = expires; }
+
+        final long _expires;
+    }
+
+    LookupCache(String name)
+    {
+        _name = name;
+    }
+
+    /**
+     * Returns the cached component, {@link #NOT_FOUND} if the name is
+     * known not to be found, or null if the name has to be looked up.
+     */
+    Object get(Object key)
+    {
+        Object value = _map.get(key);
+
+        if (value == null)
+        {
+            _misses.incrementAndGet();
+            return null;
+        }
+
+        if (value instanceof NotFound)
+        {
+            if (((NotFound) value)._expires - System.currentTimeMillis() < 0)
+            {
+                if (_map.remove(key, value))
+                {
+                    _notFoundCount.decrementAndGet();
+                    _expired.incrementAndGet();
+                }
+
+                _misses.incrementAndGet();
+                return null;
+            }
+
+            _notFoundHits.incrementAndGet();
+            return NOT_FOUND;
+        }
+
+        _hits.incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Caches the result of a lookup, null meaning not found.  When two
+     * threads look up the same name at once, the first result cached wins
+     * and is returned to both, so all callers see the same component.
+     */
+    Object put(Object key, Object value)
+    {
+        if (value == null)
+        {
+            if (_notFoundCount.get() >= NOT_FOUND_MAX)
+            {
+                purgeExpired();
+
+                if (_notFoundCount.get() >= NOT_FOUND_MAX)
+                    return null;
+            }
+
+            if (_map.putIfAbsent(key, new NotFound(System.currentTimeMillis() + NOT_FOUND_TTL)) == null)
+                _notFoundCount.incrementAndGet();
+
+            return null;
+        }
+
+        for ( ; ; )
+        {
+            Object previous = _map.putIfAbsent(key, value);
+
+            if (previous == null)
+                return value;
+
+            if (!(previous instanceof NotFound))
+                return previous;
+
+            if (_map.replace(key, previous, value))
+            {
+                _notFoundCount.decrementAndGet();
+                return value;
+            }
+        }
+    }
+
+    private void purgeExpired()
+    {
+        long now = System.currentTimeMillis();
+
+        for (Iterator i = _map.entrySet().iterator(); i.hasNext(); )
+        {
+            Map.Entry e = (Map.Entry) i.next();
+            Object value = e.getValue();
+
+            if (value instanceof NotFound && ((NotFound) value)._expires - now < 0 &&
+                _map.remove(e.getKey(), value))
+            {
+                _notFoundCount.decrementAndGet();
+                _expired.incrementAndGet();
+            }
+        }
+    }
+
+    public String getName() { return _name; }
+
+    /** Number of names cached, found or not. */
+    public int size() { return _map.size(); }
+
+    /** Number of names cached as not found. */
+    public int getNotFoundCount() { return _notFoundCount.get(); }
+
+    public long getHits() { return _hits.get(); }
+    public long getNotFoundHits() { return _notFoundHits.get(); }
+    public long getMisses() { return _misses.get(); }
+    public long getExpired() { return _expired.get(); }
+
+    public String toString()
+    {
+        return _name + ": size=" + size() + " notFound=" + getNotFoundCount() +
+            " hits=" + getHits() + " notFoundHits=" + getNotFoundHits() +
+            " misses=" + getMisses() + " expired=" + getExpired();
+    }
+
+    private static long longProperty(String key, long defaultValue)
+    {
+        String value = SystemProperties.getProperty(key);
+
+        if (value == null)
+            return defaultValue;
+
+        try
+        {
+            return Long.parseLong(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.schema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.xmlbeans.ResourceLoader;
+
+/**
+ * All the component .xsb records of a type system in a single resource,
+ * so that loading a large type system does not look up and inflate one
+ * jar entry per component.
+ * <p/>
+ * The resource starts with a directory of (handle, offset, length)
+ * entries, followed by the records themselves, each exactly as it would
+ * have been saved to its own .xsb file.  When the resource is a plain file
+ * it is memory-mapped, otherwise it is read into memory once.  Records are
+ * only decoded when their handle is resolved.
+ * <p/>
+ * Instances are immutable once read, so any number of threads may open
+ * records without locking.
+ */
+final class PackedXsb
+{
+    static final String RESOURCE_NAME = "packed.xsb";
+
+    private static final int PACKED_MAGIC = 0x58534250; // "XSBP"
+    private static final int PACKED_VERSION = 1;
+
+    private final ByteBuffer _data;
+    private final Map _records;
+
+    private PackedXsb(ByteBuffer data, Map records)
+    {
+        _data = data;
+        _records = records;
+    }
+
+    /**
+     * Writes the given records, a map from handle to record bytes, in the
+     * iteration order of the map.
+     */
+    static void write(OutputStream output, Map records) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(output);
+
+        out.writeInt(PACKED_MAGIC);
+        out.writeShort(PACKED_VERSION);
+        out.writeInt(records.size());
+
+        int offset = 0;
+        for (Iterator i = records.entrySet().iterator(); i.hasNext(); )
+        {
+            Map.Entry e = (Map.Entry) i.next();
+            int length = ((byte[]) e.getValue()).length;
+
+            out.writeUTF((String) e.getKey());
+            out.writeInt(offset);
+            out.writeInt(length);
+
+            offset += length;
+        }
+
+        for (Iterator i = records.values().iterator(); i.hasNext(); )
+            out.write((byte[]) i.next());
+
+        out.flush();
+    }
+
+    /**
+     * Reads the packed records of a type system, or returns null if the type
+     * system was not saved packed.
+     */
+    static PackedXsb read(ResourceLoader resourceLoader, ClassLoader classLoader, String resourcename)
+        throws IOException
+    {
+        ByteBuffer data = null;
+
+        if (classLoader != null)
+        {
+            URL url = classLoader.getResource(resourcename);
+
+            if (url == null)
+                return null;
+
+            if ("file".equals(url.getProtocol()))
+                data = map(url);
+        }
+
+        if (data == null)
+        {
+            InputStream input = resourceLoader == null ? null : resourceLoader.getResourceAsStream(resourcename);
+
+            if (input == null)
+                return null;
+
+            try
+            {
+                data = ByteBuffer.wrap(readFully(input));
+            }
+            finally
+            {
+                input.close();
+            }
+        }
+
+        DataInputStream in = new DataInputStream(new BufferInputStream(data.duplicate()));
+
+        if (in.readInt() != PACKED_MAGIC || in.readUnsignedShort() != PACKED_VERSION)
+            throw new IOException("Not a packed schema resource: " + resourcename);
+
+        int count = in.readInt();
+        Map records = new HashMap(count * 2);
+        int[][] entries = new int[count][];
+
+        for (int i = 0; i < count; i++)
+        {
+            String handle = in.readUTF();
+            entries[i] = new int[] { in.readInt(), in.readInt() };
+            records.put(handle, entries[i]);
+        }
+
+        // offsets in the directory are relative to the first record
+        int start = data.capacity() - in.available();
+
+        for (int i = 0; i < count; i++)
+            entries[i][0] += start;
+
+        return new PackedXsb(data, records);
+    }
+
+    /**
+     * Returns a stream over the record for the given handle, or null if
+     * there is no such record.
+     */
+    InputStream openRecord(String handle)
+    {
+        int[] entry = (int[]) _records.get(handle);
+
+        if (entry == null)
+            return null;
+
+        ByteBuffer record = _data.duplicate();
+        record.limit(entry[0] + entry[1]);
+        record.position(entry[0]);
+
+        return new BufferInputStream(record);
+    }
+
+    int size()
+    {
+        return _records.size();
+    }
+
+    private static ByteBuffer map(URL url) throws IOException
+    {
+        File file;
+
+        try
+        {
+            file = new File(url.toURI());
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            // the mapping stays valid after the file is closed
+            raf.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream input) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+
+        for (int n; (n = input.read(buf)) >= 0; )
+            bytes.write(buf, 0, n);
+
+        return bytes.toByteArray();
+    }
+
+    private static final class BufferInputStream extends InputStream
+    {
+        BufferInputStream(ByteBuffer buffer)
+        {
+            _buffer = buffer;
+        }
+
+        public int read()
+        {
+            return _buffer.hasRemaining() ? _buffer.get() & 0xFF : -1;
+        }
+
+        public int read(byte[] b, int off, int len)
+        {
+            if (len == 0)
+                return 0;
+
+            if (!_buffer.hasRemaining())
+                return -1;
+
+            len = Math.min(len, _buffer.remaining());
+            _buffer.get(b, off, len);
+            return len;
+        }
+
+        public int available()
+        {
+            return _buffer.remaining();
+        }
+
+        private final ByteBuffer _buffer;
+    }
+}
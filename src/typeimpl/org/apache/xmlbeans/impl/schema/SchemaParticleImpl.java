@@ -51,9 +51,10 @@ public class SchemaParticleImpl implements SchemaParticle
     protected XmlObject _parseObject;
     private Object _userData;
     private XmlValueRef _defaultValue;
+    private volatile ContentModelAutomaton _automaton;
 
     protected void mutate()
-        { if (_isImmutable) throw new IllegalStateException(); }
+        { if (_isImmutable) throw new IllegalStateException(); _automaton = null; }
 
     public void setImmutable()
         { mutate(); _isImmutable = true; }
@@ -69,6 +70,7 @@ public class SchemaParticleImpl implements SchemaParticle
     {
         _startSet = start;
         _isSkippable = isSkippable;
+        _automaton = null;
     }
 
     public void setTransitionNotes(QNameSet excludeNext, boolean isDeterministic)
@@ -92,6 +94,20 @@ public class SchemaParticleImpl implements SchemaParticle
     public boolean isDeterministic()
         { return _isDeterministic; }
 
+    /**
+     * Returns the automaton for visiting this particle as a content model,
+     * made on first use.  Returns null before the transition rules are set.
+     */
+    ContentModelAutomaton getContentModelAutomaton()
+    {
+        ContentModelAutomaton automaton = _automaton;
+
+        if (automaton == null && hasTransitionRules())
+            _automaton = automaton = new ContentModelAutomaton(this);
+
+        return automaton;
+    }
+
     public int getParticleType()
         { return _particleType; }
 
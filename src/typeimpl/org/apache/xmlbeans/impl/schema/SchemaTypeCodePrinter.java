@@ -1235,6 +1235,9 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
 
             printJavaDoc("Returns number of " + propdesc);
             emit("int sizeOf" + arrayName + "();");
+
+            printJavaDoc("Visits each " + propdesc + " in order, until the visitor returns false");
+            emit("void forEach" + propertyName + "(org.apache.xmlbeans.XmlObjectVisitor visitor);");
         }
     }
 
@@ -1855,6 +1858,14 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
         emit("check_orphaned();");
     }
 
+    void emitReadImplementationPreamble() throws IOException
+    {
+        emit("synchronized (read_monitor())");
+        emit("{");
+        indent();
+        emit("check_orphaned();");
+    }
+
     void emitImplementationPostamble() throws IOException
     {
         outdent();
@@ -2087,7 +2098,7 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
             printJavaDoc((several ? "Gets first " : "Gets the ") + propdesc);
             emit("public " + type + " get" + propertyName + "()");
             startBlock();
-            emitImplementationPreamble();
+            emitReadImplementationPreamble();
 
             emitGetTarget(setIdentifier, identifier, isAttr, "0", NOTHING, jtargetType);
 
@@ -2118,7 +2129,7 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
                 printJavaDoc((several ? "Gets (as xml) first " : "Gets (as xml) the ") + propdesc);
                 emit("public " + xtype + " xget" + propertyName + "()");
                 startBlock();
-                emitImplementationPreamble();
+                emitReadImplementationPreamble();
                 emitGetTarget(setIdentifier, identifier, isAttr, "0", NOTHING, xtype);
 
                 if (isAttr && (prop.hasDefault() == SchemaProperty.CONSISTENTLY ||
@@ -2141,7 +2152,7 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
                 printJavaDoc((several ? "Tests for nil first " : "Tests for nil ") + propdesc);
                 emit("public boolean isNil" + propertyName + "()");
                 startBlock();
-                emitImplementationPreamble();
+                emitReadImplementationPreamble();
                 emitGetTarget(setIdentifier, identifier, isAttr, "0", NOTHING, xtype);
 
                 emit("if (target == null) return false;");
@@ -2158,7 +2169,7 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
             emit("public boolean isSet" + propertyName + "()");
 
             startBlock();
-            emitImplementationPreamble();
+            emitReadImplementationPreamble();
 
             if (isAttr)
                 emit("return get_store().find_attribute_user(" + identifier +") != null;");
@@ -2198,15 +2209,39 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
                 printJavaDoc("Gets array of all " + propdesc + "s");
             emit("public " + type + "[] get" + arrayName + "()");
             startBlock();
-            emitImplementationPreamble();
+            emitReadImplementationPreamble();
 
-            if (_useJava15)
-                emit("java.util.List<" + xtype + "> targetList = new java.util.ArrayList<" + xtype + ">();");
-            else
-                emit("java.util.List targetList = new java.util.ArrayList();");
-            emit("get_store().find_all_element_users(" + setIdentifier + ", targetList);");
+            // The store reads int, long and double values without creating
+            // the users, and fills arrays of users without a list in between
+            switch (javaType)
+            {
+                case SchemaProperty.JAVA_INT:
+                    emit("return get_store().find_all_element_ints(" + setIdentifier + ");");
+                    break;
 
-            printJGetArrayValue(javaType, type, (SchemaTypeImpl)prop.getType());
+                case SchemaProperty.JAVA_LONG:
+                    emit("return get_store().find_all_element_longs(" + setIdentifier + ");");
+                    break;
+
+                case SchemaProperty.JAVA_DOUBLE:
+                    emit("return get_store().find_all_element_doubles(" + setIdentifier + ");");
+                    break;
+
+                case SchemaProperty.XML_OBJECT:
+                    emit(type + "[] result = new " + type + "[get_store().count_elements(" + setIdentifier + ")];");
+                    emit("get_store().find_all_element_users(" + setIdentifier + ", result);");
+                    emit("return result;");
+                    break;
+
+                default:
+                    if (_useJava15)
+                        emit("java.util.List<" + xtype + "> targetList = new java.util.ArrayList<" + xtype + ">();");
+                    else
+                        emit("java.util.List targetList = new java.util.ArrayList();");
+                    emit("get_store().find_all_element_users(" + setIdentifier + ", targetList);");
+
+                    printJGetArrayValue(javaType, type, (SchemaTypeImpl)prop.getType());
+            }
 
             emitImplementationPostamble();
             endBlock();
@@ -2215,7 +2250,7 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
             printJavaDoc("Gets ith " + propdesc);
             emit("public " + type + " get" + arrayName + "(int i)");
             startBlock();
-            emitImplementationPreamble();
+            emitReadImplementationPreamble();
 
             emitGetTarget(setIdentifier, identifier, isAttr, "i", THROW_EXCEPTION, jtargetType);
             printJGetValue(javaType, type, (SchemaTypeImpl)prop.getType());
@@ -2244,14 +2279,9 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
                     printJavaDoc("Gets (as xml) array of all " + propdesc + "s");
                 emit("public " + xtype + "[] xget" + arrayName + "()");
                 startBlock();
-                emitImplementationPreamble();
-                if (_useJava15)
-                    emit("java.util.List<" + xtype +  "> targetList = new java.util.ArrayList<" + xtype +  ">();");
-                else
-                    emit("java.util.List targetList = new java.util.ArrayList();");
-                emit("get_store().find_all_element_users(" + setIdentifier + ", targetList);");
-                emit(xtype + "[] result = new " + xtype + "[targetList.size()];");
-                emit("targetList.toArray(result);");
+                emitReadImplementationPreamble();
+                emit(xtype + "[] result = new " + xtype + "[get_store().count_elements(" + setIdentifier + ")];");
+                emit("get_store().find_all_element_users(" + setIdentifier + ", result);");
                 emit("return result;");
                 emitImplementationPostamble();
                 endBlock();
@@ -2260,7 +2290,7 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
                 printJavaDoc("Gets (as xml) ith " + propdesc);
                 emit("public " + xtype + " xget" + arrayName + "(int i)");
                 startBlock();
-                emitImplementationPreamble();
+                emitReadImplementationPreamble();
                 emitGetTarget(setIdentifier, identifier, isAttr, "i", THROW_EXCEPTION, xtype);
                 emit("return target;");
                 emitImplementationPostamble();
@@ -2274,7 +2304,7 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
                 printJavaDoc("Tests for nil ith " + propdesc);
                 emit("public boolean isNil" + arrayName + "(int i)");
                 startBlock();
-                emitImplementationPreamble();
+                emitReadImplementationPreamble();
                 emitGetTarget(setIdentifier, identifier, isAttr, "i", THROW_EXCEPTION, xtype);
                 emit("return target.isNil();");
                 emitImplementationPostamble();
@@ -2285,10 +2315,26 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
             printJavaDoc("Returns number of " + propdesc);
             emit("public int sizeOf" + arrayName + "()");
             startBlock();
-            emitImplementationPreamble();
+            emitReadImplementationPreamble();
             emit("return get_store().count_elements(" + setIdentifier +");");
             emitImplementationPostamble();
             endBlock();
+
+            // void forEachProp(XmlObjectVisitor visitor);
+            // The monitor is taken for each element, not held while visiting
+            printJavaDoc("Visits each " + propdesc + " in order, until the visitor returns false");
+            emit("public void forEach" + propertyName + "(org.apache.xmlbeans.XmlObjectVisitor visitor)");
+            startBlock();
+            emit("for (int i = 0 ; ; i++)");
+            startBlock();
+            emit("org.apache.xmlbeans.XmlObject target = null;");
+            emitReadImplementationPreamble();
+            emit("target = (org.apache.xmlbeans.XmlObject)get_store().find_element_user(" + setIdentifier + ", i);");
+            emitImplementationPostamble();
+            emit("if (target == null || !visitor.visit(target))");
+            emit("    break;");
+            endBlock();
+            endBlock();
         }
     }
 
@@ -31,11 +31,12 @@ import javax.xml.namespace.QName;
 
 import java.io.InputStream;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.Collections;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import java.lang.ref.SoftReference;
 
@@ -45,20 +46,20 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
     private ClassLoader _classLoader;
     private SchemaTypeLoader[] _searchPath;
 
-    private Map _classpathTypeSystems;
-    private Map _classLoaderTypeSystems;
-    private Map _elementCache;
-    private Map _attributeCache;
-    private Map _modelGroupCache;
-    private Map _attributeGroupCache;
-    private Map _idConstraintCache;
-    private Map _typeCache;
-    private Map _documentCache;
-    private Map _attributeTypeCache;
-    private Map _classnameCache;
+    private ConcurrentHashMap _classpathTypeSystems;
+    private ConcurrentHashMap _classLoaderTypeSystems;
+    private LookupCache _elementCache;
+    private LookupCache _attributeCache;
+    private LookupCache _modelGroupCache;
+    private LookupCache _attributeGroupCache;
+    private LookupCache _idConstraintCache;
+    private LookupCache _typeCache;
+    private LookupCache _documentCache;
+    private LookupCache _attributeTypeCache;
+    private LookupCache _classnameCache;
 
     public static String METADATA_PACKAGE_LOAD = SchemaTypeSystemImpl.METADATA_PACKAGE_GEN;
-    private static final Object CACHED_NOT_FOUND = new Object();
+    private static final Object CACHED_NOT_FOUND = LookupCache.NOT_FOUND;
 
     private static class SchemaTypeLoaderCache extends SystemCache
     {
@@ -231,17 +232,35 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
      */
     private final void initCaches()
     {
-        _classpathTypeSystems = Collections.synchronizedMap(new HashMap());
-        _classLoaderTypeSystems = Collections.synchronizedMap(new HashMap());
-        _elementCache = Collections.synchronizedMap(new HashMap());
-        _attributeCache = Collections.synchronizedMap(new HashMap());
-        _modelGroupCache = Collections.synchronizedMap(new HashMap());
-        _attributeGroupCache = Collections.synchronizedMap(new HashMap());
-        _idConstraintCache = Collections.synchronizedMap(new HashMap());
-        _typeCache = Collections.synchronizedMap(new HashMap());
-        _documentCache = Collections.synchronizedMap(new HashMap());
-        _attributeTypeCache = Collections.synchronizedMap(new HashMap());
-        _classnameCache = Collections.synchronizedMap(new HashMap());
+        _classpathTypeSystems = new ConcurrentHashMap();
+        _classLoaderTypeSystems = new ConcurrentHashMap();
+        _elementCache = new LookupCache("element");
+        _attributeCache = new LookupCache("attribute");
+        _modelGroupCache = new LookupCache("modelGroup");
+        _attributeGroupCache = new LookupCache("attributeGroup");
+        _idConstraintCache = new LookupCache("idConstraint");
+        _typeCache = new LookupCache("type");
+        _documentCache = new LookupCache("document");
+        _attributeTypeCache = new LookupCache("attributeType");
+        _classnameCache = new LookupCache("classname");
+    }
+
+    /**
+     * Returns the lookup caches of this loader, keyed by component kind,
+     * so their hit and miss counts can be reported.
+     */
+    public Map getLookupCaches()
+    {
+        Map result = new LinkedHashMap();
+        LookupCache[] caches = new LookupCache[] {
+            _typeCache, _documentCache, _attributeTypeCache, _elementCache,
+            _attributeCache, _modelGroupCache, _attributeGroupCache,
+            _idConstraintCache, _classnameCache };
+
+        for (int i = 0; i < caches.length; i++)
+            result.put(caches[i].getName(), caches[i]);
+
+        return Collections.unmodifiableMap(result);
     }
 
     SchemaTypeSystemImpl typeSystemForComponent(String searchdir, QName name)
@@ -306,7 +325,9 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
         if (result == null)
         {
             result = new SchemaTypeSystemImpl(_resourceLoader, name, this);
-            _classpathTypeSystems.put(name, result);
+            SchemaTypeSystemImpl previous = (SchemaTypeSystemImpl)_classpathTypeSystems.putIfAbsent(name, result);
+            if (previous != null)
+                result = previous;
         }
         return result;
     }
@@ -319,7 +340,12 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
         {
             XBeanDebug.trace(XBeanDebug.TRACE_SCHEMA_LOADING, "Type system " + name + " not cached - consulting field", 0);
             result = SchemaTypeSystemImpl.forName(name, _classLoader);
-            _classLoaderTypeSystems.put(name, result);
+            if (result != null)
+            {
+                SchemaTypeSystemImpl previous = (SchemaTypeSystemImpl)_classLoaderTypeSystems.putIfAbsent(name, result);
+                if (previous != null)
+                    result = previous;
+            }
         }
         return result;
     }
@@ -358,11 +384,12 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
     public SchemaType.Ref findTypeRef(QName name)
     {
         /**
-         * The maps are synchronized, we use two accesses to the cache (one read
+         * The caches are concurrent, we use two accesses to the cache (one read
          * and one write), but the code inbetween is not synchronized. The
          * assumption is that the underlying datastructures (the search path and
          * the classloader) do not change, so two threads running the code in
-         * parallel will come up with the same result.
+         * parallel will come up with the same result; in any case the first
+         * result cached is the one returned to both.
          */
         Object cached = _typeCache.get(name);
         if (cached == CACHED_NOT_FOUND)
@@ -382,7 +409,7 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
                     assert(result != null) : "Type system registered type " + QNameHelper.pretty(name) + " but does not return it";
                 }
             }
-            _typeCache.put(name, result == null ? CACHED_NOT_FOUND : result);
+            result = (SchemaType.Ref) _typeCache.put(name, result);
         }
         return result;
     }
@@ -409,7 +436,7 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
                     assert(result != null) : "Type system registered type " + classname + " but does not return it";
                 }
             }
-            _classnameCache.put(classname, result == null ? CACHED_NOT_FOUND : result);
+            result = (SchemaType) _classnameCache.put(classname, result);
         }
         return result;
     }
@@ -434,7 +461,7 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
                     assert(result != null) : "Type system registered element " + QNameHelper.pretty(name) + " but does not contain document type";
                 }
             }
-            _documentCache.put(name, result == null ? CACHED_NOT_FOUND : result);
+            result = (SchemaType.Ref) _documentCache.put(name, result);
         }
         return result;
     }
@@ -459,7 +486,7 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
                     assert(result != null) : "Type system registered attribute " + QNameHelper.pretty(name) + " but does not contain attribute type";
                 }
             }
-            _attributeTypeCache.put(name, result == null ? CACHED_NOT_FOUND : result);
+            result = (SchemaType.Ref) _attributeTypeCache.put(name, result);
         }
         return result;
     }
@@ -484,7 +511,7 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
                     assert(result != null) : "Type system registered element " + QNameHelper.pretty(name) + " but does not return it";
                 }
             }
-            _elementCache.put(name, result == null ? CACHED_NOT_FOUND : result);
+            result = (SchemaGlobalElement.Ref) _elementCache.put(name, result);
         }
         return result;
     }
@@ -509,7 +536,7 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
                     assert(result != null) : "Type system registered attribute " + QNameHelper.pretty(name) + " but does not return it";
                 }
             }
-            _attributeCache.put(name, result == null ? CACHED_NOT_FOUND : result);
+            result = (SchemaGlobalAttribute.Ref) _attributeCache.put(name, result);
         }
         return result;
     }
@@ -534,7 +561,7 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
                     assert(result != null) : "Type system registered model group " + QNameHelper.pretty(name) + " but does not return it";
                 }
             }
-            _modelGroupCache.put(name, result == null ? CACHED_NOT_FOUND : result);
+            result = (SchemaModelGroup.Ref) _modelGroupCache.put(name, result);
         }
         return result;
     }
@@ -559,7 +586,7 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
                     assert(result != null) : "Type system registered attribute group " + QNameHelper.pretty(name) + " but does not return it";
                 }
             }
-            _attributeGroupCache.put(name, result == null ? CACHED_NOT_FOUND : result);
+            result = (SchemaAttributeGroup.Ref) _attributeGroupCache.put(name, result);
         }
         return result;
     }
@@ -584,7 +611,7 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
                     assert(result != null) : "Type system registered identity constraint " + QNameHelper.pretty(name) + " but does not return it";
                 }
             }
-            _idConstraintCache.put(name, result == null ? CACHED_NOT_FOUND : result);
+            result = (SchemaIdentityConstraint.Ref) _idConstraintCache.put(name, result);
         }
         return result;
     }
@@ -609,7 +636,8 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
 
     static
     {
-        if (SystemCache.get() instanceof SystemCache)
+        // only replace the default, not an implementation picked by the user
+        if (SystemCache.get().getClass() == SystemCache.class)
             SystemCache.set(new SchemaTypeLoaderCache());
     }
 }
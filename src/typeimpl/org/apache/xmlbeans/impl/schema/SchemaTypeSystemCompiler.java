@@ -34,6 +34,8 @@ import java.util.List;
 import java.util.Set;
 import java.util.Arrays;
 import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.xmlbeans.impl.xb.xsdschema.SchemaDocument.Schema;
 import org.apache.xmlbeans.impl.xb.xsdschema.SchemaDocument;
@@ -274,10 +276,17 @@ public class SchemaTypeSystemCompiler
                 XmlOptions validateOptions = new XmlOptions().setErrorListener(errorWatcher);
                 if (options.hasOption(XmlOptions.VALIDATE_TREAT_LAX_AS_SKIP))
                     validateOptions.setValidateTreatLaxAsSkip();
-                for (int i = 0; i < schemas.length; i++)
+                if (state.executor() != null && schemas.length > 1)
                 {
-                    if (schemas[i].validate(validateOptions))
-                        validSchemas.add(schemas[i]);
+                    validateParallel(state.executor(), schemas, validateOptions, validSchemas, errorWatcher);
+                }
+                else
+                {
+                    for (int i = 0; i < schemas.length; i++)
+                    {
+                        if (schemas[i].validate(validateOptions))
+                            validSchemas.add(schemas[i]);
+                    }
                 }
             }
             else
@@ -346,6 +355,42 @@ public class SchemaTypeSystemCompiler
         }
     }
 
+    /**
+     * Validates the schemas on the given executor, each with its own error
+     * list, then adds the valid schemas and the errors in order.
+     */
+    private static void validateParallel(ExecutorService executor, Schema[] schemas,
+        XmlOptions validateOptions, List validSchemas, Collection errorListener)
+    {
+        final List[] errors = new List[schemas.length];
+        List tasks = new ArrayList(schemas.length);
+
+        for (int i = 0; i < schemas.length; i++)
+        {
+            final Schema schema = schemas[i];
+            final XmlOptions schemaOptions = new XmlOptions(validateOptions)
+                .setErrorListener(errors[i] = new ArrayList());
+
+            tasks.add(new Callable()
+            {
+                public Object call()
+                {
+                    return Boolean.valueOf(schema.validate(schemaOptions));
+                }
+            });
+        }
+
+        List results = StscParallel.invokeAll(executor, tasks);
+
+        for (int i = 0; i < schemas.length; i++)
+        {
+            errorListener.addAll(errors[i]);
+
+            if (((Boolean)results.get(i)).booleanValue())
+                validSchemas.add(schemas[i]);
+        }
+    }
+
     /**
      * Get the list of Schemas to be recompiled, based on the list of Schemas that
      * were modified.
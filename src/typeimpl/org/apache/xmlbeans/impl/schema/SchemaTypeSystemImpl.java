@@ -74,6 +74,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -1256,6 +1257,13 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
     private HandlePool _localHandles;
     private Filer _filer;
 
+    // packed .xsb records: collected while saving packed, the PackedXsb
+    // (or NOT_PACKED) once probed while loading
+    private boolean _savePacked;
+    private Map _packedRecords;
+    private volatile Object _packedXsb;
+    private static final Object NOT_PACKED = new Object();
+
     // top-level annotations
     private List _annotations;
 
@@ -1303,18 +1311,29 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
         _filer = filer;
 
         _localHandles.startWriteMode();
-        saveTypesRecursively(globalTypes());
-        saveTypesRecursively(documentTypes());
-        saveTypesRecursively(attributeTypes());
-        saveGlobalElements(globalElements());
-        saveGlobalAttributes(globalAttributes());
-        saveModelGroups(modelGroups());
-        saveAttributeGroups(attributeGroups());
-        saveIdentityConstraints(identityConstraints());
-
-        saveTypesRecursively(redefinedGlobalTypes());
-        saveModelGroups(redefinedModelGroups());
-        saveAttributeGroups(redefinedAttributeGroups());
+        _packedRecords = _savePacked ? new LinkedHashMap() : null;
+        try
+        {
+            saveTypesRecursively(globalTypes());
+            saveTypesRecursively(documentTypes());
+            saveTypesRecursively(attributeTypes());
+            saveGlobalElements(globalElements());
+            saveGlobalAttributes(globalAttributes());
+            saveModelGroups(modelGroups());
+            saveAttributeGroups(attributeGroups());
+            saveIdentityConstraints(identityConstraints());
+
+            saveTypesRecursively(redefinedGlobalTypes());
+            saveModelGroups(redefinedModelGroups());
+            saveAttributeGroups(redefinedAttributeGroups());
+
+            if (_packedRecords != null)
+                savePacked();
+        }
+        finally
+        {
+            _packedRecords = null;
+        }
 
         saveIndex();
         savePointers();
@@ -1322,6 +1341,67 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
         saveLoader();
     }
 
+    /**
+     * When set, {@link #save} writes the .xsb records of all components
+     * into a single packed resource instead of one resource per component.
+     * The index and the pointer resources are saved as usual.
+     */
+    public void setSavePacked(boolean savePacked)
+    {
+        _savePacked = savePacked;
+    }
+
+    void savePacked()
+    {
+        String resourcename = _basePackage + PackedXsb.RESOURCE_NAME;
+        try
+        {
+            OutputStream output = _filer.createBinaryFile(resourcename);
+            try
+            {
+                PackedXsb.write(output, _packedRecords);
+            }
+            finally
+            {
+                output.close();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new SchemaTypeLoaderException(e.getMessage(), _name, PackedXsb.RESOURCE_NAME, SchemaTypeLoaderException.IO_EXCEPTION);
+        }
+    }
+
+    /**
+     * Returns the packed record for the given handle, or null if this type
+     * system was not saved packed.  The packed resource is looked for once;
+     * threads racing on the first lookup may both read it, and either result
+     * is as good as the other.
+     */
+    InputStream openPackedRecord(String handle)
+    {
+        Object packed = _packedXsb;
+
+        if (packed == null)
+        {
+            try
+            {
+                packed = PackedXsb.read(_resourceLoader, _classloader, _basePackage + PackedXsb.RESOURCE_NAME);
+            }
+            catch (IOException e)
+            {
+                throw new SchemaTypeLoaderException(e.getMessage(), _name, PackedXsb.RESOURCE_NAME, SchemaTypeLoaderException.IO_EXCEPTION);
+            }
+
+            if (packed == null)
+                packed = NOT_PACKED;
+
+            _packedXsb = packed;
+        }
+
+        return packed == NOT_PACKED ? null : ((PackedXsb) packed).openRecord(handle);
+    }
+
     void saveTypesRecursively(SchemaType[] types)
     {
         for (int i = 0; i < types.length; i++)
@@ -1514,7 +1594,11 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
         public XsbReader(String handle, int filetype)
         {
             String resourcename = _basePackage + handle + ".xsb";
-            InputStream rawinput = getLoaderStream(resourcename);
+            InputStream rawinput = null;
+            if (!"index".equals(handle))
+                rawinput = openPackedRecord(handle);
+            if (rawinput == null)
+                rawinput = getLoaderStream(resourcename);
             if (rawinput == null)
                 throw new SchemaTypeLoaderException("XML-BEANS compiled schema: Could not locate compiled schema resource " + resourcename, _name, handle, SchemaTypeLoaderException.NO_RESOURCE);
 
@@ -1601,7 +1685,12 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
             else
                 resourcename = _basePackage + handle + ".xsb";
 
-            OutputStream rawoutput = getSaverStream(resourcename);
+            OutputStream rawoutput;
+
+            if (_packedRecords != null && handle.indexOf('/') < 0 && !"index".equals(handle))
+                rawoutput = new PackedRecordOutputStream(handle);
+            else
+                rawoutput = getSaverStream(resourcename);
             if (rawoutput == null)
                 throw new SchemaTypeLoaderException("Could not write compiled schema resource " + resourcename, _name, handle, SchemaTypeLoaderException.NOT_WRITEABLE);
 
@@ -2239,6 +2328,21 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
             }
         }
 
+        class PackedRecordOutputStream extends ByteArrayOutputStream
+        {
+            private final String _recordHandle;
+
+            PackedRecordOutputStream(String handle)
+            {
+                _recordHandle = handle;
+            }
+
+            public void close()
+            {
+                _packedRecords.put(_recordHandle, toByteArray());
+            }
+        }
+
         InputStream getLoaderStream(String resourcename)
         {
             return _resourceLoader.getResourceAsStream(resourcename);
@@ -3480,10 +3584,7 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
 
     public SchemaType typeForHandle(String handle)
     {
-        synchronized (_resolvedHandles)
-        {
-            return (SchemaType)_resolvedHandles.get(handle);
-        }
+        return (SchemaType)_resolvedHandles.get(handle);
     }
 
     public SchemaType typeForClassname(String classname)
@@ -3494,12 +3595,8 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
 
     public SchemaComponent resolveHandle(String handle)
     {
-        SchemaComponent result;
+        SchemaComponent result = (SchemaComponent)_resolvedHandles.get(handle);
 
-        synchronized (_resolvedHandles)
-        {
-            result = (SchemaComponent)_resolvedHandles.get(handle);
-        }
         if (result == null)
         {
             XsbReader reader = new XsbReader(handle, 0xFFFF);
@@ -3534,19 +3631,16 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
                     throw new IllegalStateException("Illegal handle type");
             }
 
-            synchronized (_resolvedHandles)
-            {
-                if (!_resolvedHandles.containsKey(handle))
-                    _resolvedHandles.put(handle, result);
-                else
-                    result = (SchemaComponent)_resolvedHandles.get(handle);
-            }
+            // two threads may have loaded the same handle, the first one wins
+            SchemaComponent previous = (SchemaComponent)_resolvedHandles.putIfAbsent(handle, result);
+            if (previous != null)
+                result = previous;
         }
         return result;
     }
 
-    private final Map _resolvedHandles = new HashMap();
-    private boolean _allNonGroupHandlesResolved = false;
+    private final ConcurrentHashMap _resolvedHandles = new ConcurrentHashMap();
+    private volatile boolean _allNonGroupHandlesResolved = false;
 
     public void resolve()
     {
@@ -27,6 +27,10 @@ import java.util.Arrays;
 /**
  * This state machine validates element order based on a deterministic
  * content model.
+ * <p/>
+ * Content models of compiled types are visited through their
+ * {@link ContentModelAutomaton}, which this visitor steps through with
+ * table lookups; the particle stack below works out its transitions.
  */
 public class SchemaTypeVisitorImpl implements TypeStoreVisitor
 {
@@ -44,6 +48,18 @@ public class SchemaTypeVisitorImpl implements TypeStoreVisitor
     }
 
     public void init(SchemaParticle part)
+    {
+        reset(part);
+
+        _automaton = part instanceof SchemaParticleImpl
+            ? ((SchemaParticleImpl) part).getContentModelAutomaton() : null;
+        _state = _automaton == null ? null : _automaton.start();
+    }
+
+    /**
+     * Starts visiting the given content model with the particle stack.
+     */
+    void reset(SchemaParticle part)
     {
         if (_stack == null)
         {
@@ -64,6 +80,26 @@ public class SchemaTypeVisitorImpl implements TypeStoreVisitor
         }
     }
 
+    /**
+     * Drops the references to the content model last visited, keeping the
+     * stacks for the next one.
+     */
+    public void clear()
+    {
+        init(null);
+
+        for (int i = 0; i < _stack.length; i++)
+            _stack[i].clear();
+
+        for (int i = 0; i < _rollback.length; i++)
+            _rollback[i].clear();
+
+        _matchedParticle = null;
+        _top = null;
+        _automaton = null;
+        _state = null;
+    }
+
     public VisitorState[] expand(VisitorState[] orig)
     {
         int newsize = (orig == null ? 4 : orig.length * 2);
@@ -89,6 +125,8 @@ public class SchemaTypeVisitorImpl implements TypeStoreVisitor
     private SchemaParticle _matchedParticle;
     private VisitorState _top;
     private int _rollbackIndex;
+    private ContentModelAutomaton _automaton;
+    private ContentModelAutomaton.State _state;
 
     private static class VisitorState
     {
@@ -119,6 +157,12 @@ public class SchemaTypeVisitorImpl implements TypeStoreVisitor
                         new boolean[_childCount] : null;
         }
 
+        public void clear()
+        {
+            _curPart = null;
+            _seen = null;
+        }
+
         SchemaParticle _curPart;
         int _curCount;
         int _curMax;
@@ -288,6 +332,76 @@ public class SchemaTypeVisitorImpl implements TypeStoreVisitor
         return true;
     }
 
+    /**
+     * Returns the committed particle stack, as a state of a
+     * ContentModelAutomaton.
+     */
+    ContentModelAutomaton.Key snapshot()
+    {
+        SchemaParticle[] particles = new SchemaParticle[_stackSize];
+        int length = 0;
+
+        for (int i = 0; i < _stackSize; i++)
+        {
+            particles[i] = _stack[i]._curPart;
+            length += 2 + (_stack[i]._seen == null ? 0 : _stack[i]._seen.length);
+        }
+
+        int[] positions = new int[length];
+        int j = 0;
+
+        for (int i = 0; i < _stackSize; i++)
+        {
+            VisitorState state = _stack[i];
+            int count = state._curCount;
+
+            // Counts between minOccurs and an unbounded maxOccurs compare alike
+            if (state._curMax == Integer.MAX_VALUE && count > state._curMin && count < state._curMax)
+                count = state._curMin + 1;
+
+            positions[j++] = count;
+            positions[j++] = state._processedChildCount;
+
+            if (state._seen != null)
+            {
+                for (int k = 0; k < state._seen.length; k++)
+                    positions[j++] = state._seen[k] ? 1 : 0;
+            }
+        }
+
+        return new ContentModelAutomaton.Key(particles, positions);
+    }
+
+    /**
+     * Sets the particle stack to the given state of a ContentModelAutomaton.
+     */
+    void restore(ContentModelAutomaton.Key key)
+    {
+        SchemaParticle[] particles = key._particles;
+        int[] positions = key._positions;
+
+        _stackSize = 0;
+        _rollbackSize = 0;
+        _top = null;
+
+        for (int i = 0, j = 0; i < particles.length; i++)
+        {
+            addParticle(particles[i]);
+
+            VisitorState state = topRef();
+            state._curCount = positions[j++];
+            state._processedChildCount = positions[j++];
+
+            if (state._seen != null)
+            {
+                for (int k = 0; k < state._seen.length; k++)
+                    state._seen[k] = positions[j++] != 0;
+            }
+        }
+
+        _rollbackIndex = _stackSize;
+    }
+
     /*== VISITOR IMPLEMENTATION ==*/
 
     /**
@@ -317,6 +431,42 @@ public class SchemaTypeVisitorImpl implements TypeStoreVisitor
      */
 
     public boolean visit(QName eltName, boolean testValidity)
+    {
+        if (_state != null)
+        {
+            ContentModelAutomaton.Transition t = _automaton.transition(_state, eltName);
+
+            if (t != null)
+            {
+                if (t._target == null)
+                {
+                    _isValid = false;
+                    _matchedParticle = null;
+                    return false;
+                }
+
+                if (!testValidity)
+                {
+                    _matchedParticle = t._matched;
+                    _state = t._target;
+                }
+
+                return true;
+            }
+
+            // The automaton is full, so carry on with the particle stack
+            restore(_state._key);
+            _automaton = null;
+            _state = null;
+        }
+
+        return step(eltName, testValidity);
+    }
+
+    /**
+     * Visits the given element with the particle stack.
+     */
+    private boolean step(QName eltName, boolean testValidity)
     {
         if (!prepare())
             return notValid();
@@ -43,6 +43,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import java.math.BigInteger;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 public class StscChecker
 {
@@ -57,20 +59,60 @@ public class StscChecker
         allSeenTypes.addAll(Arrays.asList(state.redefinedGlobalTypes()));
         allSeenTypes.addAll(Arrays.asList(state.globalTypes()));
 
-        for (int i = 0; i < allSeenTypes.size(); i++)
+        ExecutorService executor = state.executor();
+
+        if (executor == null)
         {
-            SchemaType gType = (SchemaType)allSeenTypes.get(i);
-            if (!state.noPvr() &&  // option to turn off particle restriction checking
-                !gType.isDocumentType()) // Don't check doc types for restriction. 
+            for (int i = 0; i < allSeenTypes.size(); i++)
             {
-                checkRestriction((SchemaTypeImpl)gType);
+                SchemaType gType = (SchemaType)allSeenTypes.get(i);
+                checkType(gType);
+                allSeenTypes.addAll(Arrays.asList(gType.getAnonymousTypes()));
             }
-            checkFields((SchemaTypeImpl)gType);
-            allSeenTypes.addAll(Arrays.asList(gType.getAnonymousTypes()));
+        }
+        else
+        {
+            // The types are checked independently, in batches of
+            // consecutive types, and their errors are reported in order
+
+            for (int i = 0; i < allSeenTypes.size(); i++)
+                allSeenTypes.addAll(Arrays.asList(((SchemaType)allSeenTypes.get(i)).getAnonymousTypes()));
+
+            List tasks = new ArrayList();
+
+            for (int i = 0; i < allSeenTypes.size(); i += CHECK_BATCH_TYPES)
+            {
+                final List batch = allSeenTypes.subList(i,
+                    Math.min(i + CHECK_BATCH_TYPES, allSeenTypes.size()));
+
+                tasks.add(new Callable()
+                {
+                    public Object call()
+                    {
+                        for (int j = 0; j < batch.size(); j++)
+                            checkType((SchemaType)batch.get(j));
+                        return null;
+                    }
+                });
+            }
+
+            StscParallel.invokeAll(executor, state, tasks);
         }
 
         checkSubstitutionGroups(state.globalElements());
     }
+
+    private static final int CHECK_BATCH_TYPES = 32;
+
+    private static void checkType(SchemaType gType)
+    {
+        if (!StscState.get().noPvr() &&  // option to turn off particle restriction checking
+            !gType.isDocumentType()) // Don't check doc types for restriction. 
+        {
+            checkRestriction((SchemaTypeImpl)gType);
+        }
+        checkFields((SchemaTypeImpl)gType);
+    }
     
     /**
      * The following code checks rule #5 of http://www.w3.org/TR/xmlschema-1/#coss-ct
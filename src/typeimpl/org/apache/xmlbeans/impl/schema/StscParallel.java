@@ -0,0 +1,170 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.schema;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.xmlbeans.XmlOptions;
+
+/**
+ * Runs independent pieces of a schema compilation on several threads, for
+ * {@link XmlOptions#setCompileParallel()}.  The results, and the errors
+ * reported by the pieces, are passed on in the order of the pieces, so the
+ * outcome is the same as compiling on one thread.
+ */
+public final class StscParallel
+{
+    private static ExecutorService _pool;
+
+    private StscParallel()
+    {
+    }
+
+    /**
+     * Returns the executor the given options ask for, or null if the
+     * compilation is to run on one thread.
+     */
+    public static ExecutorService executor(XmlOptions options)
+    {
+        if (options == null || !options.hasOption(XmlOptions.COMPILE_PARALLEL))
+            return null;
+
+        ExecutorService executor = (ExecutorService) options.get(XmlOptions.COMPILE_PARALLEL);
+
+        return executor != null ? executor : pool();
+    }
+
+    private static synchronized ExecutorService pool()
+    {
+        if (_pool == null)
+        {
+            _pool = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(),
+                new ThreadFactory()
+                {
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread t = new Thread(r, "XmlBeans parallel compile");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        }
+
+        return _pool;
+    }
+
+    /**
+     * Runs the given Callables on the executor and returns their results
+     * in order.  If any of them throws, the exception of the first one to
+     * do so, in order, is thrown once they have all finished.
+     */
+    public static List invokeAll(ExecutorService executor, List tasks)
+    {
+        List futures = new ArrayList(tasks.size());
+
+        for (int i = 0; i < tasks.size(); i++)
+            futures.add(executor.submit((Callable) tasks.get(i)));
+
+        List results = new ArrayList(tasks.size());
+        Throwable failure = null;
+        boolean interrupted = false;
+
+        for (int i = 0; i < futures.size(); i++)
+        {
+            Future f = (Future) futures.get(i);
+            Object result = null;
+
+            for (;;)
+            {
+                try
+                {
+                    result = f.get();
+                    break;
+                }
+                catch (InterruptedException e)
+                {
+                    // The pieces still use the compilation state
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    if (failure == null)
+                        failure = e.getCause();
+                    break;
+                }
+            }
+
+            results.add(result);
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+
+        if (failure instanceof Error)
+            throw (Error) failure;
+
+        if (failure != null)
+            throw new RuntimeException(failure);
+
+        return results;
+    }
+
+    /**
+     * Like {@link #invokeAll(ExecutorService, List)}, for Callables which
+     * report errors through the given compilation state.  Their errors are
+     * passed on to it in order.
+     */
+    static List invokeAll(ExecutorService executor, final StscState state, List tasks)
+    {
+        final StscState.WorkerErrors[] errors = new StscState.WorkerErrors[tasks.size()];
+        List workers = new ArrayList(tasks.size());
+
+        for (int i = 0; i < tasks.size(); i++)
+        {
+            final Callable task = (Callable) tasks.get(i);
+            final StscState.WorkerErrors taskErrors = errors[i] = new StscState.WorkerErrors();
+
+            workers.add(new Callable()
+            {
+                public Object call() throws Exception
+                {
+                    return state.callAsWorker(task, taskErrors);
+                }
+            });
+        }
+
+        try
+        {
+            return invokeAll(executor, workers);
+        }
+        finally
+        {
+            for (int i = 0; i < errors.length; i++)
+                state.addWorkerErrors(errors[i]);
+        }
+    }
+}
@@ -91,6 +91,7 @@ public class StscState
     private List _annotations       = new ArrayList();
     private boolean _noUpa;
     private boolean _noPvr;
+    private java.util.concurrent.ExecutorService _executor;
     private boolean _noAnn;
     private boolean _mdefAll;
     private Set _mdefNamespaces     = buildDefaultMdefNamespaces();
@@ -297,31 +298,96 @@ public class StscState
     public void setErrorListener(Collection errorListener)
         { _errorListener = errorListener; }
 
+    /**
+     * Errors reported on a worker thread, see {@link #callAsWorker}.
+     */
+    static final class WorkerErrors extends ArrayList
+    {
+        int _recovered;
+    }
+
+    private static ThreadLocal tl_workerErrors = new ThreadLocal();
+
+    private Collection errorListener()
+    {
+        WorkerErrors errors = (WorkerErrors) tl_workerErrors.get();
+        return errors != null ? errors : _errorListener;
+    }
+
+    private void recovered()
+    {
+        WorkerErrors errors = (WorkerErrors) tl_workerErrors.get();
+        if (errors != null)
+            errors._recovered++;
+        else
+            _recoveredErrors++;
+    }
+
+    /**
+     * Runs a task of this compilation on the current thread, for a
+     * compilation thread waiting on it.  While the task runs, get() returns
+     * this state, and the errors reported through it are kept in the given
+     * list, to be passed on by {@link #addWorkerErrors} in a deterministic
+     * order.  The task must only read the state besides reporting errors.
+     */
+    Object callAsWorker(java.util.concurrent.Callable task, WorkerErrors errors)
+        throws Exception
+    {
+        Object savedStack = tl_stscStack.get();
+        Object savedErrors = tl_workerErrors.get();
+
+        StscStack stack = new StscStack();
+        stack.current = this;
+        tl_stscStack.set(stack);
+        tl_workerErrors.set(errors);
+
+        try
+        {
+            return task.call();
+        }
+        finally
+        {
+            tl_stscStack.set(savedStack);
+            tl_workerErrors.set(savedErrors);
+        }
+    }
+
+    /**
+     * Passes on the errors of a task run by {@link #callAsWorker}.
+     */
+    void addWorkerErrors(WorkerErrors errors)
+    {
+        errorListener().addAll(errors);
+
+        for (int i = 0; i < errors._recovered; i++)
+            recovered();
+    }
+
     /**
      * Passes an error on to the current error listener.
      * KHK: remove this
      */
     public void error(String message, int code, XmlObject loc)
-        { addError(_errorListener, message, code, loc); }
+        { addError(errorListener(), message, code, loc); }
 
     /**
      * Passes an error on to the current error listener.
      */
     public void error(String code, Object[] args, XmlObject loc)
-        { addError(_errorListener, code, args, loc); }
+        { addError(errorListener(), code, args, loc); }
     
     /**
      * Passes a recovered error on to the current error listener.
      */
     public void recover(String code, Object[] args, XmlObject loc)
-        { addError(_errorListener, code, args, loc); _recoveredErrors++; }
+        { addError(errorListener(), code, args, loc); recovered(); }
     
     /**
      * Passes an error on to the current error listener.
      */
     public void warning(String message, int code, XmlObject loc)
     {
-        addWarning(_errorListener, message, code, loc);
+        addWarning(errorListener(), message, code, loc);
     }
 
     /**
@@ -335,20 +401,20 @@ public class StscState
             loc.documentProperties().getSourceName().indexOf("XMLSchema.xsd") > 0)
             return;
 
-        addWarning(_errorListener, code, args, loc);
+        addWarning(errorListener(), code, args, loc);
     }
 
     /**
      * Passes a warning on to the current error listener.
      */
     public void info(String message)
-        { addInfo(_errorListener, message); }
+        { addInfo(errorListener(), message); }
 
     /**
      * Passes a warning on to the current error listener.
      */
     public void info(String code, Object[] args)
-        { addInfo(_errorListener, code, args); }
+        { addInfo(errorListener(), code, args); }
 
     // KHK: remove this
     public static void addError(Collection errorListener, String message, int code, XmlObject location)
@@ -529,6 +595,7 @@ public class StscState
         _doingDownloads = options.hasOption(XmlOptions.COMPILE_DOWNLOAD_URLS) ? true :
                 "true".equals(SystemProperties.getProperty("xmlbean.downloadurls", "false"));
         _entityResolver = (EntityResolver)options.get(XmlOptions.ENTITY_RESOLVER);
+        _executor = StscParallel.executor(options);
 
         if (_entityResolver == null)
             _entityResolver = ResolverUtil.getGlobalEntityResolver();
@@ -572,6 +639,15 @@ public class StscState
         return _noUpa;
     }
 
+    /**
+     * Returns the executor to run independent parts of the compilation
+     * on, or null if the compilation runs on one thread.
+     */
+    java.util.concurrent.ExecutorService executor()
+    {
+        return _executor;
+    }
+
     /**
      * True if no particle valid (restriciton) option is set
      */
@@ -1362,7 +1438,7 @@ public class StscState
         String sourceName = null;
         
         if (recovered)
-            _recoveredErrors++;
+            recovered();
 
         switch (code)
         {
@@ -1568,7 +1644,7 @@ public class StscState
      */
     public Collection getErrorListener()
     {
-        return _errorListener;
+        return errorListener();
     }
 
     /**
@@ -268,8 +268,7 @@ public final class XsTypeConverter
     public static long lexLong(CharSequence cs)
         throws NumberFormatException
     {
-        final String v = cs.toString();
-        return Long.parseLong(trimInitialPlus(v));
+        return parseLongXsdNumber(cs);
     }
 
     public static long lexLong(CharSequence cs, Collection errors)
@@ -734,6 +733,43 @@ public final class XsTypeConverter
         return sign * result;
     }
 
+    private static long parseLongXsdNumber(CharSequence ch)
+    {
+        // long parser on a CharSequence, accumulating negatively as
+        // parseIntXsdNumber does
+        int length = ch.length();
+        int start = 0;
+        long limit = -Long.MAX_VALUE;
+
+        if (length > 0 && (ch.charAt(0) == '-' || ch.charAt(0) == '+')) {
+            if (ch.charAt(0) == '-')
+                limit = Long.MIN_VALUE;
+            start++;
+        }
+
+        if (length <= start)
+            throw new NumberFormatException("For input string: \"" + ch.toString() + "\"");
+
+        long multmin = limit / 10;
+        long result = 0;
+
+        for (int i = start; i < length; i++) {
+            int v = Character.digit(ch.charAt(i), 10);
+
+            if (v < 0 || result < multmin)
+                throw new NumberFormatException("For input string: \"" + ch.toString() + "\"");
+
+            result *= 10;
+
+            if (result < limit + v)
+                throw new NumberFormatException("For input string: \"" + ch.toString() + "\"");
+
+            result -= v;
+        }
+
+        return start > 0 && ch.charAt(0) == '-' ? result : -result;
+    }
+
     // ======================== anyURI ========================
     public static CharSequence printAnyURI(CharSequence val)
     {
@@ -0,0 +1,194 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.xmlbeans.impl.validator;
+
+import org.apache.xmlbeans.SchemaType;
+import org.apache.xmlbeans.SchemaTypeLoader;
+import org.apache.xmlbeans.StreamValidationResult;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlError;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.XmlOptionsBean;
+import org.apache.xmlbeans.impl.common.StaxHelper;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+import java.io.InputStream;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Validates an instance as it is read from a StAX stream, without loading
+ * it into a store.  Apart from the tables of identity constraints in
+ * scope, memory use does not depend on the size of the instance.
+ * <p/>
+ * This is the implementation behind
+ * {@link XmlBeans#validateStream(XMLStreamReader, SchemaType, XmlOptions)}.
+ */
+public final class StreamValidator
+{
+    private StreamValidator ( )
+    {
+    }
+
+    public static StreamValidationResult validate (
+        InputStream input, SchemaType type, XmlOptions options )
+            throws XmlException
+    {
+        XMLStreamReader xsr;
+
+        try
+        {
+            XMLInputFactory factory = StaxHelper.newXMLInputFactory(
+                new XmlOptionsBean( XmlOptions.maskNull( options ) ) );
+
+            xsr = factory.createXMLStreamReader( input );
+        }
+        catch ( XMLStreamException e )
+        {
+            throw new XmlException( e.getMessage(), e );
+        }
+
+        try
+        {
+            return validate( xsr, type, options );
+        }
+        finally
+        {
+            try
+            {
+                xsr.close();
+            }
+            catch ( XMLStreamException e )
+            {
+                // oh, well.
+            }
+        }
+    }
+
+    public static StreamValidationResult validate (
+        XMLStreamReader xsr, SchemaType type, XmlOptions options )
+            throws XmlException
+    {
+        options = XmlOptions.maskNull( options );
+
+        ErrorCounter errors = new ErrorCounter(
+            (Collection) options.get( XmlOptions.ERROR_LISTENER ) );
+
+        XmlOptions validatorOptions = new XmlOptions( options );
+        validatorOptions.setErrorListener( errors );
+
+        int errorLimit = options.hasOption( XmlOptions.VALIDATE_ERROR_LIMIT )
+            ? ((Integer) options.get( XmlOptions.VALIDATE_ERROR_LIMIT )).intValue()
+            : 0;
+
+        SchemaTypeLoader stl = XmlBeans.getContextTypeLoader();
+
+        if (type != null)
+            stl = XmlBeans.typeLoaderUnion(
+                new SchemaTypeLoader[] { type.getTypeSystem(), stl } );
+
+        ValidatingXMLStreamReader vsr = new ValidatingXMLStreamReader();
+        long elements = 0;
+        boolean aborted = false;
+        long start = System.nanoTime();
+
+        try
+        {
+            while (!xsr.isStartElement())
+            {
+                if (!xsr.hasNext())
+                {
+                    errors.add( XmlError.forMessage( "The instance has no root element." ) );
+                    return new StreamValidationResult(
+                        false, false, errors.getErrorCount(), 0, System.nanoTime() - start );
+                }
+
+                xsr.next();
+            }
+
+            vsr.init( xsr, true, type, stl, validatorOptions, errors );
+            elements++;
+
+            while (vsr.hasNext())
+            {
+                if (errorLimit > 0 && errors.getErrorCount() >= errorLimit)
+                {
+                    aborted = true;
+                    break;
+                }
+
+                if (vsr.next() == XMLEvent.START_ELEMENT)
+                    elements++;
+            }
+        }
+        catch ( XMLStreamException e )
+        {
+            throw new XmlException( e.getMessage(), e );
+        }
+
+        boolean valid = !aborted && errors.getErrorCount() == 0 && vsr.isValid();
+
+        return new StreamValidationResult(
+            valid, aborted, errors.getErrorCount(), elements, System.nanoTime() - start );
+    }
+
+    /**
+     * Counts the errors reported by the validator and passes them on to
+     * the user's error listener, if any.  Nothing is kept, so a stream
+     * with many errors does not use up memory.
+     */
+    private static final class ErrorCounter extends AbstractCollection
+    {
+        private final Collection _listener;
+        private int _errorCount;
+
+        ErrorCounter ( Collection listener )
+        {
+            _listener = listener;
+        }
+
+        public boolean add ( Object o )
+        {
+            if (o instanceof XmlError && ((XmlError) o).getSeverity() == XmlError.SEVERITY_ERROR)
+                _errorCount++;
+
+            if (_listener != null)
+                _listener.add( o );
+
+            return true;
+        }
+
+        int getErrorCount ( )
+        {
+            return _errorCount;
+        }
+
+        public Iterator iterator ( )
+        {
+            return Collections.EMPTY_LIST.iterator();
+        }
+
+        public int size ( )
+        {
+            return 0;
+        }
+    }
+}
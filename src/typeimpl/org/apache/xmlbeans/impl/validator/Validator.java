@@ -67,7 +67,6 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -79,6 +78,20 @@ public final class Validator
     public Validator (
         SchemaType type, SchemaField field, SchemaTypeLoader globalLoader,
         XmlOptions options, Collection defaultErrorListener )
+    {
+        init( type, field, globalLoader, options, defaultErrorListener );
+
+        _vc = new ValidatorVC();
+    }
+
+    private Validator ( )
+    {
+        _vc = new ValidatorVC();
+    }
+
+    private void init (
+        SchemaType type, SchemaField field, SchemaTypeLoader globalLoader,
+        XmlOptions options, Collection defaultErrorListener )
     {
         options = XmlOptions.maskNull(options);
         _errorListener = (Collection) options.get(XmlOptions.ERROR_LISTENER);
@@ -93,8 +106,70 @@ public final class Validator
         _globalTypes = globalLoader;
         _rootType = type;
         _rootField = field;
+    }
 
-        _vc = new ValidatorVC();
+    private static ThreadLocal tl_validator = new ThreadLocal();
+
+    /**
+     * Returns a validator for the given root, for one validation.  The
+     * validator is kept by the current thread and used again by its later
+     * validations, so the state frames and content model visitors it has
+     * pooled are not made again for every document.  Call {@link #release}
+     * when the validation is over.
+     * <p/>
+     * If the validator of the thread is in use, as when an error listener
+     * validates something itself, a new validator is returned.
+     */
+    public static Validator acquire (
+        SchemaType type, SchemaField field, SchemaTypeLoader globalLoader,
+        XmlOptions options, Collection defaultErrorListener )
+    {
+        Validator validator = (Validator) tl_validator.get();
+
+        if (validator == null)
+            tl_validator.set( validator = new Validator() );
+        else if (validator._acquired)
+            return new Validator( type, field, globalLoader, options, defaultErrorListener );
+
+        validator.init( type, field, globalLoader, options, defaultErrorListener );
+        validator._acquired = true;
+
+        return validator;
+    }
+
+    /**
+     * Ends a validation begun with {@link #acquire}.  The validator drops
+     * its references to the types, values and error listener of the
+     * validation, keeping only what it has pooled.
+     */
+    public void release ( )
+    {
+        if (!_acquired)
+            return;
+
+        _acquired = false;
+
+        _invalid = false;
+        _rootType = null;
+        _rootField = null;
+        _globalTypes = null;
+        _errorState = 0;
+        _errorListener = null;
+        _vc._event = null;
+        _suspendErrors = 0;
+        _constraintEngine = null;
+        _eatContent = 0;
+
+        while ( _stateStack != null )
+            popState( null );
+
+        _localElement = null;
+        _wildcardElement = null;
+
+        resetValues();
+
+        for ( int i = 0 ; i < _visitorPool.size() ; i++ )
+            ((SchemaTypeVisitorImpl) _visitorPool.get( i )).clear();
     }
 
     private class ValidatorVC implements ValidationContext
@@ -1022,6 +1097,9 @@ public final class Validator
         State _next;
     }
 
+    // Frames of the elements which have ended, for the next ones
+    private State _statePool;
+
     private boolean derivedFromInteger( SchemaType type )
     {
         int btc = type.getBuiltinTypeCode();
@@ -1037,7 +1115,20 @@ public final class Validator
 
     private void newState ( SchemaType type, SchemaField field, boolean isNil )
     {
-        State state = new State();
+        State state = _statePool;
+
+        if (state == null)
+            state = new State();
+        else
+        {
+            _statePool = state._next;
+
+            state._canHaveAttrs = false;
+            state._canHaveMixedContent = false;
+            state._hasSimpleContent = false;
+            state._sawText = false;
+            state._canHaveElements = false;
+        }
 
         state._type = type;
         state._field = field;
@@ -1087,13 +1178,25 @@ public final class Validator
 
     private void popState ( Event e )
     {
-        if (_stateStack._visitor != null)
+        State state = _stateStack;
+
+        if (state._visitor != null)
         {
-            poolVisitor( _stateStack._visitor );
-            _stateStack._visitor = null;
+            poolVisitor( state._visitor );
+            state._visitor = null;
         }
 
-        _stateStack = _stateStack._next;
+        _stateStack = state._next;
+
+        state._type = null;
+        state._field = null;
+        state._attrModel = null;
+
+        if (state._attrs != null)
+            state._attrs.clear();
+
+        state._next = _statePool;
+        _statePool = state;
     }
 
     private void pushState ( State state )
@@ -1102,7 +1205,7 @@ public final class Validator
         _stateStack = state;
     }
 
-    private LinkedList _visitorPool = new LinkedList();
+    private ArrayList _visitorPool = new ArrayList();
 
     private void poolVisitor( SchemaTypeVisitorImpl visitor )
     {
@@ -1115,7 +1218,7 @@ public final class Validator
             return new SchemaTypeVisitorImpl( particle );
 
         SchemaTypeVisitorImpl result =
-            (SchemaTypeVisitorImpl) _visitorPool.removeLast();
+            (SchemaTypeVisitorImpl) _visitorPool.remove( _visitorPool.size() - 1 );
 
         result.init( particle );
 
@@ -1780,6 +1883,7 @@ public final class Validator
     private int                _suspendErrors;
     private IdentityConstraint _constraintEngine;
     private int                _eatContent;
+    private boolean            _acquired;
 
     private SchemaLocalElement   _localElement;
     private SchemaParticle       _wildcardElement;
@@ -112,19 +112,26 @@ public class ValidatorUtil
         }
 
         Validator validator =
-                new Validator(
+                Validator.acquire(
                         type, null, type.getTypeSystem(), null, errors);
 
-        //make only one event at the beginning and than reuse it
-        EventImpl ev = new EventImpl(prefixResolver, value);
+        try
+        {
+            //make only one event at the beginning and than reuse it
+            EventImpl ev = new EventImpl(prefixResolver, value);
 
-        validator.nextEvent(ValidatorListener.BEGIN, ev);
+            validator.nextEvent(ValidatorListener.BEGIN, ev);
 
-        validator.nextEvent(ValidatorListener.TEXT, ev);
+            validator.nextEvent(ValidatorListener.TEXT, ev);
 
-        validator.nextEvent(ValidatorListener.END, ev);
+            validator.nextEvent(ValidatorListener.END, ev);
 
-        return validator.isValid();
+            return validator.isValid();
+        }
+        finally
+        {
+            validator.release();
+        }
     }
 
 //    public static void main(String[] args)
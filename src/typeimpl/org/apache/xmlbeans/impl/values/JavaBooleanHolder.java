@@ -21,6 +21,8 @@ import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.SchemaType;
 import org.apache.xmlbeans.XmlBoolean;
 import org.apache.xmlbeans.impl.common.ValidationContext;
+import org.apache.xmlbeans.impl.common.InvalidLexicalValueException;
+import org.apache.xmlbeans.impl.util.XsTypeConverter;
 
 public abstract class JavaBooleanHolder extends XmlObjectBase
 {
@@ -37,6 +39,17 @@ public abstract class JavaBooleanHolder extends XmlObjectBase
     {
         _value = validateLexical(s, _voorVc);
     }
+    protected boolean can_set_chars()
+    {
+        return true;
+    }
+    protected boolean set_chars(CharSequence chars)
+    {
+        try { _value = XsTypeConverter.lexBoolean(chars); }
+        catch (InvalidLexicalValueException e) { return false; }
+
+        return true;
+    }
     public static boolean validateLexical(String v, ValidationContext context)
     {
         if (v.equals("true") || v.equals("1"))
@@ -54,6 +54,12 @@ public abstract class JavaBooleanHolderEx extends JavaBooleanHolder
         super.set_text(s);
     }
 
+    protected boolean set_chars(CharSequence chars)
+    {
+        // the pattern is matched against the text as a string
+        return !_validateOnSet() && super.set_chars(chars);
+    }
+
     protected void validate_simpleval(String lexical, ValidationContext ctx)
     {
         validateLexical(lexical, schemaType(), ctx);
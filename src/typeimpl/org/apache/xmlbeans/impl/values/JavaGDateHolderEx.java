@@ -61,6 +61,30 @@ public abstract class JavaGDateHolderEx extends XmlObjectBase
         _value = newVal;
     }
 
+    protected boolean can_set_chars()
+    {
+        return true;
+    }
+
+    protected boolean set_chars(CharSequence chars)
+    {
+        // as lex does, leaving errors and validation to set_text
+
+        if (_validateOnSet())
+            return false;
+
+        GDate date;
+
+        try { date = new GDate(chars); }
+        catch (Exception e) { return false; }
+
+        if (date.getBuiltinTypeCode() != _schemaType.getPrimitiveType().getBuiltinTypeCode() || !date.isValid())
+            return false;
+
+        _value = date;
+        return true;
+    }
+
     public static GDate lex(String v, SchemaType sType, ValidationContext context)
     {
         GDate date = null;
@@ -42,6 +42,20 @@ public abstract class JavaIntHolder extends XmlObjectBase
         try { set_int(XsTypeConverter.lexInt(s)); }
         catch (Exception e) { throw new XmlValueOutOfRangeException(XmlErrorCodes.INT, new Object[] { s }); }
     }
+    protected boolean can_set_chars()
+    {
+        return true;
+    }
+    protected boolean set_chars(CharSequence chars)
+    {
+        int v;
+
+        try { v = XsTypeConverter.lexInt(chars); }
+        catch (NumberFormatException e) { return false; }
+
+        set_int(v);
+        return true;
+    }
     protected void set_nil()
     {
         _value = 0;
@@ -48,6 +48,12 @@ public abstract class JavaIntHolderEx extends JavaIntHolder
 
         super.set_int(v);
     }
+
+    protected boolean set_chars(CharSequence chars)
+    {
+        // the lexical checks want the text as a string
+        return !_validateOnSet() && super.set_chars(chars);
+    }
     
     protected void set_int(int v)
     {
@@ -42,6 +42,20 @@ public abstract class JavaLongHolder extends XmlObjectBase
         try { set_long(XsTypeConverter.lexLong(s)); }
         catch (Exception e) { throw new XmlValueOutOfRangeException(XmlErrorCodes.LONG, new Object[] { s }); }
     }
+    protected boolean can_set_chars()
+    {
+        return true;
+    }
+    protected boolean set_chars(CharSequence chars)
+    {
+        long v;
+
+        try { v = XsTypeConverter.lexLong(chars); }
+        catch (NumberFormatException e) { return false; }
+
+        set_long(v);
+        return true;
+    }
     protected void set_nil()
     {
         _value = 0L;
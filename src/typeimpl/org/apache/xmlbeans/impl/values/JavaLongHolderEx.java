@@ -48,6 +48,12 @@ public abstract class JavaLongHolderEx extends JavaLongHolder
 
         super.set_long(v);
     }
+
+    protected boolean set_chars(CharSequence chars)
+    {
+        // the lexical checks want the text as a string
+        return !_validateOnSet() && super.set_chars(chars);
+    }
     
     protected void set_long(long v)
     {
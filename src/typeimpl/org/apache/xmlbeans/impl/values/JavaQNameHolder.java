@@ -101,7 +101,7 @@ public class JavaQNameHolder extends XmlObjectBase
         return name;
     }
 
-    private static QName parse(String v, PrefixResolver resolver)
+    private static QName parse(CharSequence v, PrefixResolver resolver)
     {
         String prefix, localname;
         int start;
@@ -113,16 +113,20 @@ public class JavaQNameHolder extends XmlObjectBase
             if (!XMLChar.isSpace(v.charAt(start)))
                 break;
 
-        int firstcolon = v.indexOf(':', start);
-        if (firstcolon >= 0)
+        int firstcolon;
+        for (firstcolon = start; firstcolon < end; firstcolon += 1)
+            if (v.charAt(firstcolon) == ':')
+                break;
+
+        if (firstcolon < end)
         {
-            prefix = v.substring(start, firstcolon);
-            localname = v.substring(firstcolon + 1, end);
+            prefix = v.subSequence(start, firstcolon).toString();
+            localname = v.subSequence(firstcolon + 1, end).toString();
         }
         else
         {
             prefix = "";
-            localname = v.substring(start, end);
+            localname = v.subSequence(start, end).toString();
         }
 
         if ( prefix.length()>0 && !XMLChar.isValidNCName(prefix) )
@@ -158,6 +162,21 @@ public class JavaQNameHolder extends XmlObjectBase
         _value = parse(s, resolver);
     }
 
+    protected boolean can_set_chars()
+    {
+        return true;
+    }
+
+    protected boolean set_chars(CharSequence chars)
+    {
+        // prefixes are resolved in the store, as check_dated has set_text
+        // do through the NamespaceContext
+        try { _value = parse(chars, get_store()); }
+        catch (XmlValueOutOfRangeException e) { return false; }
+
+        return true;
+    }
+
     // BUGBUG - having prefix here may not work
     protected void set_QName(QName name)
     {
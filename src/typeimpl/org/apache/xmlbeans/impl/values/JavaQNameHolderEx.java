@@ -61,6 +61,15 @@ public abstract class JavaQNameHolderEx extends JavaQNameHolder
         super.set_QName(v);
     }
 
+    protected boolean set_chars(CharSequence chars)
+    {
+        // the pattern is matched against the text as a string
+        if (_validateOnSet())
+            return false;
+
+        return super.set_chars(chars);
+    }
+
     protected void set_QName(QName name)
     {
         if (_validateOnSet())
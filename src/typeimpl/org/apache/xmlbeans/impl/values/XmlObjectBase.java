@@ -59,6 +59,7 @@ import org.apache.xmlbeans.SchemaAttributeModel;
 import org.apache.xmlbeans.XmlAnySimpleType;
 import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.XmlPath;
 import org.apache.xmlbeans.XmlDocumentProperties;
 import org.apache.xmlbeans.SimpleValue;
 import org.apache.xmlbeans.SchemaType;
@@ -99,6 +100,26 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
         return this;
     }
 
+    /**
+     * The monitor generated getters hold while reading.  This is the
+     * same as monitor(), except for values of a frozen document whose
+     * typed value has been cached: nothing is written when reading those,
+     * so a lock private to the current thread is returned instead and
+     * readers on different threads do not contend.
+     */
+    protected final Object read_monitor()
+    {
+        if ((_flags & FLAG_UNSYNC_READS) != 0)
+            return tl_readMonitor.get();
+        return monitor();
+    }
+
+    private static final ThreadLocal tl_readMonitor =
+        new ThreadLocal()
+        {
+            protected Object initialValue() { return new Object(); }
+        };
+
     private static XmlObjectBase underlying(XmlObject obj)
     {
         if (obj == null)
@@ -380,12 +401,19 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
             TypeStore typeStore = get_store();
 
             Validator validator =
-                new Validator(
+                Validator.acquire(
                     type, field, typeStore.get_schematypeloader(), options, null);
 
-            typeStore.validate( validator );
+            try
+            {
+                typeStore.validate( validator );
 
-            return validator.isValid();
+                return validator.isValid();
+            }
+            finally
+            {
+                validator.release();
+            }
         }
     }
 
@@ -462,8 +490,6 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
 
     public XmlObject[] selectPath ( String path, XmlOptions options )
     {
-        XmlObject [] selections;
-
         // all user-level code; doesn't need to be synchronized
 
         XmlCursor c = newCursor();
@@ -475,29 +501,55 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
         {
             c.selectPath( path, options );
 
-            if (!c.hasNextSelection())
-                selections = EMPTY_RESULT;
-            else
-            {
-                selections = new XmlObject [ c.getSelectionCount() ];
+            return selections( c );
+        }
+        finally
+        {
+            c.dispose();
+        }
+    }
 
-                for (int i = 0 ; c.toNextSelection() ; i++)
-                {
-                    if ((selections[ i ] = c.getObject()) == null)
-                    {
-                        if ( !c.toParent() || (selections[ i ] = c.getObject()) == null )
-                        throw
-                            new XmlRuntimeException(
-                                "Path must select only elements " +
-                                    "and attributes" );
-                    }
-                }
-            }
+    public XmlObject[] selectCompiledPath ( XmlPath path )
+    {
+        XmlCursor c = newCursor();
+
+        if (c == null)
+            throw new XmlValueDisconnectedException();
+
+        try
+        {
+            c.selectCompiledPath( path );
+
+            return selections( c );
         }
         finally
         {
             c.dispose();
         }
+    }
+
+    private XmlObject[] selections ( XmlCursor c )
+    {
+        XmlObject [] selections;
+
+        if (!c.hasNextSelection())
+            selections = EMPTY_RESULT;
+        else
+        {
+            selections = new XmlObject [ c.getSelectionCount() ];
+
+            for (int i = 0 ; c.toNextSelection() ; i++)
+            {
+                if ((selections[ i ] = c.getObject()) == null)
+                {
+                    if ( !c.toParent() || (selections[ i ] = c.getObject()) == null )
+                    throw
+                        new XmlRuntimeException(
+                            "Path must select only elements " +
+                                "and attributes" );
+                }
+            }
+        }
 
          return _typedArray(selections);
     }
@@ -620,6 +672,8 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
     private static final int FLAG_COMPLEXCONTENT  = 16384;
     private static final int FLAG_NOT_VARIABLE    = 32768;
     private static final int FLAG_VALIDATE_ON_SET = 65536;
+    private static final int FLAG_FROZEN          = 131072;
+    private static final int FLAG_UNSYNC_READS    = 262144;
 
 
     /**
@@ -670,7 +724,7 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
      */
     public final boolean isNil()
     {
-        synchronized (monitor())
+        synchronized (read_monitor())
         {
             check_dated();
             return ((_flags & FLAG_NIL) != 0);
@@ -922,6 +976,55 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
         // do NOT null out _textsource, because we need it non-null for synchronization
     }
 
+    /**
+     * A store calls back here when its document is frozen.  The value
+     * is brought up to date now; if that works and rendering it as text
+     * needs no namespace context from the store, reads no longer need
+     * the store's monitor.  Any attempt to set a value fails from now on.
+     */
+    public void freeze_value()
+    {
+        assert((_flags & FLAG_STORE) != 0);
+        _flags |= FLAG_FROZEN;
+
+        try
+        {
+            check_dated();
+        }
+        catch (RuntimeException e)
+        {
+            // an invalid value stays dated: reporting the error again on
+            // the next get goes through the store, under its monitor
+            return;
+        }
+
+        if (!needs_namespace_context(schemaType()))
+            _flags |= FLAG_UNSYNC_READS;
+    }
+
+    private static boolean needs_namespace_context(SchemaType type)
+    {
+        switch (type.getSimpleVariety())
+        {
+            case SchemaType.ATOMIC:
+                int code = type.getPrimitiveType().getBuiltinTypeCode();
+                return code == SchemaType.BTC_QNAME || code == SchemaType.BTC_NOTATION;
+
+            case SchemaType.LIST:
+                return needs_namespace_context(type.getListItemType());
+
+            case SchemaType.UNION:
+                SchemaType[] members = type.getUnionConstituentTypes();
+                for (int i = 0; i < members.length; i++)
+                    if (needs_namespace_context(members[i]))
+                        return true;
+                return false;
+
+            default:
+                return false;
+        }
+    }
+
     /**
      * A typestore user can create a new TypeStoreUser instance for
      * a given element child name as long as you also pass the
@@ -1181,6 +1284,25 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
         _flags &= ~(FLAG_NIL | FLAG_ISDEFAULT);
     }
 
+    /**
+     * Like update_from_wscanon_text, for the characters handed over by
+     * the store.  Falls back to a string when a default applies or the
+     * type does not take the characters.
+     */
+    private final void update_from_wscanon_chars(CharSequence v)
+    {
+        if (((_flags & FLAG_HASDEFAULT) != 0 && (_flags & FLAG_ATTRIBUTE) == 0 && v.length() == 0) ||
+            !set_chars(v))
+        {
+            NamespaceContext.push(new NamespaceContext(get_store()));
+            try { update_from_wscanon_text(v.toString()); }
+            finally { NamespaceContext.pop(); }
+            return;
+        }
+
+        _flags &= ~(FLAG_NIL | FLAG_ISDEFAULT);
+    }
+
     /**
      * Types should return false if they don't treat the given
      * whitespace as a default value.
@@ -1309,9 +1431,14 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
 
             if (!nilled)
             {
+                CharSequence chars;
                 String text;
 
-                if ((_flags & FLAG_COMPLEXCONTENT) != 0 || (text = get_wscanon_text()) == null)
+                if ((_flags & FLAG_COMPLEXCONTENT) != 0)
+                    update_from_complex_content();
+                else if (can_set_chars() && (chars = get_store().fetch_chars(get_wscanon_rule())) != null)
+                    update_from_wscanon_chars(chars);
+                else if ((text = get_wscanon_text()) == null)
                     update_from_complex_content();
                 else
                 {
@@ -1333,6 +1460,8 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
      */
     private final void set_prepare()
     {
+        if ((_flags & FLAG_FROZEN) != 0)
+            throw new IllegalStateException("Cannot set the value of an XmlObject in a frozen document");
         check_element_dated();
         if ((_flags & FLAG_IMMUTABLE) != 0)
             throw new IllegalStateException();
@@ -1383,6 +1512,28 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
      */
     abstract protected void set_text(String text);
 
+    /**
+     * Types which can set their value from characters with set_chars,
+     * without a string being made of them, return true.
+     */
+    protected boolean can_set_chars()
+    {
+        return false;
+    }
+
+    /**
+     * Sets the value of the type from the characters of the store, with
+     * the wscanon rule applied, if it can do so without allocating; the
+     * characters are only valid for the duration of the call.  Returns
+     * false, leaving the value alone, if the characters need the full
+     * treatment (they are invalid, or the value is validated on set), in
+     * which case set_text is called with them instead.
+     */
+    protected boolean set_chars(CharSequence chars)
+    {
+        return false;
+    }
+
     /**
      * This should clear the value, and set it to whatever
      * is supposed to be returned when the value is nilled.
@@ -1521,11 +1672,16 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
         }
         // Since complex-content types don't have a "natural" string value, we
         // emit the deeply concatenated, tag-removed content of the tag.
-        synchronized (monitor())
+        if (_isComplexContent())
         {
-            if (_isComplexContent())
+            synchronized (monitor())
+            {
                 return get_store().fetch_text(TypeStore.WS_PRESERVE);
+            }
+        }
 
+        synchronized (read_monitor())
+        {
             check_dated();
             if ((_flags & FLAG_NIL) != 0)
                 return null;
@@ -2053,22 +2209,37 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
                             newObj = setterHelper( obj );
                         }
                     }
-                    else                                // both are sync can't avoid the global lock
+                    else                                // both are sync: lock in a fixed order
                     {
+                        Object first = monitor();
+                        Object second = obj.monitor();
+
+                        if (GlobalLock.compare(first, second) > 0)
+                        {
+                            first = obj.monitor();
+                            second = monitor();
+                        }
+
                         boolean acquired = false;
 
                         try
                         {
-                            // about to grab two locks: don't deadlock ourselves
-                            GlobalLock.acquire();
-                            acquired = true;
+                            // about to grab two locks with no order: don't deadlock ourselves
+                            if (GlobalLock.compare(first, second) == 0)
+                            {
+                                GlobalLock.acquire();
+                                acquired = true;
+                            }
 
-                            synchronized (monitor())
+                            synchronized (first)
                             {
-                                synchronized (obj.monitor())
+                                synchronized (second)
                                 {
-                                    GlobalLock.release();
-                                    acquired = false;
+                                    if (acquired)
+                                    {
+                                        GlobalLock.release();
+                                        acquired = false;
+                                    }
 
                                     newObj = setterHelper( obj );
                                 }
@@ -2160,22 +2331,37 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
                     return (XmlObject)objSetterHelper(srcObj, propName, index, kindSetterHelper);
                 }
             }
-            else                                // both are sync can't avoid the global lock
+            else                                // both are sync: lock in a fixed order
             {
+                Object first = monitor();
+                Object second = srcObj.monitor();
+
+                if (GlobalLock.compare(first, second) > 0)
+                {
+                    first = srcObj.monitor();
+                    second = monitor();
+                }
+
                 boolean acquired = false;
 
                 try
                 {
-                    // about to grab two locks: don't deadlock ourselves
-                    GlobalLock.acquire();
-                    acquired = true;
+                    // about to grab two locks with no order: don't deadlock ourselves
+                    if (GlobalLock.compare(first, second) == 0)
+                    {
+                        GlobalLock.acquire();
+                        acquired = true;
+                    }
 
-                    synchronized (monitor())
+                    synchronized (first)
                     {
-                        synchronized (srcObj.monitor())
+                        synchronized (second)
                         {
-                            GlobalLock.release();
-                            acquired = false;
+                            if (acquired)
+                            {
+                                GlobalLock.release();
+                                acquired = false;
+                            }
 
                             return (XmlObject)objSetterHelper(srcObj, propName, index, kindSetterHelper);
                         }
@@ -2423,14 +2609,27 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
                 }
                 else
                 {
-                    GlobalLock.acquire();
-                    acquired = true;
-                    synchronized (monitor())
+                    Object first = monitor();
+                    Object second = xmlobj.monitor();
+                    if (GlobalLock.compare(first, second) > 0)
                     {
-                        synchronized (xmlobj.monitor())
+                        first = xmlobj.monitor();
+                        second = monitor();
+                    }
+                    if (GlobalLock.compare(first, second) == 0)
+                    {
+                        GlobalLock.acquire();
+                        acquired = true;
+                    }
+                    synchronized (first)
+                    {
+                        synchronized (second)
                         {
-                            GlobalLock.release();
-                            acquired = false;
+                            if (acquired)
+                            {
+                                GlobalLock.release();
+                                acquired = false;
+                            }
                             return valueEqualsImpl(xmlobj);
                         }
                     }
@@ -2533,14 +2732,27 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
                 }
                 else
                 {
-                    GlobalLock.acquire();
-                    acquired = true;
-                    synchronized (monitor())
+                    Object first = monitor();
+                    Object second = xmlobj.monitor();
+                    if (GlobalLock.compare(first, second) > 0)
                     {
-                        synchronized (xmlobj.monitor())
+                        first = xmlobj.monitor();
+                        second = monitor();
+                    }
+                    if (GlobalLock.compare(first, second) == 0)
+                    {
+                        GlobalLock.acquire();
+                        acquired = true;
+                    }
+                    synchronized (first)
+                    {
+                        synchronized (second)
                         {
-                            GlobalLock.release();
-                            acquired = false;
+                            if (acquired)
+                            {
+                                GlobalLock.release();
+                                acquired = false;
+                            }
                             return compareValueImpl(xmlobj);
                         }
                     }
@@ -81,6 +81,17 @@ public interface TypeStore extends NamespaceManager
     // BUGBUG (ericvas) 12111
     String fetch_text(int whitespaceRule);
 
+    /**
+     * Like fetch_text, but hands back the characters of the value, with
+     * the whitespace rule applied, without making a String of them; they
+     * are the text of the store itself where they need no change.  The
+     * characters are only valid until the next call to fetch_chars on the
+     * same thread.  Returns null if the value is not a single run of text
+     * (it is interrupted by a comment, say), in which case the user falls
+     * back to fetch_text.
+     */
+    CharSequence fetch_chars(int whitespaceRule);
+
     public static int WS_UNSPECIFIED = 0;
     public static int WS_PRESERVE = 1;
     public static int WS_REPLACE = 2;
@@ -200,6 +211,54 @@ public interface TypeStore extends NamespaceManager
      */
     void find_all_element_users(QNameSet name, List fillMeUp);
 
+    /**
+     * Stores the TypeStoreUsers corresponding to elements with the given
+     * name owned by this typestore in the given array, which must be
+     * count_elements(name) long.  Saves building a list when an array is
+     * wanted.
+     */
+    void find_all_element_users(QName name, Object[] fillMeUp);
+
+    /**
+     * Like find_all_element_users but accepts a set of names.
+     */
+    void find_all_element_users(QNameSet names, Object[] fillMeUp);
+
+    /**
+     * Returns the int values of the elements with the given name owned by
+     * this typestore.  The value of an element which has no TypeStoreUser
+     * yet is read straight from its text when it is a plain int literal,
+     * without creating the user; the values of the other elements are
+     * obtained from their users, with the usual exceptions for invalid
+     * values.
+     */
+    int[] find_all_element_ints(QName name);
+
+    /**
+     * Like find_all_element_ints but accepts a set of names.
+     */
+    int[] find_all_element_ints(QNameSet names);
+
+    /**
+     * Like find_all_element_ints, for long values.
+     */
+    long[] find_all_element_longs(QName name);
+
+    /**
+     * Like find_all_element_longs but accepts a set of names.
+     */
+    long[] find_all_element_longs(QNameSet names);
+
+    /**
+     * Like find_all_element_ints, for double values.
+     */
+    double[] find_all_element_doubles(QName name);
+
+    /**
+     * Like find_all_element_doubles but accepts a set of names.
+     */
+    double[] find_all_element_doubles(QNameSet names);
+
     /**
      * Inserts a new element at the position that will make it
      * the ith element with the given name owned by this textstore,
@@ -107,6 +107,14 @@ public interface TypeStoreUser
      */
     void disconnect_store();
 
+    /**
+     * A store calls back on freeze_value when its document has been made
+     * read only.  No invalidation will ever follow, so this is the time
+     * to compute and cache anything a strongly-typed get would otherwise
+     * fetch from the store, and to refuse any further set.
+     */
+    void freeze_value();
+
     /**
      * A typestore user can create a new TypeStoreUser instance for
      * a given element child name as long as you also pass the
@@ -34,6 +34,7 @@ import org.apache.xmlbeans.impl.schema.PathResourceLoader;
 import org.apache.xmlbeans.impl.schema.SchemaTypeLoaderImpl;
 import org.apache.xmlbeans.impl.schema.SchemaTypeSystemCompiler;
 import org.apache.xmlbeans.impl.schema.SchemaTypeSystemImpl;
+import org.apache.xmlbeans.impl.schema.StscParallel;
 import org.apache.xmlbeans.impl.schema.StscState;
 import org.apache.xmlbeans.impl.common.JarHelper;
 import org.apache.xmlbeans.impl.util.FilerImpl;
@@ -58,6 +59,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.StringTokenizer;
 import repackage.Repackager;
 
@@ -76,9 +79,11 @@ public class SchemaCompiler
         System.out.println("    -dl - permit network downloads for imports and includes (default is off)");
         System.out.println("    -noupa - do not enforce the unique particle attribution rule");
         System.out.println("    -nopvr - do not enforce the particle valid (restriction) rule");
+        System.out.println("    -parallel - parse and check the schemas on several threads");
         System.out.println("    -noann - ignore annotations");
         System.out.println("    -novdoc - do not validate contents of <documentation>");
         System.out.println("    -noext - ignore all extension (Pre/Post and Interface) found in .xsdconfig files");
+        System.out.println("    -packxsb - save the .xsb files of all components in a single resource");
         System.out.println("    -compiler - path to external java compiler");
         System.out.println("    -javasource [version] - generate java source compatible for a Java version (1.4 or 1.5)");
         System.out.println("    -ms - initial memory for external java compiler (default '" + CodeGenUtil.DEFAULT_MEM_START + "')");
@@ -119,9 +124,11 @@ public class SchemaCompiler
         flags.add("dl");
         flags.add("noupa");
         flags.add("nopvr");
+        flags.add("parallel");
         flags.add("noann");
         flags.add("novdoc");
         flags.add("noext");
+        flags.add("packxsb");
         flags.add("srconly");
         flags.add("debug");
 
@@ -210,9 +217,11 @@ public class SchemaCompiler
         boolean download = (cl.getOpt("dl") != null);
         boolean noUpa = (cl.getOpt("noupa") != null);
         boolean noPvr = (cl.getOpt("nopvr") != null);
+        boolean parallel = (cl.getOpt("parallel") != null);
         boolean noAnn = (cl.getOpt("noann") != null);
         boolean noVDoc= (cl.getOpt("novdoc") != null);
         boolean noExt= (cl.getOpt("noext") != null);
+        boolean packXsb = (cl.getOpt("packxsb") != null);
         boolean nojavac = (cl.getOpt("srconly") != null);
         boolean debug = (cl.getOpt("debug") != null);
 
@@ -359,9 +368,11 @@ public class SchemaCompiler
         params.setDownload(download);
         params.setNoUpa(noUpa);
         params.setNoPvr(noPvr);
+        params.setParallel(parallel);
         params.setNoAnn(noAnn);
         params.setNoVDoc(noVDoc);
         params.setNoExt(noExt);
+        params.setPackXsb(packXsb);
         params.setDebug(debug);
         params.setErrorListener(err);
         params.setRepackage(repackage);
@@ -405,9 +416,11 @@ public class SchemaCompiler
         private Collection errorListener;
         private boolean noUpa;
         private boolean noPvr;
+        private boolean parallel;
         private boolean noAnn;
         private boolean noVDoc;
         private boolean noExt;
+        private boolean packXsb;
         private boolean debug;
         private boolean incrementalSrcGen;
         private String repackage;
@@ -577,6 +590,16 @@ public class SchemaCompiler
             this.noUpa = noUpa;
         }
 
+        public boolean isParallel()
+        {
+            return parallel;
+        }
+
+        public void setParallel(boolean parallel)
+        {
+            this.parallel = parallel;
+        }
+
         public boolean isNoPvr()
         {
             return noPvr;
@@ -617,6 +640,16 @@ public class SchemaCompiler
             this.noExt = newNoExt;
         }
 
+        public boolean isPackXsb()
+        {
+            return packXsb;
+        }
+
+        public void setPackXsb(boolean packXsb)
+        {
+            this.packXsb = packXsb;
+        }
+
         public boolean isIncrementalSrcGen()
         {
             return incrementalSrcGen;
@@ -758,7 +791,7 @@ public class SchemaCompiler
 
     private static SchemaTypeSystem loadTypeSystem(String name, File[] xsdFiles, File[] wsdlFiles, URL[] urlFiles, File[] configFiles,
         File[] javaFiles, ResourceLoader cpResourceLoader,
-        boolean download, boolean noUpa, boolean noPvr, boolean noAnn, boolean noVDoc, boolean noExt,
+        boolean download, boolean noUpa, boolean noPvr, boolean parallel, boolean noAnn, boolean noVDoc, boolean noExt,
         Set mdefNamespaces, File baseDir, Map sourcesToCopyMap,
         Collection outerErrorListener, File schemasDir, EntityResolver entResolver, File[] classpath, String javasource)
     {
@@ -776,40 +809,37 @@ public class SchemaCompiler
 
         SchemaTypeLoader loader = XmlBeans.typeLoaderForClassLoader(SchemaDocument.class.getClassLoader());
 
+        XmlOptions opts = new XmlOptions();
+        if (download)
+            opts.setCompileDownloadUrls();
+        if (noUpa)
+            opts.setCompileNoUpaRule();
+        if (noPvr)
+            opts.setCompileNoPvrRule();
+        if (parallel)
+            opts.setCompileParallel();
+        if (noAnn)
+            opts.setCompileNoAnnotations();
+        if (mdefNamespaces != null)
+            opts.setCompileMdefNamespaces(mdefNamespaces);
+        opts.setCompileNoValidation(); // already validated here
+        opts.setEntityResolver(entResolver);
+        if (javasource != null)
+            opts.setGenerateJavaVersion(javasource);
+
         // step 1, parse all the XSD files.
         ArrayList scontentlist = new ArrayList();
         if (xsdFiles != null)
         {
-            for (int i = 0; i < xsdFiles.length; i++)
+            if (parallel && xsdFiles.length > 1)
             {
-                try
-                {
-                    XmlOptions options = new XmlOptions();
-                    options.setLoadLineNumbers();
-                    options.setLoadMessageDigest();
-                    options.setEntityResolver(entResolver);
-
-                    XmlObject schemadoc = loader.parse(xsdFiles[i], null, options);
-                    if (!(schemadoc instanceof SchemaDocument))
-                    {
-                        StscState.addError(errorListener, XmlErrorCodes.INVALID_DOCUMENT_TYPE,
-                            new Object[] { xsdFiles[i], "schema" }, schemadoc);
-                    }
-                    else
-                    {
-                        addSchema(xsdFiles[i].toString(), (SchemaDocument)schemadoc,
-                            errorListener, noVDoc, scontentlist);
-                    }
-                }
-                catch (XmlException e)
-                {
-                    errorListener.add(e.getError());
-                }
-                catch (Exception e)
-                {
-                    StscState.addError(errorListener, XmlErrorCodes.CANNOT_LOAD_FILE,
-                        new Object[] { "xsd", xsdFiles[i], e.getMessage() }, xsdFiles[i]);
-                }
+                loadXsdFilesParallel(loader, xsdFiles, entResolver, errorListener, noVDoc, scontentlist,
+                    StscParallel.executor(opts));
+            }
+            else
+            {
+                for (int i = 0; i < xsdFiles.length; i++)
+                    loadXsdFile(loader, xsdFiles[i], entResolver, errorListener, noVDoc, scontentlist);
             }
         }
 
@@ -948,22 +978,6 @@ public class SchemaCompiler
         if (baseDir != null)
             baseURI = baseDir.toURI();
 
-        XmlOptions opts = new XmlOptions();
-        if (download)
-            opts.setCompileDownloadUrls();
-        if (noUpa)
-            opts.setCompileNoUpaRule();
-        if (noPvr)
-            opts.setCompileNoPvrRule();
-        if (noAnn)
-            opts.setCompileNoAnnotations();
-        if (mdefNamespaces != null)
-            opts.setCompileMdefNamespaces(mdefNamespaces);
-        opts.setCompileNoValidation(); // already validated here
-        opts.setEntityResolver(entResolver);
-        if (javasource != null)
-            opts.setGenerateJavaVersion(javasource);
-
         // now pass it to the main compile function
         SchemaTypeSystemCompiler.Parameters params = new SchemaTypeSystemCompiler.Parameters();
         params.setName(name);
@@ -979,6 +993,78 @@ public class SchemaCompiler
         return SchemaTypeSystemCompiler.compile(params);
     }
 
+    private static void loadXsdFile(SchemaTypeLoader loader, File xsdFile, EntityResolver entResolver,
+        XmlErrorWatcher errorListener, boolean noVDoc, List scontentlist)
+    {
+        try
+        {
+            XmlOptions options = new XmlOptions();
+            options.setLoadLineNumbers();
+            options.setLoadMessageDigest();
+            options.setEntityResolver(entResolver);
+
+            XmlObject schemadoc = loader.parse(xsdFile, null, options);
+            if (!(schemadoc instanceof SchemaDocument))
+            {
+                StscState.addError(errorListener, XmlErrorCodes.INVALID_DOCUMENT_TYPE,
+                    new Object[] { xsdFile, "schema" }, schemadoc);
+            }
+            else
+            {
+                addSchema(xsdFile.toString(), (SchemaDocument)schemadoc,
+                    errorListener, noVDoc, scontentlist);
+            }
+        }
+        catch (XmlException e)
+        {
+            errorListener.add(e.getError());
+        }
+        catch (Exception e)
+        {
+            StscState.addError(errorListener, XmlErrorCodes.CANNOT_LOAD_FILE,
+                new Object[] { "xsd", xsdFile, e.getMessage() }, xsdFile);
+        }
+    }
+
+    /**
+     * Parses and validates the XSD files on several threads, each into
+     * lists of its own, then adds the schemas and the messages in the
+     * order of the files, as loadXsdFile would have one file at a time.
+     */
+    private static void loadXsdFilesParallel(final SchemaTypeLoader loader, File[] xsdFiles,
+        final EntityResolver entResolver, XmlErrorWatcher errorListener, final boolean noVDoc,
+        List scontentlist, ExecutorService executor)
+    {
+        final List[] errors = new List[xsdFiles.length];
+        final List[] scontents = new List[xsdFiles.length];
+        List tasks = new ArrayList(xsdFiles.length);
+
+        for (int i = 0; i < xsdFiles.length; i++)
+        {
+            final File xsdFile = xsdFiles[i];
+            final List fileErrors = errors[i] = new ArrayList();
+            final List fileContents = scontents[i] = new ArrayList();
+
+            tasks.add(new Callable()
+            {
+                public Object call()
+                {
+                    loadXsdFile(loader, xsdFile, entResolver,
+                        new XmlErrorWatcher(fileErrors), noVDoc, fileContents);
+                    return null;
+                }
+            });
+        }
+
+        StscParallel.invokeAll(executor, tasks);
+
+        for (int i = 0; i < xsdFiles.length; i++)
+        {
+            errorListener.addAll(errors[i]);
+            scontentlist.addAll(scontents[i]);
+        }
+    }
+
     private static void addSchema(String name, SchemaDocument schemadoc,
         XmlErrorWatcher errorListener, boolean noVDoc, List scontentlist)
     {
@@ -1048,9 +1134,11 @@ public class SchemaCompiler
         boolean download = params.isDownload();
         boolean noUpa = params.isNoUpa();
         boolean noPvr = params.isNoPvr();
+        boolean parallel = params.isParallel();
         boolean noAnn = params.isNoAnn();
         boolean noVDoc = params.isNoVDoc();
         boolean noExt = params.isNoExt();
+        boolean packXsb = params.isPackXsb();
         boolean incrSrcGen = params.isIncrementalSrcGen();
         Collection outerErrorListener = params.getErrorListener();
 
@@ -1098,7 +1186,7 @@ public class SchemaCompiler
         // build the in-memory type system
         XmlErrorWatcher errorListener = new XmlErrorWatcher(outerErrorListener);
         SchemaTypeSystem system = loadTypeSystem(name, xsdFiles, wsdlFiles, urlFiles, configFiles,
-            javaFiles, cpResourceLoader, download, noUpa, noPvr, noAnn, noVDoc, noExt, mdefNamespaces,
+            javaFiles, cpResourceLoader, download, noUpa, noPvr, parallel, noAnn, noVDoc, noExt, mdefNamespaces,
             baseDir, sourcesToCopyMap, errorListener, schemasDir, cmdLineEntRes, classpath, javasource);
         if (errorListener.hasError())
             result = false;
@@ -1123,6 +1211,8 @@ public class SchemaCompiler
                 options.setGenerateJavaVersion(javasource);
 
             // save .xsb files
+            if (packXsb && system instanceof SchemaTypeSystemImpl)
+                ((SchemaTypeSystemImpl)system).setSavePacked(true);
             system.save(filer);
 
             // gen source files
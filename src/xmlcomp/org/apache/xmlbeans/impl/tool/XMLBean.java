@@ -67,9 +67,11 @@ public class XMLBean extends MatchingTask
                         srconly,
                         noupa,
                         nopvr,
+                        parallel,
                         noann,
                         novdoc,
                         noext = false,
+                        packxsb = false,
                         failonerror = true,
                         fork = true,
                         includeAntRuntime = true,
@@ -233,9 +235,11 @@ public class XMLBean extends MatchingTask
             params.setMdefNamespaces(mdefnamespaces);
             params.setNoUpa(noupa);
             params.setNoPvr(nopvr);
+            params.setParallel(parallel);
             params.setNoAnn(noann);
             params.setNoVDoc(novdoc);
             params.setNoExt(noext);
+            params.setPackXsb(packxsb);
             params.setJavaSource(javasource);
             success = SchemaCompiler.compile(params);
 
@@ -736,6 +740,19 @@ public class XMLBean extends MatchingTask
         return nopvr;
     }
 
+    /**
+     * Parse and check the schemas on several threads.
+     */
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel()
+    {
+        return parallel;
+    }
+
     /**
      * Skip over schema &lt;annotation%gt; elements.
      */
@@ -776,6 +793,20 @@ public class XMLBean extends MatchingTask
         return noext;
     }
 
+    /**
+     * Save the .xsb files of all components in a single resource
+     * @param packxsb
+     */
+    public void setPackXsb(boolean packxsb)
+    {
+        this.packxsb = packxsb;
+    }
+
+    public boolean isPackXsb()
+    {
+        return packxsb;
+    }
+
     /**
      * Generate java source compatible with the given version.  Currently,
      * only "1.4" or "1.5" are supported and "1.4" is the default.
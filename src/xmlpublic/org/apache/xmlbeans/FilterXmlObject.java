@@ -77,6 +77,11 @@ public abstract class FilterXmlObject implements XmlObject, SimpleValue, Delegat
         return underlyingXmlObject().selectPath(path, options);
     }
 
+    public XmlObject[] selectCompiledPath(XmlPath path)
+    {
+        return underlyingXmlObject().selectCompiledPath(path);
+    }
+
     public XmlObject[] execQuery(String query)
     {
         return underlyingXmlObject().execQuery(query);
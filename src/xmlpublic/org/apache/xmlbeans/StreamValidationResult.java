@@ -0,0 +1,101 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans;
+
+/**
+ * The outcome of validating an instance with
+ * {@link XmlBeans#validateStream(javax.xml.stream.XMLStreamReader, SchemaType, XmlOptions)}.
+ * <p>
+ * The errors themselves are reported to the error listener set with
+ * {@link XmlOptions#setErrorListener}; this only counts them, together with
+ * the number of elements seen and the time it took, so that throughput can
+ * be monitored.
+ */
+public final class StreamValidationResult
+{
+    private final boolean _valid;
+    private final boolean _aborted;
+    private final int _errorCount;
+    private final long _elementCount;
+    private final long _elapsedNanos;
+
+    /** @exclude */
+    public StreamValidationResult(boolean valid, boolean aborted, int errorCount,
+                                  long elementCount, long elapsedNanos)
+    {
+        _valid = valid;
+        _aborted = aborted;
+        _errorCount = errorCount;
+        _elementCount = elementCount;
+        _elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * True if the whole instance was read and no errors were found.
+     */
+    public boolean isValid()
+    {
+        return _valid;
+    }
+
+    /**
+     * True if validation stopped before the end of the instance because
+     * the limit set with {@link XmlOptions#setValidateErrorLimit} was reached.
+     */
+    public boolean isAborted()
+    {
+        return _aborted;
+    }
+
+    /**
+     * The number of errors reported, warnings excluded.
+     */
+    public int getErrorCount()
+    {
+        return _errorCount;
+    }
+
+    /**
+     * The number of elements validated.
+     */
+    public long getElementCount()
+    {
+        return _elementCount;
+    }
+
+    /**
+     * The time spent reading and validating, in milliseconds.
+     */
+    public long getElapsedMillis()
+    {
+        return _elapsedNanos / 1000000;
+    }
+
+    /**
+     * The number of elements validated per second.
+     */
+    public double getElementsPerSecond()
+    {
+        return _elapsedNanos == 0 ? 0 : _elementCount * 1e9 / _elapsedNanos;
+    }
+
+    public String toString()
+    {
+        return (_valid ? "valid" : "invalid") + (_aborted ? " (aborted)" : "") +
+            ": " + _errorCount + " errors, " + _elementCount + " elements in " +
+            getElapsedMillis() + " ms";
+    }
+}
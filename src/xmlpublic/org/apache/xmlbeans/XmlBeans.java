@@ -22,6 +22,9 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Constructor;
 import java.lang.ref.SoftReference;
 import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
 
 import javax.xml.stream.XMLStreamReader;
 
@@ -132,7 +135,12 @@ public final class XmlBeans
     private static final Method _nodeToXmlObjectMethod = buildNodeToXmlObjectMethod();
     private static final Method _nodeToXmlStreamMethod = buildNodeToXmlStreamMethod();
     private static final Method _streamToNodeMethod = buildStreamToNodeMethod();
+    private static final Method _validateStreamMethod = buildValidateStreamMethod();
+    private static final Method _validateInputStreamMethod = buildValidateInputStreamMethod();
+    private static final Method _compileXmlPathMethod = buildCompileXmlPathMethod();
     private static final Constructor _pathResourceLoaderConstructor = buildPathResourceLoaderConstructor();
+    private static final Method _newWriterObjectWriterMethod = buildNewObjectWriterMethod( Writer.class );
+    private static final Method _newStreamObjectWriterMethod = buildNewObjectWriterMethod( OutputStream.class );
 
     private static RuntimeException causedException ( RuntimeException e, Throwable cause )
     {
@@ -250,6 +258,38 @@ public final class XmlBeans
                 new Class[] { XMLStreamReader.class } );
     }
 
+    private static final Method buildValidateStreamMethod()
+    {
+        return
+            buildMethod(
+                "org.apache.xmlbeans.impl.validator.StreamValidator", "validate",
+                new Class[] { XMLStreamReader.class, SchemaType.class, XmlOptions.class } );
+    }
+
+    private static final Method buildValidateInputStreamMethod()
+    {
+        return
+            buildMethod(
+                "org.apache.xmlbeans.impl.validator.StreamValidator", "validate",
+                new Class[] { InputStream.class, SchemaType.class, XmlOptions.class } );
+    }
+
+    private static final Method buildCompileXmlPathMethod()
+    {
+        return
+            buildMethod(
+                "org.apache.xmlbeans.impl.store.Path", "compileXmlPath",
+                new Class[] { String.class, XmlOptions.class } );
+    }
+
+    private static final Method buildNewObjectWriterMethod( Class destination )
+    {
+        return
+            buildMethod(
+                "org.apache.xmlbeans.impl.store.ObjectWriter", "newObjectWriter",
+                new Class[] { destination, XmlOptions.class } );
+    }
+
     private static final Constructor buildPathResourceLoaderConstructor()
     {
         return
@@ -284,6 +324,81 @@ public final class XmlBeans
         return getContextTypeLoader().compilePath( pathExpr, options );
     }
 
+    /**
+     * Compiles an XPath into a reusable {@link XmlPath}, to be executed with
+     * {@link XmlCursor#selectCompiledPath(XmlPath)} or
+     * {@link XmlObject#selectCompiledPath(XmlPath)}.  Unlike the String returned by
+     * {@link #compilePath(String)}, the compiled path stays compiled for as
+     * long as it is referenced, whatever happens to the path cache.
+     */
+    public static XmlPath compileXmlPath ( String pathExpr ) throws XmlException
+    {
+        return compileXmlPath( pathExpr, null );
+    }
+
+    /**
+     * Compiles an XPath into a reusable {@link XmlPath}; the options are
+     * those of {@link #compilePath(String, XmlOptions)}, and are used again
+     * each time the path is executed.
+     */
+    public static XmlPath compileXmlPath ( String pathExpr, XmlOptions options )
+        throws XmlException
+    {
+        try
+        {
+            return (XmlPath) _compileXmlPathMethod.invoke( null, new Object[] { pathExpr, options } );
+        }
+        catch ( IllegalAccessException e )
+        {
+            throw causedException( new IllegalStateException( "No access to Path.compileXmlPath(): verify that version of xbean.jar is correct" ), e );
+        }
+        catch ( InvocationTargetException e )
+        {
+            throw wrappedException( e.getCause() );
+        }
+    }
+
+    /**
+     * Returns an {@link XmlObjectWriter} writing a document to the given
+     * writer a piece at a time.  The save options apply to each object
+     * appended.
+     */
+    public static XmlObjectWriter newObjectWriter ( Writer w, XmlOptions options )
+    {
+        return newObjectWriter( _newWriterObjectWriterMethod, w, options );
+    }
+
+    /**
+     * Returns an {@link XmlObjectWriter} writing a document to the given
+     * stream a piece at a time, in the encoding given by
+     * {@link XmlOptions#setCharacterEncoding}, UTF-8 by default.  The document
+     * starts with an XML declaration unless {@link XmlOptions#setSaveNoXmlDecl}
+     * is given.  The save options apply to each object appended.
+     */
+    public static XmlObjectWriter newObjectWriter ( OutputStream os, XmlOptions options )
+    {
+        return newObjectWriter( _newStreamObjectWriterMethod, os, options );
+    }
+
+    private static XmlObjectWriter newObjectWriter ( Method method, Object destination, XmlOptions options )
+    {
+        try
+        {
+            return (XmlObjectWriter) method.invoke( null, new Object[] { destination, options } );
+        }
+        catch ( IllegalAccessException e )
+        {
+            throw causedException( new IllegalStateException( "No access to ObjectWriter.newObjectWriter(): verify that version of xbean.jar is correct" ), e );
+        }
+        catch ( InvocationTargetException e )
+        {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+
+            throw causedException( new IllegalStateException( e.getCause().getMessage() ), e.getCause() );
+        }
+    }
+
     /**
      * Compiles an XQuery, returning a String equal to that which was passed,
      * but whose identity is that of one which has been precompiled and cached.
@@ -458,6 +573,64 @@ public final class XmlBeans
         }
     }
 
+    /**
+     * <p>Validates the instance read from the given stream, without loading
+     * it into memory.  Use this for instances too large to be loaded.</p>
+     *
+     * <p>The stream is read up to the end of its first element.  If
+     * <em>type</em> is null, the document type is looked up by the name of
+     * that element; if it is a document type, the element must match it;
+     * any other type is taken as the type of the content being read.</p>
+     *
+     * <p>Errors are reported to the error listener set with
+     * {@link XmlOptions#setErrorListener}, and validation stops once the
+     * number set with {@link XmlOptions#setValidateErrorLimit} has been
+     * reached.  Identity constraints are checked, so the values of keys in
+     * scope are the only thing held in memory.</p>
+     *
+     * @param xsr The stream to validate.
+     * @param type The type to validate against, or null.
+     * @param options Options specifying an error listener and validation behavior.
+     * @return Whether the instance is valid, with error and element counts.
+     * @throws XmlException If the stream cannot be read.
+     */
+    public static StreamValidationResult validateStream(XMLStreamReader xsr, SchemaType type, XmlOptions options) throws XmlException
+    {
+        try
+        {
+            return (StreamValidationResult) _validateStreamMethod.invoke(null, new Object[] { xsr, type, options });
+        }
+        catch (IllegalAccessException e)
+        {
+            throw causedException(new IllegalStateException("No access to StreamValidator.validate(): verify that version of xbean.jar is correct"), e);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw wrappedException(e.getCause());
+        }
+    }
+
+    /**
+     * Validates the instance read from the given byte stream, without
+     * loading it into memory.  See
+     * {@link #validateStream(XMLStreamReader, SchemaType, XmlOptions)}.
+     */
+    public static StreamValidationResult validateStream(InputStream is, SchemaType type, XmlOptions options) throws XmlException
+    {
+        try
+        {
+            return (StreamValidationResult) _validateInputStreamMethod.invoke(null, new Object[] { is, type, options });
+        }
+        catch (IllegalAccessException e)
+        {
+            throw causedException(new IllegalStateException("No access to StreamValidator.validate(): verify that version of xbean.jar is correct"), e);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw wrappedException(e.getCause());
+        }
+    }
+
     /**
      * Returns the SchemaTypeSystem that results from compiling the XML
      * schema definitions passed.
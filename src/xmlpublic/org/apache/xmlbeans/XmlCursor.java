@@ -308,6 +308,17 @@ public interface XmlCursor extends XmlTokenSource
      */
     void selectPath ( String path, XmlOptions options );
 
+    /**
+     * Executes an XPath expression compiled beforehand with
+     * {@link XmlBeans#compileXmlPath(String, XmlOptions)}, using the options
+     * it was compiled with.  Selections are navigated just as with
+     * {@link #selectPath(String)}.  The compiled path may be executed any
+     * number of times, by any number of threads.
+     *
+     * @param  path  The compiled path expression to execute.
+     */
+    void selectCompiledPath ( XmlPath path );
+
     /**
      * Returns whether or not there is a next selection.
      * 
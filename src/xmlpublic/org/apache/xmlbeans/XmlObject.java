@@ -258,6 +258,18 @@ public interface XmlObject extends XmlTokenSource
      * @see #selectPath(String)
      */
     XmlObject[] selectPath ( String path, XmlOptions options );
+
+    /**
+     * Selects a path compiled beforehand with
+     * {@link XmlBeans#compileXmlPath(String, XmlOptions)}, using the
+     * options it was compiled with.
+     *
+     * @param path the compiled xpath
+     * @return an array of all selected XmlObjects
+     *
+     * @see #selectPath(String)
+     */
+    XmlObject[] selectCompiledPath ( XmlPath path );
     
 
     /**
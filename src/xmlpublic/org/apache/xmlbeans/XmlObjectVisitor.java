@@ -0,0 +1,31 @@
+/*  Copyright 2004 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans;
+
+/**
+ * Visits the elements of a repeating property of a generated type, through
+ * the forEach methods generated for the property.  Visiting the elements in
+ * place does not copy them into an array or list first.
+ */
+public interface XmlObjectVisitor
+{
+    /**
+     * This method is called once for each element, in document order.
+     *
+     * @return true to visit the next element, false to stop
+     */
+    boolean visit(XmlObject o);
+}
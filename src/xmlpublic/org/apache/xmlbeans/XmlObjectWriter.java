@@ -0,0 +1,90 @@
+/*  Copyright 2004 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Writes a document a piece at a time: elements are started and ended by
+ * the writer, and XmlObjects are appended inside them as they are produced.
+ * Each appended object is saved when it is appended, in the scope of the
+ * namespaces declared by the elements open around it, so a document far too
+ * large to be held in memory can be written one record at a time.
+ * <p/>
+ * Writers are obtained from {@link XmlBeans#newObjectWriter(java.io.Writer, XmlOptions)}
+ * and {@link XmlBeans#newObjectWriter(java.io.OutputStream, XmlOptions)}.
+ * The save options given there apply to every appended object.  A writer
+ * must only be used by one thread at a time.
+ * <p/>
+ * For example:
+ * <pre>
+ * XmlObjectWriter w = XmlBeans.newObjectWriter(out, null);
+ * w.startElement(new QName("urn:orders", "orders"));
+ * while (more)
+ *     w.append(nextOrderDocument());
+ * w.close();
+ * </pre>
+ */
+public interface XmlObjectWriter
+{
+    /**
+     * Starts an element, declaring a namespace for its name if one is
+     * not already in scope.
+     */
+    void startElement(QName name) throws IOException;
+
+    /**
+     * Starts an element, declaring the given namespaces on it, a map from
+     * prefix to namespace URI, as well as one for its name if needed.
+     * The declarations are in scope for everything appended until the
+     * element is ended.
+     */
+    void startElement(QName name, Map namespaces) throws IOException;
+
+    /**
+     * Saves the given object: the element it is, or the document element
+     * if it is a document.
+     */
+    void append(XmlObject o) throws IOException;
+
+    /**
+     * Saves the contents and attributes of the given object inside an
+     * element with the given name; use this for objects, such as those of
+     * a type created with newInstance(), which are not an element.
+     */
+    void append(QName name, XmlObject o) throws IOException;
+
+    /**
+     * Ends the element last started.
+     *
+     * @throws IllegalStateException if no element is open
+     */
+    void endElement() throws IOException;
+
+    /**
+     * Flushes what has been written to the underlying writer or stream.
+     */
+    void flush() throws IOException;
+
+    /**
+     * Ends the elements still open, and flushes and closes the underlying
+     * writer or stream.
+     */
+    void close() throws IOException;
+}
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import javax.xml.namespace.QName;
 
 /**
@@ -463,6 +464,39 @@ public class XmlOptions implements java.io.Serializable
         return set( SAVE_SAX_NO_NSDECLS_IN_ATTRIBUTES );
     }
 
+    /**
+     * If this option is set, saving to a Writer, an OutputStream, a File or
+     * a String saves the subtrees of the elements at the given depth on
+     * other threads, then writes them out in order.  Depth 1 is that of the
+     * children of the document element.  The text saved is the same as
+     * without this option; the document stays locked until the save is
+     * done.  The subtrees are saved on a shared pool of daemon threads, one
+     * per processor.
+     * <p>
+     * Saving in parallel pays for large documents with many siblings at
+     * the given depth, such as the records of a data file.
+     * The {@link #SAVE_OPTIMIZE_FOR_SPEED} option takes precedence over this
+     * option.
+     *
+     * @param depth the depth of the elements to save in parallel, at least 1
+     * @see XmlTokenSource#save(java.io.Writer, XmlOptions)
+     */
+    public XmlOptions setSaveParallel ( int depth ) {
+        return set( SAVE_PARALLEL_DEPTH, depth );
+    }
+
+    /**
+     * Like {@link #setSaveParallel(int)}, with the subtrees saved by the
+     * given executor rather than by the shared pool.
+     *
+     * @param depth the depth of the elements to save in parallel, at least 1
+     * @param executor the executor to save the subtrees with
+     */
+    public XmlOptions setSaveParallel ( int depth, ExecutorService executor ) {
+        set( SAVE_PARALLEL_EXECUTOR, executor );
+        return set( SAVE_PARALLEL_DEPTH, depth );
+    }
+
     /**
      * If this option is set, the document element is replaced with the
      * given QName when parsing.  If null is supplied, the document element
@@ -624,6 +658,46 @@ public class XmlOptions implements java.io.Serializable
         return set( LOAD_USE_XMLREADER, xmlReader );
     }
 
+    /**
+     * If this option is set, documents parsed from an InputStream, a Reader
+     * or a String are read with a StAX parser instead of a SAX one.  The
+     * StAX implementation found by XMLInputFactory is used, so a faster
+     * parser such as Woodstox or Aalto is picked up from the classpath.
+     * Configured parser factories are pooled and shared by all threads.
+     * <p>
+     * Line numbers, the DTD options, entity resolution and the entity
+     * limits are honored as with the SAX parser, as far as the StAX
+     * implementation supports them.  An XMLReader given with
+     * {@link #setLoadUseXMLReader} takes precedence over this option.
+     *
+     * @see XmlObject.Factory#parse(java.io.InputStream, XmlOptions)
+     */
+    public XmlOptions setLoadUseStax () {
+        return set( LOAD_USE_STAX );
+    }
+
+    /**
+     * If this option is set, the parsed document is frozen: it can no
+     * longer be modified, and every XmlObject in it is created and has
+     * its value cached as part of the load.  In exchange, the strongly
+     * typed getters of generated classes no longer contend for the
+     * document's lock, so a frozen document can be read from many
+     * threads at once.  Attempts to modify a frozen document throw
+     * an IllegalStateException.
+     * <p>
+     * The text of a frozen document is packed into a single char array,
+     * without the spare room of the load buffers or a String per text
+     * run.  Its elements and attributes keep their usual representation.
+     * <p>
+     * Note that the whole synchronization domain of the document is
+     * frozen, including other documents loaded into it.
+     *
+     * @see XmlObject.Factory#parse(java.io.File, XmlOptions)
+     */
+    public XmlOptions setLoadReadOnly () {
+        return set( LOAD_READ_ONLY );
+    }
+
     /**
      * Sets the name of the variable that represents
      * the current node in a query expression.
@@ -654,6 +728,23 @@ public class XmlOptions implements java.io.Serializable
         return set( XQUERY_VARIABLE_MAP, varMap );
     }
 
+    /**
+     * Lets XPaths of the form <code>$this//name</code>, optionally followed
+     * by child element names as in <code>$this//order/lineItem</code>, be
+     * answered from an index of the elements of the document by name,
+     * instead of by walking the whole subtree.  The index is built the
+     * first time it is needed, and again after the document changes, so
+     * this pays off when a document is searched several times between
+     * changes.  Read-only documents (see {@link #setLoadReadOnly}) always
+     * use the index.
+     *
+     * @see XmlObject#selectPath
+     * @see XmlCursor#selectPath
+     */
+    public XmlOptions setXPathUseNameIndex () {
+        return set( XPATH_USE_NAME_INDEX );
+    }
+
     /**
      * This option sets the document source name into the xml store
      * when parsing a document.  If a document is parsed from a
@@ -712,6 +803,33 @@ public class XmlOptions implements java.io.Serializable
         return set( COMPILE_NO_PVR_RULE ); 
     }
 
+    /**
+     * If this option is set, the schema compiler checks the types of a
+     * <code>SchemaTypeSystem</code> against the constraints of the XML
+     * Schema specification (particle restriction, identity constraints and
+     * the like) on several threads, and the schema compiler tool parses
+     * the schema files on several threads.  The type system built and the
+     * errors reported are the same, and in the same order, as without this
+     * option.  The work is done on a shared pool of daemon threads, one per
+     * processor.
+     * 
+     * @see XmlBeans#compileXsd
+     */
+    public XmlOptions setCompileParallel () { 
+        return set( COMPILE_PARALLEL ); 
+    }
+
+    /**
+     * Like {@link #setCompileParallel()}, with the work done by the given
+     * executor rather than by the shared pool.
+     * 
+     * @param executor the executor to compile with
+     * @see XmlBeans#compileXsd
+     */
+    public XmlOptions setCompileParallel ( ExecutorService executor ) { 
+        return set( COMPILE_PARALLEL, executor ); 
+    }
+
     /**
      * if this option is set, the schema compiler will skip annotations when
      * processing Schema components.
@@ -781,6 +899,17 @@ public class XmlOptions implements java.io.Serializable
         return set ( VALIDATE_STRICT );
     }
 
+    /**
+     * Makes streaming validation stop reading the instance once the
+     * given number of errors has been reported.  By default all of
+     * the instance is validated.
+     *
+     * @see XmlBeans#validateStream(javax.xml.stream.XMLStreamReader, SchemaType, XmlOptions)
+     */
+    public XmlOptions setValidateErrorLimit(int errorLimit) {
+        return set( VALIDATE_ERROR_LIMIT, errorLimit );
+    }
+
     /**
      * This option controls whether or not operations on XmlBeans are
      * thread safe.  When not on, all XmlBean operations will be syncronized.
@@ -956,6 +1085,10 @@ public class XmlOptions implements java.io.Serializable
     /** @exclude */
     public static final String SAVE_SAX_NO_NSDECLS_IN_ATTRIBUTES = "SAVE_SAX_NO_NSDECLS_IN_ATTRIBUTES";
     /** @exclude */
+    public static final String SAVE_PARALLEL_DEPTH             = "SAVE_PARALLEL_DEPTH";
+    /** @exclude */
+    public static final String SAVE_PARALLEL_EXECUTOR          = "SAVE_PARALLEL_EXECUTOR";
+    /** @exclude */
     public static final String LOAD_REPLACE_DOCUMENT_ELEMENT   = "LOAD_REPLACE_DOCUMENT_ELEMENT";
     /** @exclude */
     public static final String LOAD_STRIP_WHITESPACE           = "LOAD_STRIP_WHITESPACE";
@@ -981,11 +1114,17 @@ public class XmlOptions implements java.io.Serializable
     public static final String LOAD_USE_DEFAULT_RESOLVER       = "LOAD_USE_DEFAULT_RESOLVER";
     /** @exclude */
     public static final String LOAD_USE_XMLREADER              = "LOAD_USE_XMLREADER";
+    /** @exclude */
+    public static final String LOAD_USE_STAX                   = "LOAD_USE_STAX";
+    /** @exclude */
+    public static final String LOAD_READ_ONLY                  = "LOAD_READ_ONLY";
 
     /** @exclude */
     public static final String XQUERY_CURRENT_NODE_VAR         = "XQUERY_CURRENT_NODE_VAR";
     /** @exclude */
     public static final String XQUERY_VARIABLE_MAP             =  "XQUERY_VARIABLE_MAP";
+    /** @exclude */
+    public static final String XPATH_USE_NAME_INDEX            = "XPATH_USE_NAME_INDEX";
 
     /** @exclude */
     public static final String CHARACTER_ENCODING              = "CHARACTER_ENCODING";
@@ -1004,6 +1143,8 @@ public class XmlOptions implements java.io.Serializable
     /** @exclude */
     public static final String COMPILE_NO_PVR_RULE             = "COMPILE_NO_PVR_RULE";
     /** @exclude */
+    public static final String COMPILE_PARALLEL                = "COMPILE_PARALLEL";
+    /** @exclude */
     public static final String COMPILE_NO_ANNOTATIONS          = "COMPILE_NO_ANNOTATIONS";
     /** @exclude */
     public static final String COMPILE_DOWNLOAD_URLS           = "COMPILE_DOWNLOAD_URLS";
@@ -1018,6 +1159,8 @@ public class XmlOptions implements java.io.Serializable
     /** @exclude */
     public static final String VALIDATE_TEXT_ONLY              = "VALIDATE_TEXT_ONLY";
     /** @exclude */
+    public static final String VALIDATE_ERROR_LIMIT            = "VALIDATE_ERROR_LIMIT";
+    /** @exclude */
     public static final String UNSYNCHRONIZED                  = "UNSYNCHRONIZED";
     /** @exclude */
     public static final String ENTITY_RESOLVER                 = "ENTITY_RESOLVER";
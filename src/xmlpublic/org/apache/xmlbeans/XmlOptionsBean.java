@@ -21,6 +21,7 @@ import org.xml.sax.EntityResolver;
 import javax.xml.namespace.QName;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Same as {@link XmlOptions} but adhering to JavaBean conventions
@@ -200,6 +201,16 @@ public class XmlOptionsBean extends XmlOptions
         return (Integer) get( SAVE_CDATA_ENTITY_COUNT_THRESHOLD );
     }
 
+    public Integer getSaveParallelDepth()
+    {
+        return (Integer) get( SAVE_PARALLEL_DEPTH );
+    }
+
+    public ExecutorService getSaveParallelExecutor()
+    {
+        return (ExecutorService) get( SAVE_PARALLEL_EXECUTOR );
+    }
+
     public void setSaveSaxNoNSDeclsInAttributes(boolean b)
     {
         if (b)
@@ -319,6 +330,32 @@ public class XmlOptionsBean extends XmlOptions
         return hasOption( LOAD_USE_DEFAULT_RESOLVER );
     }
 
+    public void setLoadReadOnly(boolean b)
+    {
+        if (b)
+            super.setLoadReadOnly();
+        else
+            remove( LOAD_READ_ONLY );
+    }
+
+    public boolean isLoadReadOnly()
+    {
+        return hasOption( LOAD_READ_ONLY );
+    }
+
+    public void setLoadUseStax(boolean b)
+    {
+        if (b)
+            super.setLoadUseStax();
+        else
+            remove( LOAD_USE_STAX );
+    }
+
+    public boolean isLoadUseStax()
+    {
+        return hasOption( LOAD_USE_STAX );
+    }
+
     public String getXqueryCurrentNodeVar()
     {
         return (String) get( XQUERY_CURRENT_NODE_VAR );
@@ -329,6 +366,19 @@ public class XmlOptionsBean extends XmlOptions
         return (Map) get( XQUERY_VARIABLE_MAP );
     }
 
+    public void setXPathUseNameIndex(boolean b)
+    {
+        if (b)
+            super.setXPathUseNameIndex();
+        else
+            remove( XPATH_USE_NAME_INDEX );
+    }
+
+    public boolean isXPathUseNameIndex()
+    {
+        return hasOption( XPATH_USE_NAME_INDEX );
+    }
+
     public String getDocumentSourceName()
     {
         return (String) get( DOCUMENT_SOURCE_NAME );
@@ -365,6 +415,19 @@ public class XmlOptionsBean extends XmlOptions
         return hasOption( COMPILE_NO_PVR_RULE );
     }
 
+    public void setCompileParallel(boolean b)
+    {
+        if (b)
+            super.setCompileParallel();
+        else
+            remove( COMPILE_PARALLEL );
+    }
+
+    public boolean isCompileParallel()
+    {
+        return hasOption( COMPILE_PARALLEL );
+    }
+
     public void setCompileNoAnnotations(boolean b)
     {
         if (b)
@@ -435,6 +498,11 @@ public class XmlOptionsBean extends XmlOptions
         return hasOption( VALIDATE_STRICT );
     }
 
+    public Integer getValidateErrorLimit()
+    {
+        return (Integer) get( VALIDATE_ERROR_LIMIT );
+    }
+
     public void setUnsynchronized(boolean b)
     {
         if (b)
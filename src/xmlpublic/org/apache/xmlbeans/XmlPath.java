@@ -0,0 +1,70 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans;
+
+/**
+ * An XPath expression compiled once with
+ * {@link XmlBeans#compileXmlPath(String, XmlOptions)}, to be executed any
+ * number of times with {@link XmlCursor#selectCompiledPath(XmlPath)} or
+ * {@link XmlObject#selectCompiledPath(XmlPath)}.
+ * <p>
+ * A compiled path is immutable and may be shared by any number of threads.
+ * Executing it neither compiles the expression again nor looks it up in
+ * the path cache.
+ */
+public final class XmlPath
+{
+    private final String _expression;
+    private final XmlOptions _options;
+    private final Object _compiledPath;
+
+    /** @exclude */
+    public XmlPath(String expression, XmlOptions options, Object compiledPath)
+    {
+        _expression = expression;
+        _options = options;
+        _compiledPath = compiledPath;
+    }
+
+    /**
+     * The expression this path was compiled from.
+     */
+    public String getExpression()
+    {
+        return _expression;
+    }
+
+    /**
+     * The options this path was compiled with; they are used again when it
+     * is executed.
+     * @exclude
+     */
+    public XmlOptions getOptions()
+    {
+        return _options;
+    }
+
+    /** @exclude */
+    public Object getCompiledPath()
+    {
+        return _compiledPath;
+    }
+
+    public String toString()
+    {
+        return _expression;
+    }
+}
@@ -0,0 +1,7 @@
+@echo off
+REM Runs the JMH suite against the svn build; any arguments are passed to JMH,
+REM e.g. run_jmh.bat "LoadBenchmark|SaveBenchmark" -f 1 -rff load-save.json
+set CP=%XMLBEANS_PERFROOT%\build;%XMLBEANS_PERFROOT%\schema_build\svn-purchase-order.jar;%XMLBEANS_HOME%\build\lib\xbean.jar;%XMLBEANS_HOME%\build\lib\resolver.jar;%XMLBEANS_PERFROOT%\3rdparty\jmh\*
+
+echo on
+java -classpath %CP% -DPERF_ROOT=%XMLBEANS_PERFROOT% org.apache.xmlbeans.test.performance.jmh.BenchmarkRunner %*
@@ -0,0 +1,8 @@
+# Runs the JMH suite against the svn build; any arguments are passed to JMH,
+# e.g. sh ./run_jmh.sh "LoadBenchmark|SaveBenchmark" -f 1 -rff load-save.json
+export CP=$XMLBEANS_PERFROOT/build:$XMLBEANS_PERFROOT/schema_build/svn-purchase-order.jar:$XMLBEANS_HOME/build/lib/xbean.jar:$XMLBEANS_HOME/build/lib/resolver.jar
+for jar in $XMLBEANS_PERFROOT/3rdparty/jmh/*.jar; do
+	export CP=$CP:$jar
+done
+
+java -classpath $CP -DPERF_ROOT=$XMLBEANS_PERFROOT org.apache.xmlbeans.test.performance.jmh.BenchmarkRunner "$@"
@@ -0,0 +1,87 @@
+/*   Copyright 2004 The Apache Software Foundation
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*  limitations under the License.
+*/
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openuri.easypo.Customer;
+import org.openuri.easypo.LineItem;
+import org.openuri.easypo.PurchaseOrderDocument;
+import org.openuri.easypo.Shipper;
+
+/**
+ * Generated getters and setters over the purchase order schema.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BeanAccessBenchmark
+{
+  @Benchmark
+  public void readAll(States.PurchaseOrder state, Blackhole bh)
+  {
+    PurchaseOrderDocument.PurchaseOrder po = state.doc.getPurchaseOrder();
+    Customer customer = po.getCustomer();
+    bh.consume(customer.getName());
+    bh.consume(customer.getAddress());
+    bh.consume(po.getDate());
+
+    LineItem[] lineItems = po.getLineItemArray();
+    for (int i = 0; i < lineItems.length; i++)
+    {
+      bh.consume(lineItems[i].getDescription());
+      bh.consume(lineItems[i].getPerUnitOunces());
+      bh.consume(lineItems[i].getPrice());
+      bh.consume(lineItems[i].getQuantity());
+    }
+
+    Shipper shipper = po.getShipper();
+    if (shipper != null)
+    {
+      bh.consume(shipper.getName());
+      bh.consume(shipper.getPerOunceRate());
+    }
+  }
+
+  @Benchmark
+  public int indexedLineItems(States.PurchaseOrder state)
+  {
+    PurchaseOrderDocument.PurchaseOrder po = state.doc.getPurchaseOrder();
+    int n = po.sizeOfLineItemArray();
+    int sum = 0;
+    for (int i = 0; i < n; i++)
+      sum += po.getLineItemArray(i).getQuantity();
+    return sum;
+  }
+
+  @Benchmark
+  public String getSetGetCustomerName(States.PurchaseOrder state)
+  {
+    Customer customer = state.doc.getPurchaseOrder().getCustomer();
+    String name = customer.getName();
+    customer.setName(name);
+    return customer.getName();
+  }
+}
@@ -0,0 +1,60 @@
+/*   Copyright 2004 The Apache Software Foundation
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*  limitations under the License.
+*/
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.io.File;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH suite with the settings used for release-to-release
+ * tracking: the GC profiler is always on, so gc.alloc.rate.norm (bytes
+ * allocated per operation) is reported next to throughput, and results
+ * are written as JSON.
+ * <p>
+ * Any standard JMH command line option may be given and overrides the
+ * defaults, e.g. a benchmark regexp, -f, -wi, -i or -rff.  Without -rff the
+ * results go to build/jmh/xmlbeans-jmh.json under PERF_ROOT.
+ */
+public class BenchmarkRunner
+{
+  public static void main(String[] args) throws Exception
+  {
+    CommandLineOptions cmd = new CommandLineOptions(args);
+
+    ChainedOptionsBuilder builder = new OptionsBuilder()
+      .parent(cmd)
+      .addProfiler(GCProfiler.class)
+      .resultFormat(ResultFormatType.JSON)
+      .jvmArgsAppend("-DPERF_ROOT=" + System.getProperty("PERF_ROOT"));
+
+    if (cmd.getIncludes().isEmpty())
+      builder.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+
+    if (!cmd.getResult().hasValue())
+    {
+      File dir = new File(System.getProperty("PERF_ROOT"), "build" + File.separator + "jmh");
+      dir.mkdirs();
+      builder.result(new File(dir, "xmlbeans-jmh.json").getPath());
+    }
+
+    new Runner(builder.build()).run();
+  }
+}
@@ -0,0 +1,85 @@
+/*   Copyright 2004 The Apache Software Foundation
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*  limitations under the License.
+*/
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.xmlbeans.test.performance.utils.Constants;
+import org.apache.xmlbeans.test.performance.utils.PerfUtil;
+
+/**
+ * Test documents shared by the JMH benchmarks.
+ * <p>
+ * Purchase order instances are read from the cases/xsd directory below
+ * the PERF_ROOT system property; the synthetic flavors are the ones
+ * produced by {@link PerfUtil#createXmlData(String, int)}.
+ */
+public final class Corpus
+{
+  private Corpus(){}
+
+  /** Synthetic document shapes understood by PerfUtil. */
+  public static final String DEEP_ELEMENTS = "deep-elements";
+  public static final String DEEP_ATTRIBUTES = "deep-attributes";
+  public static final String WIDE_ELEMENTS = "wide-elements";
+  public static final String WIDE_ATTRIBUTES = "wide-attributes";
+  public static final String WIDE_TEXT = "wide-text";
+
+  /** Approximate size in chars of the synthetic documents. */
+  public static final int SYNTHETIC_SIZE = 100000;
+
+  public static final String PO_NAMESPACE_DECL =
+    "declare namespace po='"+Constants.PO_NS+"'; ";
+
+  /**
+   * Returns the bytes of purchase-order-&lt;n&gt;.xml, n in 1..7.
+   */
+  public static byte[] purchaseOrder(int n) throws IOException
+  {
+    if (n < 1 || n > 7)
+      throw new IllegalArgumentException("No purchase order instance " + n);
+
+    return readFully(Constants.XSD_DIR+Constants.P+"purchase-order-"+n+".xml");
+  }
+
+  /**
+   * Returns a synthetic document of the given flavor, roughly size chars long.
+   */
+  public static byte[] synthetic(String flavor, int size)
+  {
+    return new PerfUtil().createXmlDataBytes(flavor, size);
+  }
+
+  private static byte[] readFully(String filename) throws IOException
+  {
+    InputStream in = new FileInputStream(filename);
+    try
+    {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[8192];
+      int n;
+      while ((n = in.read(buf)) >= 0)
+        out.write(buf, 0, n);
+      return out.toByteArray();
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+}
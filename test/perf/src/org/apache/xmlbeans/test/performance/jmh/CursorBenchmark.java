@@ -0,0 +1,119 @@
+/*   Copyright 2004 The Apache Software Foundation
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*  limitations under the License.
+*/
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.util.concurrent.TimeUnit;
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cursor navigation over the synthetic shapes: a full token walk, an
+ * element-only walk using child/sibling moves, and attribute reads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CursorBenchmark
+{
+  private static final QName ATT = new QName("att");
+
+  @Benchmark
+  public int tokenWalk(States.Synthetic doc)
+  {
+    XmlCursor c = doc.doc.newCursor();
+    try
+    {
+      int hash = 0;
+      while (!c.toNextToken().isNone())
+      {
+        if (c.isStart())
+          hash += c.getName().getLocalPart().length();
+        else if (c.isAttr() || c.isText())
+          hash += c.getTextValue().length();
+      }
+      return hash;
+    }
+    finally
+    {
+      c.dispose();
+    }
+  }
+
+  @Benchmark
+  public int elementWalk(States.Synthetic doc)
+  {
+    XmlCursor c = doc.doc.newCursor();
+    try
+    {
+      int count = 0;
+      int depth = 0;
+      if (c.toFirstChild())
+        depth++;
+      while (depth > 0)
+      {
+        count++;
+        if (c.toFirstChild())
+        {
+          depth++;
+          continue;
+        }
+        while (depth > 0 && !c.toNextSibling())
+        {
+          c.toParent();
+          depth--;
+        }
+      }
+      return count;
+    }
+    finally
+    {
+      c.dispose();
+    }
+  }
+
+  @Benchmark
+  public int attributeReads(States.Synthetic doc)
+  {
+    XmlCursor c = doc.doc.newCursor();
+    try
+    {
+      int hash = 0;
+      while (!c.toNextToken().isNone())
+      {
+        if (c.isStart())
+        {
+          String value = c.getAttributeText(ATT);
+          if (value != null)
+            hash += value.length();
+        }
+      }
+      return hash;
+    }
+    finally
+    {
+      c.dispose();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*   Copyright 2004 The Apache Software Foundation
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*  limitations under the License.
+*/
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.xmlbeans.XmlObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openuri.easypo.PurchaseOrderDocument;
+
+/**
+ * Locale.load through the SAX loader: untyped and typed parses of the
+ * purchase order instances, and untyped parses of the synthetic shapes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LoadBenchmark
+{
+  @Benchmark
+  public XmlObject parseUntypedPurchaseOrder(States.PurchaseOrderBytes po) throws Exception
+  {
+    return XmlObject.Factory.parse(new ByteArrayInputStream(po.bytes));
+  }
+
+  @Benchmark
+  public PurchaseOrderDocument parseTypedPurchaseOrder(States.PurchaseOrderBytes po) throws Exception
+  {
+    return PurchaseOrderDocument.Factory.parse(new ByteArrayInputStream(po.bytes));
+  }
+
+  @Benchmark
+  public XmlObject parseSynthetic(States.SyntheticBytes doc) throws Exception
+  {
+    return XmlObject.Factory.parse(new ByteArrayInputStream(doc.bytes));
+  }
+}
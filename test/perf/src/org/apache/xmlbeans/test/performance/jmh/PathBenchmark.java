@@ -0,0 +1,87 @@
+/*   Copyright 2004 The Apache Software Foundation
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*  limitations under the License.
+*/
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Path selection through the built-in XbeanPathEngine: descendant steps,
+ * child steps and a simple predicate over the purchase order instances.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PathBenchmark
+{
+  private static final String DESCENDANT_LINE_ITEMS =
+    Corpus.PO_NAMESPACE_DECL + ".//po:line-item";
+
+  private static final String CHILD_LINE_ITEMS =
+    Corpus.PO_NAMESPACE_DECL + "/po:purchase-order/po:line-item";
+
+  private static final String CUSTOMER_BY_NAME =
+    Corpus.PO_NAMESPACE_DECL + "/po:purchase-order/po:customer[po:name]";
+
+  @Benchmark
+  public int selectDescendants(States.PurchaseOrder po)
+  {
+    XmlObject[] results = po.doc.selectPath(DESCENDANT_LINE_ITEMS);
+    return results.length;
+  }
+
+  @Benchmark
+  public int selectChildren(States.PurchaseOrder po)
+  {
+    XmlObject[] results = po.doc.selectPath(CHILD_LINE_ITEMS);
+    return results.length;
+  }
+
+  @Benchmark
+  public int selectWithPredicate(States.PurchaseOrder po)
+  {
+    XmlObject[] results = po.doc.selectPath(CUSTOMER_BY_NAME);
+    return results.length;
+  }
+
+  @Benchmark
+  public int cursorSelectDescendants(States.PurchaseOrder po)
+  {
+    XmlCursor c = po.doc.newCursor();
+    try
+    {
+      c.selectPath(DESCENDANT_LINE_ITEMS);
+      int count = 0;
+      while (c.toNextSelection())
+        count++;
+      return count;
+    }
+    finally
+    {
+      c.dispose();
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*   Copyright 2004 The Apache Software Foundation
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*  limitations under the License.
+*/
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.xmlbeans.XmlOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saver throughput: the TextSaver behind save(OutputStream) and xmlText(),
+ * and the OptimizedForSpeedSaver and ByteSaver selected by
+ * SAVE_OPTIMIZE_FOR_SPEED when saving to a Writer and an OutputStream, and
+ * the parallel save of setSaveParallel() on the synthetic documents.
+ * Output buffers are reused so the allocation profile reflects the saver.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SaveBenchmark
+{
+  private ByteArrayOutputStream _bytes;
+  private CharArrayWriter _chars;
+  private XmlOptions _optimizeForSpeed;
+  private XmlOptions _parallel;
+
+  @Setup
+  public void setUp()
+  {
+    _bytes = new ByteArrayOutputStream(256 * 1024);
+    _chars = new CharArrayWriter(256 * 1024);
+    _optimizeForSpeed = new XmlOptions();
+    _optimizeForSpeed.put(XmlOptions.SAVE_OPTIMIZE_FOR_SPEED);
+    _parallel = new XmlOptions().setSaveParallel(1);
+  }
+
+  @Benchmark
+  public int saveToOutputStream(States.PurchaseOrder po) throws Exception
+  {
+    _bytes.reset();
+    po.doc.save(_bytes);
+    return _bytes.size();
+  }
+
+  @Benchmark
+  public int saveToWriter(States.PurchaseOrder po) throws Exception
+  {
+    _chars.reset();
+    po.doc.save(_chars);
+    return _chars.size();
+  }
+
+  @Benchmark
+  public int saveOptimizedForSpeed(States.PurchaseOrder po) throws Exception
+  {
+    _chars.reset();
+    po.doc.save(_chars, _optimizeForSpeed);
+    return _chars.size();
+  }
+
+  @Benchmark
+  public int saveOptimizedForSpeedToOutputStream(States.PurchaseOrder po) throws Exception
+  {
+    _bytes.reset();
+    po.doc.save(_bytes, _optimizeForSpeed);
+    return _bytes.size();
+  }
+
+  @Benchmark
+  public String xmlText(States.PurchaseOrder po)
+  {
+    return po.doc.xmlText();
+  }
+
+  @Benchmark
+  public int saveSynthetic(States.Synthetic doc) throws Exception
+  {
+    _bytes.reset();
+    doc.doc.save(_bytes);
+    return _bytes.size();
+  }
+
+  @Benchmark
+  public int saveSyntheticParallel(States.Synthetic doc) throws Exception
+  {
+    _bytes.reset();
+    doc.doc.save(_bytes, _parallel);
+    return _bytes.size();
+  }
+}
@@ -0,0 +1,135 @@
+/*   Copyright 2004 The Apache Software Foundation
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*  limitations under the License.
+*/
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.io.ByteArrayInputStream;
+
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openuri.easypo.PurchaseOrderDocument;
+
+/**
+ * JMH state holders shared by the benchmarks.  Keeping the purchase order
+ * and synthetic documents in separate states means a benchmark method is
+ * only parameterized over the corpus it actually reads.
+ */
+public final class States
+{
+  private States(){}
+
+  /** Raw bytes of one of the purchase order instances. */
+  @State(Scope.Benchmark)
+  public static class PurchaseOrderBytes
+  {
+    @Param({"1", "4", "7"})
+    public int poInstance;
+
+    public byte[] bytes;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+      bytes = Corpus.purchaseOrder(poInstance);
+    }
+  }
+
+  /** Raw bytes of one of the synthetic document shapes. */
+  @State(Scope.Benchmark)
+  public static class SyntheticBytes
+  {
+    @Param({Corpus.DEEP_ELEMENTS, Corpus.DEEP_ATTRIBUTES, Corpus.WIDE_ELEMENTS,
+            Corpus.WIDE_ATTRIBUTES, Corpus.WIDE_TEXT})
+    public String flavor;
+
+    public byte[] bytes;
+
+    @Setup
+    public void setUp()
+    {
+      bytes = Corpus.synthetic(flavor, Corpus.SYNTHETIC_SIZE);
+    }
+  }
+
+  /** Raw bytes of the deep elements synthetic document. */
+  @State(Scope.Benchmark)
+  public static class DeepElementBytes
+  {
+    public byte[] bytes;
+
+    @Setup
+    public void setUp()
+    {
+      bytes = Corpus.synthetic(Corpus.DEEP_ELEMENTS, Corpus.SYNTHETIC_SIZE);
+    }
+  }
+
+  /** Load options selecting the SAX or the StAX loader. */
+  @State(Scope.Benchmark)
+  public static class Loader
+  {
+    @Param({"sax", "stax"})
+    public String loader;
+
+    public XmlOptions options;
+
+    @Setup
+    public void setUp()
+    {
+      options = new XmlOptions();
+
+      if ("stax".equals(loader))
+        options.setLoadUseStax();
+    }
+  }
+
+  /** A purchase order loaded once through the generated types. */
+  @State(Scope.Benchmark)
+  public static class PurchaseOrder
+  {
+    @Param({"1", "4", "7"})
+    public int poInstance;
+
+    public PurchaseOrderDocument doc;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+      doc = PurchaseOrderDocument.Factory.parse(
+        new ByteArrayInputStream(Corpus.purchaseOrder(poInstance)));
+    }
+  }
+
+  /** A synthetic document loaded once as an untyped XmlObject. */
+  @State(Scope.Benchmark)
+  public static class Synthetic
+  {
+    @Param({Corpus.DEEP_ELEMENTS, Corpus.DEEP_ATTRIBUTES, Corpus.WIDE_ELEMENTS,
+            Corpus.WIDE_ATTRIBUTES, Corpus.WIDE_TEXT})
+    public String flavor;
+
+    public XmlObject doc;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+      doc = XmlObject.Factory.parse(
+        new ByteArrayInputStream(Corpus.synthetic(flavor, Corpus.SYNTHETIC_SIZE)));
+    }
+  }
+}
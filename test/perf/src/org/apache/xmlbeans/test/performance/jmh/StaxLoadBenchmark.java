@@ -0,0 +1,62 @@
+/*   Copyright 2004 The Apache Software Foundation
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*  limitations under the License.
+*/
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.xmlbeans.XmlObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The SAX loader against the StAX loader selected with
+ * XmlOptions.setLoadUseStax(), on the purchase order instances and the
+ * deep elements document, from bytes and from a reader.  Whichever StAX
+ * implementation is on the classpath is measured, so run it once with the
+ * JDK's parser and once with Woodstox or Aalto added.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StaxLoadBenchmark
+{
+  @Benchmark
+  public XmlObject parsePurchaseOrderStream(States.PurchaseOrderBytes po, States.Loader loader) throws Exception
+  {
+    return XmlObject.Factory.parse(new ByteArrayInputStream(po.bytes), loader.options);
+  }
+
+  @Benchmark
+  public XmlObject parsePurchaseOrderReader(States.PurchaseOrderBytes po, States.Loader loader) throws Exception
+  {
+    return XmlObject.Factory.parse(
+      new InputStreamReader(new ByteArrayInputStream(po.bytes), "UTF-8"), loader.options);
+  }
+
+  @Benchmark
+  public XmlObject parseDeepElementsStream(States.DeepElementBytes doc, States.Loader loader) throws Exception
+  {
+    return XmlObject.Factory.parse(new ByteArrayInputStream(doc.bytes), loader.options);
+  }
+}
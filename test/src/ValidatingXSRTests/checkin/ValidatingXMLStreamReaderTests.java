@@ -30,6 +30,7 @@ import java.io.FileInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.io.ByteArrayInputStream;
 import java.util.Collection;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -42,6 +43,7 @@ import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlOptions;
 import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.StreamValidationResult;
 
 import org.openuri.testNumerals.DocDocument;
 
@@ -558,4 +560,44 @@ loop:   while(valXsr.hasNext())
 
         Assert.assertTrue("Content2 validation is broken.", valXsr.isValid());
     }
+
+    public void testValidateStream() throws Exception
+    {
+        String doc = "<doc xmlns='" + URI_NUMERALS + "'><int>5</int><float>7.654321</float></doc>";
+
+        StreamValidationResult result = XmlBeans.validateStream(
+            new ByteArrayInputStream(doc.getBytes("UTF-8")), null, null);
+        Assert.assertTrue(result.toString(), result.isValid());
+        Assert.assertEquals(3, result.getElementCount());
+
+        result = XmlBeans.validateStream(
+            new ByteArrayInputStream(doc.getBytes("UTF-8")), DocDocument.type, null);
+        Assert.assertTrue(result.toString(), result.isValid());
+    }
+
+    public void testValidateStreamErrorLimit() throws Exception
+    {
+        StringBuffer doc = new StringBuffer("<doc xmlns='" + URI_NUMERALS + "'>");
+        for (int i = 0; i < 100; i++)
+            doc.append("<int>not an int</int>");
+        doc.append("</doc>");
+
+        Collection errors = new ArrayList();
+        StreamValidationResult result = XmlBeans.validateStream(
+            new ByteArrayInputStream(doc.toString().getBytes("UTF-8")), DocDocument.type,
+            new XmlOptions().setErrorListener(errors));
+        Assert.assertFalse(result.isValid());
+        Assert.assertFalse(result.isAborted());
+        Assert.assertEquals(100, result.getErrorCount());
+        Assert.assertEquals(100, errors.size());
+
+        errors.clear();
+        result = XmlBeans.validateStream(
+            new ByteArrayInputStream(doc.toString().getBytes("UTF-8")), DocDocument.type,
+            new XmlOptions().setErrorListener(errors).setValidateErrorLimit(3));
+        Assert.assertFalse(result.isValid());
+        Assert.assertTrue(result.isAborted());
+        Assert.assertEquals(3, result.getErrorCount());
+        Assert.assertEquals(3, errors.size());
+    }
 }
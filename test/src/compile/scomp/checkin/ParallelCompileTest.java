@@ -0,0 +1,201 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package compile.scomp.checkin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.SchemaType;
+import org.apache.xmlbeans.SchemaTypeSystem;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+
+/**
+ * Tests compiling with XmlOptions.setCompileParallel() against compiling
+ * the same schemas on one thread.
+ */
+public class ParallelCompileTest extends TestCase
+{
+    /**
+     * A schema with types derived by restriction, identity constraints and
+     * anonymous types; with errors, some of the restrictions are invalid
+     * and one of the keyrefs refers to nothing.
+     */
+    private static String schema(int n, boolean errors)
+    {
+        StringBuffer sb = new StringBuffer();
+
+        sb.append("<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns:t='urn:t" + n + "'")
+            .append(" targetNamespace='urn:t" + n + "' elementFormDefault='qualified'>\n");
+
+        for (int i = 0; i < 8; i++)
+        {
+            sb.append("<xs:complexType name='base" + i + "'><xs:sequence>")
+                .append("<xs:element name='a' type='xs:string' minOccurs='0'/>")
+                .append("<xs:element name='b' type='xs:int' maxOccurs='5'/>")
+                .append("</xs:sequence><xs:attribute name='id' type='xs:ID'/></xs:complexType>\n");
+
+            // with errors, every third restriction swaps its elements
+            boolean bad = errors && i % 3 == 0;
+
+            sb.append("<xs:complexType name='derived" + i + "'><xs:complexContent>")
+                .append("<xs:restriction base='t:base" + i + "'><xs:sequence>")
+                .append(bad ? "<xs:element name='b' type='xs:int'/><xs:element name='a' type='xs:string'/>"
+                            : "<xs:element name='a' type='xs:string'/><xs:element name='b' type='xs:int' maxOccurs='2'/>")
+                .append("</xs:sequence></xs:restriction></xs:complexContent></xs:complexType>\n");
+
+            sb.append("<xs:element name='root" + i + "'><xs:complexType><xs:sequence>")
+                .append("<xs:element name='item' type='t:derived" + i + "' maxOccurs='unbounded'/>")
+                .append("<xs:element name='ref' maxOccurs='unbounded'><xs:complexType>")
+                .append("<xs:attribute name='to' type='xs:string'/></xs:complexType></xs:element>")
+                .append("</xs:sequence></xs:complexType>")
+                .append("<xs:key name='key" + i + "'><xs:selector xpath='t:item'/><xs:field xpath='@id'/></xs:key>")
+                .append("<xs:keyref name='ref" + i + "' refer='t:" + (errors && i == 5 ? "missing" : "key" + i) + "'>")
+                .append("<xs:selector xpath='t:ref'/><xs:field xpath='@to'/></xs:keyref>")
+                .append("</xs:element>\n");
+        }
+
+        sb.append("</xs:schema>");
+
+        return sb.toString();
+    }
+
+    private static XmlObject[] schemas(boolean errors) throws XmlException
+    {
+        XmlObject[] schemas = new XmlObject[6];
+
+        for (int i = 0; i < schemas.length; i++)
+        {
+            XmlOptions options = new XmlOptions().setDocumentSourceName("schema" + i + ".xsd");
+            schemas[i] = XmlObject.Factory.parse(schema(i, errors), options);
+        }
+
+        return schemas;
+    }
+
+    private static List compile(XmlObject[] schemas, XmlOptions options, List types)
+    {
+        List errors = new ArrayList();
+        options.setErrorListener(errors);
+
+        try
+        {
+            SchemaTypeSystem sts = XmlBeans.compileXsd(schemas, XmlBeans.getBuiltinTypeSystem(), options);
+
+            SchemaType[] globalTypes = sts.globalTypes();
+            for (int i = 0; i < globalTypes.length; i++)
+                types.add(globalTypes[i].getName());
+
+            SchemaType[] documentTypes = sts.documentTypes();
+            for (int i = 0; i < documentTypes.length; i++)
+                types.add(documentTypes[i].getDocumentElementName());
+        }
+        catch (XmlException e)
+        {
+            // the errors are in the list
+        }
+
+        List messages = new ArrayList();
+        for (int i = 0; i < errors.size(); i++)
+            messages.add(errors.get(i).toString());
+
+        return messages;
+    }
+
+    private static void checkSame(XmlObject[] schemas, XmlOptions options)
+    {
+        List expectedTypes = new ArrayList();
+        List expected = compile(schemas, new XmlOptions(options), expectedTypes);
+
+        List actualTypes = new ArrayList();
+        List actual = compile(schemas, new XmlOptions(options).setCompileParallel(), actualTypes);
+
+        assertEquals(expected, actual);
+        assertEquals(expectedTypes, actualTypes);
+    }
+
+    private static XmlOptions partial()
+    {
+        XmlOptions options = new XmlOptions();
+        options.put("COMPILE_PARTIAL_TYPESYSTEM");
+        return options;
+    }
+
+    public void testValid() throws Exception
+    {
+        XmlObject[] schemas = schemas(false);
+
+        List types = new ArrayList();
+        assertEquals(new ArrayList(), compile(schemas, new XmlOptions().setCompileParallel(), types));
+        assertEquals(6 * 24, types.size());
+
+        checkSame(schemas, new XmlOptions());
+    }
+
+    public void testErrors() throws Exception
+    {
+        XmlObject[] schemas = schemas(true);
+
+        List errors = compile(schemas, new XmlOptions().setCompileParallel(), new ArrayList());
+        assertTrue(errors.size() >= 6 * 3);
+
+        checkSame(schemas, new XmlOptions());
+        checkSame(schemas, partial());
+    }
+
+    public void testInvalidSchemaDocuments() throws Exception
+    {
+        // schemas which fail validation are reported in order
+
+        XmlObject[] schemas = schemas(false);
+        for (int i = 1; i < schemas.length; i += 2)
+        {
+            schemas[i] = XmlObject.Factory.parse(
+                "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'><xs:element name='e" + i + "' bogus='x'/></xs:schema>",
+                new XmlOptions().setDocumentSourceName("bad" + i + ".xsd"));
+        }
+
+        List errors = compile(schemas, new XmlOptions().setCompileParallel(), new ArrayList());
+        assertEquals(3, errors.size());
+
+        checkSame(schemas, new XmlOptions());
+    }
+
+    public void testExecutor() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try
+        {
+            XmlObject[] schemas = schemas(true);
+
+            List expected = compile(schemas, new XmlOptions(), new ArrayList());
+            List actual = compile(schemas, new XmlOptions().setCompileParallel(executor), new ArrayList());
+
+            assertEquals(expected, actual);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
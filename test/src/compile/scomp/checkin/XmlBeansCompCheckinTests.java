@@ -26,6 +26,10 @@ import java.util.Vector;
 import java.util.List;
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.xml.namespace.QName;
 
 import junit.framework.Assert;
 
@@ -310,4 +314,41 @@ public class XmlBeansCompCheckinTests extends CompileTestBase
 
     }
 
+
+    /**
+     * Verify a type system saved packed loads from the packed resource
+     */
+    public void test_packed_save() throws Exception
+    {
+        XmlObject obj1 = XmlObject.Factory.parse(forXsd);
+        XmlObject[] schemas = new XmlObject[]{obj1};
+
+        SchemaTypeSystemImpl sts = (SchemaTypeSystemImpl) XmlBeans.compileXmlBeans(
+            "apiPacked", null, schemas, null, XmlBeans.getBuiltinTypeSystem(), null, xm_opts);
+
+        File dir = File.createTempFile("packedxsb", "");
+        dir.delete();
+
+        try
+        {
+            sts.setSavePacked(true);
+            sts.saveToDirectory(dir);
+
+            File stsDir = new File(dir, "schemaorg_apache_xmlbeans/system/apiPacked");
+            assertTrue(new File(stsDir, "packed.xsb").isFile());
+            assertTrue(new File(stsDir, "index.xsb").isFile());
+            assertFalse(new File(stsDir, "atypedb57type.xsb").exists());
+
+            ClassLoader cl = new URLClassLoader(new URL[] { dir.toURI().toURL() });
+            SchemaTypeLoader stl = XmlBeans.typeLoaderForClassLoader(cl);
+            SchemaGlobalElement elt = stl.findElement(new QName("http://baz", "elName"));
+            assertNotNull(elt);
+            assertEquals(new QName("http://baz", "aType"), elt.getType().getName());
+        }
+        finally
+        {
+            CompilationTests.deltree(dir);
+        }
+    }
+
 }
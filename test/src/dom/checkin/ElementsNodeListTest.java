@@ -0,0 +1,312 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dom.checkin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Tests that the lists returned by getElementsByTagName and
+ * getElementsByTagNameNS follow changes to the tree.
+ */
+public class ElementsNodeListTest extends TestCase
+{
+    private static final String NS = "urn:n";
+
+    private static final String XML =
+        "<r xmlns:n='" + NS + "'><a><b/>x<n:a/><c><a/></c></a><b>y<a/></b><n:b><n:a/></n:b></r>";
+
+    private static Document parse(String xml) throws Exception
+    {
+        return (Document) XmlObject.Factory.parse(xml).getDomNode();
+    }
+
+    private static void collect(Node node, String uri, String name, List found)
+    {
+        for (Node c = node.getFirstChild(); c != null; c = c.getNextSibling())
+        {
+            if (c.getNodeType() != Node.ELEMENT_NODE)
+                continue;
+
+            boolean matches = uri == null
+                ? name.equals("*") || name.equals(c.getNodeName())
+                : (uri.equals("*") || uri.equals(c.getNamespaceURI() == null ? "" : c.getNamespaceURI())) &&
+                  (name.equals("*") || name.equals(c.getLocalName()));
+
+            if (matches)
+                found.add(c);
+
+            collect(c, uri, name, found);
+        }
+    }
+
+    private static void check(Node root, String uri, String name, NodeList list)
+    {
+        List expected = new ArrayList();
+        collect(root, uri, name, expected);
+
+        assertEquals(expected.size(), list.getLength());
+
+        for (int i = 0; i < expected.size(); i++)
+            assertSame(expected.get(i), list.item(i));
+
+        assertNull(list.item(expected.size()));
+        assertNull(list.item(-1));
+    }
+
+    private static NodeList list(Node root, String uri, String name)
+    {
+        if (root instanceof Document)
+        {
+            return uri == null
+                ? ((Document) root).getElementsByTagName(name)
+                : ((Document) root).getElementsByTagNameNS(uri, name);
+        }
+
+        return uri == null
+            ? ((Element) root).getElementsByTagName(name)
+            : ((Element) root).getElementsByTagNameNS(uri, name);
+    }
+
+    public void testInsertRemove() throws Exception
+    {
+        Document doc = parse(XML);
+        Element r = doc.getDocumentElement();
+
+        NodeList all = doc.getElementsByTagName("*");
+        NodeList as = doc.getElementsByTagName("a");
+        NodeList nas = doc.getElementsByTagNameNS(NS, "a");
+        NodeList underR = r.getElementsByTagName("a");
+
+        check(doc, null, "*", all);
+        check(doc, null, "a", as);
+        check(doc, NS, "a", nas);
+        check(r, null, "a", underR);
+
+        // append, insert in the middle and at the front
+
+        Element a = doc.createElement("a");
+        a.appendChild(doc.createElementNS(NS, "n:a"));
+        a.appendChild(doc.createElement("a"));
+        r.appendChild(a);
+
+        r.insertBefore(doc.createElement("a"), r.getFirstChild().getNextSibling());
+        r.getFirstChild().insertBefore(doc.createElement("a"), r.getFirstChild().getFirstChild());
+
+        check(doc, null, "*", all);
+        check(doc, null, "a", as);
+        check(doc, NS, "a", nas);
+        check(r, null, "a", underR);
+
+        // remove a subtree, and move one
+
+        r.removeChild(r.getFirstChild());
+        r.getLastChild().appendChild(r.getFirstChild());
+
+        check(doc, null, "*", all);
+        check(doc, null, "a", as);
+        check(doc, NS, "a", nas);
+        check(r, null, "a", underR);
+    }
+
+    public void testRandom() throws Exception
+    {
+        Random rnd = new Random(22);
+        String[] names = { "a", "b", "n:a", "n:b" };
+
+        Document doc = parse(XML);
+
+        for (int round = 0; round < 300; round++)
+        {
+            List elements = new ArrayList();
+            collect(doc, null, "*", elements);
+
+            Element e = (Element) elements.get(rnd.nextInt(elements.size()));
+
+            switch (rnd.nextInt(5))
+            {
+            case 0:
+            case 1:
+            {
+                String name = names[rnd.nextInt(names.length)];
+                Element child = name.startsWith("n:") ? doc.createElementNS(NS, name) : doc.createElement(name);
+
+                if (rnd.nextBoolean())
+                    child.appendChild(doc.createElement("a"));
+
+                Node before = e.getFirstChild();
+                for (int i = rnd.nextInt(3); before != null && i > 0; i--)
+                    before = before.getNextSibling();
+
+                e.insertBefore(child, before);
+                break;
+            }
+            case 2:
+                if (e != doc.getDocumentElement())
+                    e.getParentNode().removeChild(e);
+                break;
+            case 3:
+            {
+                Element to = (Element) elements.get(rnd.nextInt(elements.size()));
+
+                if (e != doc.getDocumentElement() && !isAncestorOrSelf(e, to))
+                    to.appendChild(e);
+                break;
+            }
+            case 4:
+                e.appendChild(doc.createTextNode("t"));
+                break;
+            }
+
+            // use some of the lists right away, others after a few changes
+
+            Node root = rnd.nextBoolean() ? (Node) doc : doc.getDocumentElement();
+            String name = rnd.nextBoolean() ? "a" : "*";
+
+            if (round % 3 == 0)
+                check(root, NS, name, list(root, NS, name));
+
+            check(root, null, name, list(root, null, name));
+        }
+    }
+
+    private static boolean isAncestorOrSelf(Node a, Node n)
+    {
+        for (; n != null; n = n.getParentNode())
+            if (n == a)
+                return true;
+
+        return false;
+    }
+
+    public void testRename() throws Exception
+    {
+        // a rename makes the list walk the tree again
+
+        XmlObject o = XmlObject.Factory.parse(XML);
+        Document doc = (Document) o.getDomNode();
+        NodeList as = doc.getElementsByTagName("a");
+        check(doc, null, "a", as);
+
+        XmlCursor c = o.newCursor();
+        c.toFirstChild();
+        c.toFirstChild();
+        c.setName(new QName("b"));
+        c.dispose();
+
+        check(doc, null, "a", as);
+    }
+
+    public void testRootRemoved() throws Exception
+    {
+        Document doc = parse(XML);
+        Element a = (Element) doc.getDocumentElement().getFirstChild();
+
+        NodeList as = a.getElementsByTagName("a");
+        check(a, null, "a", as);
+
+        doc.getDocumentElement().removeChild(a);
+        check(a, null, "a", as);
+
+        a.appendChild(doc.createElement("a"));
+        check(a, null, "a", as);
+    }
+
+    public void testMoveBetweenDocuments() throws Exception
+    {
+        XmlObject o1 = XmlObject.Factory.parse(XML);
+        XmlObject o2 = XmlObject.Factory.parse(XML);
+
+        Document doc1 = (Document) o1.getDomNode();
+        Document doc2 = (Document) o2.getDomNode();
+
+        NodeList as1 = doc1.getElementsByTagName("a");
+        NodeList as2 = doc2.getElementsByTagName("a");
+        check(doc1, null, "a", as1);
+        check(doc2, null, "a", as2);
+
+        XmlCursor from = o1.newCursor();
+        from.toFirstChild();
+        from.toFirstChild();
+
+        XmlCursor to = o2.newCursor();
+        to.toFirstChild();
+        to.toEndToken();
+
+        from.moveXml(to);
+
+        from.dispose();
+        to.dispose();
+
+        check(doc1, null, "a", as1);
+        check(doc2, null, "a", as2);
+    }
+
+    public void testLevel1Elements() throws Exception
+    {
+        // elements made by createElement have no local name
+
+        Document doc = parse(XML);
+        Element r = doc.getDocumentElement();
+
+        doc.getElementsByTagNameNS("*", "a").getLength();
+        NodeList nas = doc.getElementsByTagNameNS(NS, "a");
+        NodeList all = doc.getElementsByTagNameNS("*", "*");
+        check(doc, NS, "a", nas);
+        check(doc, "*", "*", all);
+
+        Element b = doc.createElement("b");
+        r.appendChild(b);
+        b.appendChild(doc.createElement("a"));
+        assertSame(r, b.getParentNode());
+
+        NodeList as = doc.getElementsByTagNameNS("*", "a");
+        check(doc, "*", "a", as);
+        check(doc, NS, "a", nas);
+        check(doc, "*", "*", all);
+        assertEquals(12, all.getLength());
+
+        r.removeChild(b);
+        check(doc, "*", "a", as);
+        check(doc, "*", "*", all);
+    }
+
+    public void testTextChanges() throws Exception
+    {
+        Document doc = parse(XML);
+        NodeList as = doc.getElementsByTagName("a");
+        check(doc, null, "a", as);
+
+        Element r = doc.getDocumentElement();
+        r.appendChild(doc.createTextNode("text"));
+        r.getFirstChild().getFirstChild().appendChild(doc.createTextNode("more"));
+
+        check(doc, null, "a", as);
+        assertSame(as, doc.getElementsByTagName("a"));
+    }
+}
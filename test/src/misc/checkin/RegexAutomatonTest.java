@@ -0,0 +1,173 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package misc.checkin;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.impl.regex.Match;
+import org.apache.xmlbeans.impl.regex.RegularExpression;
+
+/**
+ * Tests that XML Schema patterns match the same strings whether matched
+ * by their automaton, which matches() uses when not asked for a Match, or
+ * by backtracking, which it uses when it is.
+ */
+public class RegexAutomatonTest extends TestCase
+{
+    private static final String[] PATTERNS = {
+        "[A-Z]{2}[0-9]{2}[A-Z0-9]{1,30}",
+        "\\d{3}-\\d{2}-\\d{4}",
+        "(a|ab)(c|bcd)(d*)",
+        "a*b?c+",
+        "(a?){3}a{3}",
+        "(ab|a)*b",
+        "[a-z-[aeiou]]+",
+        "[^a-c]*x",
+        "\\i\\c*",
+        "[\\i-[:]][\\c-[:]]*",
+        "\\p{L}+\\p{Nd}*",
+        "\\P{L}?\\s\\S",
+        "\\w+@\\w+(\\.\\w+)+",
+        ".*",
+        "a.c",
+        "(|a)b",
+        "x{0}y",
+        "(a{2,})b",
+        "((a|b)*c){2,3}",
+        "\\^\\$\\.\\\\",
+        "[\\-+]?[0-9]+(\\.[0-9]*)?([eE][\\-+]?[0-9]+)?",
+        "\ud800\udc00+a",
+        "[\ud800\udc00-\ud800\udc10]b",
+        "[a-z]{1,5000}",
+    };
+
+    private static final String ALPHABET =
+        "aAbBcdeiouxyzZ09-+.@:^$\\ \t\n\r\u00e9\u0663\u2028";
+
+    private static String randomString(Random r, String pattern)
+    {
+        StringBuffer sb = new StringBuffer();
+        int n = r.nextInt(12);
+
+        for (int i = 0; i < n; i++)
+        {
+            switch (r.nextInt(10))
+            {
+            case 0:
+                sb.append("\ud800\udc05");
+                break;
+            case 1:
+                // a lone surrogate now and then
+                sb.append(r.nextInt(20) == 0 ? '\ud800' : 'a');
+                break;
+            case 2:
+            case 3:
+            case 4:
+                sb.append(pattern.charAt(r.nextInt(pattern.length())));
+                break;
+            default:
+                sb.append(ALPHABET.charAt(r.nextInt(ALPHABET.length())));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static void check(RegularExpression re, String s)
+    {
+        boolean expected = re.matches(s, new Match());
+
+        assertEquals(re.getPattern() + " on '" + s + "'", expected, re.matches(s));
+        assertEquals(re.getPattern() + " on '" + s + "'", expected, re.matches(s.toCharArray()));
+
+        String padded = "<<" + s + ">>";
+        assertEquals(expected, re.matches(padded, 2, padded.length() - 2));
+        assertEquals(expected, re.matches(padded.toCharArray(), 2, padded.length() - 2));
+    }
+
+    public void testSameAsBacktracking() throws Exception
+    {
+        Random r = new Random(19);
+
+        for (int p = 0; p < PATTERNS.length; p++)
+        {
+            RegularExpression re = new RegularExpression(PATTERNS[p], "X");
+
+            for (int i = 0; i < 2000; i++)
+                check(re, randomString(r, PATTERNS[p]));
+        }
+    }
+
+    public void testKnownStrings() throws Exception
+    {
+        RegularExpression iban = new RegularExpression("[A-Z]{2}[0-9]{2}[A-Z0-9]{1,30}", "X");
+        assertTrue(iban.matches("GB82WEST12345698765432"));
+        assertFalse(iban.matches("GB82"));
+        assertFalse(iban.matches("gb82WEST12345698765432"));
+        assertFalse(iban.matches("GB82WEST123456987654321234567890123"));
+
+        RegularExpression union = new RegularExpression("(a|ab)(c|bcd)(d*)", "X");
+        assertTrue(union.matches("abcd"));
+        assertTrue(union.matches("ac"));
+        assertFalse(union.matches("abd"));
+
+        RegularExpression dot = new RegularExpression("a.c", "X");
+        assertTrue(dot.matches("a\ud800\udc00c"));
+        assertFalse(dot.matches("a\nc"));
+
+        RegularExpression large = new RegularExpression("[a-z]{1,5000}", "X");
+        assertTrue(large.matches("abc"));
+        assertFalse(large.matches(""));
+    }
+
+    public void testThreads() throws Exception
+    {
+        final RegularExpression re = new RegularExpression("[A-Z]{2}[0-9]{2}[A-Z0-9]{1,30}", "X");
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for (int i = 0; i < 10000; i++)
+                        {
+                            assertTrue(re.matches("DE89370400440532013000"));
+                            assertFalse(re.matches("DE8937040044053201300!"));
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        for (int t = 0; t < threads.length; t++)
+            threads[t].join();
+
+        if (failure[0] != null)
+            throw new RuntimeException(failure[0]);
+    }
+}
@@ -0,0 +1,145 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package misc.detailed;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.SchemaTypeLoader;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.impl.common.BoundedSystemCache;
+import org.apache.xmlbeans.impl.store.Locale;
+
+public class BoundedSystemCacheTests extends TestCase
+{
+    public void testTypeLoaderEviction()
+    {
+        BoundedSystemCache cache = new BoundedSystemCache(2, 0);
+        SchemaTypeLoader stl = XmlBeans.getBuiltinTypeSystem();
+
+        ClassLoader cl1 = new URLClassLoader(new URL[0]);
+        ClassLoader cl2 = new URLClassLoader(new URL[0]);
+        ClassLoader cl3 = new URLClassLoader(new URL[0]);
+
+        assertNull(cache.getFromTypeLoaderCache(cl1));
+        cache.addToTypeLoaderCache(stl, cl1);
+        cache.addToTypeLoaderCache(stl, cl2);
+        assertSame(stl, cache.getFromTypeLoaderCache(cl1));
+
+        // cl2 is now the least recently used one
+        cache.addToTypeLoaderCache(stl, cl3);
+        assertEquals(2, cache.getTypeLoaderCount());
+        assertSame(stl, cache.getFromTypeLoaderCache(cl1));
+        assertNull(cache.getFromTypeLoaderCache(cl2));
+        assertSame(stl, cache.getFromTypeLoaderCache(cl3));
+
+        assertEquals(3, cache.getTypeLoaderHits());
+        assertEquals(2, cache.getTypeLoaderMisses());
+        assertEquals(1, cache.getTypeLoaderEvictions());
+
+        cache.addToTypeLoaderCache(stl, null);
+        assertSame(stl, cache.getFromTypeLoaderCache(null));
+    }
+
+    public void testClassLoaderCollected() throws Exception
+    {
+        BoundedSystemCache cache = new BoundedSystemCache(4, 0);
+
+        ClassLoader cl = new URLClassLoader(new URL[0]);
+        cache.addToTypeLoaderCache(XmlBeans.getBuiltinTypeSystem(), cl);
+        assertEquals(1, cache.getTypeLoaderCount());
+
+        // the cache does not keep a dropped class loader alive
+
+        WeakReference ref = new WeakReference(cl);
+        cl = null;
+
+        for (int i = 0; i < 10 && ref.get() != null; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(ref.get());
+        assertEquals(0, cache.getTypeLoaderCount());
+    }
+
+    public void testSaxLoaderPool()
+    {
+        BoundedSystemCache cache = new BoundedSystemCache(1, 2);
+        Object a = new Object();
+        Object b = new Object();
+
+        assertNull(cache.getSaxLoader());
+        cache.setSaxLoader(a);
+        cache.setSaxLoader(b);
+        cache.setSaxLoader(new Object());
+        assertEquals(2, cache.getSaxLoaderCount());
+        assertEquals(1, cache.getSaxLoaderDiscards());
+
+        Object first = cache.getSaxLoader();
+        Object second = cache.getSaxLoader();
+        assertTrue(first != second);
+        assertTrue(first == a || first == b);
+        assertTrue(second == a || second == b);
+        assertNull(cache.getSaxLoader());
+
+        assertEquals(2, cache.getSaxLoaderHits());
+        assertEquals(2, cache.getSaxLoaderMisses());
+        assertEquals(0, cache.getSaxLoaderCount());
+    }
+
+    public void testSaxLoaderReuse() throws Exception
+    {
+        String xml = "<a><b>text</b></a>";
+
+        XmlObject.Factory.parse(xml);
+        long created = Locale.getSaxLoadersCreated();
+        long reused = Locale.getSaxLoadersReused();
+
+        for (int i = 0; i < 10; i++)
+            assertEquals("text", XmlObject.Factory.parse(xml).newCursor().getTextValue());
+
+        assertEquals(created, Locale.getSaxLoadersCreated());
+        assertEquals(reused + 10, Locale.getSaxLoadersReused());
+
+        // a failed load does not give its loader back
+        try
+        {
+            XmlObject.Factory.parse("<a>");
+            fail("expected XmlException");
+        }
+        catch (XmlException e)
+        {
+            // expected
+        }
+
+        XmlObject.Factory.parse(xml);
+        assertEquals(created + 1, Locale.getSaxLoadersCreated());
+
+        // other reader options need another reader
+        XmlObject.Factory.parse(xml, new XmlOptions().setEntityExpansionLimit(10));
+        assertEquals(created + 2, Locale.getSaxLoadersCreated());
+        XmlObject.Factory.parse(xml, new XmlOptions().setEntityExpansionLimit(10));
+        assertEquals(created + 2, Locale.getSaxLoadersCreated());
+    }
+}
@@ -0,0 +1,50 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package misc.detailed;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.SchemaTypeLoader;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.impl.schema.LookupCache;
+import org.apache.xmlbeans.impl.schema.SchemaTypeLoaderImpl;
+
+public class LookupCacheTests extends TestCase
+{
+    public void testNotFoundIsCached()
+    {
+        SchemaTypeLoaderImpl stl = (SchemaTypeLoaderImpl) SchemaTypeLoaderImpl.build(
+            new SchemaTypeLoader[] { XmlBeans.getBuiltinTypeSystem() }, null,
+            new URLClassLoader(new URL[0]));
+        LookupCache types = (LookupCache) stl.getLookupCaches().get("type");
+        QName unknown = new QName("urn:lookupcache", "unknown");
+
+        assertNull(stl.findType(unknown));
+        assertNull(stl.findType(unknown));
+        assertEquals(1, types.getNotFoundCount());
+        assertEquals(1, types.getNotFoundHits());
+
+        QName string = new QName("http://www.w3.org/2001/XMLSchema", "string");
+        assertSame(stl.findTypeRef(string), stl.findTypeRef(string));
+        assertEquals(1, types.getHits());
+        assertEquals(2, types.getMisses());
+    }
+}
@@ -165,6 +165,43 @@ public class CopyXmlContentsTest extends BasicCursorTestCase {
 
     }
 
+    public void testCopyBetweenStoresFromTwoThreads() throws Exception {
+        final XmlObject doc1 = XmlObject.Factory.parse("<a>one</a>");
+        final XmlObject doc2 = XmlObject.Factory.parse("<b>two</b>");
+        final Throwable[] failure = new Throwable[1];
+
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            final XmlObject from = i == 0 ? doc1 : doc2;
+            final XmlObject to = i == 0 ? doc2 : doc1;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 2000; j++) {
+                            XmlCursor src = from.newCursor();
+                            XmlCursor dst = to.newCursor();
+                            src.toFirstChild();
+                            dst.toFirstChild();
+                            src.copyXmlContents(dst);
+                            dst.removeXmlContents();
+                            src.dispose();
+                            dst.dispose();
+                        }
+                    } catch (Throwable t) {
+                        failure[0] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join(60000);
+            assertFalse("copy between two documents deadlocked",
+                threads[i].isAlive());
+        }
+        assertNull(failure[0]);
+    }
+
     public static void main(String[] rgs){
 	try{
 	    // (new CopyXmlContentsTest("")).testCopyOntoItself();
@@ -0,0 +1,99 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package xmlcursor.xpath.complex.checkin;
+
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.XmlPath;
+import org.apache.xmlbeans.impl.store.Path;
+import org.apache.xmlbeans.impl.store.PathCache;
+import junit.framework.TestCase;
+
+/**
+ * Tests paths compiled once with XmlBeans.compileXmlPath and the cache of
+ * compiled paths.
+ */
+public class CompiledPathTest extends TestCase
+{
+    private static final String XML =
+        "<a xmlns='urn:p'><b>1</b><b>2</b><c><b>3</b></c></a>";
+
+    private static final String NS = "declare namespace p='urn:p';";
+
+    public void testCompiledPathWithCursor() throws Exception
+    {
+        XmlPath path = XmlBeans.compileXmlPath(NS + "$this//p:b");
+        assertEquals(NS + "$this//p:b", path.getExpression());
+
+        XmlObject x = XmlObject.Factory.parse(XML);
+
+        for (int i = 0; i < 3; i++)
+        {
+            XmlCursor c = x.newCursor();
+            c.selectCompiledPath(path);
+            assertEquals(3, c.getSelectionCount());
+            assertTrue(c.toNextSelection());
+            assertEquals("1", c.getTextValue());
+            c.dispose();
+        }
+    }
+
+    public void testCompiledPathWithObject() throws Exception
+    {
+        XmlOptions options = new XmlOptions();
+        options.setXqueryCurrentNodeVar("cur");
+        XmlPath path = XmlBeans.compileXmlPath(NS + "$cur/p:a/p:b", options);
+
+        // the options are copied when compiling
+        options.setXqueryCurrentNodeVar("other");
+
+        XmlObject[] result = XmlObject.Factory.parse(XML).selectCompiledPath(path);
+        assertEquals(2, result.length);
+        assertEquals("2", ((org.apache.xmlbeans.SimpleValue) result[1]).getStringValue());
+    }
+
+    public void testCompileError()
+    {
+        try
+        {
+            XmlBeans.compileXmlPath("$this/p:b", null);
+            fail("unbound prefix");
+        }
+        catch (XmlException e)
+        {
+            // expected
+        }
+    }
+
+    public void testPathCacheHits() throws Exception
+    {
+        PathCache cache = Path.getPathCache();
+        XmlObject x = XmlObject.Factory.parse(XML);
+        String expr = NS + "$this/p:a/p:c/p:b";
+
+        x.selectPath(expr);
+        long hits = cache.getHits();
+
+        x.selectPath(expr);
+        x.selectPath(expr);
+        assertEquals(hits + 2, cache.getHits());
+        assertTrue(cache.size() > 0);
+        assertTrue(cache.size() <= cache.getMaxSize());
+        assertTrue(cache.getHitRate() > 0);
+    }
+}
@@ -0,0 +1,142 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package xmlcursor.xpath.complex.checkin;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import junit.framework.TestCase;
+
+/**
+ * Checks that paths answered from the element name index select the same
+ * nodes, in the same order, as the tree walking engine.
+ */
+public class NameIndexTest extends TestCase
+{
+    private static final String NS = "declare namespace p='urn:p';";
+
+    private static final String XML =
+        "<p:a xmlns:p='urn:p' id='0'>" +
+        "<p:b id='1'><p:c id='2'/><p:b id='3'><p:c id='4'/></p:b></p:b>" +
+        "<!-- c --><p:c id='5'><p:b id='6'/></p:c>" +
+        "<p:d><p:b id='7'><p:c id='8'/></p:b></p:d>" +
+        "<c id='9'/>" +
+        "</p:a>";
+
+    private static final String[] PATHS = {
+        "$this//p:b",
+        "$this//p:c",
+        ".//p:b/p:c",
+        "$this//p:a/p:b/p:c",
+        "$this//p:d/p:b",
+        "$this//c",
+        "$this//p:missing",
+        "$this//p:b/p:missing",
+    };
+
+    private static String ids(XmlCursor c)
+    {
+        StringBuffer sb = new StringBuffer();
+
+        while (c.toNextSelection())
+            sb.append(c.getAttributeText(new javax.xml.namespace.QName("id"))).append(' ');
+
+        return sb.toString();
+    }
+
+    private static String select(XmlObject x, String path, String contextPath, XmlOptions options)
+    {
+        XmlCursor c = x.newCursor();
+
+        try
+        {
+            if (contextPath != null)
+            {
+                c.selectPath(NS + contextPath);
+                assertTrue(contextPath, c.toNextSelection());
+            }
+
+            XmlCursor d = c.newCursor();
+
+            try
+            {
+                d.selectPath(NS + path, options);
+                return ids(d);
+            }
+            finally
+            {
+                d.dispose();
+            }
+        }
+        finally
+        {
+            c.dispose();
+        }
+    }
+
+    private static void compare(XmlObject walked, XmlObject indexed, XmlOptions options)
+    {
+        String[] contexts = { null, "$this/p:a", "$this/p:a/p:b", "$this/p:a/p:d" };
+
+        for (int i = 0; i < PATHS.length; i++)
+        {
+            for (int j = 0; j < contexts.length; j++)
+            {
+                assertEquals(PATHS[i] + " from " + contexts[j],
+                    select(walked, PATHS[i], contexts[j], null),
+                    select(indexed, PATHS[i], contexts[j], options));
+            }
+        }
+    }
+
+    public void testIndexedPaths() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(XML);
+        XmlOptions options = new XmlOptions().setXPathUseNameIndex();
+
+        compare(x, x, options);
+        assertEquals("1 3 6 7 ", select(x, "$this//p:b", null, options));
+        assertEquals("2 4 8 ", select(x, "$this//p:b/p:c", null, options));
+        assertEquals("3 ", select(x, "$this//p:b", "$this/p:a/p:b", options));
+    }
+
+    public void testIndexAfterChange() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(XML);
+        XmlOptions options = new XmlOptions().setXPathUseNameIndex();
+
+        assertEquals("1 3 6 7 ", select(x, "$this//p:b", null, options));
+
+        XmlCursor c = x.newCursor();
+        c.selectPath(NS + "$this/p:a/p:d");
+        assertTrue(c.toNextSelection());
+        c.toEndToken();
+        c.beginElement("b", "urn:p");
+        c.insertAttributeWithValue("id", "10");
+        c.dispose();
+
+        assertEquals("1 3 6 7 10 ", select(x, "$this//p:b", null, options));
+        compare(x, x, options);
+    }
+
+    public void testReadOnlyDocument() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(XML, new XmlOptions().setLoadReadOnly());
+
+        compare(XmlObject.Factory.parse(XML), x, null);
+        assertEquals("2 4 8 ", select(x, "$this//p:b/p:c", null, null));
+        assertEquals(4, x.selectPath(NS + "$this//p:b").length);
+    }
+}
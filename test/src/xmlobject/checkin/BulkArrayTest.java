@@ -0,0 +1,223 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.XmlInt;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlObjectVisitor;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.impl.values.XmlValueOutOfRangeException;
+import org.openuri.testNumerals.DocDocument;
+
+import com.easypo.XmlPurchaseOrderDocumentBean;
+import com.easypo.XmlPurchaseOrderDocumentBean.PurchaseOrder;
+import com.easypo.XmlLineItemBean;
+
+/**
+ * Tests the array getters of generated classes, which read int, long and
+ * double values without creating the users, against the getters of the
+ * single elements.
+ */
+public class BulkArrayTest extends TestCase
+{
+    private static final String NS = "http://openuri.org/testNumerals";
+
+    private static DocDocument.Doc parse(String content) throws Exception
+    {
+        return DocDocument.Factory.parse("<doc xmlns='" + NS + "'>" + content + "</doc>").getDoc();
+    }
+
+    private static void check(DocDocument.Doc doc)
+    {
+        int[] ints = doc.getIntArray();
+        assertEquals(doc.sizeOfIntArray(), ints.length);
+
+        for (int i = 0; i < ints.length; i++)
+            assertEquals("int " + i, doc.getIntArray(i), ints[i]);
+
+        long[] longs = doc.getLongArray();
+        assertEquals(doc.sizeOfLongArray(), longs.length);
+
+        for (int i = 0; i < longs.length; i++)
+            assertEquals("long " + i, doc.getLongArray(i), longs[i]);
+
+        double[] doubles = doc.getDoubleArray();
+        assertEquals(doc.sizeOfDoubleArray(), doubles.length);
+
+        for (int i = 0; i < doubles.length; i++)
+            assertEquals("double " + i, Double.doubleToLongBits(doc.getDoubleArray(i)),
+                Double.doubleToLongBits(doubles[i]));
+
+        XmlInt[] xints = doc.xgetIntArray();
+        assertEquals(ints.length, xints.length);
+
+        for (int i = 0; i < xints.length; i++)
+            assertEquals(ints[i], xints[i].getIntValue());
+    }
+
+    public void testValues() throws Exception
+    {
+        DocDocument.Doc doc = parse(
+            "<int>0</int><long>0</long><double>0</double>" +
+            "<int> 42 </int><long>\n-9223372036854775808\n</long><double>-0</double>" +
+            "<int>+7</int><long>9223372036854775807</long><double>1.5e10</double>" +
+            "<int>-2147483648</int><long>+000000000000000000001</long><double>INF</double>" +
+            "<int>2147483647</int><long>123456789012345678</long><double>-INF</double>" +
+            "<int>0000000000000000000012</int><double>NaN</double>" +
+            "<string>not a number</string><double>.5</double><double>1.</double>" +
+            "<double>+3.25E-2</double><double>  12  </double>");
+
+        assertEquals(6, doc.sizeOfIntArray());
+        check(doc);
+
+        assertEquals(12, doc.getIntArray()[5]);
+        assertEquals(Long.MIN_VALUE, doc.getLongArray()[1]);
+        assertEquals(Double.POSITIVE_INFINITY, doc.getDoubleArray()[3], 0);
+        assertTrue(Double.isNaN(doc.getDoubleArray()[5]));
+
+        // the same values once the users exist
+
+        doc.xgetIntArray();
+        doc.xgetLongArray();
+        doc.xgetDoubleArray();
+        check(doc);
+    }
+
+    public void testEmpty() throws Exception
+    {
+        DocDocument.Doc doc = parse("<string>s</string>");
+
+        assertEquals(0, doc.getIntArray().length);
+        assertEquals(0, doc.getLongArray().length);
+        assertEquals(0, doc.getDoubleArray().length);
+        assertEquals(0, doc.xgetIntArray().length);
+    }
+
+    public void testOutOfRange() throws Exception
+    {
+        DocDocument.Doc doc = parse("<int>1</int><int>2147483648</int>");
+
+        try
+        {
+            doc.getIntArray();
+            fail("out of range int");
+        }
+        catch (XmlValueOutOfRangeException e)
+        {
+            // the same as the getter of the single element
+        }
+
+        try
+        {
+            doc.getIntArray(1);
+            fail("out of range int");
+        }
+        catch (XmlValueOutOfRangeException e)
+        {
+        }
+
+        doc = parse("<double>1..5</double>");
+
+        try
+        {
+            doc.getDoubleArray();
+            fail("not a double");
+        }
+        catch (XmlValueOutOfRangeException e)
+        {
+        }
+    }
+
+    public void testValidateOnSet() throws Exception
+    {
+        DocDocument doc = DocDocument.Factory.parse(
+            "<doc xmlns='" + NS + "'><int>1</int><int>2</int></doc>",
+            new XmlOptions().setValidateOnSet());
+
+        assertEquals(2, doc.getDoc().getIntArray()[1]);
+        check(doc.getDoc());
+    }
+
+    public void testChanges() throws Exception
+    {
+        DocDocument.Doc doc = DocDocument.Factory.newInstance().addNewDoc();
+
+        for (int i = 0; i < 100; i++)
+        {
+            doc.addInt(i);
+            doc.addDouble(i / 4.0);
+        }
+
+        check(doc);
+
+        doc.setIntArray(50, -1);
+        doc.removeInt(0);
+        doc.insertLong(0, 5);
+        check(doc);
+
+        assertEquals(-1, doc.getIntArray()[49]);
+        assertEquals(99, doc.getIntArray()[98]);
+        assertEquals(24.75, doc.getDoubleArray()[99], 0);
+    }
+
+    public void testForEach() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc = XmlPurchaseOrderDocumentBean.Factory.newInstance();
+        PurchaseOrder po = doc.addNewPurchaseOrder();
+
+        for (int i = 0; i < 50; i++)
+            po.addNewLineItem().setDescription("d" + i);
+
+        final List visited = new ArrayList();
+
+        po.forEachLineItem(new XmlObjectVisitor()
+        {
+            public boolean visit(XmlObject o)
+            {
+                visited.add(((XmlLineItemBean) o).getDescription());
+                return visited.size() < 40;
+            }
+        });
+
+        assertEquals(40, visited.size());
+
+        for (int i = 0; i < 40; i++)
+            assertEquals("d" + i, visited.get(i));
+
+        XmlLineItemBean[] items = po.getLineItemArray();
+        assertEquals(50, items.length);
+        assertEquals("d49", items[49].getDescription());
+
+        visited.clear();
+
+        po.forEachLineItem(new XmlObjectVisitor()
+        {
+            public boolean visit(XmlObject o)
+            {
+                visited.add(o);
+                return true;
+            }
+        });
+
+        assertEquals(50, visited.size());
+        assertSame(items[10], visited.get(10));
+    }
+}
@@ -0,0 +1,177 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.openuri.sgs.RootDocument;
+
+import com.easypo.XmlPurchaseOrderDocumentBean;
+import com.easypo.XmlPurchaseOrderDocumentBean.PurchaseOrder;
+import com.easypo.XmlLineItemBean;
+
+/**
+ * Tests the indexed accessors of generated classes on containers large
+ * enough to have their children indexed, across changes to the children.
+ */
+public class ChildIndexTest extends TestCase
+{
+    private static final String SGS = "http://openuri.org/sgs";
+
+    /**
+     * The descriptions of the line items, walking the children with a
+     * cursor rather than through the index.
+     */
+    private static List walkedDescriptions(PurchaseOrder po)
+    {
+        List result = new ArrayList();
+        XmlCursor c = po.newCursor();
+
+        for (boolean more = c.toFirstChild(); more; more = c.toNextSibling())
+        {
+            if (c.getName().getLocalPart().equals("line-item"))
+                result.add(((XmlLineItemBean) c.getObject()).getDescription());
+        }
+
+        c.dispose();
+        return result;
+    }
+
+    private static void check(PurchaseOrder po)
+    {
+        List expected = walkedDescriptions(po);
+
+        assertEquals(expected.size(), po.sizeOfLineItemArray());
+
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals("item " + i, expected.get(i), po.getLineItemArray(i).getDescription());
+
+        XmlLineItemBean[] items = po.getLineItemArray();
+        assertEquals(expected.size(), items.length);
+
+        for (int i = 0; i < items.length; i++)
+            assertEquals(expected.get(i), items[i].getDescription());
+    }
+
+    public void testNamedChildren() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc = XmlPurchaseOrderDocumentBean.Factory.newInstance();
+        PurchaseOrder po = doc.addNewPurchaseOrder();
+        po.addNewCustomer().setName("c");
+
+        for (int i = 0; i < 200; i++)
+            po.addNewLineItem().setDescription("d" + i);
+
+        check(po);
+
+        // changes to the children of the indexed container
+
+        po.insertNewLineItem(100).setDescription("inserted");
+        assertEquals("inserted", po.getLineItemArray(100).getDescription());
+        check(po);
+
+        po.removeLineItem(0);
+        po.removeLineItem(po.sizeOfLineItemArray() - 1);
+        po.removeLineItem(50);
+        check(po);
+
+        po.addNewLineItem().setDescription("appended");
+        assertEquals("appended", po.getLineItemArray(po.sizeOfLineItemArray() - 1).getDescription());
+        check(po);
+
+        // changes made through a cursor
+
+        XmlCursor c = po.getLineItemArray(10).newCursor();
+        c.toNextSibling();
+        c.insertElement("line-item", "http://openuri.org/easypo");
+        c.dispose();
+        check(po);
+
+        c = po.getLineItemArray(20).newCursor();
+        c.setName(new QName("http://openuri.org/easypo", "renamed"));
+        c.dispose();
+        check(po);
+
+        // changes inside the children leave the index alone
+
+        po.getLineItemArray(30).setDescription("changed");
+        assertEquals("changed", po.getLineItemArray(30).getDescription());
+        check(po);
+
+        po.setLineItemArray(5, po.getLineItemArray(6));
+        assertEquals(po.getLineItemArray(6).getDescription(), po.getLineItemArray(5).getDescription());
+        check(po);
+    }
+
+    public void testSubstitutionGroup() throws Exception
+    {
+        StringBuffer sb = new StringBuffer("<root xmlns='" + SGS + "'>");
+        String[] names = { "A", "B", "C" };
+
+        for (int i = 0; i < 150; i++)
+            sb.append('<').append(names[i % 3]).append('>').append(i).append("</").append(names[i % 3]).append('>');
+
+        sb.append("</root>");
+
+        RootDocument.Root root = RootDocument.Factory.parse(sb.toString()).getRoot();
+
+        assertEquals(150, root.sizeOfAArray());
+
+        for (int i = 0; i < 150; i++)
+            assertEquals(Integer.toString(i), root.getAArray(i).trim());
+
+        root.insertA(75, "x");
+        root.removeA(0);
+        root.addA("y");
+
+        assertEquals(151, root.sizeOfAArray());
+        assertEquals("1", root.getAArray(0).trim());
+        assertEquals("x", root.getAArray(74));
+        assertEquals("75", root.getAArray(75).trim());
+        assertEquals("y", root.getAArray(150));
+    }
+
+    public void testReadOnlyDocument() throws Exception
+    {
+        StringBuffer sb = new StringBuffer(
+            "<purchase-order xmlns='http://openuri.org/easypo'><customer><name>c</name></customer>");
+
+        for (int i = 0; i < 100; i++)
+            sb.append("<line-item><description>d").append(i).append("</description></line-item>");
+
+        sb.append("</purchase-order>");
+
+        XmlPurchaseOrderDocumentBean doc = (XmlPurchaseOrderDocumentBean)
+            XmlObject.Factory.parse(sb.toString(), new XmlOptions().setLoadReadOnly());
+
+        PurchaseOrder po = doc.getPurchaseOrder();
+
+        assertEquals(100, po.sizeOfLineItemArray());
+
+        for (int i = 99; i >= 0; i--)
+            assertEquals("d" + i, po.getLineItemArray(i).getDescription());
+
+        assertEquals(100, po.getLineItemArray().length);
+    }
+}
@@ -0,0 +1,204 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.QNameSet;
+import org.apache.xmlbeans.SchemaParticle;
+import org.apache.xmlbeans.SchemaType;
+import org.apache.xmlbeans.SchemaTypeLoader;
+import org.apache.xmlbeans.XmlAnySimpleType;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.impl.schema.SchemaTypeVisitorImpl;
+
+/**
+ * Tests that visiting a content model through its automaton gives the same
+ * results as visiting it with the particle stack.
+ */
+public class ContentModelAutomatonTest extends TestCase
+{
+    private static final String SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:t' elementFormDefault='qualified'>" +
+        "<xs:element name='seq'><xs:complexType><xs:sequence>" +
+        "<xs:element name='a'/><xs:element name='b' minOccurs='0'/>" +
+        "<xs:element name='c' maxOccurs='unbounded'/>" +
+        "<xs:choice maxOccurs='3'><xs:element name='d'/><xs:element name='e'/></xs:choice>" +
+        "</xs:sequence></xs:complexType></xs:element>" +
+        "<xs:element name='all'><xs:complexType><xs:all>" +
+        "<xs:element name='a'/><xs:element name='b' minOccurs='0'/><xs:element name='c'/>" +
+        "</xs:all></xs:complexType></xs:element>" +
+        "<xs:element name='nested'><xs:complexType><xs:sequence>" +
+        "<xs:sequence minOccurs='2' maxOccurs='unbounded'>" +
+        "<xs:element name='a' minOccurs='0'/>" +
+        "<xs:choice minOccurs='0'><xs:element name='b'/><xs:sequence><xs:element name='c'/><xs:element name='d' maxOccurs='4'/></xs:sequence></xs:choice>" +
+        "<xs:element name='e'/>" +
+        "</xs:sequence>" +
+        "<xs:any namespace='##other' processContents='lax' maxOccurs='2'/>" +
+        "</xs:sequence></xs:complexType></xs:element>" +
+        "<xs:element name='long'><xs:complexType><xs:sequence maxOccurs='3000'>" +
+        "<xs:element name='a'/><xs:element name='b' minOccurs='0'/>" +
+        "</xs:sequence></xs:complexType></xs:element>" +
+        "</xs:schema>";
+
+    private static SchemaParticle contentModel(SchemaTypeLoader loader, String name)
+    {
+        return loader.findElement(new QName("urn:t", name)).getType().getContentModel();
+    }
+
+    private static final QName[] NAMES = {
+        new QName("urn:t", "a"), new QName("urn:t", "b"), new QName("urn:t", "c"),
+        new QName("urn:t", "d"), new QName("urn:t", "e"), new QName("urn:t", "f"),
+        new QName("urn:x", "x1"), new QName("urn:x", "x2"), new QName("", "a"), null,
+    };
+
+    /**
+     * Visits the given content model both ways with random names, mostly
+     * ones which are valid next.
+     */
+    private static void compare(SchemaParticle model, long seed, int rounds)
+    {
+        Random rnd = new Random(seed);
+
+        for (int round = 0; round < rounds; round++)
+        {
+            SchemaTypeVisitorImpl automaton = new SchemaTypeVisitorImpl(model);
+            SchemaTypeVisitorImpl stack = new SchemaTypeVisitorImpl(new Delegate(model));
+
+            for (int i = 0; i < 40; i++)
+            {
+                List valid = new ArrayList();
+
+                for (int j = 0; j < NAMES.length; j++)
+                {
+                    boolean probe = automaton.testValid(NAMES[j]);
+                    assertEquals(probe, stack.testValid(NAMES[j]));
+
+                    if (probe && NAMES[j] != null)
+                        valid.add(NAMES[j]);
+                }
+
+                QName name = valid.isEmpty() || rnd.nextInt(5) == 0
+                    ? NAMES[rnd.nextInt(NAMES.length)]
+                    : (QName) valid.get(rnd.nextInt(valid.size()));
+
+                assertEquals(stack.visit(name), automaton.visit(name));
+                assertSame(Delegate.unwrap(stack.currentParticle()), automaton.currentParticle());
+                assertEquals(stack.isAllValid(), automaton.isAllValid());
+            }
+        }
+    }
+
+    public void testSequence() throws Exception
+    {
+        SchemaTypeLoader loader = XmlBeans.loadXsd(new XmlObject[] { XmlObject.Factory.parse(SCHEMA) });
+        compare(contentModel(loader, "seq"), 1, 200);
+    }
+
+    public void testAll() throws Exception
+    {
+        SchemaTypeLoader loader = XmlBeans.loadXsd(new XmlObject[] { XmlObject.Factory.parse(SCHEMA) });
+        compare(contentModel(loader, "all"), 2, 200);
+    }
+
+    public void testNested() throws Exception
+    {
+        SchemaTypeLoader loader = XmlBeans.loadXsd(new XmlObject[] { XmlObject.Factory.parse(SCHEMA) });
+        compare(contentModel(loader, "nested"), 3, 300);
+    }
+
+    public void testManyStates() throws Exception
+    {
+        // more occurrences than the automaton keeps states for
+
+        SchemaTypeLoader loader = XmlBeans.loadXsd(new XmlObject[] { XmlObject.Factory.parse(SCHEMA) });
+        SchemaParticle model = contentModel(loader, "long");
+        QName a = NAMES[0];
+        QName b = NAMES[1];
+
+        for (int round = 0; round < 2; round++)
+        {
+            SchemaTypeVisitorImpl automaton = new SchemaTypeVisitorImpl(model);
+            SchemaTypeVisitorImpl stack = new SchemaTypeVisitorImpl(new Delegate(model));
+
+            for (int i = 0; i < 3000; i++)
+            {
+                QName name = i % 3 == 0 ? b : a;
+
+                assertEquals(stack.visit(a), automaton.visit(a));
+                assertEquals(stack.visit(name), automaton.visit(name));
+                assertSame(Delegate.unwrap(stack.currentParticle()), automaton.currentParticle());
+            }
+
+            assertEquals(stack.visit(a), automaton.visit(a));
+            assertEquals(stack.visit(null), automaton.visit(null));
+        }
+    }
+
+    /**
+     * A particle which is not one of the compiled ones, so is visited with
+     * the particle stack.
+     */
+    private static class Delegate implements SchemaParticle
+    {
+        private final SchemaParticle _particle;
+        private final SchemaParticle[] _children;
+
+        Delegate(SchemaParticle particle)
+        {
+            _particle = particle;
+            _children = new SchemaParticle[particle.countOfParticleChild()];
+
+            for (int i = 0; i < _children.length; i++)
+                _children[i] = new Delegate(particle.getParticleChild(i));
+        }
+
+        static SchemaParticle unwrap(SchemaParticle particle)
+        {
+            return particle == null ? null : ((Delegate) particle)._particle;
+        }
+
+        public int getParticleType() { return _particle.getParticleType(); }
+        public BigInteger getMinOccurs() { return _particle.getMinOccurs(); }
+        public BigInteger getMaxOccurs() { return _particle.getMaxOccurs(); }
+        public int getIntMinOccurs() { return _particle.getIntMinOccurs(); }
+        public int getIntMaxOccurs() { return _particle.getIntMaxOccurs(); }
+        public boolean isSingleton() { return _particle.isSingleton(); }
+        public SchemaParticle[] getParticleChildren() { return (SchemaParticle[]) _children.clone(); }
+        public SchemaParticle getParticleChild(int i) { return _children[i]; }
+        public int countOfParticleChild() { return _children.length; }
+        public boolean canStartWithElement(QName name) { return _particle.canStartWithElement(name); }
+        public QNameSet acceptedStartNames() { return _particle.acceptedStartNames(); }
+        public boolean isSkippable() { return _particle.isSkippable(); }
+        public QNameSet getWildcardSet() { return _particle.getWildcardSet(); }
+        public int getWildcardProcess() { return _particle.getWildcardProcess(); }
+        public QName getName() { return _particle.getName(); }
+        public SchemaType getType() { return _particle.getType(); }
+        public boolean isNillable() { return _particle.isNillable(); }
+        public String getDefaultText() { return _particle.getDefaultText(); }
+        public XmlAnySimpleType getDefaultValue() { return _particle.getDefaultValue(); }
+        public boolean isDefault() { return _particle.isDefault(); }
+        public boolean isFixed() { return _particle.isFixed(); }
+    }
+}
@@ -23,8 +23,10 @@ import junit.framework.Assert;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlOptions;
 import com.easypo.XmlPurchaseOrderDocumentBean;
 import com.easypo.XmlPurchaseOrderDocumentBean.PurchaseOrder;
 
@@ -131,4 +133,122 @@ public class EasyPoTests extends TestCase
         {
         }
     }
+
+    public void testFrozenDocument() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc = (XmlPurchaseOrderDocumentBean)
+            XmlObject.Factory.parse(JarUtil.getResourceFromJarasFile(
+                                     "xbean/xmlobject/easypo1.xml"),
+                                    new XmlOptions().setLoadReadOnly());
+        PurchaseOrder order = doc.getPurchaseOrder();
+        Assert.assertEquals("David Bau", order.getCustomer().getName());
+        Assert.assertEquals(3, order.sizeOfLineItemArray());
+        Assert.assertEquals(new BigDecimal("0.74"), order.getShipper().getPerOunceRate());
+
+        try
+        {
+            order.getCustomer().setName("Someone Else");
+            Assert.fail("Frozen document accepted a set");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+
+        try
+        {
+            order.addNewLineItem();
+            Assert.fail("Frozen document accepted a new element");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+
+        XmlCursor c = order.newCursor();
+        try
+        {
+            c.toFirstChild();
+            c.removeXml();
+            Assert.fail("Frozen document accepted a removal");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+        finally
+        {
+            c.dispose();
+        }
+
+        Assert.assertEquals("David Bau", order.getCustomer().getName());
+        Assert.assertEquals(3, order.sizeOfLineItemArray());
+        Assert.assertTrue(doc.xmlText().indexOf("David Bau") > 0);
+    }
+
+    public void testFrozenDocumentFromThreads() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc = (XmlPurchaseOrderDocumentBean)
+            XmlObject.Factory.parse(JarUtil.getResourceFromJarasFile(
+                                     "xbean/xmlobject/easypo1.xml"),
+                                    new XmlOptions().setLoadReadOnly());
+        final PurchaseOrder order = doc.getPurchaseOrder();
+        final Throwable[] failure = new Throwable[1];
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for (int j = 0; j < 2000; j++)
+                        {
+                            Assert.assertEquals("Gladwyne, PA", order.getCustomer().getAddress());
+                            Assert.assertEquals(3, order.sizeOfLineItemArray());
+                            Assert.assertEquals(new BigDecimal("19.89"), order.getLineItemArray(1).getPrice());
+                            Assert.assertEquals(new BigInteger("1"), order.getLineItemArray(2).getQuantity());
+                            Assert.assertEquals("UPS", order.getShipper().getName());
+                        }
+                    }
+                    catch (Throwable t)
+                    {
+                        failure[0] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++)
+            threads[i].join();
+
+        Assert.assertNull(failure[0]);
+    }
+
+    public void testFrozenDocumentText() throws Exception
+    {
+        XmlObject frozen = XmlObject.Factory.parse(JarUtil.getResourceFromJarasFile(
+                                     "xbean/xmlobject/easypo1.xml"),
+                                    new XmlOptions().setLoadReadOnly());
+        XmlObject loaded = XmlObject.Factory.parse(JarUtil.getResourceFromJarasFile(
+                                     "xbean/xmlobject/easypo1.xml"));
+        Assert.assertEquals(loaded.xmlText(), frozen.xmlText());
+
+        XmlCursor c = frozen.newCursor();
+        try
+        {
+            c.toFirstChild();
+            c.toFirstChild();
+            Assert.assertEquals(loaded.newCursor().getTextValue(), frozen.newCursor().getTextValue());
+        }
+        finally
+        {
+            c.dispose();
+        }
+
+        // copies of a frozen document share its text but can be modified
+        XmlPurchaseOrderDocumentBean copy = (XmlPurchaseOrderDocumentBean) frozen.copy();
+        copy.getPurchaseOrder().getCustomer().setName("Someone Else");
+        Assert.assertEquals("Someone Else", copy.getPurchaseOrder().getCustomer().getName());
+        Assert.assertEquals(loaded.xmlText(), frozen.xmlText());
+    }
 }
@@ -0,0 +1,156 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.SchemaTypeLoader;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlError;
+import org.apache.xmlbeans.XmlErrorCodes;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+
+/**
+ * Tests validating keys, keyrefs, unique constraints and IDs, which are
+ * kept in tables of canonical keys.
+ */
+public class KeyTableTest extends TestCase
+{
+    private static final String SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns:t='urn:t' targetNamespace='urn:t' elementFormDefault='qualified'>" +
+        "<xs:element name='root'><xs:complexType><xs:sequence>" +
+        "<xs:element name='item' maxOccurs='unbounded'><xs:complexType>" +
+        "<xs:attribute name='n' type='xs:decimal'/>" +
+        "<xs:attribute name='s' type='xs:token'/>" +
+        "<xs:attribute name='u' type='xs:string'/>" +
+        "<xs:attribute name='d' type='xs:double'/>" +
+        "<xs:attribute name='id' type='xs:ID'/>" +
+        "</xs:complexType></xs:element>" +
+        "<xs:element name='ref' minOccurs='0' maxOccurs='unbounded'><xs:complexType>" +
+        "<xs:attribute name='n' type='xs:int'/>" +
+        "<xs:attribute name='s' type='xs:token'/>" +
+        "<xs:attribute name='d' type='xs:double'/>" +
+        "<xs:attribute name='to' type='xs:IDREF'/>" +
+        "</xs:complexType></xs:element>" +
+        "</xs:sequence></xs:complexType>" +
+        "<xs:key name='key'><xs:selector xpath='t:item'/><xs:field xpath='@n'/><xs:field xpath='@s'/></xs:key>" +
+        "<xs:keyref name='ref' refer='t:key'><xs:selector xpath='t:ref'/><xs:field xpath='@n'/><xs:field xpath='@s'/></xs:keyref>" +
+        "<xs:unique name='u'><xs:selector xpath='t:item'/><xs:field xpath='@u'/></xs:unique>" +
+        "<xs:unique name='d'><xs:selector xpath='t:item'/><xs:field xpath='@d'/></xs:unique>" +
+        "</xs:element></xs:schema>";
+
+    private static List validate(String content) throws Exception
+    {
+        SchemaTypeLoader loader = XmlBeans.loadXsd(new XmlObject[] { XmlObject.Factory.parse(SCHEMA) });
+        XmlObject doc = loader.parse("<root xmlns='urn:t'>" + content + "</root>", null, null);
+
+        List errors = new ArrayList();
+        doc.validate(new XmlOptions().setErrorListener(errors));
+
+        List codes = new ArrayList();
+        for (int i = 0; i < errors.size(); i++)
+            codes.add(((XmlError) errors.get(i)).getErrorCode());
+
+        return codes;
+    }
+
+    private static void assertErrors(String content, String[] expected) throws Exception
+    {
+        List codes = validate(content);
+
+        List expectedCodes = new ArrayList();
+        for (int i = 0; i < expected.length; i++)
+            expectedCodes.add(expected[i]);
+
+        assertEquals(content, expectedCodes, codes);
+    }
+
+    private static final String[] NONE = {};
+
+    public void testKeys() throws Exception
+    {
+        assertErrors("<item n='1' s='a'/><item n='1' s='b'/><item n='2' s='a'/>", NONE);
+
+        // keys compare by value: 1.0 is 1, and tokens are collapsed
+        assertErrors("<item n='1' s='a'/><item n='1.00' s=' a '/>",
+            new String[] { XmlErrorCodes.IDENTITY_CONSTRAINT_VALID$DUPLICATE_KEY });
+
+        assertErrors("<item n='0' s='a'/><item n='-0.0' s='a'/>",
+            new String[] { XmlErrorCodes.IDENTITY_CONSTRAINT_VALID$DUPLICATE_KEY });
+    }
+
+    public void testKeyrefs() throws Exception
+    {
+        // an xs:int refers to an xs:decimal of the same value
+        assertErrors("<item n='100.0' s='a'/><ref n='100' s='a'/><ref n='0100' s=' a'/>", NONE);
+
+        assertErrors("<item n='1' s='a'/><ref n='1' s='b'/>",
+            new String[] { XmlErrorCodes.IDENTITY_CONSTRAINT_VALID$KEYREF_KEY_NOT_FOUND });
+
+        // a reference with a missing field is not checked
+        assertErrors("<item n='1' s='a'/><ref n='2'/>", NONE);
+    }
+
+    public void testUnique() throws Exception
+    {
+        // strings are compared as written, and missing values are not duplicates
+        assertErrors("<item n='1' s='a' u='x'/><item n='2' s='a' u=' x'/><item n='3' s='a'/><item n='4' s='a'/>", NONE);
+
+        assertErrors("<item n='1' s='a' u='x y'/><item n='2' s='a' u='x y'/>",
+            new String[] { XmlErrorCodes.IDENTITY_CONSTRAINT_VALID$DUPLICATE_UNIQUE });
+
+        // doubles have no canonical key here, and are still compared by value
+        assertErrors("<item n='1' s='a' d='1'/><item n='2' s='a' d='1.0E0'/>",
+            new String[] { XmlErrorCodes.IDENTITY_CONSTRAINT_VALID$DUPLICATE_UNIQUE });
+    }
+
+    public void testIds() throws Exception
+    {
+        assertErrors("<item n='1' s='a' id='i1'/><item n='2' s='a' id='i2'/><ref to='i2'/><ref to=' i1 '/>", NONE);
+
+        assertErrors("<item n='1' s='a' id='i1'/><item n='2' s='a' id='i1'/>",
+            new String[] { XmlErrorCodes.ID_VALID$DUPLICATE });
+
+        assertEquals(1, validate("<item n='1' s='a' id='i1'/><ref to='i2'/>").size());
+    }
+
+    public void testManyKeys() throws Exception
+    {
+        StringBuffer items = new StringBuffer();
+        StringBuffer refs = new StringBuffer();
+
+        for (int i = 0; i < 5000; i++)
+        {
+            items.append("<item n='").append(i).append(".0' s='k").append(i % 7)
+                .append("' u='u").append(i).append("' id='i").append(i).append("'/>");
+            refs.append("<ref n='").append(4999 - i).append("' s='k").append((4999 - i) % 7)
+                .append("' to='i").append(i).append("'/>");
+        }
+
+        assertErrors(items.toString() + refs.toString(), NONE);
+
+        items.append("<item n='4999' s='k").append(4999 % 7).append("'/>");
+        refs.append("<ref n='5000' s='k0'/>");
+
+        assertErrors(items.toString() + refs.toString(), new String[] {
+            XmlErrorCodes.IDENTITY_CONSTRAINT_VALID$DUPLICATE_KEY,
+            XmlErrorCodes.IDENTITY_CONSTRAINT_VALID$KEYREF_KEY_NOT_FOUND });
+    }
+}
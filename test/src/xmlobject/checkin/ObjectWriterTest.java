@@ -0,0 +1,258 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlObjectWriter;
+import org.apache.xmlbeans.XmlOptions;
+
+import com.easypo.XmlLineItemBean;
+import com.easypo.XmlPurchaseOrderDocumentBean;
+import com.easypo.XmlPurchaseOrderDocumentBean.PurchaseOrder;
+
+/**
+ * Tests writing documents a piece at a time with an XmlObjectWriter.
+ */
+public class ObjectWriterTest extends TestCase
+{
+    private static final String PO = "http://openuri.org/easypo";
+    private static final String ORDERS = "urn:orders";
+
+    private static XmlPurchaseOrderDocumentBean order(int i)
+    {
+        XmlPurchaseOrderDocumentBean doc = XmlPurchaseOrderDocumentBean.Factory.newInstance();
+        PurchaseOrder po = doc.addNewPurchaseOrder();
+        po.addNewCustomer().setName("customer " + i);
+        po.addNewLineItem().setDescription("item " + i);
+        return doc;
+    }
+
+    private static int count(String s, String sub)
+    {
+        int n = 0;
+
+        for (int i = s.indexOf(sub); i >= 0; i = s.indexOf(sub, i + 1))
+            n++;
+
+        return n;
+    }
+
+    public void testAppendDocuments() throws Exception
+    {
+        StringWriter sw = new StringWriter();
+        XmlObjectWriter w = XmlBeans.newObjectWriter(sw, null);
+
+        w.startElement(new QName(ORDERS, "orders"));
+
+        for (int i = 0; i < 3; i++)
+            w.append(order(i));
+
+        w.close();
+
+        String xml = sw.toString();
+        assertTrue(xml, xml.startsWith("<orders xmlns=\"" + ORDERS + "\"><"));
+        assertTrue(xml, xml.endsWith("</orders>"));
+
+        XmlObject x = XmlObject.Factory.parse(xml);
+        XmlObject[] descriptions = x.selectPath(
+            "declare namespace p='" + PO + "' declare namespace o='" + ORDERS + "' " +
+            "$this/o:orders/p:purchase-order/p:line-item/p:description");
+        assertEquals(3, descriptions.length);
+
+        XmlCursor c = descriptions[2].newCursor();
+        assertEquals("item 2", c.getTextValue());
+        c.dispose();
+    }
+
+    public void testNamespaceScope() throws Exception
+    {
+        StringWriter sw = new StringWriter();
+        XmlObjectWriter w = XmlBeans.newObjectWriter(sw, null);
+
+        Map namespaces = new HashMap();
+        namespaces.put("", PO);
+
+        w.startElement(new QName(ORDERS, "orders", "o"), namespaces);
+        w.startElement(new QName(ORDERS, "batch"));
+
+        for (int i = 0; i < 3; i++)
+            w.append(order(i));
+
+        w.endElement();
+
+        // Out of the scope of the default namespace
+
+        w.startElement(new QName("", "none"));
+        w.endElement();
+
+        w.close();
+
+        String xml = sw.toString();
+
+        // The namespaces are declared once, on the document element, and
+        // the default namespace is undeclared for the element in none
+
+        assertEquals(xml, 3, count(xml, "xmlns"));
+        assertTrue(xml, xml.indexOf("<o:batch><purchase-order><customer>") > 0);
+        assertTrue(xml, xml.indexOf("<none xmlns=\"\"></none>") > 0);
+
+        XmlObject x = XmlObject.Factory.parse(xml);
+        assertEquals(3, x.selectPath(
+            "declare namespace p='" + PO + "' declare namespace o='" + ORDERS + "' " +
+            "$this/o:orders/o:batch/p:purchase-order").length);
+        assertEquals(1, x.selectPath(
+            "declare namespace o='" + ORDERS + "' $this/o:orders/none").length);
+    }
+
+    public void testOptimizeForSpeed() throws Exception
+    {
+        // appended objects keep their namespaces with the fast saver option
+
+        XmlOptions options = new XmlOptions();
+        options.put(XmlOptions.SAVE_OPTIMIZE_FOR_SPEED);
+
+        StringWriter sw = new StringWriter();
+        XmlObjectWriter w = XmlBeans.newObjectWriter(sw, options);
+
+        w.startElement(new QName("urn:a", "root"));
+        w.append(XmlObject.Factory.parse("<b><c/></b>"));
+        w.close();
+
+        String xml = sw.toString();
+        assertEquals("<root xmlns=\"urn:a\"><b xmlns=\"\"><c/></b></root>", xml);
+
+        XmlObject[] cs = XmlObject.Factory.parse(xml).selectPath(
+            "declare namespace a='urn:a' $this/a:root/b/c");
+        assertEquals(1, cs.length);
+    }
+
+    public void testAppendWithName() throws Exception
+    {
+        StringWriter sw = new StringWriter();
+        XmlObjectWriter w = XmlBeans.newObjectWriter(sw, null);
+
+        w.startElement(new QName(PO, "items"));
+
+        for (int i = 0; i < 2; i++)
+        {
+            XmlLineItemBean item = XmlLineItemBean.Factory.newInstance();
+            item.setDescription("item " + i);
+            item.setPrice(new java.math.BigDecimal(i));
+            w.append(new QName(PO, "line-item"), item);
+        }
+
+        w.close();
+
+        assertEquals(
+            "<items xmlns=\"" + PO + "\">" +
+            "<line-item><description>item 0</description><price>0</price></line-item>" +
+            "<line-item><description>item 1</description><price>1</price></line-item>" +
+            "</items>", sw.toString());
+    }
+
+    public void testOutputStream() throws Exception
+    {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        XmlObjectWriter w = XmlBeans.newObjectWriter(os,
+            new XmlOptions().setCharacterEncoding("ISO-8859-1"));
+
+        w.startElement(new QName("root"));
+        w.append(XmlObject.Factory.parse("<a>caf\u00e9</a>"));
+        w.close();
+
+        String xml = new String(os.toByteArray(), "ISO-8859-1");
+        assertTrue(xml, xml.startsWith("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>"));
+        assertTrue(xml, xml.endsWith("<root><a>caf\u00e9</a></root>"));
+
+        XmlObject x = XmlObject.Factory.parse(new ByteArrayInputStream(os.toByteArray()));
+        assertEquals("<root><a>caf\u00e9</a></root>", x.xmlText());
+    }
+
+    public void testPrettyPrint() throws Exception
+    {
+        StringWriter sw = new StringWriter();
+        XmlObjectWriter w = XmlBeans.newObjectWriter(sw, new XmlOptions().setSavePrettyPrint());
+
+        w.startElement(new QName("root"));
+        w.startElement(new QName("batch"));
+        w.append(XmlObject.Factory.parse("<a><b>x</b></a>"));
+        w.append(XmlObject.Factory.parse("<a><b>y</b></a>"));
+        w.close();
+
+        String nl = System.getProperty("line.separator");
+
+        assertEquals(
+            "<root>" + nl +
+            "  <batch>" + nl +
+            "    <a>" + nl +
+            "      <b>x</b>" + nl +
+            "    </a>" + nl +
+            "    <a>" + nl +
+            "      <b>y</b>" + nl +
+            "    </a>" + nl +
+            "  </batch>" + nl +
+            "</root>", sw.toString());
+    }
+
+    public void testStates() throws Exception
+    {
+        XmlObjectWriter w = XmlBeans.newObjectWriter(new StringWriter(), null);
+
+        try
+        {
+            w.endElement();
+            fail("no element to end");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+
+        w.append(order(0));
+
+        try
+        {
+            w.startElement(new QName("second"));
+            fail("second document element");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+
+        w.close();
+        w.close();
+
+        try
+        {
+            w.append(order(1));
+            fail("closed");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+
+import com.easypo.XmlPurchaseOrderDocumentBean;
+import com.easypo.XmlPurchaseOrderDocumentBean.PurchaseOrder;
+import com.easypo.XmlLineItemBean;
+
+/**
+ * Tests saving with XmlOptions.setSaveParallel() against saving the same
+ * document on one thread.
+ */
+public class ParallelSaveTest extends TestCase
+{
+    private static String document(int records)
+    {
+        StringBuffer sb = new StringBuffer(
+            "<?pi top?><p:data xmlns:p='urn:p' xmlns='urn:default' xmlns:q='urn:q' q:a='1'>\n");
+
+        for (int i = 0; i < records; i++)
+        {
+            switch (i % 5)
+            {
+            case 0:
+                sb.append("  <record id='").append(i).append("'><name>a &amp; b &lt; ").append(i)
+                    .append("</name><q:value>").append(i).append("</q:value></record>\n");
+                break;
+            case 1:
+                // prefixes redefined and the default namespace undeclared
+                sb.append("  <p:record xmlns:q='urn:other' q:b='x'><q:value/><plain xmlns=''>")
+                    .append(i).append("<inner/></plain></p:record>\n");
+                break;
+            case 2:
+                sb.append("  <record><!-- comment ").append(i)
+                    .append(" --><?pi data?>mixed <b>text</b> ]]&gt; \"quoted\" caf\u00e9</record>\n");
+                break;
+            case 3:
+                sb.append("  <r:record xmlns:r='urn:r' r:c='&quot;'><r:deep><r:deeper>")
+                    .append(i).append("</r:deeper></r:deep></r:record>\n");
+                break;
+            default:
+                sb.append("  <empty/>\n");
+            }
+        }
+
+        sb.append("</p:data>");
+
+        return sb.toString();
+    }
+
+    private static XmlOptions parallel(XmlOptions options, int depth)
+    {
+        return new XmlOptions(options).setSaveParallel(depth);
+    }
+
+    private static void checkSame(XmlObject x, XmlOptions options) throws IOException
+    {
+        String expected = x.xmlText(options);
+
+        for (int depth = 1; depth <= 3; depth++)
+        {
+            assertEquals("depth " + depth, expected, x.xmlText(parallel(options, depth)));
+
+            StringWriter w = new StringWriter();
+            x.save(w, parallel(options, depth));
+            assertEquals("depth " + depth, expected, w.toString());
+        }
+    }
+
+    public void testSameAsSerial() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(document(5000));
+
+        checkSame(x, new XmlOptions());
+        checkSame(x, new XmlOptions().setSavePrettyPrint());
+        checkSame(x, new XmlOptions().setSavePrettyPrint().setSavePrettyPrintIndent(3).setSavePrettyPrintOffset(2));
+        checkSame(x, new XmlOptions().setSaveAggressiveNamespaces());
+        checkSame(x, new XmlOptions().setSaveNamespacesFirst().setUseDefaultNamespace());
+        checkSame(x, new XmlOptions().setSaveFilterProcinst("pi"));
+
+        Map suggested = new HashMap();
+        suggested.put("urn:r", "suggested");
+        checkSame(x, new XmlOptions().setSaveSuggestedPrefixes(suggested));
+    }
+
+    public void testInnerElement() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(document(3000));
+
+        XmlCursor c = x.newCursor();
+        c.toFirstChild();
+        XmlObject data = c.getObject();
+        c.dispose();
+
+        checkSame(data, new XmlOptions());
+        checkSame(data, new XmlOptions().setSaveOuter());
+        checkSame(data, new XmlOptions().setSaveSyntheticDocumentElement(
+            new javax.xml.namespace.QName("urn:synth", "synth")));
+    }
+
+    public void testOutputStream() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(document(3000));
+        XmlOptions options = new XmlOptions().setCharacterEncoding("ISO-8859-1");
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        x.save(expected, options);
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        x.save(actual, parallel(options, 1));
+
+        assertEquals(expected.toString("ISO-8859-1"), actual.toString("ISO-8859-1"));
+    }
+
+    public void testVacantValues() throws Exception
+    {
+        // Values set through generated classes are not turned into text
+        // until something reads it
+
+        XmlPurchaseOrderDocumentBean doc = XmlPurchaseOrderDocumentBean.Factory.newInstance();
+        PurchaseOrder po = doc.addNewPurchaseOrder();
+
+        for (int i = 0; i < 5000; i++)
+        {
+            XmlLineItemBean item = po.addNewLineItem();
+            item.setDescription("item " + i);
+            item.setPerUnitOunces(new java.math.BigDecimal(i));
+            item.setQuantity(java.math.BigInteger.valueOf(i));
+        }
+
+        String parallel = doc.xmlText(new XmlOptions().setSaveParallel(1));
+
+        assertEquals(doc.xmlText(), parallel);
+    }
+
+    public void testExecutor() throws Exception
+    {
+        final AtomicInteger threads = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2, new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                threads.incrementAndGet();
+                return new Thread(r);
+            }
+        });
+
+        try
+        {
+            XmlObject x = XmlObject.Factory.parse(document(5000));
+
+            assertEquals(x.xmlText(), x.xmlText(new XmlOptions().setSaveParallel(1, executor)));
+            assertTrue(threads.get() > 0);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testBadDepth() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(document(10));
+
+        try
+        {
+            x.xmlText(new XmlOptions().setSaveParallel(0));
+            fail("depth 0");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    public void testIOException() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(document(5000));
+
+        try
+        {
+            x.save(new Writer()
+            {
+                public void write(char[] cbuf, int off, int len) throws IOException
+                {
+                    throw new IOException("full");
+                }
+
+                public void flush()
+                {
+                }
+
+                public void close()
+                {
+                }
+            }, new XmlOptions().setSaveParallel(1));
+
+            fail("IOException");
+        }
+        catch (IOException e)
+        {
+            assertEquals("full", e.getMessage());
+        }
+
+        // the document is still usable
+
+        assertEquals(x.xmlText(), x.xmlText(new XmlOptions().setSaveParallel(1)));
+    }
+}
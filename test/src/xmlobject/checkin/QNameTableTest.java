@@ -0,0 +1,159 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+
+/**
+ * Tests that documents loaded with the same type loader share the QName
+ * instances of their element and attribute names.
+ */
+public class QNameTableTest extends TestCase
+{
+    private static final String XML =
+        "<p:a xmlns:p='urn:a' xmlns='urn:b' p:x='1' y='2'><b/><p:c/><d xmlns=''/></p:a>";
+
+    private static XmlCursor firstChild(XmlObject x)
+    {
+        XmlCursor c = x.newCursor();
+        c.toFirstChild();
+        return c;
+    }
+
+    private static void checkSameAttributes(XmlCursor c1, XmlCursor c2)
+    {
+        // The loaders do not all put namespace declarations and attributes
+        // in the same order
+
+        XmlCursor a2 = c2.newCursor();
+
+        for (boolean more = a2.toFirstAttribute(); more; more = a2.toNextAttribute())
+        {
+            XmlCursor a1 = c1.newCursor();
+            boolean found = false;
+
+            for (boolean more1 = a1.toFirstAttribute(); more1; more1 = a1.toNextAttribute())
+            {
+                if (a1.getName().equals(a2.getName()) &&
+                    a1.getName().getPrefix().equals(a2.getName().getPrefix()))
+                {
+                    assertSame(a1.getName(), a2.getName());
+                    found = true;
+                }
+            }
+
+            assertTrue(a2.getName().toString(), found);
+            a1.dispose();
+        }
+
+        a2.dispose();
+    }
+
+    private static boolean toNextStart(XmlCursor c)
+    {
+        while (!c.toNextToken().isNone())
+        {
+            if (c.isStart())
+                return true;
+        }
+
+        return false;
+    }
+
+    private static void checkSameNames(XmlObject x1, XmlObject x2)
+    {
+        XmlCursor c1 = firstChild(x1);
+        XmlCursor c2 = firstChild(x2);
+
+        do
+        {
+            assertSame(c1.getName(), c2.getName());
+            checkSameAttributes(c1, c2);
+        }
+        while (toNextStart(c1) & toNextStart(c2));
+
+        assertFalse(c1.isStart() || c2.isStart());
+
+        c1.dispose();
+        c2.dispose();
+    }
+
+    public void testSharedAcrossDocuments() throws Exception
+    {
+        checkSameNames(XmlObject.Factory.parse(XML), XmlObject.Factory.parse(XML));
+    }
+
+    public void testSharedAcrossLoaders() throws Exception
+    {
+        checkSameNames(XmlObject.Factory.parse(XML),
+            XmlObject.Factory.parse(XML, new XmlOptions().setLoadUseStax()));
+        checkSameNames(XmlObject.Factory.parse(XML),
+            XmlObject.Factory.parse(XmlObject.Factory.parse(XML).getDomNode()));
+    }
+
+    public void testQualifiedNames() throws Exception
+    {
+        XmlCursor c = firstChild(XmlObject.Factory.parse(XML));
+
+        QName a = c.getName();
+        assertEquals("urn:a", a.getNamespaceURI());
+        assertEquals("a", a.getLocalPart());
+        assertEquals("p", a.getPrefix());
+
+        assertEquals("1", c.getAttributeText(new QName("urn:a", "x")));
+        assertEquals("2", c.getAttributeText(new QName("y")));
+
+        c.toFirstChild();
+        QName b = c.getName();
+        assertEquals(new QName("urn:b", "b"), b);
+        assertEquals("", b.getPrefix());
+
+        c.toNextSibling();
+        QName pc = c.getName();
+        assertEquals(new QName("urn:a", "c"), pc);
+
+        // names of the same namespace share the URI string
+
+        assertSame(a.getNamespaceURI(), pc.getNamespaceURI());
+
+        c.toNextSibling();
+        assertEquals(new QName("", "d"), c.getName());
+
+        c.dispose();
+    }
+
+    public void testSameNameDifferentPrefix() throws Exception
+    {
+        XmlCursor c = firstChild(XmlObject.Factory.parse(
+            "<p:a xmlns:p='urn:a'><q:a xmlns:q='urn:a'/></p:a>"));
+
+        QName outer = c.getName();
+        c.toFirstChild();
+        QName inner = c.getName();
+
+        assertEquals(outer, inner);
+        assertEquals("p", outer.getPrefix());
+        assertEquals("q", inner.getPrefix());
+
+        c.dispose();
+    }
+}
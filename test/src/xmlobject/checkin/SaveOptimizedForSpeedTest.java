@@ -0,0 +1,222 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+
+/**
+ * Tests saving to an OutputStream with SAVE_OPTIMIZE_FOR_SPEED, which
+ * encodes straight to bytes, against saving to a Writer with the same
+ * option.
+ */
+public class SaveOptimizedForSpeedTest extends TestCase
+{
+    private static final String XML =
+        "<p:po xmlns:p='urn:po' xmlns='urn:default' date='2004-01-01' note='a &lt; b &amp; \"c\"'>" +
+        "<?pi some data?>" +
+        "<!-- a comment -->" +
+        "<shipTo country='US'><name>Alice &amp; Bob</name></shipTo>" +
+        "<p:comment>mixed <b>content</b> &lt;] ]&gt; caf\u00e9 \u20ac \ud834\udd1e</p:comment>" +
+        "<empty/>" +
+        "</p:po>";
+
+    private static XmlOptions speed()
+    {
+        XmlOptions options = new XmlOptions();
+        options.put(XmlOptions.SAVE_OPTIMIZE_FOR_SPEED);
+        return options;
+    }
+
+    private static String toWriter(XmlObject x) throws IOException
+    {
+        StringWriter w = new StringWriter();
+        x.save(w, speed());
+        return w.toString();
+    }
+
+    private static byte[] toBytes(XmlObject x, XmlOptions options) throws IOException
+    {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        x.save(os, options);
+        return os.toByteArray();
+    }
+
+    public void testUtf8() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(XML);
+        String expected = toWriter(x);
+
+        assertEquals(expected, new String(toBytes(x, speed()), "UTF-8"));
+
+        XmlObject reloaded = XmlObject.Factory.parse(new ByteArrayInputStream(toBytes(x, speed())));
+        assertEquals(x.xmlText(), reloaded.xmlText());
+    }
+
+    public void testEscapes() throws Exception
+    {
+        // Unlike the Writer, which writes these as they are, a ']]>' in text
+        // and a carriage return are escaped so they load back the same
+
+        XmlObject x = XmlObject.Factory.parse("<a>]]&gt;&#xD;]&gt;</a>");
+        String saved = new String(toBytes(x, speed()), "UTF-8");
+
+        assertEquals("<a>]]&gt;&#13;]></a>", saved);
+        assertEquals(x.xmlText(), XmlObject.Factory.parse(saved).xmlText());
+    }
+
+    public void testLarge() throws Exception
+    {
+        StringBuffer sb = new StringBuffer("<a>");
+
+        for (int i = 0; i < 5000; i++)
+            sb.append("<b i='").append(i).append("'>\u00e9\u20ac\ud834\udd1e &amp; ").append(i).append("</b>");
+
+        sb.append("</a>");
+
+        XmlObject x = XmlObject.Factory.parse(sb.toString());
+
+        assertEquals(toWriter(x), new String(toBytes(x, speed()), "UTF-8"));
+    }
+
+    public void testAscii() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(XML);
+        byte[] bytes = toBytes(x, speed().setCharacterEncoding("US-ASCII"));
+
+        for (int i = 0; i < bytes.length; i++)
+            assertTrue(bytes[i] >= 0);
+
+        String ascii = new String(bytes, "US-ASCII");
+        assertTrue(ascii, ascii.indexOf("caf&#233; &#8364; &#119070;") >= 0);
+
+        XmlObject reloaded = XmlObject.Factory.parse(new ByteArrayInputStream(bytes));
+        assertEquals(x.xmlText(), reloaded.xmlText());
+    }
+
+    public void testLatin1() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(XML);
+        byte[] bytes = toBytes(x, speed().setCharacterEncoding("ISO-8859-1"));
+
+        String latin1 = new String(bytes, "ISO-8859-1");
+        assertTrue(latin1, latin1.startsWith("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>"));
+        assertTrue(latin1, latin1.indexOf("caf\u00e9 &#8364;") >= 0);
+
+        XmlObject reloaded = XmlObject.Factory.parse(new ByteArrayInputStream(bytes));
+        assertEquals(x.xmlText(), reloaded.xmlText());
+    }
+
+    public void testOtherEncoding() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(XML);
+        byte[] bytes = toBytes(x, speed().setCharacterEncoding("UTF-16BE"));
+
+        String utf16 = new String(bytes, "UTF-16BE");
+        assertTrue(utf16, utf16.startsWith("<?xml version=\"1.0\" encoding=\"UTF-16BE\"?>"));
+        assertTrue(utf16, utf16.endsWith(toWriter(x)));
+
+        XmlObject reloaded = XmlObject.Factory.parse(new ByteArrayInputStream(bytes));
+        assertEquals(x.xmlText(), reloaded.xmlText());
+    }
+
+    public void testUnmappable() throws Exception
+    {
+        // windows-1252 has the e acute and the euro sign, but not Greek letters
+        // or the clef
+
+        XmlObject x = XmlObject.Factory.parse(
+            "<a x='\u03b1 \u00e9'>caf\u00e9 \u20ac \u03b2 \ud834\udd1e &lt;</a>");
+        byte[] bytes = toBytes(x, speed().setCharacterEncoding("windows-1252"));
+
+        String cp1252 = new String(bytes, "windows-1252");
+        assertTrue(cp1252, cp1252.startsWith("<?xml version=\"1.0\" encoding=\"windows-1252\"?>"));
+        assertTrue(cp1252, cp1252.indexOf("x=\"&#945; \u00e9\"") >= 0);
+        assertTrue(cp1252, cp1252.indexOf("caf\u00e9 \u20ac &#946; &#119070; &lt;") >= 0);
+
+        XmlObject reloaded = XmlObject.Factory.parse(new ByteArrayInputStream(bytes));
+        assertEquals(x.xmlText(), reloaded.xmlText());
+    }
+
+    public void testCommentsAndProcinsts() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.newInstance();
+        XmlCursor c = x.newCursor();
+        c.toNextToken();
+        c.beginElement("a");
+        c.insertComment("a--b-");
+        c.insertProcInst("pi", "x?>y");
+        c.dispose();
+
+        String saved = new String(toBytes(x, speed()), "UTF-8");
+
+        assertEquals(toWriter(x), saved);
+        assertEquals("<a><!--a- b --><?pi x? y?></a>", saved);
+        XmlObject.Factory.parse(saved);
+    }
+
+    public void testLoneSurrogates() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.newInstance();
+        XmlCursor c = x.newCursor();
+        c.toNextToken();
+        c.beginElement("a");
+        c.insertChars("x\ud834y\udd1ez\ud834");
+        c.dispose();
+
+        assertEquals("<a>x?y?z?</a>", new String(toBytes(x, speed()), "UTF-8"));
+    }
+
+    public void testIOException() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(XML);
+
+        try
+        {
+            x.save(new OutputStream()
+            {
+                public void write(int b) throws IOException
+                {
+                    throw new IOException("full");
+                }
+
+                public void write(byte[] b, int off, int len) throws IOException
+                {
+                    throw new IOException("full");
+                }
+            }, speed());
+
+            fail("IOException");
+        }
+        catch (IOException e)
+        {
+            assertEquals("full", e.getMessage());
+        }
+
+        // the buffer of the thread is still usable
+
+        assertEquals(toWriter(x), new String(toBytes(x, speed()), "UTF-8"));
+    }
+}
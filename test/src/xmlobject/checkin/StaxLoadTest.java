@@ -0,0 +1,175 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlDocumentProperties;
+import org.apache.xmlbeans.XmlError;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlLineNumber;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.impl.store.StaxLoader;
+
+/**
+ * Tests loading documents with XmlOptions.setLoadUseStax().
+ */
+public class StaxLoadTest extends TestCase
+{
+    private static final String XML =
+        "<?xml version='1.0' encoding='UTF-8'?>\n" +
+        "<?pi data?>\n" +
+        "<p:po xmlns:p='urn:po' xmlns='urn:default' date='2004-01-01'>\n" +
+        "  <!-- a comment -->\n" +
+        "  <shipTo country='US'><name>Alice &amp; Bob</name></shipTo>\n" +
+        "  <p:comment>mixed <b>content</b> &#x41;<![CDATA[<cdata>]]></p:comment>\n" +
+        "</p:po>";
+
+    private static XmlOptions stax()
+    {
+        return new XmlOptions().setLoadUseStax();
+    }
+
+    public void testSameAsSax() throws Exception
+    {
+        String expected = XmlObject.Factory.parse(XML).xmlText();
+        long loads = StaxLoader.getLoads();
+
+        assertEquals(expected, XmlObject.Factory.parse(XML, stax()).xmlText());
+        assertEquals(expected, XmlObject.Factory.parse(
+            new ByteArrayInputStream(XML.getBytes("UTF-8")), stax()).xmlText());
+        assertEquals(expected, XmlObject.Factory.parse(
+            new StringReader(XML), stax()).xmlText());
+
+        assertEquals(loads + 3, StaxLoader.getLoads());
+    }
+
+    public void testFactoriesPooled() throws Exception
+    {
+        XmlObject.Factory.parse(XML, stax());
+        long created = StaxLoader.getFactoriesCreated();
+
+        for (int i = 0; i < 5; i++)
+            XmlObject.Factory.parse(XML, stax());
+
+        assertEquals(created, StaxLoader.getFactoriesCreated());
+    }
+
+    public void testXmlReaderTakesPrecedence() throws Exception
+    {
+        XmlOptions options = stax().setLoadUseXMLReader(
+            javax.xml.parsers.SAXParserFactory.newInstance().newSAXParser().getXMLReader());
+        long loads = StaxLoader.getLoads();
+
+        XmlObject.Factory.parse(XML, options);
+        assertEquals(loads, StaxLoader.getLoads());
+    }
+
+    public void testDocumentProperties() throws Exception
+    {
+        String xml = "<?xml version='1.0' encoding='ISO-8859-1' standalone='yes'?>" +
+            "<!DOCTYPE a SYSTEM \"a.dtd\"><a/>";
+
+        XmlDocumentProperties props = XmlObject.Factory.parse(
+            new ByteArrayInputStream(xml.getBytes("ISO-8859-1")), stax()).documentProperties();
+
+        assertEquals("ISO-8859-1", props.getEncoding());
+        assertEquals("1.0", props.getVersion());
+        assertTrue(props.getStandalone());
+        assertEquals("a", props.getDoctypeName());
+        assertEquals("a.dtd", props.getDoctypeSystemId());
+        assertNull(props.getDoctypePublicId());
+    }
+
+    public void testInternalEntities() throws Exception
+    {
+        String xml = "<!DOCTYPE a PUBLIC '-//A//EN' 'a.dtd' [<!ENTITY e 'hello'>]><a>&e; world</a>";
+        XmlObject x = XmlObject.Factory.parse(xml, stax());
+
+        XmlCursor c = x.newCursor();
+        c.toFirstChild();
+        assertEquals("hello world", c.getTextValue());
+        c.dispose();
+
+        assertEquals("-//A//EN", x.documentProperties().getDoctypePublicId());
+        assertEquals("a.dtd", x.documentProperties().getDoctypeSystemId());
+    }
+
+    public void testLineNumbers() throws Exception
+    {
+        XmlObject x = XmlObject.Factory.parse(XML, stax().setLoadLineNumbers());
+
+        XmlCursor c = x.newCursor();
+        c.toFirstChild();
+        c.toFirstChild();
+        assertEquals("shipTo", c.getName().getLocalPart());
+
+        XmlLineNumber ln = (XmlLineNumber) c.getBookmark(XmlLineNumber.class);
+        assertNotNull(ln);
+        assertEquals(5, ln.getLine());
+        c.dispose();
+    }
+
+    public void testCDataBookmarks() throws Exception
+    {
+        String xml = "<a><![CDATA[<cdata>]]></a>";
+        XmlObject x = XmlObject.Factory.parse(xml, stax().setUseCDataBookmarks());
+
+        assertEquals(xml, x.xmlText(new XmlOptions().setUseCDataBookmarks()));
+    }
+
+    public void testMalformed() throws Exception
+    {
+        try
+        {
+            XmlObject.Factory.parse("<a>\n<b></a>",
+                stax().setDocumentSourceName("malformed.xml"));
+            fail("mismatched end tag");
+        }
+        catch (XmlException e)
+        {
+            XmlError err = e.getError();
+            assertNotNull(err);
+            assertEquals(2, err.getLine());
+            assertEquals("malformed.xml", err.getSourceName());
+        }
+    }
+
+    public void testEntityExpansionLimit() throws Exception
+    {
+        StringBuffer sb = new StringBuffer("<!DOCTYPE a [<!ENTITY e 'x'>]><a>");
+
+        for (int i = 0; i < 50; i++)
+            sb.append("&e;");
+
+        sb.append("</a>");
+
+        try
+        {
+            XmlObject.Factory.parse(sb.toString(), stax().setEntityExpansionLimit(10));
+            fail("entity expansion limit");
+        }
+        catch (XmlException e)
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.GDate;
+import org.apache.xmlbeans.SchemaType;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlBoolean;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlDateTime;
+import org.apache.xmlbeans.XmlInt;
+import org.apache.xmlbeans.XmlLong;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlQName;
+import org.apache.xmlbeans.XmlShort;
+import org.apache.xmlbeans.impl.util.XsTypeConverter;
+import org.apache.xmlbeans.impl.values.XmlValueOutOfRangeException;
+
+/**
+ * Tests reading typed values straight from the characters of the store.
+ */
+public class TypedCharsTest extends TestCase
+{
+    private static final String[] LONGS = {
+        "0", "-0", "+0", "7", "+7", "-7", "0012",
+        "9223372036854775807", "+9223372036854775807", "-9223372036854775808",
+        "9223372036854775808", "-9223372036854775809", "92233720368547758070",
+        "", "-", "+", "+-1", "--1", "1-", "1 2", "0x10", "\u0661\u0662",
+    };
+
+    private static String lexLong(String s)
+    {
+        try
+        {
+            return Long.toString(XsTypeConverter.lexLong(s));
+        }
+        catch (NumberFormatException e)
+        {
+            return "invalid";
+        }
+    }
+
+    private static String parseLong(String s)
+    {
+        // what lexLong did, minus its acceptance of a sign after a '+'
+        if (s.startsWith("+"))
+        {
+            s = s.substring(1);
+            if (s.startsWith("+") || s.startsWith("-"))
+                return "invalid";
+        }
+
+        try
+        {
+            return Long.toString(Long.parseLong(s));
+        }
+        catch (NumberFormatException e)
+        {
+            return "invalid";
+        }
+    }
+
+    public void testLexLong()
+    {
+        for (int i = 0; i < LONGS.length; i++)
+            assertEquals(LONGS[i], parseLong(LONGS[i]), lexLong(LONGS[i]));
+
+        Random r = new Random(21);
+
+        for (int i = 0; i < 10000; i++)
+        {
+            String s = Long.toString(r.nextLong() >> r.nextInt(64));
+            assertEquals(s, lexLong(s));
+        }
+    }
+
+    /**
+     * Returns a value of the given built-in type with the given text, which
+     * follows namespace declarations in the store.
+     */
+    private static XmlObject typed(SchemaType type, String text) throws Exception
+    {
+        XmlObject x = XmlBeans.getContextTypeLoader().parse(
+            "<xml-fragment xmlns:p='urn:p' xmlns:q='urn:q'>" + text + "</xml-fragment>", type, null);
+
+        assertEquals(type, x.schemaType());
+
+        return x;
+    }
+
+    public void testInt() throws Exception
+    {
+        assertEquals(42, ((XmlInt) typed(XmlInt.type, " \n42\t")).getIntValue());
+        assertEquals(42, ((XmlInt) typed(XmlInt.type, "+42")).getIntValue());
+        assertEquals(Integer.MIN_VALUE, ((XmlInt) typed(XmlInt.type, "-2147483648")).getIntValue());
+        assertEquals(Integer.MAX_VALUE, ((XmlInt) typed(XmlInt.type, "2147483647")).getIntValue());
+
+        // interrupted by a comment, the value is read as a string
+        assertEquals(42, ((XmlInt) typed(XmlInt.type, "4<!-- c -->2")).getIntValue());
+
+        assertEquals(-7, ((XmlShort) typed(XmlShort.type, " -7 ")).getShortValue());
+
+        try
+        {
+            ((XmlInt) typed(XmlInt.type, "2147483648")).getIntValue();
+            fail("out of range");
+        }
+        catch (XmlValueOutOfRangeException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().indexOf("2147483648") >= 0);
+        }
+    }
+
+    public void testLong() throws Exception
+    {
+        assertEquals(Long.MIN_VALUE, ((XmlLong) typed(XmlLong.type, "\n -9223372036854775808 \n")).getLongValue());
+        assertEquals(Long.MAX_VALUE, ((XmlLong) typed(XmlLong.type, "+9223372036854775807")).getLongValue());
+
+        try
+        {
+            ((XmlLong) typed(XmlLong.type, " 1 2 ")).getLongValue();
+            fail("invalid");
+        }
+        catch (XmlValueOutOfRangeException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().indexOf("1 2") >= 0);
+        }
+    }
+
+    public void testBoolean() throws Exception
+    {
+        assertTrue(((XmlBoolean) typed(XmlBoolean.type, " true ")).getBooleanValue());
+        assertFalse(((XmlBoolean) typed(XmlBoolean.type, "0")).getBooleanValue());
+
+        try
+        {
+            ((XmlBoolean) typed(XmlBoolean.type, "yes")).getBooleanValue();
+            fail("invalid");
+        }
+        catch (XmlValueOutOfRangeException e)
+        {
+            // expected
+        }
+    }
+
+    public void testDateTime() throws Exception
+    {
+        XmlDateTime dt = (XmlDateTime) typed(XmlDateTime.type, "\n  2004-08-01T12:30:00.25Z\t");
+
+        assertEquals(new GDate("2004-08-01T12:30:00.25Z"), dt.getGDateValue());
+
+        try
+        {
+            ((XmlDateTime) typed(XmlDateTime.type, "2004-08-01")).getGDateValue();
+            fail("wrong type");
+        }
+        catch (XmlValueOutOfRangeException e)
+        {
+            // expected
+        }
+    }
+
+    public void testQName() throws Exception
+    {
+        XmlQName q = (XmlQName) typed(XmlQName.type, " p:local ");
+        assertEquals(new QName("urn:p", "local"), q.getQNameValue());
+
+        q = (XmlQName) typed(XmlQName.type, "q:local");
+        assertEquals(new QName("urn:q", "local"), q.getQNameValue());
+
+        q = (XmlQName) typed(XmlQName.type, "xml:lang");
+        assertEquals(new QName("http://www.w3.org/XML/1998/namespace", "lang"), q.getQNameValue());
+
+        try
+        {
+            ((XmlQName) typed(XmlQName.type, "z:local")).getQNameValue();
+            fail("unresolved prefix");
+        }
+        catch (XmlValueOutOfRangeException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().indexOf("'z'") >= 0);
+        }
+    }
+
+    public void testChangedText() throws Exception
+    {
+        XmlInt x = (XmlInt) typed(XmlInt.type, "12");
+        assertEquals(12, x.getIntValue());
+
+        XmlCursor c = x.newCursor();
+        c.toEndToken();
+        c.insertChars("3 ");
+        c.dispose();
+
+        assertEquals(123, x.getIntValue());
+
+        x.setIntValue(-5);
+        assertEquals(-5, x.getIntValue());
+    }
+
+    public void testEmpty() throws Exception
+    {
+        try
+        {
+            ((XmlInt) typed(XmlInt.type, " ")).getIntValue();
+            fail("empty");
+        }
+        catch (XmlValueOutOfRangeException e)
+        {
+            // expected
+        }
+    }
+
+    public void testNoAllocation() throws Exception
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return;
+
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+
+        if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled())
+            return;
+
+        long sum = 0;
+        long allocated = 0;
+
+        for (int round = 0; round < 20; round++)
+        {
+            XmlLong[] longs = new XmlLong[100];
+
+            for (int i = 0; i < longs.length; i++)
+                longs[i] = XmlLong.Factory.parse("<xml-fragment> " + i * 1000003L + " </xml-fragment>");
+
+            // the first read of each value lexes its text
+
+            long before = sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+            for (int i = 0; i < longs.length; i++)
+                sum += longs[i].getLongValue();
+
+            allocated = sunBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+        }
+
+        assertEquals(4950L * 1000003L, sum / 20);
+        assertTrue("allocated " + allocated, allocated < 1024);
+    }
+}
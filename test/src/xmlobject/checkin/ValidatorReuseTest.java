@@ -0,0 +1,146 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlbeans.SchemaTypeLoader;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlError;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+
+/**
+ * Tests that the validator kept by a thread for XmlObject.validate() gives
+ * the same results as a new one.
+ */
+public class ValidatorReuseTest extends TestCase
+{
+    private static final String SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns:t='urn:t' targetNamespace='urn:t' elementFormDefault='qualified'>" +
+        "<xs:element name='order'><xs:complexType><xs:sequence>" +
+        "<xs:element name='line' maxOccurs='unbounded'><xs:complexType><xs:sequence>" +
+        "<xs:element name='qty' type='xs:positiveInteger'/>" +
+        "<xs:element name='note' type='xs:string' minOccurs='0'/>" +
+        "</xs:sequence><xs:attribute name='id' type='xs:ID' use='required'/></xs:complexType></xs:element>" +
+        "</xs:sequence></xs:complexType></xs:element>" +
+        "<xs:element name='bag'><xs:complexType><xs:all>" +
+        "<xs:element name='a' type='xs:int'/><xs:element name='b' type='xs:int' minOccurs='0'/>" +
+        "</xs:all></xs:complexType></xs:element>" +
+        "</xs:schema>";
+
+    private static final String[] DOCS = {
+        "<order xmlns='urn:t'><line id='a'><qty>1</qty></line><line id='b'><qty>2</qty><note/></line></order>",
+        "<order xmlns='urn:t'><line id='a'><qty>0</qty></line><line id='a'><note/></line></order>",
+        "<bag xmlns='urn:t'><b>1</b><a>2</a></bag>",
+        "<bag xmlns='urn:t'><b>x</b></bag>",
+        "<order xmlns='urn:t'><line><qty>1</qty><qty>1</qty></line><bogus/></order>",
+    };
+
+    private static List validate(XmlObject doc, List errors)
+    {
+        boolean valid = doc.validate(new XmlOptions().setErrorListener(errors));
+
+        List messages = new ArrayList();
+        messages.add(Boolean.valueOf(valid));
+
+        for (int i = 0; i < errors.size(); i++)
+            messages.add(((XmlError) errors.get(i)).getMessage());
+
+        return messages;
+    }
+
+    public void testSameResults() throws Exception
+    {
+        SchemaTypeLoader loader = XmlBeans.loadXsd(new XmlObject[] { XmlObject.Factory.parse(SCHEMA) });
+
+        XmlObject[] docs = new XmlObject[DOCS.length];
+        List[] expected = new List[DOCS.length];
+
+        for (int i = 0; i < docs.length; i++)
+        {
+            docs[i] = loader.parse(DOCS[i], null, null);
+            expected[i] = validate(docs[i], new ArrayList());
+        }
+
+        assertEquals(Boolean.TRUE, expected[0].get(0));
+        assertEquals(Boolean.TRUE, expected[2].get(0));
+        assertEquals(Boolean.FALSE, expected[1].get(0));
+        assertTrue(expected[4].size() > 2);
+
+        for (int round = 0; round < 20; round++)
+        {
+            for (int i = 0; i < docs.length; i++)
+            {
+                int j = (i * 3 + round) % docs.length;
+                assertEquals(expected[j], validate(docs[j], new ArrayList()));
+            }
+        }
+    }
+
+    public void testNestedValidation() throws Exception
+    {
+        SchemaTypeLoader loader = XmlBeans.loadXsd(new XmlObject[] { XmlObject.Factory.parse(SCHEMA) });
+        final XmlObject valid = loader.parse(DOCS[0], null, null);
+        XmlObject invalid = loader.parse(DOCS[1], null, null);
+
+        List expected = validate(invalid, new ArrayList());
+
+        // an error listener which validates a document itself
+
+        final List nested = new ArrayList();
+
+        List listener = new ArrayList()
+        {
+            public boolean add(Object o)
+            {
+                nested.add(Boolean.valueOf(valid.validate()));
+                return super.add(o);
+            }
+        };
+
+        assertEquals(expected, validate(invalid, listener));
+        assertEquals(expected.size() - 1, nested.size());
+        assertFalse(nested.contains(Boolean.FALSE));
+    }
+
+    public void testReleased() throws Exception
+    {
+        SchemaTypeLoader loader = XmlBeans.loadXsd(new XmlObject[] { XmlObject.Factory.parse(SCHEMA) });
+        XmlObject doc = loader.parse(DOCS[1], null, null);
+
+        List errors = new ArrayList();
+        validate(doc, errors);
+        assertFalse(errors.isEmpty());
+
+        // the validator kept by the thread does not hold on to the listener
+
+        WeakReference ref = new WeakReference(errors);
+        errors = null;
+
+        for (int i = 0; i < 10 && ref.get() != null; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(ref.get());
+    }
+}